@@ -0,0 +1,204 @@
+/*
+ * BenchmarkResult.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The measured scores of a benchmark. The result is written as a JSON object
+ * with the same structure as the JMH JSON results (<code>benchmark</code>,
+ * <code>mode</code>, <code>params</code> and <code>primaryMetric</code>), so
+ * that the usual JMH result tooling can be used to compare releases.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see BenchmarkRunner
+ * @since 1.5
+ */
+final class BenchmarkResult {
+
+    /**
+     * The throughput mode, scored in operations per second.
+     */
+    static final String THROUGHPUT = "thrpt";
+
+    /**
+     * The single shot mode, scored in milliseconds.
+     */
+    static final String SINGLE_SHOT = "ss";
+
+    /**
+     * The benchmark name.
+     */
+    private final String benchmark;
+
+    /**
+     * The benchmark mode.
+     */
+    private final String mode;
+
+    /**
+     * The unit of the scores.
+     */
+    private final String scoreUnit;
+
+    /**
+     * The number of warmup iterations.
+     */
+    private final int warmupIterations;
+
+    /**
+     * The number of rows in the generated datasets.
+     */
+    private final long rowCount;
+
+    /**
+     * The score of each measured iteration.
+     */
+    private final List<Double> scores = new ArrayList<Double>();
+
+    /**
+     * Constructor for BenchmarkResult.
+     *
+     * @param benchmark        the benchmark name
+     * @param mode             the benchmark mode
+     * @param scoreUnit        the unit of the scores
+     * @param warmupIterations the number of warmup iterations
+     * @param rowCount         the number of rows in the generated datasets
+     */
+    BenchmarkResult(final String benchmark, final String mode,
+                    final String scoreUnit, final int warmupIterations,
+                    final long rowCount) {
+        super();
+        this.benchmark = benchmark;
+        this.mode = mode;
+        this.scoreUnit = scoreUnit;
+        this.warmupIterations = warmupIterations;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Adds the score of a measured iteration.
+     *
+     * @param score the iteration score
+     */
+    void addScore(final double score) {
+        scores.add(Double.valueOf(score));
+    }
+
+    /**
+     * Returns the mean of the iteration scores.
+     *
+     * @return the mean score
+     */
+    double getScore() {
+        if (scores.isEmpty()) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (Double score : scores) {
+            sum += score.doubleValue();
+        }
+        return sum / scores.size();
+    }
+
+    /**
+     * Returns the sample standard deviation of the iteration scores.
+     *
+     * @return the standard deviation, or <code>0</code> for a single score
+     */
+    double getStandardDeviation() {
+        if (scores.size() < 2) {
+            return 0;
+        }
+        final double mean = getScore();
+        double squares = 0;
+        for (Double score : scores) {
+            final double delta = score.doubleValue() - mean;
+            squares += delta * delta;
+        }
+        return Math.sqrt(squares / (scores.size() - 1));
+    }
+
+    /**
+     * Returns a one line summary of the result, for the console.
+     *
+     * @return the result summary
+     */
+    String toSummary() {
+        return benchmark + " (" + mode + "): "
+                + String.format("%.3f", getScore()) + " +- "
+                + String.format("%.3f", getStandardDeviation()) + " "
+                + scoreUnit;
+    }
+
+    /**
+     * Returns the result as a JSON object.
+     *
+     * @return the JSON representation of the result
+     */
+    String toJson() {
+        final StringBuilder json = new StringBuilder();
+        json.append("    {\n");
+        json.append("        \"benchmark\" : \"").append(benchmark).append("\",\n");
+        json.append("        \"mode\" : \"").append(mode).append("\",\n");
+        json.append("        \"warmupIterations\" : ").append(warmupIterations)
+                .append(",\n");
+        json.append("        \"measurementIterations\" : ").append(scores.size())
+                .append(",\n");
+        json.append("        \"params\" : {\n");
+        json.append("            \"rows\" : \"").append(rowCount).append("\"\n");
+        json.append("        },\n");
+        json.append("        \"primaryMetric\" : {\n");
+        json.append("            \"score\" : ").append(toJson(getScore()))
+                .append(",\n");
+        json.append("            \"scoreStdDev\" : ")
+                .append(toJson(getStandardDeviation())).append(",\n");
+        json.append("            \"scoreUnit\" : \"").append(scoreUnit)
+                .append("\",\n");
+        json.append("            \"rawData\" : [\n                [");
+        for (int i = 0; i < scores.size(); i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append(toJson(scores.get(i).doubleValue()));
+        }
+        json.append("]\n            ]\n");
+        json.append("        }\n");
+        json.append("    }");
+        return json.toString();
+    }
+
+    /**
+     * Returns the JSON representation of the specified number.
+     *
+     * @param value the number
+     * @return the JSON number, or <code>"NaN"</code> if not a number
+     */
+    private static String toJson(final double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "\"NaN\"";
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * BenchmarkRunner.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the CSVObjects benchmark suite, and writes the results as JSON. The
+ * suite covers the raw {@link CSVReader CSVReader} line throughput, end to end
+ * bean mapping by the {@link CSVParser CSVParser} for flat and nested
+ * (<code>bean-ref</code>) mappings, each of the built-in field formatters,
+ * and the startup of the parser factory, over generated datasets.
+ * <p/>
+ * Each benchmark is run for a number of warmup iterations, followed by the
+ * measured iterations. The usage is:
+ * </p>
+ * <pre>
+ * java net.sf.anupam.csv.BenchmarkRunner [-rows n] [-wi n] [-i n]
+ *      [-dir datasetDir] [-o results.json] [benchmarkPrefix ...]
+ * </pre>
+ * <p/>
+ * The test bean mappings (<code>csv-mapping.xml</code>) and the formatter
+ * configuration must be in the classpath. The <code>benchmark</code> Ant
+ * target runs the suite with the default options.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVBenchmark
+ * @since 1.5
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * The default number of rows in the generated datasets.
+     */
+    private static final long DEFAULT_ROW_COUNT = 2000000L;
+
+    /**
+     * The default number of warmup iterations.
+     */
+    private static final int DEFAULT_WARMUP_ITERATIONS = 3;
+
+    /**
+     * The default number of measured iterations.
+     */
+    private static final int DEFAULT_MEASUREMENT_ITERATIONS = 5;
+
+    /**
+     * The maximum number of values for the formatter benchmarks.
+     */
+    private static final int MAX_FORMATTER_VALUES = 1000000;
+
+    /**
+     * The built-in field formatters.
+     */
+    private static final String[] BUILT_IN_FORMATTERS = {"allLowerCase",
+            "allUpperCase", "doNothing", "firstWord", "lastWord", "trimWord"};
+
+    /**
+     * The number of rows in the generated datasets.
+     */
+    private long rowCount = DEFAULT_ROW_COUNT;
+
+    /**
+     * The number of warmup iterations.
+     */
+    private int warmupIterations = DEFAULT_WARMUP_ITERATIONS;
+
+    /**
+     * The number of measured iterations.
+     */
+    private int measurementIterations = DEFAULT_MEASUREMENT_ITERATIONS;
+
+    /**
+     * The directory for the generated datasets.
+     */
+    private File datasetDir = new File(System.getProperty("java.io.tmpdir"));
+
+    /**
+     * The JSON results file.
+     */
+    private File resultFile = new File("benchmark-results.json");
+
+    /**
+     * The name prefixes of the benchmarks to run; all are run if empty.
+     */
+    private final List<String> includes = new ArrayList<String>();
+
+    /**
+     * Constructor for BenchmarkRunner.
+     */
+    private BenchmarkRunner() {
+        super();
+    }
+
+    /**
+     * Runs the benchmark suite.
+     *
+     * @param args the runner options
+     * @throws Exception thrown if a benchmark fails
+     */
+    public static void main(final String [] args) throws Exception {
+        final BenchmarkRunner runner = new BenchmarkRunner();
+        runner.parseOptions(args);
+        runner.runAll();
+    }
+
+    /**
+     * Parses the command line options.
+     *
+     * @param args the command line options
+     */
+    private void parseOptions(final String [] args) {
+        for (int i = 0; i < args.length; i++) {
+            final String option = args[i];
+            if (option.startsWith("-") && i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for option: "
+                        + option);
+            }
+            if (option.equals("-rows")) {
+                rowCount = Long.parseLong(args[++i]);
+            } else if (option.equals("-wi")) {
+                warmupIterations = Integer.parseInt(args[++i]);
+            } else if (option.equals("-i")) {
+                measurementIterations = Integer.parseInt(args[++i]);
+            } else if (option.equals("-dir")) {
+                datasetDir = new File(args[++i]);
+            } else if (option.equals("-o")) {
+                resultFile = new File(args[++i]);
+            } else if (option.startsWith("-")) {
+                throw new IllegalArgumentException("Unknown option: " + option);
+            } else {
+                includes.add(option);
+            }
+        }
+        if (rowCount < 1 || warmupIterations < 0 || measurementIterations < 1) {
+            throw new IllegalArgumentException("Invalid benchmark options");
+        }
+    }
+
+    /**
+     * Indicates whether the specified benchmark should be run.
+     *
+     * @param name the benchmark name
+     * @return <code>true</code> if the benchmark is included
+     */
+    private boolean isIncluded(final String name) {
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (String prefix : includes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates the datasets, runs the benchmarks and writes the results.
+     *
+     * @throws Exception thrown if a benchmark fails
+     */
+    private void runAll() throws Exception {
+        final List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+
+        // The factory startup must be measured before anything else loads it.
+        if (isIncluded("factory.startup")) {
+            results.add(runFactoryStartup());
+        }
+
+        datasetDir.mkdirs();
+        final File employeeFile = new File(datasetDir, "bench-employees.csv");
+        final File personFile = new File(datasetDir, "bench-persons.csv");
+        try {
+            log("Generating the datasets with " + rowCount + " rows in "
+                    + datasetDir);
+            DatasetGenerator.generateEmployees(employeeFile, rowCount);
+            DatasetGenerator.generatePersons(personFile, rowCount);
+
+            final List<CSVBenchmark> benchmarks = new ArrayList<CSVBenchmark>();
+            benchmarks.add(new ReaderBenchmark("reader.lines", employeeFile));
+            benchmarks.add(new ParserBenchmark("parser.flat", "designationBean",
+                    employeeFile));
+            benchmarks.add(new ParserBenchmark("parser.nested.employee",
+                    "employeeBean", employeeFile));
+            benchmarks.add(new ParserBenchmark("parser.nested.person",
+                    "personBean", personFile));
+            final String[] values = DatasetGenerator.generateNames((int) Math.min(
+                    rowCount, MAX_FORMATTER_VALUES));
+            for (String formatterName : BUILT_IN_FORMATTERS) {
+                benchmarks.add(new FormatterBenchmark("formatter."
+                        + formatterName, formatterName, values));
+            }
+
+            for (CSVBenchmark benchmark : benchmarks) {
+                if (isIncluded(benchmark.getName())) {
+                    results.add(runBenchmark(benchmark));
+                }
+            }
+        } finally {
+            employeeFile.delete();
+            personFile.delete();
+        }
+        writeResults(results);
+    }
+
+    /**
+     * Measures the startup of the parser factory, as a single shot. As the
+     * factory is a singleton, this is the cold startup in a fresh JVM,
+     * including the loading of the mapping and formatter configurations.
+     *
+     * @return the benchmark result
+     * @throws Exception thrown if the factory cannot be created
+     */
+    private BenchmarkResult runFactoryStartup() throws Exception {
+        final BenchmarkResult result = new BenchmarkResult("factory.startup",
+                BenchmarkResult.SINGLE_SHOT, "ms", 0, rowCount);
+        final long start = System.nanoTime();
+        CSVParserFactory.getSingleton();
+        result.addScore((System.nanoTime() - start) / 1e6);
+        log(result.toSummary());
+        return result;
+    }
+
+    /**
+     * Runs the warmup and measured iterations of the specified benchmark.
+     *
+     * @param benchmark the benchmark to run
+     * @return the benchmark result
+     * @throws Exception thrown if the benchmark fails
+     */
+    private BenchmarkResult runBenchmark(final CSVBenchmark benchmark)
+            throws Exception {
+        final BenchmarkResult result = new BenchmarkResult(benchmark.getName(),
+                BenchmarkResult.THROUGHPUT, "ops/s", warmupIterations, rowCount);
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                benchmark.run();
+            }
+            for (int i = 0; i < measurementIterations; i++) {
+                System.gc();
+                final long start = System.nanoTime();
+                final long operations = benchmark.run();
+                final long elapsed = System.nanoTime() - start;
+                result.addScore(operations * 1e9 / Math.max(1L, elapsed));
+            }
+        } finally {
+            benchmark.tearDown();
+        }
+        log(result.toSummary() + " [checksum " + benchmark.getChecksum() + "]");
+        return result;
+    }
+
+    /**
+     * Writes the results as a JSON array.
+     *
+     * @param results the benchmark results
+     * @throws IOException thrown if the results cannot be written
+     */
+    private void writeResults(final List<BenchmarkResult> results)
+            throws IOException {
+        final File parentDir = resultFile.getAbsoluteFile().getParentFile();
+        if (parentDir != null) {
+            parentDir.mkdirs();
+        }
+        final Writer out = new FileWriter(resultFile);
+        try {
+            out.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                out.write(results.get(i).toJson());
+                out.write(i + 1 < results.size() ? ",\n" : "\n");
+            }
+            out.write("]\n");
+        } finally {
+            out.close();
+        }
+        log("The results were written to " + resultFile);
+    }
+
+    /**
+     * Logs a progress message to the console.
+     *
+     * @param message the message to log
+     */
+    private static void log(final String message) {
+        System.out.println("# " + message);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * CSVBenchmark.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+/**
+ * A throughput benchmark run by the {@link BenchmarkRunner BenchmarkRunner}.
+ * Each invocation of {@link #run() run()} is one measured iteration, and
+ * reports the number of operations (e.g., CSV rows or formatted values) it
+ * performed, so that the score is reported as operations per second.
+ * <p/>
+ * The benchmarks should consume the results of the operations (e.g., by
+ * computing a checksum), so that the work cannot be optimized away.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see BenchmarkRunner
+ * @since 1.5
+ */
+public abstract class CSVBenchmark {
+
+    /**
+     * The name of the benchmark.
+     */
+    private final String name;
+
+    /**
+     * Sink for the checksums of the benchmark results.
+     */
+    private long blackhole;
+
+    /**
+     * Constructor for CSVBenchmark.
+     *
+     * @param name the name of the benchmark
+     */
+    protected CSVBenchmark(final String name) {
+        super();
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the benchmark.
+     *
+     * @return the benchmark name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Prepares the benchmark. This is invoked once before the warmup
+     * iterations.
+     *
+     * @throws Exception thrown if the benchmark cannot be prepared
+     */
+    public void setUp() throws Exception {
+        // Do nothing by default
+    }
+
+    /**
+     * Runs one iteration of the benchmark.
+     *
+     * @return the number of operations performed
+     * @throws Exception thrown if the benchmark fails
+     */
+    public abstract long run() throws Exception;
+
+    /**
+     * Releases the benchmark resources. This is invoked once after the
+     * measurement iterations.
+     *
+     * @throws Exception thrown if the resources cannot be released
+     */
+    public void tearDown() throws Exception {
+        // Do nothing by default
+    }
+
+    /**
+     * Consumes the specified benchmark result, so that the computation of the
+     * result is not eliminated by the JIT compiler.
+     *
+     * @param result the result to consume, may be <code>null</code>
+     */
+    protected final void consume(final Object result) {
+        if (result != null) {
+            blackhole += result.hashCode();
+        }
+    }
+
+    /**
+     * Returns the checksum of the consumed results.
+     *
+     * @return the checksum
+     */
+    final long getChecksum() {
+        return this.blackhole;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * DatasetGenerator.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Generates the CSV datasets for the benchmarks. The datasets follow the
+ * layouts of the sample CSV files of the test beans, so that the test bean
+ * mappings can be used to parse them. A fixed random seed is used, so that the
+ * datasets are identical across runs and releases.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see BenchmarkRunner
+ * @since 1.5
+ */
+final class DatasetGenerator {
+
+    /**
+     * The seed for the generated values.
+     */
+    private static final long SEED = 20051017L;
+
+    /**
+     * Sample first names.
+     */
+    private static final String[] FIRST_NAMES = {"John", "Jane", "Anupam",
+            "Maria", "Wei", "Olga", "Pedro", "Aisha", "Kenji", "Fatima"};
+
+    /**
+     * Sample last names.
+     */
+    private static final String[] LAST_NAMES = {"Doe", "Smith", "Sengupta",
+            "Garcia", "Zhang", "Ivanova", "Silva", "Khan", "Tanaka", "Haddad"};
+
+    /**
+     * Sample designations.
+     */
+    private static final String[] DESIGNATIONS = {"Lead", "Manager",
+            "Architect", "Developer", "Analyst", "Tester"};
+
+    /**
+     * Sample roles, including values which need quoting.
+     */
+    private static final String[] ROLES = {"Programmer",
+            "\"Programmer, Senior\"", "Consultant", "\"Lead \"\"Tech\"\"\""};
+
+    /**
+     * Hidden constructor, as this is a utility class.
+     */
+    private DatasetGenerator() {
+        super();
+    }
+
+    /**
+     * Generates an employee dataset, with the layout of the
+     * <code>employeeBean</code> sample file.
+     *
+     * @param csvFile  the file to generate
+     * @param rowCount the number of data rows
+     * @throws IOException thrown if the file cannot be written
+     */
+    static void generateEmployees(final File csvFile, final long rowCount)
+            throws IOException {
+        final Random random = new Random(SEED);
+        final Writer out = new BufferedWriter(new FileWriter(csvFile), 64 * 1024);
+        try {
+            out.write("Srl,Employee ID,Name,Status,Designation,Skill,Role,Client ID,Billing ID\n");
+            for (long i = 1; i <= rowCount; i++) {
+                out.write(String.valueOf(i));
+                out.write(',');
+                out.write(String.valueOf(100000 + random.nextInt(900000)));
+                out.write(',');
+                out.write(pick(random, FIRST_NAMES));
+                out.write(' ');
+                out.write(pick(random, LAST_NAMES));
+                out.write(random.nextBoolean() ? ",Active," : ",Inactive,");
+                out.write(pick(random, DESIGNATIONS));
+                out.write(random.nextBoolean() ? ",DEV," : ",QA,");
+                out.write(pick(random, ROLES));
+                out.write(",CONTRACTOR");
+                out.write(String.valueOf(random.nextInt(1000)));
+                out.write(",BILLID");
+                out.write(String.valueOf(random.nextInt(100)));
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Generates a person dataset, with the layout of the
+     * <code>personBean</code> sample file.
+     *
+     * @param csvFile  the file to generate
+     * @param rowCount the number of data rows
+     * @throws IOException thrown if the file cannot be written
+     */
+    static void generatePersons(final File csvFile, final long rowCount)
+            throws IOException {
+        final Random random = new Random(SEED);
+        final Writer out = new BufferedWriter(new FileWriter(csvFile), 64 * 1024);
+        try {
+            out.write("FirstName,LastName,Location,Email,Provider\n");
+            for (long i = 1; i <= rowCount; i++) {
+                final String firstName = pick(random, FIRST_NAMES);
+                final String lastName = pick(random, LAST_NAMES);
+                out.write(firstName);
+                out.write(',');
+                out.write(lastName);
+                out.write(random.nextBoolean() ? ",Earth," : ",\"Mars, Base 1\",");
+                out.write(firstName.toLowerCase());
+                out.write('.');
+                out.write(lastName.toLowerCase());
+                out.write(String.valueOf(i));
+                out.write("@example.com,EmailProvider");
+                out.write(String.valueOf(random.nextInt(10)));
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Generates sample field values for the formatter benchmarks.
+     *
+     * @param count the number of values
+     * @return the field values
+     */
+    static String[] generateNames(final int count) {
+        final Random random = new Random(SEED);
+        final String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = pick(random, FIRST_NAMES) + " "
+                    + pick(random, LAST_NAMES) + " " + i + " ";
+        }
+        return names;
+    }
+
+    /**
+     * Picks a random value from the specified values.
+     *
+     * @param random the random number generator
+     * @param values the values to pick from
+     * @return the picked value
+     */
+    private static String pick(final Random random, final String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
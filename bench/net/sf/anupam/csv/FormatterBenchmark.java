@@ -0,0 +1,92 @@
+/*
+ * FormatterBenchmark.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import net.sf.anupam.csv.formatters.CSVFieldFormatter;
+import net.sf.anupam.csv.formatters.CSVFormatterFactory;
+
+/**
+ * Measures the throughput of a field formatter, in formatted values per
+ * second.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @since 1.5
+ */
+final class FormatterBenchmark
+        extends CSVBenchmark {
+
+    /**
+     * The name of the formatter to measure.
+     */
+    private final String formatterName;
+
+    /**
+     * The field values to format.
+     */
+    private final String[] values;
+
+    /**
+     * The formatter to measure.
+     */
+    private CSVFieldFormatter formatter;
+
+    /**
+     * Constructor for FormatterBenchmark.
+     *
+     * @param name          the name of the benchmark
+     * @param formatterName the name of the formatter to measure
+     * @param values        the field values to format
+     */
+    FormatterBenchmark(final String name, final String formatterName,
+                       final String[] values) {
+        super(name);
+        this.formatterName = formatterName;
+        this.values = values;
+    }
+
+    /**
+     * Creates the formatter.
+     *
+     * @throws Exception thrown if the formatter cannot be created
+     * @see CSVBenchmark#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        formatter = CSVFormatterFactory.getSingleton().createFormatterFor(
+                formatterName);
+    }
+
+    /**
+     * Formats all the field values.
+     *
+     * @return the number of formatted values
+     * @see CSVBenchmark#run()
+     */
+    @Override
+    public long run() {
+        for (String value : values) {
+            consume(formatter.format(value));
+        }
+        return values.length;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * ParserBenchmark.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import java.io.File;
+
+/**
+ * Measures the end to end throughput of the {@link CSVParser CSVParser}, from
+ * the CSV file to the mapped beans, in beans per second.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @since 1.5
+ */
+final class ParserBenchmark
+        extends CSVBenchmark {
+
+    /**
+     * The bean mapping to parse with.
+     */
+    private final String mappingName;
+
+    /**
+     * The CSV file to parse.
+     */
+    private final File csvFile;
+
+    /**
+     * The parser factory.
+     */
+    private CSVParserFactory factory;
+
+    /**
+     * Constructor for ParserBenchmark.
+     *
+     * @param name        the name of the benchmark
+     * @param mappingName the bean mapping to parse with
+     * @param csvFile     the CSV file to parse
+     */
+    ParserBenchmark(final String name, final String mappingName,
+                    final File csvFile) {
+        super(name);
+        this.mappingName = mappingName;
+        this.csvFile = csvFile;
+    }
+
+    /**
+     * Looks up the parser factory.
+     *
+     * @throws Exception thrown if the factory cannot be created
+     * @see CSVBenchmark#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        factory = CSVParserFactory.getSingleton();
+    }
+
+    /**
+     * Parses the CSV file and maps all the records.
+     *
+     * @return the number of mapped beans
+     * @throws Exception thrown if the file cannot be parsed
+     * @see CSVBenchmark#run()
+     */
+    @Override
+    public long run() throws Exception {
+        final CSVParser parser = factory.getCSVParser(mappingName,
+                csvFile.getPath(), false);
+        long beanCount = 0;
+        try {
+            for (Object bean : parser) {
+                consume(bean);
+                beanCount++;
+            }
+        } finally {
+            parser.close();
+        }
+        return beanCount;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * ReaderBenchmark.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.List;
+
+/**
+ * Measures the raw line throughput of the {@link CSVReader CSVReader}, in
+ * CSV rows per second.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @since 1.5
+ */
+final class ReaderBenchmark
+        extends CSVBenchmark {
+
+    /**
+     * The CSV file to read.
+     */
+    private final File csvFile;
+
+    /**
+     * Constructor for ReaderBenchmark.
+     *
+     * @param name    the name of the benchmark
+     * @param csvFile the CSV file to read
+     */
+    ReaderBenchmark(final String name, final File csvFile) {
+        super(name);
+        this.csvFile = csvFile;
+    }
+
+    /**
+     * Reads all the lines of the CSV file.
+     *
+     * @return the number of lines read
+     * @throws Exception thrown if the file cannot be read
+     * @see CSVBenchmark#run()
+     */
+    @Override
+    public long run() throws Exception {
+        final CSVReader reader = new CSVReader(new BufferedReader(
+                new FileReader(csvFile)), true);
+        long lineCount = 0;
+        try {
+            for (List<String> line : reader) {
+                consume(line.get(line.size() - 1));
+                lineCount++;
+            }
+        } finally {
+            reader.close();
+        }
+        return lineCount;
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * BufferedCSVTokenizer.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The built-in {@link CSVTokenizer tokenizer} of the framework. The tokenizer
+ * reads the CSV stream into a single large, reusable character buffer and
+ * splits the records with a hand written state machine, which handles quoted
+ * fields, escaped (doubled) quotes and line breaks embedded within quoted
+ * fields.
+ * <p/>
+ * The parsing rules are the same as the Excel dialect implemented by
+ * {@link com.Ostermiller.util.ExcelCSVParser ExcelCSVParser}:
+ * <ul>
+ * <li>blank lines are skipped</li>
+ * <li>unquoted values are returned as is, including any white space</li>
+ * <li>text between a closing quote and the next delimiter is ignored</li>
+ * <li>a quoted value which is not terminated before the end of the stream
+ * is returned raw, including the opening quote</li>
+ * </ul>
+ * </p>
+ * <p/>
+ * Apart from the field values themselves, no objects are created per record.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see ExcelCSVTokenizer
+ * @since 1.5
+ */
+final class BufferedCSVTokenizer
+        implements CSVTokenizer {
+
+    /**
+     * The default size of the character buffer.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The initial capacity of the field array.
+     */
+    private static final int INITIAL_FIELD_CAPACITY = 16;
+
+    /**
+     * The field delimiter.
+     */
+    private static final char DELIMITER = ',';
+
+    /**
+     * The quote character.
+     */
+    private static final char QUOTE = '"';
+
+    /**
+     * The carriage return character.
+     */
+    private static final char CR = '\r';
+
+    /**
+     * The line feed character.
+     */
+    private static final char LF = '\n';
+
+    /**
+     * The CSV stream to read from.
+     */
+    private transient Reader csvReader;
+
+    /**
+     * The reusable character buffer.
+     */
+    private transient char[] buffer;
+
+    /**
+     * The position of the next character to scan in the buffer.
+     */
+    private transient int position;
+
+    /**
+     * The number of valid characters in the buffer.
+     */
+    private transient int limit;
+
+    /**
+     * Start of the field being scanned, or <code>-1</code> if no field spans
+     * the current buffer refill. Characters from this position onwards are
+     * retained when the buffer is refilled.
+     */
+    private transient int tokenStart = -1;
+
+    /**
+     * The write position used while collapsing escaped quotes of a quoted
+     * field in place.
+     */
+    private transient int writePosition;
+
+    /**
+     * Flag which indicates whether the end of the stream has been reached.
+     */
+    private transient boolean endOfStream;
+
+    /**
+     * The reusable field values of the current record.
+     */
+    private transient String[] fields;
+
+    /**
+     * The number of fields in the current record.
+     */
+    private transient int fieldCount;
+
+    /**
+     * The flags for the field positions to materialize, or <code>null</code>
+     * if all fields are to be materialized.
+     */
+    private transient boolean[] projection;
+
+    /**
+     * Constructor which accepts a reader on the CSV stream to parse. The
+     * {@link #DEFAULT_BUFFER_SIZE default buffer size} is used.
+     *
+     * @param csvReader the CSV stream reader from which to parse
+     */
+    BufferedCSVTokenizer(final Reader csvReader) {
+        this(csvReader, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor which accepts a reader on the CSV stream to parse and the
+     * initial size of the character buffer. The buffer grows automatically
+     * if a single field is larger than the buffer.
+     *
+     * @param csvReader  the CSV stream reader from which to parse
+     * @param bufferSize the initial size of the character buffer
+     */
+    BufferedCSVTokenizer(final Reader csvReader, final int bufferSize) {
+        super();
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size should be positive");
+        }
+        this.csvReader = csvReader;
+        this.buffer = new char[bufferSize];
+        this.fields = new String[INITIAL_FIELD_CAPACITY];
+    }
+
+    /**
+     * Reads the next CSV record into the reusable field array.
+     *
+     * @return <code>true</code> if a record was read
+     * @throws IOException thrown if the CSV stream cannot be read
+     * @see CSVTokenizer#nextRecord()
+     */
+    public boolean nextRecord() throws IOException {
+        fieldCount = 0;
+
+        // Skip the blank lines before the record.
+        for (;;) {
+            if (position == limit && !fill()) {
+                return false;
+            }
+            final char c = buffer[position];
+            if (c != CR && c != LF) {
+                break;
+            }
+            position++;
+        }
+
+        while (readField()) {
+            // Keep reading till the end of the record.
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of fields in the current record.
+     *
+     * @return the number of fields
+     * @see CSVTokenizer#getFieldCount()
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns the field value at the specified position.
+     *
+     * @param position the field position
+     * @return the field value
+     * @see CSVTokenizer#getField(int)
+     */
+    public String getField(final int position) {
+        if (position >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field position: " + position
+                    + ", Field count: " + fieldCount);
+        }
+        return fields[position];
+    }
+
+    /**
+     * Restricts the fields which are materialized for each record. Skipped
+     * fields are scanned without creating any objects.
+     *
+     * @param projection the flags for the field positions to materialize
+     * @see CSVTokenizer#setProjection(boolean[])
+     */
+    public void setProjection(final boolean[] projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Closes the underlying CSV stream.
+     *
+     * @throws IOException thrown if the stream cannot be closed
+     * @see CSVTokenizer#close()
+     */
+    public void close() throws IOException {
+        endOfStream = true;
+        fieldCount = 0;
+        csvReader.close();
+    }
+
+    /**
+     * Reads a single field starting at the current position.
+     *
+     * @return <code>true</code> if the field was followed by a delimiter,
+     *         <code>false</code> if it ended the record
+     * @throws IOException thrown if the CSV stream cannot be read
+     */
+    private boolean readField() throws IOException {
+        if (position == limit && !fill()) {
+            // A trailing delimiter at the end of the stream.
+            addField("");
+            return false;
+        }
+
+        final char first = buffer[position];
+        if (first == QUOTE) {
+            return readQuotedField();
+        }
+        if (first == DELIMITER) {
+            position++;
+            addField("");
+            return true;
+        }
+        if (first == CR || first == LF) {
+            position++;
+            addField("");
+            return false;
+        }
+        return readPlainField();
+    }
+
+    /**
+     * Reads an unquoted field. The field extends till the next delimiter, line
+     * break or the end of the stream.
+     *
+     * @return <code>true</code> if the field was followed by a delimiter
+     * @throws IOException thrown if the CSV stream cannot be read
+     */
+    private boolean readPlainField() throws IOException {
+        tokenStart = position;
+        for (;;) {
+            final char[] buf = buffer;
+            final int end = limit;
+            int index = position;
+            while (index < end) {
+                final char c = buf[index];
+                if (c == DELIMITER || c == CR || c == LF) {
+                    addField(isFieldWanted()
+                            ? new String(buf, tokenStart, index - tokenStart)
+                            : null);
+                    tokenStart = -1;
+                    position = index + 1;
+                    return c == DELIMITER;
+                }
+                index++;
+            }
+            position = index;
+
+            if (!fill()) {
+                addField(isFieldWanted()
+                        ? new String(buffer, tokenStart, position - tokenStart)
+                        : null);
+                tokenStart = -1;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Reads a quoted field. Escaped quotes are collapsed in place within the
+     * buffer, and any text after the closing quote is skipped.
+     *
+     * @return <code>true</code> if the field was followed by a delimiter
+     * @throws IOException thrown if the CSV stream cannot be read
+     */
+    private boolean readQuotedField() throws IOException {
+        tokenStart = position;
+        position++;
+        writePosition = position;
+
+        for (;;) {
+            if (position == limit && !fill()) {
+                addField(isFieldWanted() ? getUnterminatedField() : null);
+                tokenStart = -1;
+                return false;
+            }
+
+            final char c = buffer[position++];
+            if (c == QUOTE) {
+                if (position == limit && !fill()) {
+                    break;
+                }
+                if (buffer[position] != QUOTE) {
+                    break;
+                }
+                // An escaped quote, keep only one of the pair.
+                position++;
+            }
+            buffer[writePosition++] = c;
+        }
+
+        addField(isFieldWanted()
+                ? new String(buffer, tokenStart + 1, writePosition - tokenStart - 1)
+                : null);
+        tokenStart = -1;
+        return skipToFieldEnd();
+    }
+
+    /**
+     * Returns the raw text of a quoted field which was not terminated before
+     * the end of the stream. The escaped quotes collapsed while scanning are
+     * restored.
+     *
+     * @return the raw field text, including the opening quote
+     */
+    private String getUnterminatedField() {
+        final StringBuilder raw = new StringBuilder(writePosition - tokenStart + 1);
+        raw.append(QUOTE);
+        for (int index = tokenStart + 1; index < writePosition; index++) {
+            final char c = buffer[index];
+            raw.append(c);
+            if (c == QUOTE) {
+                raw.append(QUOTE);
+            }
+        }
+        return raw.toString();
+    }
+
+    /**
+     * Skips any text after the closing quote of a quoted field, till the next
+     * delimiter, line break or the end of the stream.
+     *
+     * @return <code>true</code> if a delimiter was reached
+     * @throws IOException thrown if the CSV stream cannot be read
+     */
+    private boolean skipToFieldEnd() throws IOException {
+        for (;;) {
+            if (position == limit && !fill()) {
+                return false;
+            }
+            final char c = buffer[position++];
+            if (c == DELIMITER) {
+                return true;
+            }
+            if (c == CR || c == LF) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Indicates whether the field being scanned is to be materialized, as per
+     * the projection.
+     *
+     * @return <code>true</code> if the field value is to be created
+     */
+    private boolean isFieldWanted() {
+        return projection == null
+                || (fieldCount < projection.length && projection[fieldCount]);
+    }
+
+    /**
+     * Appends a field value to the current record. Fields beyond the
+     * projection are dropped, and other skipped fields are stored as
+     * <code>null</code>.
+     *
+     * @param value the field value
+     */
+    private void addField(final String value) {
+        if (projection != null && fieldCount >= projection.length) {
+            return;
+        }
+        if (fieldCount == fields.length) {
+            final String[] grown = new String[fields.length * 2];
+            System.arraycopy(fields, 0, grown, 0, fieldCount);
+            fields = grown;
+        }
+        fields[fieldCount] = isFieldWanted() ? value : null;
+        fieldCount++;
+    }
+
+    /**
+     * Refills the buffer from the CSV stream. This is only invoked once all
+     * the buffered characters have been scanned. If a field is being scanned,
+     * its characters are moved to the start of the buffer (which is grown if
+     * the field fills the buffer completely).
+     *
+     * @return <code>true</code> if more characters were read,
+     *         <code>false</code> if the end of the stream has been reached
+     * @throws IOException thrown if the CSV stream cannot be read
+     */
+    private boolean fill() throws IOException {
+        if (endOfStream) {
+            return false;
+        }
+
+        if (tokenStart < 0) {
+            position = 0;
+            limit = 0;
+        } else if (tokenStart > 0) {
+            final int shift = tokenStart;
+            System.arraycopy(buffer, shift, buffer, 0, limit - shift);
+            limit -= shift;
+            position -= shift;
+            writePosition -= shift;
+            tokenStart = 0;
+        }
+
+        if (limit == buffer.length) {
+            final char[] grown = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+        }
+
+        final int charsRead = csvReader.read(buffer, limit, buffer.length - limit);
+        if (charsRead < 0) {
+            endOfStream = true;
+            return false;
+        }
+        limit += charsRead;
+        return true;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * BufferedCSVTokenizerTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BufferedCSVTokenizerTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class BufferedCSVTokenizerTest
+        extends TestCase {
+
+    /**
+     * Sample CSV content covering the Excel CSV dialect corner cases.
+     */
+    private static final String DIALECT_SAMPLE = " field1,field2 ,    field3,field4   ,  field5   ,field6\n"
+            + ",field2,, ,field5,\r\n"
+            + "\n"
+            + "1,to,tre,four,five5,sixsix\r"
+            + "field1, field\"2, field 3, field\\4, field    5, field'6\n"
+            + "\"\",\"1\",\"to\",\"tre\",\"four\",\"five5\",\"sixsix\"\n"
+            + " \"field1\",\"field2\" ,    \"field3\",\"field4\"   ,  \"field5\"   ,\"field6\" \n"
+            + "\"field,1\",\"field2\nstillField2\"\n"
+            + "\"field\"\"1\", \"field\\\\2\", \"field3\"\"\"\"\"\n"
+            + "\"end at the dot.\"ignored,\"end at the dot.\" ignored!\n"
+            + ",field2,, ,field5,";
+
+    /**
+     * Constructor for BufferedCSVTokenizerTest.
+     *
+     * @param name name of the test
+     */
+    public BufferedCSVTokenizerTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(BufferedCSVTokenizerTest.class);
+    }
+
+    /**
+     * Reads all the records from the specified tokenizer.
+     *
+     * @param tokenizer the tokenizer to read from
+     * @return the list of records
+     * @throws IOException thrown if the tokenizer fails
+     */
+    private List<List<String>> readAll(final CSVTokenizer tokenizer)
+            throws IOException {
+        final List<List<String>> records = new ArrayList<List<String>>();
+        while (tokenizer.nextRecord()) {
+            final List<String> record = new ArrayList<String>();
+            for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+                record.add(tokenizer.getField(i));
+            }
+            records.add(record);
+        }
+        tokenizer.close();
+        return records;
+    }
+
+    /**
+     * Asserts that the built-in tokenizer parses the content exactly as the
+     * Ostermiller Excel CSV parser, for a range of buffer sizes.
+     *
+     * @param content the CSV content to parse
+     * @throws IOException thrown if the parsing fails
+     */
+    private void assertSameAsExcelParser(final String content)
+            throws IOException {
+        final List<List<String>> expected = readAll(new ExcelCSVTokenizer(
+                new StringReader(content)));
+
+        for (int bufferSize = 1; bufferSize <= 16; bufferSize++) {
+            assertEquals("The parsed records do not match for buffer size "
+                    + bufferSize, expected, readAll(new BufferedCSVTokenizer(
+                    new StringReader(content), bufferSize)));
+        }
+        assertEquals("The parsed records do not match", expected,
+                readAll(new BufferedCSVTokenizer(new StringReader(content))));
+    }
+
+    /**
+     * Tests the tokenizer against the Excel CSV dialect corner cases.
+     *
+     * @throws IOException thrown if the parsing fails
+     */
+    public void testExcelDialect() throws IOException {
+        assertSameAsExcelParser(DIALECT_SAMPLE);
+    }
+
+    /**
+     * Tests the parsing of quoted fields with embedded line breaks and quotes.
+     *
+     * @throws IOException thrown if the parsing fails
+     */
+    public void testQuotedFields() throws IOException {
+        final CSVTokenizer tokenizer = new BufferedCSVTokenizer(new StringReader(
+                "a,\"b \"\"quoted\"\"\r\nvalue\",c\n"), 4);
+        assertTrue("A record should have been read", tokenizer.nextRecord());
+        assertEquals("The field count does not match", 3, tokenizer.getFieldCount());
+        assertEquals("The quoted field does not match", "b \"quoted\"\r\nvalue",
+                tokenizer.getField(1));
+        assertEquals("The last field does not match", "c", tokenizer.getField(2));
+        assertFalse("No more records should be present", tokenizer.nextRecord());
+        tokenizer.close();
+    }
+
+    /**
+     * Tests the parsing of an unterminated quoted field.
+     *
+     * @throws IOException thrown if the parsing fails
+     */
+    public void testUnterminatedQuote() throws IOException {
+        assertSameAsExcelParser("a,\"b\"\"c\nd");
+        assertSameAsExcelParser("a,\"b\"\"");
+    }
+
+    /**
+     * Tests the parsing of empty and blank content.
+     *
+     * @throws IOException thrown if the parsing fails
+     */
+    public void testBlankContent() throws IOException {
+        assertSameAsExcelParser("");
+        assertSameAsExcelParser("\r\n\n\r");
+        assertSameAsExcelParser(",");
+        assertSameAsExcelParser("\"\"");
+    }
+
+    /**
+     * Tests that only the projected fields are returned, for a range of
+     * buffer sizes.
+     *
+     * @throws IOException thrown if the parsing fails
+     */
+    public void testProjection() throws IOException {
+        final boolean[] projection = {false, true, false, true};
+        final List<List<String>> expected = new ArrayList<List<String>>();
+        for (List<String> record : readAll(new BufferedCSVTokenizer(
+                new StringReader(DIALECT_SAMPLE)))) {
+            final List<String> projected = new ArrayList<String>();
+            for (int i = 0; i < record.size() && i < projection.length; i++) {
+                projected.add(projection[i] ? record.get(i) : null);
+            }
+            expected.add(projected);
+        }
+
+        for (int bufferSize = 1; bufferSize <= 16; bufferSize++) {
+            final CSVTokenizer tokenizer = new BufferedCSVTokenizer(
+                    new StringReader(DIALECT_SAMPLE), bufferSize);
+            tokenizer.setProjection(projection);
+            assertEquals("The projected records do not match for buffer size "
+                    + bufferSize, expected, readAll(tokenizer));
+        }
+    }
+}
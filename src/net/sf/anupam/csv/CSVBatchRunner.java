@@ -0,0 +1,410 @@
+/*
+ * CSVBatchRunner.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a batch of CSV parsing jobs concurrently. Each {@link Job job} parses
+ * a CSV file with a bean mapping, and passes the mapped beans to its sink.
+ * The jobs run on a bounded pool of threads, so that the I/O waits of the
+ * files overlap, while the number of files open at any time stays limited.
+ * <p/>
+ * A job failure (e.g., a missing file, a failure to read the file, or an
+ * exception or error thrown by the sink) does not stop the other jobs; it is
+ * reported in the {@link Result result} of the failed job instead. Only
+ * virtual machine errors (e.g., <code>OutOfMemoryError</code>) stop the
+ * batch.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParserFactory#getCSVParser(String,String,boolean)
+ * @since 1.5
+ */
+public final class CSVBatchRunner {
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory.getLog(CSVBatchRunner.class);
+
+    /**
+     * Sequence for naming the job threads.
+     */
+    private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+    /**
+     * The factory which creates the parsers for the jobs.
+     */
+    private final CSVParserFactory parserFactory;
+
+    /**
+     * The maximum number of jobs which run concurrently.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * Constructor for CSVBatchRunner.
+     *
+     * @param parserFactory  the factory to create the parsers with
+     * @param maxConcurrency the maximum number of jobs to run concurrently
+     */
+    public CSVBatchRunner(final CSVParserFactory parserFactory,
+                          final int maxConcurrency) {
+        super();
+        if (parserFactory == null) {
+            throw new IllegalArgumentException("The parser factory should be specified");
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The maximum concurrency should be positive");
+        }
+        this.parserFactory = parserFactory;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Runs the specified jobs, and waits for all of them to finish. Up to
+     * the {@link #getMaxConcurrency() maximum concurrency} jobs are run at
+     * the same time.
+     *
+     * @param jobs the jobs to run
+     * @return the results of the jobs, in the order of the jobs
+     */
+    public List<Result> run(final List<Job> jobs) {
+        final List<Result> results = new ArrayList<Result>(jobs.size());
+        if (jobs.isEmpty()) {
+            return results;
+        }
+
+        final ExecutorService workers = Executors.newFixedThreadPool(
+                Math.min(maxConcurrency, jobs.size()), new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "csv-batch-"
+                        + THREAD_SEQUENCE.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            final List<Future<Result>> futures = new ArrayList<Future<Result>>(
+                    jobs.size());
+            for (final Job job : jobs) {
+                futures.add(workers.submit(new Callable<Result>() {
+                    public Result call() {
+                        return runJob(job);
+                    }
+                }));
+            }
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+        } catch (final InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the CSV jobs");
+        } catch (final ExecutionException e) {
+            // The jobs record their own failures, except for the virtual
+            // machine errors
+            workers.shutdownNow();
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            workers.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * Runs a single job. This runs on a worker thread.
+     *
+     * @param job the job to run
+     * @return the result of the job
+     */
+    private Result runJob(final Job job) {
+        final long startTime = System.nanoTime();
+        final long [] beanCount = new long[1];
+        Throwable failure = null;
+        CSVParser parser = null;
+        try {
+            parser = parserFactory.getCSVParser(job.getMappingName(),
+                    job.getCsvFileName(), job.isInClassPath());
+            final CSVRowVisitor<Object> sink = job.getSink();
+            parser.parse(new CSVRowVisitor<Object>() {
+                public boolean visit(final Object row) {
+                    beanCount[0]++;
+                    return sink.visit(row);
+                }
+            });
+            // The parser ends the parsing early on a read failure
+            final IOException readFailure = parser.getReadFailure();
+            if (readFailure != null) {
+                throw readFailure;
+            }
+        } catch (final VirtualMachineError e) {
+            throw e;
+        } catch (final Throwable e) {
+            LOG.warn("The CSV job for the file: " + job.getCsvFileName()
+                    + " failed", e);
+            failure = e;
+        } finally {
+            if (parser != null) {
+                parser.close();
+            }
+        }
+        final long elapsedTime = TimeUnit.NANOSECONDS.toMillis(System
+                .nanoTime()
+                - startTime);
+        LOG.debug("Parsed " + beanCount[0] + " beans from the file: "
+                + job.getCsvFileName() + " in " + elapsedTime + " ms");
+        return new Result(job, beanCount[0], elapsedTime, failure);
+    }
+
+    /**
+     * Returns the maximum number of jobs which run concurrently.
+     *
+     * @return the maximum concurrency
+     */
+    public int getMaxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    /**
+     * A CSV parsing job, which maps the records of a CSV file and passes the
+     * beans to a sink.
+     */
+    public static final class Job {
+
+        /**
+         * The bean mapping to use.
+         */
+        private final String mappingName;
+
+        /**
+         * The CSV file to parse.
+         */
+        private final String csvFileName;
+
+        /**
+         * Indicates whether the CSV file is in the classpath.
+         */
+        private final boolean inClassPath;
+
+        /**
+         * The sink for the mapped beans.
+         */
+        private final CSVRowVisitor<Object> sink;
+
+        /**
+         * Constructor for a job which parses a CSV file in the file system.
+         *
+         * @param mappingName the bean mapping to use
+         * @param csvFileName the CSV file to parse
+         * @param sink        the sink for the mapped beans
+         */
+        public Job(final String mappingName, final String csvFileName,
+                   final CSVRowVisitor<Object> sink) {
+            this(mappingName, csvFileName, false, sink);
+        }
+
+        /**
+         * Constructor for Job.
+         *
+         * @param mappingName the bean mapping to use
+         * @param csvFileName the CSV file to parse
+         * @param inClassPath indicates whether the CSV file is in the classpath
+         * @param sink        the sink for the mapped beans
+         */
+        public Job(final String mappingName, final String csvFileName,
+                   final boolean inClassPath, final CSVRowVisitor<Object> sink) {
+            super();
+            if (sink == null) {
+                throw new IllegalArgumentException("The sink should be specified");
+            }
+            this.mappingName = mappingName;
+            this.csvFileName = csvFileName;
+            this.inClassPath = inClassPath;
+            this.sink = sink;
+        }
+
+        /**
+         * Returns the bean mapping to use.
+         *
+         * @return the mapping name
+         */
+        public String getMappingName() {
+            return this.mappingName;
+        }
+
+        /**
+         * Returns the CSV file to parse.
+         *
+         * @return the CSV file name
+         */
+        public String getCsvFileName() {
+            return this.csvFileName;
+        }
+
+        /**
+         * Indicates whether the CSV file is in the classpath.
+         *
+         * @return <code>true</code> if the CSV file is in the classpath
+         */
+        public boolean isInClassPath() {
+            return this.inClassPath;
+        }
+
+        /**
+         * Returns the sink for the mapped beans.
+         *
+         * @return the sink
+         */
+        public CSVRowVisitor<Object> getSink() {
+            return this.sink;
+        }
+
+        /**
+         * Dumps the job. This is meant for <strong>debugging</strong> only.
+         *
+         * @return the string representation of this job
+         * @see Object#toString()
+         */
+        @Override
+        public String toString() {
+            return "Job[" + mappingName + ", " + csvFileName + "]";
+        }
+    }
+
+    /**
+     * The result of a CSV parsing job.
+     */
+    public static final class Result {
+
+        /**
+         * The job.
+         */
+        private final Job job;
+
+        /**
+         * The number of beans passed to the sink.
+         */
+        private final long beanCount;
+
+        /**
+         * The time taken by the job, in milliseconds.
+         */
+        private final long elapsedTime;
+
+        /**
+         * The failure of the job, if any.
+         */
+        private final Throwable failure;
+
+        /**
+         * Constructor for Result.
+         *
+         * @param job         the job
+         * @param beanCount   the number of beans passed to the sink
+         * @param elapsedTime the time taken by the job, in milliseconds
+         * @param failure     the failure of the job, or <code>null</code>
+         */
+        Result(final Job job, final long beanCount, final long elapsedTime,
+               final Throwable failure) {
+            super();
+            this.job = job;
+            this.beanCount = beanCount;
+            this.elapsedTime = elapsedTime;
+            this.failure = failure;
+        }
+
+        /**
+         * Returns the job.
+         *
+         * @return the job
+         */
+        public Job getJob() {
+            return this.job;
+        }
+
+        /**
+         * Returns the number of beans passed to the sink. For a failed job,
+         * this is the number of beans passed before the failure.
+         *
+         * @return the bean count
+         */
+        public long getBeanCount() {
+            return this.beanCount;
+        }
+
+        /**
+         * Returns the time taken by the job.
+         *
+         * @return the elapsed time, in milliseconds
+         */
+        public long getElapsedTime() {
+            return this.elapsedTime;
+        }
+
+        /**
+         * Returns the failure of the job.
+         *
+         * @return the failure, or <code>null</code> if the job succeeded
+         */
+        public Throwable getFailure() {
+            return this.failure;
+        }
+
+        /**
+         * Indicates whether the job succeeded.
+         *
+         * @return <code>true</code> if the job succeeded
+         */
+        public boolean isSuccessful() {
+            return this.failure == null;
+        }
+
+        /**
+         * Dumps the result. This is meant for <strong>debugging</strong> only.
+         *
+         * @return the string representation of this result
+         * @see Object#toString()
+         */
+        @Override
+        public String toString() {
+            return job + (isSuccessful() ? " parsed " + beanCount + " beans"
+                    : " failed: " + failure) + " in " + elapsedTime + " ms";
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * CSVBatchRunnerTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+import net.sf.anupam.csv.exceptions.CSVOException;
+import test.net.sf.anupam.csv.beans.Person;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CSVBatchRunnerTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class CSVBatchRunnerTest
+        extends TestCase {
+
+    /**
+     * The sample data file to use for the test.
+     */
+    private static final String SAMPLE_CSV_FILE = "test/net/sf/anupam/csv/beans/sample-2.csv";
+
+    /**
+     * The number of jobs to run.
+     */
+    private static final int JOB_COUNT = 20;
+
+    /**
+     * Constructor for CSVBatchRunnerTest.
+     *
+     * @param name name of the test
+     */
+    public CSVBatchRunnerTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(CSVBatchRunnerTest.class);
+    }
+
+    /**
+     * Tests that all the jobs are run, with their results in the job order.
+     *
+     * @throws CSVOException thrown if the parser factory cannot be created
+     */
+    public void testRun()
+            throws CSVOException {
+        final AtomicInteger personCount = new AtomicInteger();
+        final CSVRowVisitor<Object> sink = new CSVRowVisitor<Object>() {
+            public boolean visit(final Object row) {
+                assertTrue("The bean should be a person", row instanceof Person);
+                personCount.incrementAndGet();
+                return true;
+            }
+        };
+        final List<CSVBatchRunner.Job> jobs = new ArrayList<CSVBatchRunner.Job>();
+        for (int i = 0; i < JOB_COUNT; i++) {
+            jobs.add(new CSVBatchRunner.Job("personBean", SAMPLE_CSV_FILE,
+                    true, sink));
+        }
+
+        final List<CSVBatchRunner.Result> results = new CSVBatchRunner(
+                CSVParserFactory.getSingleton(), 4).run(jobs);
+        assertEquals("The result count does not match", JOB_COUNT,
+                results.size());
+        for (int i = 0; i < JOB_COUNT; i++) {
+            final CSVBatchRunner.Result result = results.get(i);
+            assertSame("The results should be in the job order", jobs.get(i),
+                    result.getJob());
+            assertTrue("The job should have succeeded", result.isSuccessful());
+            assertEquals("The bean count does not match", 2,
+                    result.getBeanCount());
+            assertTrue("The elapsed time should not be negative",
+                    result.getElapsedTime() >= 0);
+        }
+        assertEquals("The sink should receive all the beans", 2 * JOB_COUNT,
+                personCount.get());
+    }
+
+    /**
+     * Tests that a failed job is reported without stopping the other jobs.
+     *
+     * @throws CSVOException thrown if the parser factory cannot be created
+     */
+    public void testFailure()
+            throws CSVOException {
+        final CSVRowVisitor<Object> sink = new CSVRowVisitor<Object>() {
+            public boolean visit(final Object row) {
+                return true;
+            }
+        };
+        final CSVRowVisitor<Object> failingSink = new CSVRowVisitor<Object>() {
+            public boolean visit(final Object row) {
+                throw new IllegalStateException("Sink failed");
+            }
+        };
+        final List<CSVBatchRunner.Job> jobs = new ArrayList<CSVBatchRunner.Job>();
+        jobs.add(new CSVBatchRunner.Job("personBean", "no-such-file.csv", sink));
+        jobs.add(new CSVBatchRunner.Job("personBean", SAMPLE_CSV_FILE, true,
+                failingSink));
+        jobs.add(new CSVBatchRunner.Job("personBean", SAMPLE_CSV_FILE, true,
+                sink));
+
+        final List<CSVBatchRunner.Result> results = new CSVBatchRunner(
+                CSVParserFactory.getSingleton(), 2).run(jobs);
+        assertTrue("The missing file should be reported", results.get(0)
+                .getFailure() instanceof FileNotFoundException);
+        assertTrue("The sink failure should be reported", results.get(1)
+                .getFailure() instanceof IllegalStateException);
+        assertEquals("The bean count before the failure does not match", 1,
+                results.get(1).getBeanCount());
+        assertTrue("The other job should have succeeded", results.get(2)
+                .isSuccessful());
+    }
+
+    /**
+     * Tests that errors thrown by a sink, and failures to read a file, are
+     * reported as job failures.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testErrorAndReadFailure()
+            throws Exception {
+        final StringBuilder content = new StringBuilder(
+                "FirstName,LastName,Location,Email,Provider\n");
+        for (int i = 0; i < 10000; i++) {
+            content.append("John,Doe,Earth,p").append(i).append(
+                    "@nowhere.com,Provider\n");
+        }
+        final ByteArrayOutputStream gzipContent = new ByteArrayOutputStream();
+        final GZIPOutputStream gzipOut = new GZIPOutputStream(gzipContent);
+        gzipOut.write(content.toString().getBytes("ISO-8859-1"));
+        gzipOut.finish();
+        final byte[] compressed = gzipContent.toByteArray();
+
+        final File truncatedFile = File.createTempFile("persons", ".csv.gz");
+        try {
+            final OutputStream outStream = new FileOutputStream(truncatedFile);
+            outStream.write(compressed, 0, compressed.length / 2);
+            outStream.close();
+
+            final AtomicInteger beanCount = new AtomicInteger();
+            final CSVRowVisitor<Object> sink = new CSVRowVisitor<Object>() {
+                public boolean visit(final Object row) {
+                    beanCount.incrementAndGet();
+                    return true;
+                }
+            };
+            final CSVRowVisitor<Object> erroneousSink = new CSVRowVisitor<Object>() {
+                public boolean visit(final Object row) {
+                    throw new AssertionError("Sink failed");
+                }
+            };
+            final List<CSVBatchRunner.Job> jobs = new ArrayList<CSVBatchRunner.Job>();
+            jobs.add(new CSVBatchRunner.Job("personBean", SAMPLE_CSV_FILE, true,
+                    erroneousSink));
+            jobs.add(new CSVBatchRunner.Job("personBean", truncatedFile
+                    .getPath(), sink));
+            jobs.add(new CSVBatchRunner.Job("personBean", SAMPLE_CSV_FILE, true,
+                    sink));
+
+            final List<CSVBatchRunner.Result> results = new CSVBatchRunner(
+                    CSVParserFactory.getSingleton(), 2).run(jobs);
+            assertTrue("The sink error should be reported", results.get(0)
+                    .getFailure() instanceof AssertionError);
+            assertTrue("The read failure should be reported", results.get(1)
+                    .getFailure() instanceof IOException);
+            assertTrue("Some beans should have been read before the failure",
+                    results.get(1).getBeanCount() > 0);
+            assertTrue("The other job should have succeeded", results.get(2)
+                    .isSuccessful());
+        } finally {
+            truncatedFile.delete();
+        }
+    }
+}
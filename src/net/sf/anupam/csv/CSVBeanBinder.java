@@ -0,0 +1,66 @@
+/*
+ * CSVBeanBinder.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import java.util.List;
+
+/**
+ * Binds a CSV record to a new instance of the POJO bean of a bean mapping.
+ * The {@link CSVParserFactory parser factory} creates a binder for each bean
+ * mapping from the mapping configuration, which resolves the bean constructor
+ * and property setters once, or uses the binder
+ * {@link CSVGeneratedBeanBinder generated} for the bean class at build time.
+ * <p/>
+ * Clients can also {@link CSVParserFactory#setBeanBinder(String,CSVBeanBinder)
+ * register} a hand written binder for a mapping, which invokes the bean's
+ * constructor, setters and any field formatters directly. Such a binder
+ * involves no reflection at all, and can be inlined completely by the JIT
+ * compiler.
+ * </p>
+ * <p/>
+ * Binders are shared by all the parsers of a mapping, and must be thread
+ * safe.
+ * </p>
+ * <p/>
+ * The parsers reuse the CSV record list for the next record, so the list
+ * passed to a binder is only valid during the call. Binders which retain the
+ * record values, or a view of the list, must copy them.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParserFactory#setBeanBinder(String,CSVBeanBinder)
+ * @since 1.5
+ */
+public interface CSVBeanBinder {
+
+    /**
+     * Creates the bean mapped from the specified CSV record. The record
+     * values are indexed by the CSV field positions.
+     *
+     * @param csvLine the CSV record to map, which is overwritten by the next
+     *                record once this method returns
+     * @return the mapped bean, or <code>null</code> if the bean could not be
+     *         created
+     */
+    Object createBean(final List<String> csvLine);
+}
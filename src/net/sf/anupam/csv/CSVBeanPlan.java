@@ -0,0 +1,535 @@
+/*
+ * CSVBeanPlan.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import net.sf.anupam.csv.formatters.CSVBatchFormatter;
+import net.sf.anupam.csv.formatters.CSVFormatterFactory;
+import net.sf.anupam.csv.formatters.CSVSliceFormatter;
+import net.sf.anupam.csv.mapping.CSVBeanMapping;
+import net.sf.anupam.csv.mapping.CSVFieldMapping;
+import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A compiled, immutable form of a {@link CSVBeanMapping bean mapping}. The
+ * bean class, its constructor and the property setters are resolved once when
+ * the plan is {@link #compile(CSVBeanMapping) compiled}, so that mapping a CSV
+ * record to a bean involves no class or property lookups.
+ * <p/>
+ * The field values are converted to the setter types exactly as
+ * {@link BeanUtils#setProperty(Object,String,Object) BeanUtils} would convert
+ * them, using the {@link CSVFieldConverter converter} selected for the field
+ * type where available. Attributes which are not simple writable properties of the bean are
+ * still set through <code>BeanUtils</code>.
+ * </p>
+ * <p/>
+ * The plan is the default {@link CSVBeanBinder binder} for the bean mappings.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParser
+ * @see CSVBeanBinder
+ * @since 1.5
+ */
+final class CSVBeanPlan
+        implements CSVBeanBinder {
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory.getLog(CSVBeanPlan.class);
+
+    /**
+     * The builder which the field formatters of the current thread write
+     * into.
+     */
+    private static final ThreadLocal<StringBuilder> FORMAT_BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+    };
+
+    /**
+     * The no argument constructor of the bean class.
+     */
+    private final Constructor<?> beanConstructor;
+
+    /**
+     * The bindings of the mapped fields, in the mapping order.
+     */
+    private final FieldBinding[] bindings;
+
+    /**
+     * The CSV field positions mapped by this plan, including the referenced
+     * bean mappings, in ascending order.
+     */
+    private final int[] fieldPositions;
+
+    /**
+     * The converters registered with <code>ConvertUtils</code> when the field
+     * converters of this plan were selected.
+     */
+    private final Converter[] registeredConverters;
+
+    /**
+     * Constructor for CSVBeanPlan.
+     *
+     * @param beanConstructor      the no argument constructor of the bean
+     *                             class
+     * @param bindings             the field bindings
+     * @param registeredConverters the converters registered when the plan
+     *                             was compiled
+     */
+    private CSVBeanPlan(final Constructor<?> beanConstructor,
+                        final FieldBinding[] bindings,
+                        final Converter[] registeredConverters) {
+        super();
+        this.beanConstructor = beanConstructor;
+        this.bindings = bindings;
+        this.registeredConverters = registeredConverters;
+
+        final BitSet positions = new BitSet();
+        for (FieldBinding binding : bindings) {
+            if (binding.beanReference == null) {
+                positions.set(binding.fieldPosition);
+            } else {
+                for (int position : binding.beanReference.fieldPositions) {
+                    positions.set(position);
+                }
+            }
+        }
+        this.fieldPositions = new int[positions.cardinality()];
+        int index = 0;
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions
+                .nextSetBit(i + 1)) {
+            fieldPositions[index++] = i;
+        }
+    }
+
+    /**
+     * Returns the CSV field positions mapped by this plan, including the
+     * referenced bean mappings.
+     *
+     * @return the field positions, in ascending order
+     */
+    int[] getFieldPositions() {
+        return fieldPositions;
+    }
+
+    /**
+     * Indicates whether the field converters of this plan are still valid,
+     * i.e., no converter has been registered with <code>ConvertUtils</code>
+     * since the plan was compiled. The check only compares the registered
+     * converter instances, and is cheap enough to make for each new parser.
+     *
+     * @return <code>true</code> if the plan is current, <code>false</code> if
+     *         it should be compiled again
+     */
+    boolean isCurrent() {
+        return CSVFieldConverter.isRegistryUnchanged(registeredConverters);
+    }
+
+    /**
+     * Compiles the specified bean mapping, including any referenced bean
+     * mappings.
+     *
+     * @param beanMapping the bean mapping to compile
+     * @return the compiled plan, or <code>null</code> if the bean class or its
+     *         public no argument constructor cannot be resolved
+     */
+    static CSVBeanPlan compile(final CSVBeanMapping beanMapping) {
+        // The snapshot precedes the converter selection, so that a concurrent
+        // registration leaves the plan stale rather than unnoticed
+        return compile(beanMapping, new HashSet<CSVBeanMapping>(),
+                CSVFieldConverter.getRegisteredConverters());
+    }
+
+    /**
+     * Compiles the specified bean mapping, guarding against cyclic bean
+     * references.
+     *
+     * @param beanMapping          the bean mapping to compile
+     * @param compilingMappings    the bean mappings currently being compiled
+     * @param registeredConverters the converters registered when the
+     *                             compilation started
+     * @return the compiled plan, or <code>null</code> if the mapping cannot be
+     *         compiled
+     */
+    private static CSVBeanPlan compile(final CSVBeanMapping beanMapping,
+                                       final Set<CSVBeanMapping> compilingMappings,
+                                       final Converter[] registeredConverters) {
+        if (!compilingMappings.add(beanMapping)) {
+            LOG.warn("The bean mapping: " + beanMapping.getBeanName()
+                    + " references itself and cannot be compiled");
+            return null;
+        }
+
+        final Class<?> beanClass;
+        final Constructor<?> beanConstructor;
+        final PropertyDescriptor[] properties;
+        try {
+            beanClass = Class.forName(beanMapping.getBeanClass());
+            beanConstructor = beanClass.getConstructor();
+            final BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
+            properties = beanInfo.getPropertyDescriptors();
+        } catch (final ClassNotFoundException e) {
+            LOG.warn("The Bean for class: " + beanMapping.getBeanClass()
+                    + " could not be resolved", e);
+            return null;
+        } catch (final NoSuchMethodException e) {
+            LOG.warn("The Bean for class: " + beanMapping.getBeanClass()
+                    + " does not have a public no argument constructor", e);
+            return null;
+        } catch (final IntrospectionException e) {
+            LOG.warn("The Bean for class: " + beanMapping.getBeanClass()
+                    + " could not be introspected", e);
+            return null;
+        }
+
+        final List<FieldBinding> bindings = new ArrayList<FieldBinding>();
+        for (CSVFieldMapping fieldMapping : beanMapping) {
+            CSVBeanPlan beanReference = null;
+            if (!fieldMapping.getBeanReferenceName().equals("none")) {
+                beanReference = compile(fieldMapping.getBeanReference(),
+                        compilingMappings, registeredConverters);
+                if (beanReference == null) {
+                    return null;
+                }
+            }
+            bindings.add(new FieldBinding(fieldMapping, beanReference,
+                    findProperty(properties, fieldMapping.getAttributeName())));
+        }
+
+        compilingMappings.remove(beanMapping);
+        return new CSVBeanPlan(beanConstructor, bindings
+                .toArray(new FieldBinding[bindings.size()]),
+                registeredConverters);
+    }
+
+    /**
+     * Returns the writable property with the specified name.
+     *
+     * @param properties    the properties of the bean class
+     * @param attributeName the property name
+     * @return the property, or <code>null</code> if the bean does not have a
+     *         simple writable property of the name
+     */
+    private static PropertyDescriptor findProperty(
+            final PropertyDescriptor[] properties, final String attributeName) {
+        for (PropertyDescriptor property : properties) {
+            if (property.getName().equals(attributeName)
+                    && property.getWriteMethod() != null) {
+                return property;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates the bean for the specified CSV record, and sets the mapped
+     * properties.
+     *
+     * @param csvLine the CSV record to map
+     * @return the mapped bean, or <code>null</code> if the bean could not be
+     *         instantiated
+     * @see CSVBeanBinder#createBean(List)
+     */
+    public Object createBean(final List<String> csvLine) {
+        final Object bean = instantiate();
+        if (bean == null) {
+            return null;
+        }
+
+        for (FieldBinding binding : bindings) {
+            binding.bind(bean, csvLine);
+        }
+        return bean;
+    }
+
+    /**
+     * Creates a new instance of the bean class.
+     *
+     * @return the new bean, or <code>null</code> if the bean could not be
+     *         instantiated
+     */
+    private Object instantiate() {
+        try {
+            return beanConstructor.newInstance();
+        } catch (final InstantiationException e) {
+            LOG.warn("The Bean for class: " + beanConstructor.getDeclaringClass()
+                    + " could not be instantiated", e);
+            return null;
+        } catch (final IllegalAccessException e) {
+            LOG.warn("The Bean for class: " + beanConstructor.getDeclaringClass()
+                    + " could not be instantiated", e);
+            return null;
+        } catch (final InvocationTargetException e) {
+            LOG.warn("The Bean for class: " + beanConstructor.getDeclaringClass()
+                    + " could not be instantiated", e);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the beans for a batch of CSV records, which are specified
+     * column by column. Each field is formatted for the whole batch with a
+     * {@link CSVBatchFormatter batch formatter}, and then set on all the
+     * beans, so that the formatters and setters run in tight loops.
+     *
+     * @param columns the CSV field values, indexed by the field position and
+     *                then by the record; only the
+     *                {@link #getFieldPositions() mapped positions} are needed
+     * @param count   the number of records in the batch
+     * @param beans   the array in which the mapped beans are stored; beans
+     *                which could not be instantiated are <code>null</code>
+     * @param offset  the index at which the first bean is stored
+     * @see #createBean(List)
+     */
+    void createBeans(final String[][] columns, final int count,
+                     final Object[] beans, final int offset) {
+        for (int i = 0; i < count; i++) {
+            beans[offset + i] = instantiate();
+        }
+        final Object[] values = new Object[count];
+        for (FieldBinding binding : bindings) {
+            binding.bindBatch(beans, offset, columns, count, values);
+        }
+    }
+
+    /**
+     * Applies the field formatter to the specified value, through the slice
+     * based formatting. Results backed by the value or the reused builder are
+     * converted to <code>String</code> values.
+     *
+     * @param formatter     the field formatter
+     * @param csvFieldValue the field value to format
+     * @return the formatted value (need not be a String)
+     */
+    static Object formatValue(final CSVSliceFormatter formatter,
+                              final String csvFieldValue) {
+        if (csvFieldValue == null) {
+            return formatter.format(csvFieldValue);
+        }
+        final Object value = formatter.format(csvFieldValue, 0, csvFieldValue
+                .length(), FORMAT_BUILDER.get());
+        if (value instanceof CharSequence && !(value instanceof String)) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    /**
+     * Converts the value to the property type, using the same rules as
+     * <code>BeanUtils</code>.
+     *
+     * @param value        the value to convert
+     * @param converter    the converter for the field values, or
+     *                     <code>null</code> to convert them through
+     *                     <code>ConvertUtils</code>
+     * @param propertyType the property type
+     * @return the converted value
+     */
+    static Object convertValue(final Object value,
+                               final CSVFieldConverter converter,
+                               final Class<?> propertyType) {
+        if (value == null || value instanceof String) {
+            if (converter != null) {
+                return converter.convert((String) value);
+            }
+            return ConvertUtils.convert((String) value, propertyType);
+        }
+        if (ConvertUtils.lookup(value.getClass()) != null) {
+            return ConvertUtils.convert(value.toString(), propertyType);
+        }
+        return value;
+    }
+
+    /**
+     * The compiled binding of a single field mapping to a bean property.
+     */
+    private static final class FieldBinding {
+
+        /**
+         * The CSV field position.
+         */
+        private final int fieldPosition;
+
+        /**
+         * The field formatter, or <code>null</code> if not present.
+         */
+        private final CSVSliceFormatter formatter;
+
+        /**
+         * The field formatter for batches, or <code>null</code> if not
+         * present.
+         */
+        private final CSVBatchFormatter batchFormatter;
+
+        /**
+         * The compiled referenced bean mapping, or <code>null</code> if the
+         * field is not a bean reference.
+         */
+        private final CSVBeanPlan beanReference;
+
+        /**
+         * The bean property name.
+         */
+        private final String attributeName;
+
+        /**
+         * The property setter, or <code>null</code> if the property has to be
+         * set through <code>BeanUtils</code>.
+         */
+        private final Method setter;
+
+        /**
+         * The property type, or <code>null</code> if the setter is not present.
+         */
+        private final Class<?> propertyType;
+
+        /**
+         * The converter for the field values, or <code>null</code> if the
+         * values are converted through <code>ConvertUtils</code>.
+         */
+        private final CSVFieldConverter converter;
+
+        /**
+         * Constructor for FieldBinding.
+         *
+         * @param fieldMapping  the field mapping to bind
+         * @param beanReference the compiled referenced bean mapping
+         * @param property      the bean property, or <code>null</code> if not
+         *                      a simple writable property
+         */
+        FieldBinding(final CSVFieldMapping fieldMapping,
+                     final CSVBeanPlan beanReference,
+                     final PropertyDescriptor property) {
+            super();
+            this.fieldPosition = fieldMapping.getFieldPosition();
+            this.formatter = CSVFormatterFactory.asSliceFormatter(fieldMapping
+                    .getFormatter());
+            this.batchFormatter = CSVFormatterFactory
+                    .asBatchFormatter(fieldMapping.getFormatter());
+            this.beanReference = beanReference;
+            this.attributeName = fieldMapping.getAttributeName();
+
+            final Method writeMethod = (property == null) ? null : MethodUtils
+                    .getAccessibleMethod(property.getWriteMethod());
+            this.setter = writeMethod;
+            this.propertyType = (writeMethod == null) ? null : property
+                    .getPropertyType();
+            this.converter = (writeMethod == null) ? null : CSVFieldConverter
+                    .getConverter(fieldMapping.getFieldType(), propertyType);
+        }
+
+        /**
+         * Sets the property on the bean from the specified CSV record.
+         *
+         * @param bean    the bean to set the property on
+         * @param csvLine the CSV record to map
+         */
+        void bind(final Object bean, final List<String> csvLine) {
+            final Object value;
+            if (beanReference == null) {
+                final String csvFieldValue = csvLine.get(fieldPosition);
+                value = (formatter == null) ? csvFieldValue
+                        : formatValue(formatter, csvFieldValue);
+            } else {
+                value = beanReference.createBean(csvLine);
+            }
+            setValue(bean, value);
+        }
+
+        /**
+         * Sets the property on the beans of a batch, from the specified
+         * columns of CSV field values.
+         *
+         * @param beans   the beans to set the property on
+         * @param offset  the index of the first bean of the batch
+         * @param columns the CSV field values, by field position and record
+         * @param count   the number of records in the batch
+         * @param values  the array to store the property values in
+         */
+        void bindBatch(final Object[] beans, final int offset,
+                       final String[][] columns, final int count,
+                       final Object[] values) {
+            final Object[] fieldValues;
+            if (beanReference != null) {
+                beanReference.createBeans(columns, count, values, 0);
+                fieldValues = values;
+            } else if (batchFormatter == null) {
+                fieldValues = columns[fieldPosition];
+            } else {
+                batchFormatter.formatBatch(columns[fieldPosition], values,
+                        count);
+                fieldValues = values;
+            }
+
+            for (int i = 0; i < count; i++) {
+                final Object bean = beans[offset + i];
+                if (bean != null) {
+                    setValue(bean, fieldValues[i]);
+                }
+            }
+        }
+
+        /**
+         * Sets the property on the bean to the specified value.
+         *
+         * @param bean  the bean to set the property on
+         * @param value the property value
+         */
+        private void setValue(final Object bean, final Object value) {
+            try {
+                if (setter == null) {
+                    BeanUtils.setProperty(bean, attributeName, value);
+                } else {
+                    setter.invoke(bean, convertValue(value, converter,
+                            propertyType));
+                }
+            } catch (final IllegalAccessException e) {
+                LOG.warn(e);
+            } catch (final InvocationTargetException e) {
+                LOG.warn(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * CSVBeanPlanTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+import net.sf.anupam.csv.exceptions.CSVOException;
+import net.sf.anupam.csv.mapping.CSVBeanMapping;
+import net.sf.anupam.csv.mapping.CSVFieldMapping;
+import test.net.sf.anupam.csv.beans.Designation;
+import test.net.sf.anupam.csv.beans.Employee;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CSVBeanPlanTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class CSVBeanPlanTest
+        extends TestCase {
+
+    /**
+     * Constructor for CSVBeanPlanTest.
+     *
+     * @param name name of the test
+     */
+    public CSVBeanPlanTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(CSVBeanPlanTest.class);
+    }
+
+    /**
+     * Tests the mapping of a CSV record through a compiled plan, including
+     * formatted fields and a referenced bean.
+     *
+     * @throws CSVOException thrown if the factory cannot be created
+     */
+    public void testCreateBean() throws CSVOException {
+        final CSVBeanMapping beanMapping = CSVParserFactory.getSingleton()
+                .getBeanMapping("employeeBean");
+        final CSVBeanPlan beanPlan = CSVBeanPlan.compile(beanMapping);
+        assertNotNull("The employee mapping should be compiled", beanPlan);
+
+        final List<String> csvLine = Arrays.asList("1", "123456", "John Doe",
+                "Lead", "Lead", "x", "y", "CONTRACTOR007", "BILLID01");
+        final Object bean = beanPlan.createBean(csvLine);
+        assertTrue("The bean should be an instance of Employee",
+                bean instanceof Employee);
+
+        final Employee empl = (Employee) bean;
+        assertEquals("The employee ID does not match", "123456", empl.getEmployeeID());
+        assertEquals("The employee first name does not match", "John", empl.getFirstName());
+        assertEquals("The employee last name does not match", "Doe", empl.getLastName());
+        assertEquals("The employee client ID does not match", "BILLID01",
+                empl.getClientSuppliedID());
+        assertEquals("The employee secondary ID does not match", "CONTRACTOR007",
+                empl.getClientSuppliedSecondaryID());
+        final Designation desgn = empl.getDesignation();
+        assertNotNull("The employee designation should not be null", desgn);
+        assertEquals("The employee designation does not match", "Lead",
+                desgn.getDesignation());
+    }
+
+    /**
+     * Tests that a mapping for an unknown bean class is not compiled.
+     */
+    public void testUnknownBeanClass() {
+        final CSVBeanMapping beanMapping = new CSVBeanMapping();
+        beanMapping.setBeanName("unknownBean");
+        beanMapping.setBeanClass("test.net.sf.anupam.csv.beans.NoSuchBean");
+        assertNull("The mapping should not be compiled",
+                CSVBeanPlan.compile(beanMapping));
+    }
+
+    /**
+     * Tests that a mapping which references itself is not compiled.
+     */
+    public void testCyclicBeanReference() {
+        final CSVBeanMapping beanMapping = new CSVBeanMapping();
+        beanMapping.setBeanName("cyclicBean");
+        beanMapping.setBeanClass(Designation.class.getName());
+
+        final CSVFieldMapping fieldMapping = new CSVFieldMapping();
+        fieldMapping.setAttributeName("designation");
+        fieldMapping.setFieldPosition(0);
+        fieldMapping.setBeanReferenceName("cyclicBean");
+        fieldMapping.setBeanReference(beanMapping);
+        beanMapping.addFieldMapping(fieldMapping);
+
+        assertNull("The mapping should not be compiled",
+                CSVBeanPlan.compile(beanMapping));
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * CSVBeanPublisher.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the mapped beans of a {@link CSVParser parser} to a single
+ * {@link CSVSubscriber subscriber}, with back pressure. The CSV records are
+ * only read and mapped as the subscriber
+ * {@link CSVSubscription#request(long) requests} them, plus a configurable
+ * number of beans which are prefetched ahead of the demand. A slow
+ * subscriber therefore never causes more than the prefetched beans to be
+ * held in memory.
+ * <p/>
+ * The beans are read and sent on an executor: either the one specified, or a
+ * dedicated daemon thread for the subscription. The subscriber is never
+ * called concurrently. Cancelling the subscription, as well as the completion
+ * or failure of the parsing, closes the parser.
+ * </p>
+ * <p/>
+ * The subscriber contract follows the Reactive Streams (and
+ * <code>java.util.concurrent.Flow</code>) specification, so that the
+ * publisher can be bridged to those APIs with a thin adapter.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVSubscriber
+ * @since 1.5
+ */
+public final class CSVBeanPublisher {
+
+    /**
+     * The default number of beans prefetched ahead of the demand.
+     */
+    public static final int DEFAULT_PREFETCH = 128;
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory.getLog(CSVBeanPublisher.class);
+
+    /**
+     * Sequence for naming the publisher threads.
+     */
+    private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+    /**
+     * The parser whose beans are published.
+     */
+    private final CSVParser parser;
+
+    /**
+     * The executor to read and send the beans on, or <code>null</code> to
+     * use a dedicated thread.
+     */
+    private final Executor executor;
+
+    /**
+     * The number of beans prefetched ahead of the demand.
+     */
+    private final int prefetch;
+
+    /**
+     * Flag which indicates that the single subscriber has subscribed.
+     */
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Constructor for CSVBeanPublisher, which sends the beans on a dedicated
+     * thread, with the default prefetch.
+     *
+     * @param parser the parser whose beans are published
+     */
+    public CSVBeanPublisher(final CSVParser parser) {
+        this(parser, null, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Constructor for CSVBeanPublisher.
+     *
+     * @param parser   the parser whose beans are published
+     * @param executor the executor to read and send the beans on, or
+     *                 <code>null</code> to use a dedicated thread
+     * @param prefetch the number of beans to prefetch ahead of the demand,
+     *                 <code>0</code> to read only on demand
+     */
+    public CSVBeanPublisher(final CSVParser parser, final Executor executor,
+                            final int prefetch) {
+        super();
+        if (parser == null) {
+            throw new IllegalArgumentException("The parser should be specified");
+        }
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("The prefetch should not be negative");
+        }
+        this.parser = parser;
+        this.executor = executor;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Subscribes the specified subscriber. The beans of a parser can only be
+     * read once, so only a single subscriber is supported; any further
+     * subscriber is sent an <code>IllegalStateException</code>.
+     *
+     * @param subscriber the subscriber for the mapped beans
+     */
+    public void subscribe(final CSVSubscriber<Object> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("The subscriber should be specified");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new CSVSubscription() {
+                public void request(final long n) {
+                    // Do nothing
+                }
+
+                public void cancel() {
+                    // Do nothing
+                }
+            });
+            subscriber.onError(new IllegalStateException(
+                    "The publisher supports a single subscriber"));
+            return;
+        }
+
+        final BeanSubscription subscription = new BeanSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * The subscription, which reads and sends the beans on demand. All the
+     * reading and sending is done by the drain loop, which runs on the
+     * executor, and is never run concurrently with itself.
+     */
+    private final class BeanSubscription
+            implements CSVSubscription, Runnable {
+
+        /**
+         * The subscriber.
+         */
+        private final CSVSubscriber<Object> subscriber;
+
+        /**
+         * The executor which runs the drain loop.
+         */
+        private final Executor drainExecutor;
+
+        /**
+         * The dedicated thread of the subscription, if no executor was
+         * specified.
+         */
+        private final ExecutorService ownExecutor;
+
+        /**
+         * The outstanding demand.
+         */
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * The number of pending drain requests.
+         */
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+
+        /**
+         * The prefetched beans. Only accessed by the drain loop.
+         */
+        private final LinkedList<Object> prefetched = new LinkedList<Object>();
+
+        /**
+         * The bean iterator, created by the first drain.
+         */
+        private Iterator<Object> beanIter;
+
+        /**
+         * Flag which indicates that all the beans have been read.
+         */
+        private boolean exhausted;
+
+        /**
+         * Flag which indicates that the subscription has terminated. The
+         * pending drain count then never returns to <code>0</code>, so that
+         * no drain is scheduled on the (possibly shut down) executor.
+         */
+        private volatile boolean terminated;
+
+        /**
+         * Flag which indicates that the subscription was cancelled.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * An invalid request, which is reported to the subscriber.
+         */
+        private volatile IllegalArgumentException invalidRequest;
+
+        /**
+         * Constructor for BeanSubscription.
+         *
+         * @param subscriber the subscriber
+         */
+        BeanSubscription(final CSVSubscriber<Object> subscriber) {
+            super();
+            this.subscriber = subscriber;
+            if (executor == null) {
+                ownExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable,
+                                "csv-publisher-" + THREAD_SEQUENCE.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                drainExecutor = ownExecutor;
+            } else {
+                ownExecutor = null;
+                drainExecutor = executor;
+            }
+        }
+
+        /**
+         * Requests the specified number of additional beans.
+         *
+         * @param n the number of additional beans
+         * @see CSVSubscription#request(long)
+         */
+        public void request(final long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException(
+                        "The requested count should be positive: " + n);
+            } else {
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!demand.compareAndSet(current, next));
+            }
+            scheduleDrain();
+        }
+
+        /**
+         * Cancels the subscription, and closes the parser.
+         *
+         * @see CSVSubscription#cancel()
+         */
+        public void cancel() {
+            cancelled = true;
+            scheduleDrain();
+        }
+
+        /**
+         * Schedules the drain loop, unless it is already scheduled or
+         * running, or the subscription has terminated.
+         */
+        private void scheduleDrain() {
+            if (terminated) {
+                return;
+            }
+            if (pendingDrains.getAndIncrement() == 0) {
+                drainExecutor.execute(this);
+            }
+        }
+
+        /**
+         * Runs the drain loop, which sends the requested beans, and
+         * prefetches beans ahead of the demand.
+         *
+         * @see Runnable#run()
+         */
+        public void run() {
+            int missed = 1;
+            do {
+                if (terminated) {
+                    return;
+                }
+                try {
+                    drain();
+                } catch (final RuntimeException e) {
+                    LOG.warn("Error in publishing the mapped beans", e);
+                    terminate(e);
+                    return;
+                }
+                if (terminated) {
+                    // Leave the drains pending, so none is scheduled again
+                    return;
+                }
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Sends the beans while there is demand, and then prefetches beans.
+         */
+        private void drain() {
+            for (;;) {
+                if (cancelled) {
+                    terminate(null);
+                    return;
+                }
+                if (invalidRequest != null) {
+                    terminate(invalidRequest);
+                    return;
+                }
+                if (demand.get() == 0) {
+                    while (prefetched.size() < prefetch && !cancelled
+                            && readBean()) {
+                        // Prefetch ahead of the demand
+                    }
+                    if (prefetched.isEmpty() && exhausted) {
+                        terminate(null);
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                if (prefetched.isEmpty() && !readBean()) {
+                    terminate(null);
+                    subscriber.onComplete();
+                    return;
+                }
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                try {
+                    subscriber.onNext(prefetched.removeFirst());
+                } catch (final RuntimeException e) {
+                    LOG.warn("The subscriber failed, cancelling the subscription", e);
+                    cancelled = true;
+                }
+            }
+        }
+
+        /**
+         * Reads the next bean into the prefetched beans.
+         *
+         * @return <code>true</code> if a bean was read
+         */
+        private boolean readBean() {
+            if (exhausted) {
+                return false;
+            }
+            if (beanIter == null) {
+                beanIter = parser.iterator();
+            }
+            if (!beanIter.hasNext()) {
+                exhausted = true;
+                return false;
+            }
+            prefetched.add(beanIter.next());
+            return true;
+        }
+
+        /**
+         * Terminates the subscription, and closes the parser. The failure, if
+         * any, is sent to the subscriber.
+         *
+         * @param failure the failure to send, or <code>null</code>
+         */
+        private void terminate(final Throwable failure) {
+            terminated = true;
+            prefetched.clear();
+            parser.close();
+            if (ownExecutor != null) {
+                ownExecutor.shutdown();
+            }
+            if (failure != null && !cancelled) {
+                subscriber.onError(failure);
+            }
+        }
+    }
+}
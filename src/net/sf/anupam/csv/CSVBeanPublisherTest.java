@@ -0,0 +1,283 @@
+/*
+ * CSVBeanPublisherTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * CSVBeanPublisherTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class CSVBeanPublisherTest
+        extends TestCase {
+
+    /**
+     * The number of sample CSV records.
+     */
+    private static final int RECORD_COUNT = 1000;
+
+    /**
+     * The time to wait for a signal, in seconds.
+     */
+    private static final long SIGNAL_TIMEOUT = 10;
+
+    /**
+     * Marker signal for the completion.
+     */
+    private static final String COMPLETE = "complete";
+
+    /**
+     * Binder which maps a record to the integer value of its first field.
+     */
+    private static final CSVBeanBinder INTEGER_BINDER = new CSVBeanBinder() {
+        public Object createBean(final List<String> csvLine) {
+            return Integer.valueOf(csvLine.get(0));
+        }
+    };
+
+    /**
+     * Flag which indicates that the sample CSV source was closed.
+     */
+    private final AtomicBoolean sourceClosed = new AtomicBoolean();
+
+    /**
+     * Constructor for CSVBeanPublisherTest.
+     *
+     * @param name name of the test
+     */
+    public CSVBeanPublisherTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(CSVBeanPublisherTest.class);
+    }
+
+    /**
+     * Returns a parser over the sample CSV records.
+     *
+     * @return the CSV parser
+     */
+    private CSVParser createParser() {
+        final StringBuilder content = new StringBuilder("Value,Name\n");
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            content.append(i).append(",Name ").append(i).append('\n');
+        }
+        final StringReader source = new StringReader(content.toString()) {
+            public void close() {
+                sourceClosed.set(true);
+                super.close();
+            }
+        };
+        return new CSVParser(null, new CSVReader(source, true), INTEGER_BINDER);
+    }
+
+    /**
+     * Test subscriber which queues all the signals received.
+     */
+    private static final class QueueingSubscriber
+            implements CSVSubscriber<Object> {
+
+        /**
+         * The signals received.
+         */
+        private final BlockingQueue<Object> signals = new LinkedBlockingQueue<Object>();
+
+        /**
+         * The subscription.
+         */
+        private volatile CSVSubscription subscription;
+
+        /**
+         * Constructor for QueueingSubscriber.
+         */
+        QueueingSubscriber() {
+            super();
+        }
+
+        public void onSubscribe(final CSVSubscription subscription) {
+            this.subscription = subscription;
+        }
+
+        public void onNext(final Object item) {
+            signals.add(item);
+        }
+
+        public void onError(final Throwable throwable) {
+            signals.add(throwable);
+        }
+
+        public void onComplete() {
+            signals.add(COMPLETE);
+        }
+
+        /**
+         * Returns the next signal received.
+         *
+         * @return the next signal, or <code>null</code> on a timeout
+         * @throws InterruptedException if interrupted while waiting
+         */
+        Object nextSignal() throws InterruptedException {
+            return signals.poll(SIGNAL_TIMEOUT, TimeUnit.SECONDS);
+        }
+
+        /**
+         * Returns the next signal, if one is received shortly.
+         *
+         * @return the next signal, or <code>null</code>
+         * @throws InterruptedException if interrupted while waiting
+         */
+        Object pollSignal() throws InterruptedException {
+            return signals.poll(100, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Tests that the beans are only sent as requested, and that the
+     * completion is signalled.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void testDemand() throws InterruptedException {
+        final QueueingSubscriber subscriber = new QueueingSubscriber();
+        new CSVBeanPublisher(createParser(), null, 10).subscribe(subscriber);
+        assertNotNull("The subscription should be set", subscriber.subscription);
+        assertNull("No bean should be sent without demand",
+                subscriber.pollSignal());
+
+        subscriber.subscription.request(3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("The bean does not match", Integer.valueOf(i),
+                    subscriber.nextSignal());
+        }
+        assertNull("No bean should be sent beyond the demand",
+                subscriber.pollSignal());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        for (int i = 3; i < RECORD_COUNT; i++) {
+            assertEquals("The bean does not match", Integer.valueOf(i),
+                    subscriber.nextSignal());
+        }
+        assertEquals("The completion should be signalled", COMPLETE,
+                subscriber.nextSignal());
+        assertTrue("The source should be closed", sourceClosed.get());
+    }
+
+    /**
+     * Tests that cancelling the subscription stops the beans and closes the
+     * parser.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void testCancel() throws InterruptedException {
+        final QueueingSubscriber subscriber = new QueueingSubscriber();
+        new CSVBeanPublisher(createParser()).subscribe(subscriber);
+        subscriber.subscription.request(5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("The bean does not match", Integer.valueOf(i),
+                    subscriber.nextSignal());
+        }
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(5);
+        assertNull("No signal should be sent after the cancellation",
+                subscriber.pollSignal());
+        assertTrue("The source should be closed", sourceClosed.get());
+    }
+
+    /**
+     * Tests that the subscription can still be cancelled, and beans
+     * requested, after the completion and after an error.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void testCancelAfterTermination() throws InterruptedException {
+        final QueueingSubscriber subscriber = new QueueingSubscriber();
+        new CSVBeanPublisher(createParser()).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            assertEquals("The bean does not match", Integer.valueOf(i),
+                    subscriber.nextSignal());
+        }
+        assertEquals("The completion should be signalled", COMPLETE,
+                subscriber.nextSignal());
+        assertNull("No signal should be sent after the completion",
+                subscriber.pollSignal());
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(1);
+        assertNull("No signal should be sent after the cancellation",
+                subscriber.pollSignal());
+
+        final QueueingSubscriber failedSubscriber = new QueueingSubscriber();
+        new CSVBeanPublisher(createParser()).subscribe(failedSubscriber);
+        failedSubscriber.subscription.request(-1);
+        assertTrue("An IllegalArgumentException should be signalled",
+                failedSubscriber.nextSignal() instanceof IllegalArgumentException);
+        assertNull("No signal should be sent after the error",
+                failedSubscriber.pollSignal());
+        failedSubscriber.subscription.cancel();
+        assertNull("No signal should be sent after the cancellation",
+                failedSubscriber.pollSignal());
+    }
+
+    /**
+     * Tests that a non-positive request is signalled as an error.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void testInvalidRequest() throws InterruptedException {
+        final QueueingSubscriber subscriber = new QueueingSubscriber();
+        new CSVBeanPublisher(createParser()).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue("An IllegalArgumentException should be signalled",
+                subscriber.nextSignal() instanceof IllegalArgumentException);
+        assertNull("No signal should be sent after the error",
+                subscriber.pollSignal());
+    }
+
+    /**
+     * Tests that a second subscriber is rejected.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void testSingleSubscriber() throws InterruptedException {
+        final CSVBeanPublisher publisher = new CSVBeanPublisher(createParser());
+        publisher.subscribe(new QueueingSubscriber());
+        final QueueingSubscriber second = new QueueingSubscriber();
+        publisher.subscribe(second);
+        assertTrue("An IllegalStateException should be signalled",
+                second.nextSignal() instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * CSVCheckpoint.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import java.io.Serializable;
+
+/**
+ * The position of a parser in a CSV file, taken between two CSV records. A
+ * checkpoint can be persisted (it is serializable, and its state is
+ * available through the accessors), and a parser can later be
+ * {@link CSVParserFactory#getCSVParser(String,String,CSVCheckpoint) resumed}
+ * from it, which seeks to the recorded file offset without reading the
+ * preceding records again.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParser#getCheckpoint()
+ * @since 1.5
+ */
+public final class CSVCheckpoint
+        implements Serializable {
+
+    /**
+     * The serial version UID.
+     */
+    private static final long serialVersionUID = 6024618390244826713L;
+
+    /**
+     * The file offset of the next record.
+     */
+    private final long byteOffset;
+
+    /**
+     * The number of the next record.
+     */
+    private final long recordNumber;
+
+    /**
+     * Flag which indicates that the header row, if any, has been read.
+     */
+    private final boolean headerSkipped;
+
+    /**
+     * Constructor for CSVCheckpoint.
+     *
+     * @param byteOffset    the file offset of the next record
+     * @param recordNumber  the number of the next record, starting from
+     *                      <code>0</code> and excluding the header row
+     * @param headerSkipped <code>true</code> if the header row, if any, has
+     *                      been read
+     */
+    public CSVCheckpoint(final long byteOffset, final long recordNumber,
+                         final boolean headerSkipped) {
+        super();
+        if (byteOffset < 0 || recordNumber < 0) {
+            throw new IllegalArgumentException("The checkpoint position should not be negative");
+        }
+        this.byteOffset = byteOffset;
+        this.recordNumber = recordNumber;
+        this.headerSkipped = headerSkipped;
+    }
+
+    /**
+     * Returns the file offset at which the next record starts.
+     *
+     * @return the byte offset of the next record
+     */
+    public long getByteOffset() {
+        return this.byteOffset;
+    }
+
+    /**
+     * Returns the number of the next record, which is also the number of
+     * records read before the checkpoint. The records are numbered from
+     * <code>0</code>, excluding the header row.
+     *
+     * @return the next record number
+     */
+    public long getRecordNumber() {
+        return this.recordNumber;
+    }
+
+    /**
+     * Indicates whether the header row, if any, had been read when the
+     * checkpoint was taken.
+     *
+     * @return <code>true</code> if the header row has been read
+     */
+    public boolean isHeaderSkipped() {
+        return this.headerSkipped;
+    }
+
+    /**
+     * Compares this checkpoint to another for equality.
+     *
+     * @param other the other checkpoint
+     * @return <code>true</code> if the checkpoints are at the same position
+     * @see Object#equals(Object)
+     */
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CSVCheckpoint)) {
+            return false;
+        }
+        final CSVCheckpoint otherCheckpoint = (CSVCheckpoint) other;
+        return byteOffset == otherCheckpoint.byteOffset
+                && recordNumber == otherCheckpoint.recordNumber
+                && headerSkipped == otherCheckpoint.headerSkipped;
+    }
+
+    /**
+     * Returns the hash code of this checkpoint.
+     *
+     * @return the hash code
+     * @see Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return (int) (byteOffset ^ (byteOffset >>> 32)) * 31
+                + (int) (recordNumber ^ (recordNumber >>> 32));
+    }
+
+    /**
+     * Dumps the checkpoint. This is meant for <strong>debugging</strong>
+     * only.
+     *
+     * @return the string representation of this checkpoint
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "CSVCheckpoint[record: " + recordNumber + ", offset: "
+                + byteOffset + ", header skipped: " + headerSkipped + "]";
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * CSVCheckpointListener.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+/**
+ * A callback which is periodically passed the {@link CSVCheckpoint
+ * checkpoint} of a parser, e.g. to persist the progress of a long running
+ * ingest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParser#setCheckpointListener(CSVCheckpointListener,long)
+ * @since 1.5
+ */
+public interface CSVCheckpointListener {
+
+    /**
+     * Invoked with the checkpoint after the records processed so far.
+     *
+     * @param checkpoint the checkpoint of the parser
+     */
+    void checkpoint(final CSVCheckpoint checkpoint);
+}
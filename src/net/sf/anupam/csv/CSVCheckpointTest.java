@@ -0,0 +1,306 @@
+/*
+ * CSVCheckpointTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+import test.net.sf.anupam.csv.beans.Person;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * CSVCheckpointTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class CSVCheckpointTest
+        extends TestCase {
+
+    /**
+     * The number of sample CSV records.
+     */
+    private static final int RECORD_COUNT = 1000;
+
+    /**
+     * A checkpoint listener which ignores the checkpoints.
+     */
+    private static final CSVCheckpointListener NO_LISTENER = new CSVCheckpointListener() {
+        public void checkpoint(final CSVCheckpoint checkpoint) {
+            // Do nothing
+        }
+    };
+
+    /**
+     * The sample CSV file.
+     */
+    private transient File csvFile;
+
+    /**
+     * The parser factory.
+     */
+    private transient CSVParserFactory factory;
+
+    /**
+     * The memory mapping setting of the factory before the test.
+     */
+    private transient boolean memoryMappingUsed;
+
+    /**
+     * Constructor for CSVCheckpointTest.
+     *
+     * @param name name of the test
+     */
+    public CSVCheckpointTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(CSVCheckpointTest.class);
+    }
+
+    /**
+     * Creates the sample person CSV file, and enables the memory mapping.
+     *
+     * @throws Exception thrown if the file cannot be created
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final StringBuilder content = new StringBuilder(
+                "FirstName,LastName,Location,Email,Provider\r\n");
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            content.append("John,Doe,Earth,p").append(i).append(
+                    "@nowhere.com,Provider\r\n");
+        }
+        csvFile = File.createTempFile("persons", ".csv");
+        final OutputStream outStream = new FileOutputStream(csvFile);
+        outStream.write(content.toString().getBytes("ISO-8859-1"));
+        outStream.close();
+
+        factory = CSVParserFactory.getSingleton();
+        memoryMappingUsed = factory.isMemoryMappingUsed();
+        factory.setMemoryMappingUsed(true);
+    }
+
+    /**
+     * Deletes the sample CSV file, and restores the memory mapping setting.
+     *
+     * @throws Exception thrown if the file cannot be deleted
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        factory.setMemoryMappingUsed(memoryMappingUsed);
+        csvFile.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Returns the email ID of the specified person bean.
+     *
+     * @param bean the person bean
+     * @return the email ID
+     */
+    private String getEmailID(final Object bean) {
+        return ((Person) bean).getEmailID().getEmailID();
+    }
+
+    /**
+     * Tests resuming from a checkpoint taken while iterating, after a
+     * serialization round trip.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testResume() throws Exception {
+        CSVParser parser = factory.getCSVParser("personBean", csvFile.getPath(),
+                false);
+        final CSVCheckpoint initial = parser.getCheckpoint();
+        assertEquals("The initial record number does not match", 0,
+                initial.getRecordNumber());
+        assertFalse("The header should not have been skipped",
+                initial.isHeaderSkipped());
+
+        CSVCheckpoint checkpoint = null;
+        for (Object bean : parser) {
+            if (getEmailID(bean).equals("p399@nowhere.com")) {
+                checkpoint = parser.getCheckpoint();
+                break;
+            }
+        }
+        parser.close();
+        assertNotNull("The checkpoint should have been taken", checkpoint);
+        assertEquals("The checkpoint record number does not match", 400,
+                checkpoint.getRecordNumber());
+
+        final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        final ObjectOutputStream objectOut = new ObjectOutputStream(serialized);
+        objectOut.writeObject(checkpoint);
+        objectOut.close();
+        final CSVCheckpoint restored = (CSVCheckpoint) new ObjectInputStream(
+                new ByteArrayInputStream(serialized.toByteArray())).readObject();
+        assertEquals("The restored checkpoint does not match", checkpoint,
+                restored);
+
+        parser = factory.getCSVParser("personBean", csvFile.getPath(), restored);
+        final List<Object> beans = new ArrayList<Object>();
+        parser.nextBatch(beans, RECORD_COUNT);
+        assertEquals("The resumed bean count does not match",
+                RECORD_COUNT - 400, beans.size());
+        assertEquals("The resumed bean does not match", "p400@nowhere.com",
+                getEmailID(beans.get(0)));
+        assertEquals("The final record number does not match", RECORD_COUNT,
+                parser.getCheckpoint().getRecordNumber());
+        parser.close();
+
+        parser = factory.getCSVParser("personBean", csvFile.getPath(), initial);
+        assertEquals("The bean resumed from the start does not match",
+                "p0@nowhere.com", getEmailID(parser.iterator().next()));
+        parser.close();
+    }
+
+    /**
+     * Tests the periodic checkpoints, and resuming from them.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testCheckpointListener() throws Exception {
+        final List<CSVCheckpoint> checkpoints = new ArrayList<CSVCheckpoint>();
+        final CSVParser parser = factory.getCSVParser("personBean",
+                csvFile.getPath(), false);
+        parser.setCheckpointListener(new CSVCheckpointListener() {
+            public void checkpoint(final CSVCheckpoint checkpoint) {
+                checkpoints.add(checkpoint);
+            }
+        }, 300);
+        parser.parse(new CSVRowVisitor<Object>() {
+            public boolean visit(final Object row) {
+                return true;
+            }
+        });
+        parser.close();
+        assertEquals("The checkpoint count does not match", 3,
+                checkpoints.size());
+
+        for (int i = 0; i < checkpoints.size(); i++) {
+            final CSVCheckpoint checkpoint = checkpoints.get(i);
+            assertEquals("The checkpoint record number does not match",
+                    300 * (i + 1), checkpoint.getRecordNumber());
+            final CSVParser resumedParser = factory.getCSVParser("personBean",
+                    csvFile.getPath(), checkpoint);
+            final Iterator<Object> beanIter = resumedParser.iterator();
+            assertEquals("The resumed bean does not match", "p"
+                    + checkpoint.getRecordNumber() + "@nowhere.com",
+                    getEmailID(beanIter.next()));
+            resumedParser.close();
+        }
+    }
+
+    /**
+     * Tests that the seeking parsers report the record numbers of the file.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testSeekCheckpoint() throws Exception {
+        final CSVParser parser = factory.getCSVParser("personBean",
+                csvFile.getPath(), 500L);
+        parser.iterator().next();
+        assertEquals("The record number after the seek does not match", 501,
+                parser.getCheckpoint().getRecordNumber());
+        parser.close();
+        CSVRecordIndex.getIndexFile(csvFile.getPath()).delete();
+    }
+
+    /**
+     * Tests that the parsers of unmapped streams do not support checkpoints,
+     * and that a checkpoint listener is rejected right away.
+     */
+    public void testUnsupported() {
+        final CSVParser parser = factory.getCSVParser("personBean",
+                new StringReader("FirstName,LastName,Location,Email,Provider\n"));
+        try {
+            parser.getCheckpoint();
+            fail("Should have thrown an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            // Do nothing
+        }
+        try {
+            parser.setCheckpointListener(NO_LISTENER, 10);
+            fail("Should have thrown an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            // Do nothing
+        }
+        parser.close();
+    }
+
+    /**
+     * Tests that checkpoints cannot be combined with multithreaded mapping.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testMultithreadedUnsupported() throws Exception {
+        final CSVParser parser = factory.getCSVParser("personBean",
+                csvFile.getPath(), false);
+        parser.setMappingThreadCount(2);
+        try {
+            parser.setCheckpointListener(NO_LISTENER, 10);
+            fail("Should have thrown an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            // Do nothing
+        }
+
+        parser.setMappingThreadCount(1);
+        parser.setCheckpointListener(NO_LISTENER, 10);
+        try {
+            parser.setMappingThreadCount(2);
+            fail("Should have thrown an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            // Do nothing
+        }
+        try {
+            parser.parse(new CSVRowVisitor<Object>() {
+                public boolean visit(final Object row) {
+                    return true;
+                }
+            }, 2);
+            fail("Should have thrown an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            // Do nothing
+        }
+        parser.close();
+    }
+}
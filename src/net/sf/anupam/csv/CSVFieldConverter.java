@@ -0,0 +1,382 @@
+/*
+ * CSVFieldConverter.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import org.apache.commons.beanutils.ConversionException;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.ConvertUtilsBean;
+import org.apache.commons.beanutils.Converter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A converter of CSV field values to a specific property type. The
+ * {@link CSVBeanPlan compiled bean mappings} select a converter for each field
+ * from the {@link net.sf.anupam.csv.mapping.CSVFieldMapping#getFieldType()
+ * field type}, so that the field values are parsed directly, without going
+ * through the synchronized <code>ConvertUtils</code> registry for every value.
+ * <p/>
+ * The converters return the same values (including the defaults for missing or
+ * invalid values) as the standard <code>BeanUtils</code> converters for the
+ * type, and throw a {@link ConversionException ConversionException} wherever
+ * those would. They are therefore only used while the standard converters are
+ * registered for the type; if a client has registered its own converter with
+ * <code>ConvertUtils</code>, the values are converted through it instead.
+ * Converters registered after a mapping is compiled are detected through a
+ * {@link #getRegisteredConverters() snapshot} of the registry, which is
+ * compared whenever a parser is created.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVBeanPlan
+ * @since 1.5
+ */
+abstract class CSVFieldConverter {
+
+    /**
+     * The converters, keyed by the supported property types.
+     */
+    private static final Map<Class<?>, CSVFieldConverter> CONVERTERS = new HashMap<Class<?>, CSVFieldConverter>();
+
+    /**
+     * A registry of the standard <code>BeanUtils</code> converters, against
+     * which the registered converters are compared.
+     */
+    private static final ConvertUtilsBean STANDARD_CONVERTERS = new ConvertUtilsBean();
+
+    /**
+     * The values with which the registered converters are compared against
+     * the standard ones, i.e., a missing and an invalid value.
+     */
+    private static final String [] PROBE_VALUES = {null, "?"};
+
+    /**
+     * The primitive types, keyed by their names.
+     */
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<String, Class<?>>();
+
+    /**
+     * The wrapper types, keyed by the primitive types.
+     */
+    private static final Map<Class<?>, Class<?>> WRAPPER_TYPES = new HashMap<Class<?>, Class<?>>();
+
+    /**
+     * The supported property types, in the order of the registry snapshots.
+     */
+    private static final Class<?>[] SUPPORTED_TYPES;
+
+    static {
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                return value;
+            }
+        }, String.class);
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                try {
+                    return Integer.valueOf(Integer.parseInt(value));
+                } catch (final NumberFormatException e) {
+                    return Integer.valueOf(0);
+                }
+            }
+        }, Integer.class, Integer.TYPE);
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                try {
+                    return Long.valueOf(Long.parseLong(value));
+                } catch (final NumberFormatException e) {
+                    return Long.valueOf(0);
+                }
+            }
+        }, Long.class, Long.TYPE);
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                try {
+                    return Short.valueOf(Short.parseShort(value));
+                } catch (final NumberFormatException e) {
+                    return Short.valueOf((short) 0);
+                }
+            }
+        }, Short.class, Short.TYPE);
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                try {
+                    return Byte.valueOf(Byte.parseByte(value));
+                } catch (final NumberFormatException e) {
+                    return Byte.valueOf((byte) 0);
+                }
+            }
+        }, Byte.class, Byte.TYPE);
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                if (value == null) {
+                    return Double.valueOf(0);
+                }
+                try {
+                    return Double.valueOf(value);
+                } catch (final NumberFormatException e) {
+                    return Double.valueOf(0);
+                }
+            }
+        }, Double.class, Double.TYPE);
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                if (value == null) {
+                    return Float.valueOf(0);
+                }
+                try {
+                    return Float.valueOf(value);
+                } catch (final NumberFormatException e) {
+                    return Float.valueOf(0);
+                }
+            }
+        }, Float.class, Float.TYPE);
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                if (value == null) {
+                    throw new ConversionException("No value specified");
+                }
+                try {
+                    return new BigDecimal(value);
+                } catch (final NumberFormatException e) {
+                    throw new ConversionException(e);
+                }
+            }
+        }, BigDecimal.class);
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                if (value == null) {
+                    throw new ConversionException("No value specified");
+                }
+                try {
+                    return new BigInteger(value);
+                } catch (final NumberFormatException e) {
+                    throw new ConversionException(e);
+                }
+            }
+        }, BigInteger.class);
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                if (value == null) {
+                    return Boolean.FALSE;
+                }
+                if (value.equalsIgnoreCase("yes") || value.equalsIgnoreCase("y")
+                        || value.equalsIgnoreCase("true")
+                        || value.equalsIgnoreCase("on") || value.equals("1")) {
+                    return Boolean.TRUE;
+                }
+                return Boolean.FALSE;
+            }
+        }, Boolean.class, Boolean.TYPE);
+        register(new CSVFieldConverter() {
+            Object convert(final String value) {
+                if (value == null || value.length() == 0) {
+                    return Character.valueOf(' ');
+                }
+                return Character.valueOf(value.charAt(0));
+            }
+        }, Character.class, Character.TYPE);
+
+        PRIMITIVE_TYPES.put("int", Integer.TYPE);
+        PRIMITIVE_TYPES.put("long", Long.TYPE);
+        PRIMITIVE_TYPES.put("short", Short.TYPE);
+        PRIMITIVE_TYPES.put("byte", Byte.TYPE);
+        PRIMITIVE_TYPES.put("double", Double.TYPE);
+        PRIMITIVE_TYPES.put("float", Float.TYPE);
+        PRIMITIVE_TYPES.put("boolean", Boolean.TYPE);
+        PRIMITIVE_TYPES.put("char", Character.TYPE);
+
+        WRAPPER_TYPES.put(Integer.TYPE, Integer.class);
+        WRAPPER_TYPES.put(Long.TYPE, Long.class);
+        WRAPPER_TYPES.put(Short.TYPE, Short.class);
+        WRAPPER_TYPES.put(Byte.TYPE, Byte.class);
+        WRAPPER_TYPES.put(Double.TYPE, Double.class);
+        WRAPPER_TYPES.put(Float.TYPE, Float.class);
+        WRAPPER_TYPES.put(Boolean.TYPE, Boolean.class);
+        WRAPPER_TYPES.put(Character.TYPE, Character.class);
+
+        SUPPORTED_TYPES = CONVERTERS.keySet().toArray(
+                new Class<?>[CONVERTERS.size()]);
+    }
+
+    /**
+     * Registers the converter for the specified types.
+     *
+     * @param converter the converter to register
+     * @param types     the property types supported by the converter
+     */
+    private static void register(final CSVFieldConverter converter,
+                                 final Class<?>... types) {
+        for (Class<?> type : types) {
+            CONVERTERS.put(type, converter);
+        }
+    }
+
+    /**
+     * Returns the converter for the specified field type and property type.
+     * The field type is used if it names a supported type compatible with the
+     * property type; otherwise the property type itself is used.
+     *
+     * @param fieldType    the declared field type, may be <code>null</code>
+     * @param propertyType the type of the property setter parameter
+     * @return the converter, or <code>null</code> if neither of the types is
+     *         supported, or a client converter is registered for the type
+     */
+    static CSVFieldConverter getConverter(final String fieldType,
+                                          final Class<?> propertyType) {
+        if (CONVERTERS.containsKey(propertyType)
+                && !isStandardConverterRegistered(propertyType)) {
+            return null;
+        }
+        final Class<?> declaredType = resolveType(fieldType);
+        if (declaredType != null && CONVERTERS.containsKey(declaredType)
+                && isCompatible(declaredType, propertyType)) {
+            return isStandardConverterRegistered(declaredType) ? CONVERTERS
+                    .get(declaredType) : null;
+        }
+        return CONVERTERS.get(propertyType);
+    }
+
+    /**
+     * Returns a snapshot of the converters registered with
+     * <code>ConvertUtils</code> for the supported types.
+     *
+     * @return the registered converters
+     * @see #isRegistryUnchanged(Converter[])
+     */
+    static Converter[] getRegisteredConverters() {
+        final Converter[] registered = new Converter[SUPPORTED_TYPES.length];
+        for (int i = 0; i < SUPPORTED_TYPES.length; i++) {
+            registered[i] = ConvertUtils.lookup(SUPPORTED_TYPES[i]);
+        }
+        return registered;
+    }
+
+    /**
+     * Indicates whether the converters registered with
+     * <code>ConvertUtils</code> for the supported types are still the same
+     * instances as in the specified snapshot.
+     *
+     * @param registered the snapshot, as returned by
+     *                   {@link #getRegisteredConverters()}
+     * @return <code>true</code> if no converter has been registered or
+     *         deregistered since the snapshot
+     */
+    static boolean isRegistryUnchanged(final Converter[] registered) {
+        for (int i = 0; i < SUPPORTED_TYPES.length; i++) {
+            if (ConvertUtils.lookup(SUPPORTED_TYPES[i]) != registered[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether the converter registered with <code>ConvertUtils</code>
+     * for the specified type is the standard <code>BeanUtils</code> converter,
+     * i.e., of the same class, and with the same default value.
+     *
+     * @param type the property type
+     * @return <code>true</code> if the standard converter is registered
+     */
+    private static boolean isStandardConverterRegistered(final Class<?> type) {
+        final Converter registered = ConvertUtils.lookup(type);
+        final Converter standard = STANDARD_CONVERTERS.lookup(type);
+        if (registered == null || standard == null
+                || registered.getClass() != standard.getClass()) {
+            return false;
+        }
+        for (String value : PROBE_VALUES) {
+            Object registeredValue;
+            Object standardValue;
+            try {
+                registeredValue = registered.convert(type, value);
+            } catch (final ConversionException e) {
+                registeredValue = ConversionException.class;
+            }
+            try {
+                standardValue = standard.convert(type, value);
+            } catch (final ConversionException e) {
+                standardValue = ConversionException.class;
+            }
+            if (registeredValue == null ? standardValue != null
+                    : !registeredValue.equals(standardValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the specified type name to a class.
+     *
+     * @param typeName the name of the type
+     * @return the class, or <code>null</code> if it cannot be resolved
+     */
+    private static Class<?> resolveType(final String typeName) {
+        if (typeName == null) {
+            return null;
+        }
+        final Class<?> primitiveType = PRIMITIVE_TYPES.get(typeName);
+        if (primitiveType != null) {
+            return primitiveType;
+        }
+        try {
+            return Class.forName(typeName);
+        } catch (final ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether the values converted to the declared type can be
+     * passed to a setter of the property type.
+     *
+     * @param declaredType the declared field type
+     * @param propertyType the property type
+     * @return <code>true</code> if the types are compatible
+     */
+    private static boolean isCompatible(final Class<?> declaredType,
+                                        final Class<?> propertyType) {
+        if (propertyType.isPrimitive()) {
+            return CONVERTERS.get(declaredType) == CONVERTERS.get(propertyType);
+        }
+        if (declaredType.isPrimitive()) {
+            return propertyType.isAssignableFrom(WRAPPER_TYPES.get(declaredType));
+        }
+        return propertyType.isAssignableFrom(declaredType);
+    }
+
+    /**
+     * Converts the CSV field value.
+     *
+     * @param value the field value, may be <code>null</code>
+     * @return the converted value
+     * @throws ConversionException thrown if the value cannot be converted, and
+     *                             the type has no default value
+     */
+    abstract Object convert(final String value);
+}
@@ -0,0 +1,146 @@
+/*
+ * CSVFieldConverterTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+import org.apache.commons.beanutils.ConversionException;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.converters.IntegerConverter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * CSVFieldConverterTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class CSVFieldConverterTest
+        extends TestCase {
+
+    /**
+     * Sample field values, including missing and invalid values.
+     */
+    private static final String[] SAMPLE_VALUES = {null, "", "0", "42", "-7",
+            " 12", "3.25", "1e3", "abc", "yes", "N", "on", "True", "1",
+            "99999999999", "x"};
+
+    /**
+     * The types supported by the converters.
+     */
+    private static final Class<?>[] SUPPORTED_TYPES = {String.class,
+            Integer.TYPE, Integer.class, Long.TYPE, Long.class, Short.TYPE,
+            Short.class, Byte.TYPE, Byte.class, Double.TYPE, Double.class,
+            Float.TYPE, Float.class, Boolean.TYPE, Boolean.class,
+            Character.TYPE, Character.class, BigDecimal.class, BigInteger.class};
+
+    /**
+     * Constructor for CSVFieldConverterTest.
+     *
+     * @param name name of the test
+     */
+    public CSVFieldConverterTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(CSVFieldConverterTest.class);
+    }
+
+    /**
+     * Tests that the converters return the same values as the standard
+     * <code>BeanUtils</code> converters.
+     */
+    public void testSameAsConvertUtils() {
+        for (Class<?> type : SUPPORTED_TYPES) {
+            final CSVFieldConverter converter = CSVFieldConverter.getConverter(
+                    null, type);
+            assertNotNull("A converter should exist for " + type, converter);
+            for (String value : SAMPLE_VALUES) {
+                final String message = "The converted value does not match for "
+                        + type + " and " + value;
+                final Object expected;
+                try {
+                    expected = ConvertUtils.convert(value, type);
+                } catch (final ConversionException e) {
+                    try {
+                        converter.convert(value);
+                        fail(message);
+                    } catch (final ConversionException ce) {
+                        // Do nothing
+                    }
+                    continue;
+                }
+                assertEquals(message, expected, converter.convert(value));
+            }
+        }
+    }
+
+    /**
+     * Tests the selection of the converter by the declared field type.
+     */
+    public void testGetConverter() {
+        assertEquals("The declared type should be used",
+                Integer.valueOf(42), CSVFieldConverter.getConverter("int",
+                Object.class).convert("42"));
+        assertEquals("The declared type should be used",
+                Long.valueOf(42), CSVFieldConverter.getConverter(
+                "java.lang.Long", Number.class).convert("42"));
+        assertEquals("An incompatible declared type should be ignored",
+                Integer.valueOf(42), CSVFieldConverter.getConverter(
+                "java.lang.String", Integer.TYPE).convert("42"));
+        assertEquals("An unknown declared type should be ignored",
+                "42", CSVFieldConverter.getConverter("no.such.Type",
+                String.class).convert("42"));
+        assertNull("Unsupported types should not have a converter",
+                CSVFieldConverter.getConverter(null, Object.class));
+    }
+
+    /**
+     * Tests that the values are converted through a client registered
+     * converter, as with <code>BeanUtils</code>.
+     */
+    public void testClientConverter() {
+        ConvertUtils.register(new IntegerConverter(Integer.valueOf(-1)),
+                Integer.class);
+        try {
+            assertNull("A client converter should not be bypassed",
+                    CSVFieldConverter.getConverter(null, Integer.class));
+            assertNull("A client converter should not be bypassed",
+                    CSVFieldConverter.getConverter("java.lang.Integer",
+                            Number.class));
+            assertNotNull("The other types should still be converted",
+                    CSVFieldConverter.getConverter(null, Integer.TYPE));
+        } finally {
+            ConvertUtils.register(new IntegerConverter(Integer.valueOf(0)),
+                    Integer.class);
+        }
+        assertNotNull("The standard converter should be used again",
+                CSVFieldConverter.getConverter(null, Integer.class));
+    }
+}
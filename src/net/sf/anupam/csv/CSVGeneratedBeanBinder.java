@@ -0,0 +1,368 @@
+/*
+ * CSVGeneratedBeanBinder.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import net.sf.anupam.csv.formatters.CSVFormatterFactory;
+import net.sf.anupam.csv.formatters.CSVSliceFormatter;
+import net.sf.anupam.csv.mapping.CSVBeanMapping;
+import net.sf.anupam.csv.mapping.CSVFieldMapping;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The base class of the bean binders generated at build time from the
+ * <code>@csv.bean-mapping</code> XDoclet tags, by the
+ * <code>csv-binder.xdt</code> template. The generated binder of a bean class
+ * is named after the bean class, with a <code>Binder</code> suffix, and
+ * invokes the bean's constructor, setters and field formatters directly, in
+ * the field order. The whole record to bean path can therefore be inlined by
+ * the JIT compiler.
+ * <p/>
+ * The {@link CSVParserFactory parser factory} loads the generated binder of
+ * each bean mapping, if present, and uses it in place of the
+ * {@link CSVBeanPlan compiled mapping} while the
+ * {@link CSVParserFactory#isCompiledMappingUsed() compiled mappings} are
+ * used. The field formatters are taken from the bean mapping, and the
+ * generated field positions are checked against it, so that a binder which
+ * does not match the mapping configuration is never used.
+ * </p>
+ * <p/>
+ * Generated binders only read the mapped fields of the CSV records.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVBeanBinder
+ * @since 1.5
+ */
+public abstract class CSVGeneratedBeanBinder
+        implements CSVBeanBinder {
+
+    /**
+     * The suffix of the generated binder class names.
+     */
+    static final String BINDER_CLASS_SUFFIX = "Binder";
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory
+            .getLog(CSVGeneratedBeanBinder.class);
+
+    /**
+     * The bean mappings whose generated binders are being loaded by the
+     * current thread, which guards against cyclic bean references.
+     */
+    private static final ThreadLocal<Set<CSVBeanMapping>> LOADING_MAPPINGS = new ThreadLocal<Set<CSVBeanMapping>>() {
+        @Override
+        protected Set<CSVBeanMapping> initialValue() {
+            return new HashSet<CSVBeanMapping>();
+        }
+    };
+
+    /**
+     * The bean mapping this binder was created for.
+     */
+    private final CSVBeanMapping beanMapping;
+
+    /**
+     * The converters registered with <code>ConvertUtils</code> when the field
+     * converters of this binder were selected.
+     */
+    private final Converter[] registeredConverters;
+
+    /**
+     * The number of field mappings bound so far by the generated constructor.
+     */
+    private int boundFieldCount;
+
+    /**
+     * Constructor for CSVGeneratedBeanBinder.
+     *
+     * @param beanMapping the bean mapping to bind
+     */
+    protected CSVGeneratedBeanBinder(final CSVBeanMapping beanMapping) {
+        super();
+        this.beanMapping = beanMapping;
+        this.registeredConverters = CSVFieldConverter.getRegisteredConverters();
+    }
+
+    /**
+     * Loads and creates the generated binder for the specified bean mapping.
+     *
+     * @param beanMapping the bean mapping
+     * @return the generated binder, or <code>null</code> if no binder was
+     *         generated for the bean class, or the generated binder does not
+     *         match the bean mapping
+     */
+    static CSVGeneratedBeanBinder load(final CSVBeanMapping beanMapping) {
+        final Set<CSVBeanMapping> loadingMappings = LOADING_MAPPINGS.get();
+        if (!loadingMappings.add(beanMapping)) {
+            LOG.warn("The bean mapping: " + beanMapping.getBeanName()
+                    + " references itself, and cannot use a generated binder");
+            return null;
+        }
+        try {
+            return newBinder(beanMapping);
+        } finally {
+            loadingMappings.remove(beanMapping);
+        }
+    }
+
+    /**
+     * Creates the generated binder for the specified bean mapping.
+     *
+     * @param beanMapping the bean mapping
+     * @return the generated binder, or <code>null</code> if not available
+     */
+    private static CSVGeneratedBeanBinder newBinder(
+            final CSVBeanMapping beanMapping) {
+        final String binderClassName = beanMapping.getBeanClass()
+                + BINDER_CLASS_SUFFIX;
+        final Class<? extends CSVGeneratedBeanBinder> binderClass;
+        try {
+            binderClass = Class.forName(binderClassName).asSubclass(
+                    CSVGeneratedBeanBinder.class);
+        } catch (final ClassNotFoundException e) {
+            LOG.debug("No generated binder found for the bean mapping: "
+                    + beanMapping.getBeanName());
+            return null;
+        } catch (final ClassCastException e) {
+            LOG.warn("The class: " + binderClassName
+                    + " is not a generated bean binder");
+            return null;
+        }
+
+        final CSVGeneratedBeanBinder binder;
+        try {
+            final Constructor<? extends CSVGeneratedBeanBinder> constructor = binderClass
+                    .getConstructor(CSVBeanMapping.class);
+            binder = constructor.newInstance(beanMapping);
+        } catch (final NoSuchMethodException e) {
+            LOG.warn("The generated binder: " + binderClassName
+                    + " could not be created", e);
+            return null;
+        } catch (final InstantiationException e) {
+            LOG.warn("The generated binder: " + binderClassName
+                    + " could not be created", e);
+            return null;
+        } catch (final IllegalAccessException e) {
+            LOG.warn("The generated binder: " + binderClassName
+                    + " could not be created", e);
+            return null;
+        } catch (final InvocationTargetException e) {
+            LOG.warn("The generated binder: " + binderClassName
+                    + " does not match the bean mapping: "
+                    + beanMapping.getBeanName(), e.getCause());
+            return null;
+        }
+
+        if (binder.boundFieldCount != getFieldCount(beanMapping)) {
+            LOG.warn("The generated binder: " + binderClassName
+                    + " does not bind all the fields of the bean mapping: "
+                    + beanMapping.getBeanName());
+            return null;
+        }
+        return binder;
+    }
+
+    /**
+     * Returns the number of field mappings of the specified bean mapping.
+     *
+     * @param beanMapping the bean mapping
+     * @return the number of field mappings
+     */
+    private static int getFieldCount(final CSVBeanMapping beanMapping) {
+        int fieldCount = 0;
+        for (CSVFieldMapping fieldMapping : beanMapping) {
+            fieldCount++;
+        }
+        return fieldCount;
+    }
+
+    /**
+     * Indicates whether the field converters of this binder are still valid,
+     * i.e., no converter has been registered with <code>ConvertUtils</code>
+     * since the binder was created.
+     *
+     * @return <code>true</code> if the binder is current, <code>false</code>
+     *         if it should be created again
+     * @see CSVBeanPlan#isCurrent()
+     */
+    boolean isCurrent() {
+        return CSVFieldConverter.isRegistryUnchanged(registeredConverters);
+    }
+
+    /**
+     * Returns the bean mapping this binder was created for.
+     *
+     * @return the bean mapping
+     */
+    protected final CSVBeanMapping getBeanMapping() {
+        return this.beanMapping;
+    }
+
+    /**
+     * Binds the specified field of the bean mapping to a property. Called by
+     * the generated constructors, for each mapped field.
+     *
+     * @param fieldName     the name of the field mapping
+     * @param fieldPosition the CSV field position of the field mapping
+     * @param propertyType  the type of the property setter parameter
+     * @return the field, which formats and converts the field values
+     * @throws IllegalArgumentException thrown if the bean mapping does not
+     *                                  have a field mapping of the name and
+     *                                  position
+     */
+    protected final Field field(final String fieldName,
+                                final int fieldPosition,
+                                final Class<?> propertyType) {
+        final CSVFieldMapping fieldMapping = getFieldMapping(fieldName,
+                fieldPosition);
+        if (fieldMapping.getBeanReference() != null) {
+            throw new IllegalArgumentException("The field: " + fieldName
+                    + " is a bean reference");
+        }
+        return new Field(fieldMapping, propertyType);
+    }
+
+    /**
+     * Binds the specified bean reference field of the bean mapping to a
+     * property. Called by the generated constructors, for each mapped bean
+     * reference.
+     *
+     * @param fieldName     the name of the field mapping
+     * @param fieldPosition the CSV field position of the field mapping
+     * @return the binder of the referenced bean mapping
+     * @throws IllegalArgumentException thrown if the bean mapping does not
+     *                                  have a bean reference of the name and
+     *                                  position
+     */
+    protected final CSVBeanBinder reference(final String fieldName,
+                                            final int fieldPosition) {
+        final CSVBeanMapping beanReference = getFieldMapping(fieldName,
+                fieldPosition).getBeanReference();
+        if (beanReference == null) {
+            throw new IllegalArgumentException("The field: " + fieldName
+                    + " is not a bean reference");
+        }
+
+        final CSVBeanBinder generatedBinder = load(beanReference);
+        if (generatedBinder != null) {
+            return generatedBinder;
+        }
+        final CSVBeanBinder beanPlan = CSVBeanPlan.compile(beanReference);
+        if (beanPlan != null) {
+            return beanPlan;
+        }
+        return new CSVParser.ReflectiveBeanBinder(beanReference);
+    }
+
+    /**
+     * Returns the field mapping of the specified name, and counts it as
+     * bound.
+     *
+     * @param fieldName     the name of the field mapping
+     * @param fieldPosition the expected CSV field position
+     * @return the field mapping
+     * @throws IllegalArgumentException thrown if the bean mapping does not
+     *                                  have a field mapping of the name and
+     *                                  position
+     */
+    private CSVFieldMapping getFieldMapping(final String fieldName,
+                                            final int fieldPosition) {
+        for (CSVFieldMapping fieldMapping : beanMapping) {
+            if (fieldName.equals(fieldMapping.getFieldName())) {
+                if (fieldMapping.getFieldPosition() != fieldPosition) {
+                    throw new IllegalArgumentException("The field: "
+                            + fieldName + " is mapped to the position: "
+                            + fieldMapping.getFieldPosition() + ", not: "
+                            + fieldPosition);
+                }
+                boundFieldCount++;
+                return fieldMapping;
+            }
+        }
+        throw new IllegalArgumentException("The field: " + fieldName
+                + " is not mapped");
+    }
+
+    /**
+     * A mapped field of a generated binder, which formats the CSV field
+     * values with the field formatter, and converts them to the property
+     * type using the same rules as <code>BeanUtils</code>.
+     */
+    protected static final class Field {
+
+        /**
+         * The field formatter, or <code>null</code> if not present.
+         */
+        private final CSVSliceFormatter formatter;
+
+        /**
+         * The converter for the field values, or <code>null</code> if the
+         * values are converted through <code>ConvertUtils</code>.
+         */
+        private final CSVFieldConverter converter;
+
+        /**
+         * The property type.
+         */
+        private final Class<?> propertyType;
+
+        /**
+         * Constructor for Field.
+         *
+         * @param fieldMapping the field mapping
+         * @param propertyType the property type
+         */
+        Field(final CSVFieldMapping fieldMapping, final Class<?> propertyType) {
+            super();
+            this.formatter = CSVFormatterFactory.asSliceFormatter(fieldMapping
+                    .getFormatter());
+            this.converter = CSVFieldConverter.getConverter(fieldMapping
+                    .getFieldType(), propertyType);
+            this.propertyType = propertyType;
+        }
+
+        /**
+         * Formats and converts the specified CSV field value.
+         *
+         * @param csvFieldValue the CSV field value
+         * @param type          the property type, which types the result;
+         *                      the class literal of the setter parameter
+         * @return the property value
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T value(final String csvFieldValue, final Class<T> type) {
+            final Object value = (formatter == null) ? csvFieldValue
+                    : CSVBeanPlan.formatValue(formatter, csvFieldValue);
+            return (T) CSVBeanPlan.convertValue(value, converter, propertyType);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * CSVGeneratedBeanBinderTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+import net.sf.anupam.csv.exceptions.CSVOException;
+import net.sf.anupam.csv.mapping.CSVBeanMapping;
+import net.sf.anupam.csv.mapping.CSVFieldMapping;
+import test.net.sf.anupam.csv.beans.Designation;
+import test.net.sf.anupam.csv.beans.Employee;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CSVGeneratedBeanBinderTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class CSVGeneratedBeanBinderTest
+        extends TestCase {
+
+    /**
+     * Constructor for CSVGeneratedBeanBinderTest.
+     *
+     * @param name name of the test
+     */
+    public CSVGeneratedBeanBinderTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(CSVGeneratedBeanBinderTest.class);
+    }
+
+    /**
+     * Tests the mapping of a CSV record through the binder generated for the
+     * employee bean, including formatted fields and a referenced bean.
+     *
+     * @throws CSVOException thrown if the factory cannot be created
+     */
+    public void testCreateBean() throws CSVOException {
+        final CSVBeanMapping beanMapping = CSVParserFactory.getSingleton()
+                .getBeanMapping("employeeBean");
+        final CSVGeneratedBeanBinder beanBinder = CSVGeneratedBeanBinder
+                .load(beanMapping);
+        assertNotNull("The generated employee binder should be loaded",
+                beanBinder);
+        assertEquals("The generated binder should be named after the bean",
+                Employee.class.getName() + "Binder", beanBinder.getClass()
+                .getName());
+
+        final List<String> csvLine = Arrays.asList("1", "123456", "John Doe",
+                "Lead", "Lead", "x", "y", "CONTRACTOR007", "BILLID01");
+        final Object bean = beanBinder.createBean(csvLine);
+        assertTrue("The bean should be an instance of Employee",
+                bean instanceof Employee);
+
+        final Employee empl = (Employee) bean;
+        assertEquals("The employee ID does not match", "123456", empl.getEmployeeID());
+        assertEquals("The employee first name does not match", "John", empl.getFirstName());
+        assertEquals("The employee last name does not match", "Doe", empl.getLastName());
+        assertEquals("The employee client ID does not match", "BILLID01",
+                empl.getClientSuppliedID());
+        assertEquals("The employee secondary ID does not match", "CONTRACTOR007",
+                empl.getClientSuppliedSecondaryID());
+        final Designation desgn = empl.getDesignation();
+        assertNotNull("The employee designation should not be null", desgn);
+        assertEquals("The employee designation does not match", "Lead",
+                desgn.getDesignation());
+    }
+
+    /**
+     * Tests that a generated binder is not used for a mapping which maps a
+     * field to another position.
+     */
+    public void testMovedField() {
+        final CSVBeanMapping beanMapping = createDesignationMapping();
+        beanMapping.addFieldMapping(createFieldMapping("designation", 5));
+
+        assertNull("The generated binder should not match the mapping",
+                CSVGeneratedBeanBinder.load(beanMapping));
+    }
+
+    /**
+     * Tests that a generated binder is not used for a mapping with fields
+     * which it does not bind.
+     */
+    public void testExtraField() {
+        final CSVBeanMapping beanMapping = createDesignationMapping();
+        beanMapping.addFieldMapping(createFieldMapping("designation", 4));
+        beanMapping.addFieldMapping(createFieldMapping("grade", 5));
+
+        assertNull("The generated binder should not match the mapping",
+                CSVGeneratedBeanBinder.load(beanMapping));
+    }
+
+    /**
+     * Tests that a mapping for a bean class without a generated binder is not
+     * bound through one.
+     */
+    public void testNoGeneratedBinder() {
+        final CSVBeanMapping beanMapping = new CSVBeanMapping();
+        beanMapping.setBeanName("stringBean");
+        beanMapping.setBeanClass(String.class.getName());
+
+        assertNull("No generated binder should be found",
+                CSVGeneratedBeanBinder.load(beanMapping));
+    }
+
+    /**
+     * Creates an empty mapping for the designation bean.
+     *
+     * @return the bean mapping
+     */
+    private CSVBeanMapping createDesignationMapping() {
+        final CSVBeanMapping beanMapping = new CSVBeanMapping();
+        beanMapping.setBeanName("designationTestBean");
+        beanMapping.setBeanClass(Designation.class.getName());
+        return beanMapping;
+    }
+
+    /**
+     * Creates a field mapping of the designation bean.
+     *
+     * @param fieldName     the name of the field, and the property
+     * @param fieldPosition the CSV field position
+     * @return the field mapping
+     */
+    private CSVFieldMapping createFieldMapping(final String fieldName,
+                                               final int fieldPosition) {
+        final CSVFieldMapping fieldMapping = new CSVFieldMapping();
+        fieldMapping.setFieldName(fieldName);
+        fieldMapping.setAttributeName(fieldName);
+        fieldMapping.setFieldPosition(fieldPosition);
+        fieldMapping.setBeanReferenceName("none");
+        return fieldMapping;
+    }
+}
@@ -29,6 +29,7 @@ import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Iterator;
 import java.util.List;
@@ -73,6 +74,59 @@ public class CSVParser implements Iterable<Object> {
      */
     private transient CSVBeanMapping rootBeanMapping;
 
+    /**
+     * The binder for the root bean mapping.
+     */
+    private transient CSVBeanBinder rootBeanBinder;
+
+    /**
+     * The number of CSV records mapped per batch in the parallel mode.
+     */
+    static final int MAPPING_BATCH_SIZE = 512;
+
+    /**
+     * The number of threads mapping the CSV records to beans.
+     */
+    private transient int mappingThreadCount = 1;
+
+    /**
+     * Indicates whether the parallel mode returns the beans in the CSV record
+     * order.
+     */
+    private transient boolean orderPreserved = true;
+
+    /**
+     * The iterator of the parallel mode, if one was created.
+     */
+    private transient ParallelMappingIterator parallelIterator;
+
+    /**
+     * The listener for the periodic checkpoints, if any.
+     */
+    private transient CSVCheckpointListener checkpointListener;
+
+    /**
+     * The number of records between the periodic checkpoints.
+     */
+    private transient long checkpointInterval;
+
+    /**
+     * The record number of the last periodic checkpoint.
+     */
+    private transient long lastCheckpointRecord;
+
+    /**
+     * The reusable columns of CSV field values for the batches mapped through
+     * a compiled bean plan, indexed by the field position and then by the
+     * record.
+     */
+    private transient String[][] batchColumns;
+
+    /**
+     * The reusable array of beans for the batches added to a list.
+     */
+    private transient Object[] batchBeans;
+
     /**
      * Constructor for CSVParser. The constructor accepts the bean mapping to
      * use as the starting CSV mapping configuration
@@ -84,9 +138,25 @@ public class CSVParser implements Iterable<Object> {
      */
     public CSVParser(final CSVBeanMapping rootBeanMapping,
                      final CSVReader reader) {
+        this(rootBeanMapping, reader, CSVBeanPlan.compile(rootBeanMapping));
+    }
+
+    /**
+     * Constructor for CSVParser which accepts the binder to use for the root
+     * bean mapping. If the binder is <code>null</code>, the beans are mapped
+     * reflectively using the bean mapping configuration.
+     *
+     * @param rootBeanMapping the bean mapping to use as the starting configuration
+     * @param reader          the CSV Reader object which will actually parse the CSV file
+     * @param rootBeanBinder  the binder for the root bean mapping
+     */
+    CSVParser(final CSVBeanMapping rootBeanMapping, final CSVReader reader,
+              final CSVBeanBinder rootBeanBinder) {
         super();
         this.rootBeanMapping = rootBeanMapping;
         this.reader = reader;
+        this.rootBeanBinder = (rootBeanBinder == null) ? new ReflectiveBeanBinder(
+                rootBeanMapping) : rootBeanBinder;
     }
 
     /**
@@ -113,6 +183,7 @@ public class CSVParser implements Iterable<Object> {
         close();
         reader = null;
         rootBeanMapping = null;
+        rootBeanBinder = null;
     }
 
     /**
@@ -125,6 +196,12 @@ public class CSVParser implements Iterable<Object> {
          */
         private Iterator<List<String>> csvLineIter;
 
+        /**
+         * Flag which indicates that a bean was returned since the last
+         * <code>hasNext()</code>.
+         */
+        private transient boolean beanReturned;
+
         /**
          * The iterator constructor.
          *
@@ -154,6 +231,12 @@ public class CSVParser implements Iterable<Object> {
          * @see java.util.Iterator#hasNext()
          */
         public boolean hasNext() {
+            if (beanReturned) {
+                // The previous bean has been processed, before the next line
+                // is read ahead.
+                beanReturned = false;
+                checkpointIfDue();
+            }
             return csvLineIter.hasNext();
         }
 
@@ -166,8 +249,9 @@ public class CSVParser implements Iterable<Object> {
          * @see java.util.Iterator#next()
          */
         public Object next() {
-            final List<String> csvLine = csvLineIter.next();
-            return getMappedBean(csvLine, getRootBeanMapping());
+            final Object bean = rootBeanBinder.createBean(csvLineIter.next());
+            beanReturned = true;
+            return bean;
         }
 
         /**
@@ -178,6 +262,40 @@ public class CSVParser implements Iterable<Object> {
         public void remove() {
             csvLineIter.remove();
         }
+    }
+
+    /**
+     * The binder which maps the CSV records reflectively, directly from the
+     * bean mapping configuration. This is used for the bean mappings which
+     * could not be compiled.
+     */
+    static final class ReflectiveBeanBinder implements CSVBeanBinder {
+
+        /**
+         * The bean mapping to use.
+         */
+        private final CSVBeanMapping beanMapping;
+
+        /**
+         * Constructor for ReflectiveBeanBinder.
+         *
+         * @param beanMapping the bean mapping to use
+         */
+        ReflectiveBeanBinder(final CSVBeanMapping beanMapping) {
+            super();
+            this.beanMapping = beanMapping;
+        }
+
+        /**
+         * Returns the mapped bean from the specified list of CSV values.
+         *
+         * @param csvLine the CSV line to parse
+         * @return the mapped bean
+         * @see CSVBeanBinder#createBean(List)
+         */
+        public Object createBean(final List<String> csvLine) {
+            return getMappedBean(csvLine, beanMapping);
+        }
 
         /**
          * Applies the field formatters if present.
@@ -276,9 +394,291 @@ public class CSVParser implements Iterable<Object> {
      */
     public Iterator<Object> iterator() {
 
+        if (getMappingThreadCount() > 1) {
+            if (parallelIterator != null) {
+                parallelIterator.close();
+            }
+            parallelIterator = new ParallelMappingIterator(this,
+                    reader.iterator(), rootBeanBinder, getMappingThreadCount(),
+                    MAPPING_BATCH_SIZE, isOrderPreserved());
+            return parallelIterator;
+        }
         return new MappedObjectIterator(reader.iterator());
     }
 
+    /**
+     * Maps the CSV records, and passes each bean to the specified visitor.
+     * The parser drives the loop, binding each record directly from the
+     * reader's current line, which makes this the fastest way to process all
+     * the beans of a CSV file. The parsing continues till all the records
+     * have been read, or till the visitor returns <code>false</code>.
+     * <p/>
+     * The parsing continues from the last record read by this parser, and
+     * the records are always mapped on the calling thread.
+     * </p>
+     *
+     * @param visitor the visitor for the mapped beans
+     * @return the number of beans visited
+     */
+    public long parse(final CSVRowVisitor<Object> visitor) {
+        final List<String> currentLine = reader.getCurrentLine();
+        long beanCount = 0;
+        while (reader.nextLine()) {
+            beanCount++;
+            if (!visitor.visit(rootBeanBinder.createBean(currentLine))) {
+                break;
+            }
+            checkpointIfDue();
+        }
+        return beanCount;
+    }
+
+    /**
+     * Maps the CSV records on the specified number of threads, and passes
+     * each bean to the specified visitor on those threads. The records are
+     * read in batches on the calling thread, and each batch is mapped and
+     * visited by one of the worker threads, so that the processing of the
+     * beans by the visitor (e.g., filtering, transformation and aggregation)
+     * scales with the number of threads. This returns once all the beans have
+     * been visited.
+     * <p/>
+     * The visitor must be thread safe, and the beans are visited in no
+     * particular order. Once the visitor returns <code>false</code>, no
+     * further beans are visited, though beans being visited concurrently on
+     * the other threads may still complete. An exception thrown by the
+     * visitor or the mapping stops the parsing, and is rethrown.
+     * </p>
+     * <p/>
+     * The records are read ahead of the visited beans, so checkpoints are not
+     * supported with more than one thread.
+     * </p>
+     *
+     * @param visitor     the thread safe visitor for the mapped beans
+     * @param threadCount the number of threads to map and visit the beans on
+     * @return the number of beans visited
+     * @throws IllegalStateException thrown if more than one thread is
+     *                               requested while a
+     *                               {@link #setCheckpointListener(CSVCheckpointListener,long)
+     *                               checkpoint listener} is set
+     * @see #parse(CSVRowVisitor)
+     */
+    public long parse(final CSVRowVisitor<Object> visitor,
+                      final int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("The thread count should be positive");
+        }
+        if (threadCount == 1) {
+            return parse(visitor);
+        }
+        if (checkpointListener != null) {
+            throw new IllegalStateException(
+                    "Checkpoints are not supported with multithreaded mapping");
+        }
+        return new ParallelVisitorDispatcher(rootBeanBinder, visitor,
+                threadCount, MAPPING_BATCH_SIZE).dispatch(reader);
+    }
+
+    /**
+     * Maps the next batch of CSV records, and stores the beans in the
+     * specified array, starting at index <code>0</code>. Up to the length of
+     * the array records are read, directly from the reader's current line
+     * without any per record iterator calls, so that the loop overhead is
+     * amortized across the batch. The array can be reused for all the
+     * batches.
+     * <p/>
+     * If the root bean mapping was compiled to a bean plan, the records are
+     * mapped column by column: the values of each field are gathered for up
+     * to {@link #MAPPING_BATCH_SIZE} records, and formatted in one
+     * {@link net.sf.anupam.csv.formatters.CSVBatchFormatter batch} before
+     * being set on the beans.
+     * </p>
+     * <p/>
+     * The batches continue from the last record read by this parser, and
+     * should not be interleaved with the use of an iterator. The records are
+     * always mapped on the calling thread.
+     * </p>
+     *
+     * @param beans the array in which the mapped beans are stored
+     * @return the number of beans stored, <code>0</code> if all the records
+     *         have been read
+     * @see #nextBatch(List,int)
+     */
+    public int nextBatch(final Object[] beans) {
+        checkpointIfDue();
+        if (rootBeanBinder instanceof CSVBeanPlan) {
+            int beanCount = 0;
+            int chunkCount;
+            while (beanCount < beans.length
+                    && (chunkCount = nextColumnBatch(beans, beanCount, Math.min(
+                    beans.length - beanCount, MAPPING_BATCH_SIZE))) > 0) {
+                beanCount += chunkCount;
+            }
+            return beanCount;
+        }
+        final List<String> currentLine = reader.getCurrentLine();
+        int beanCount = 0;
+        while (beanCount < beans.length && reader.nextLine()) {
+            beans[beanCount++] = rootBeanBinder.createBean(currentLine);
+        }
+        return beanCount;
+    }
+
+    /**
+     * Maps the next batch of CSV records, and adds the beans to the specified
+     * list. Up to the specified number of records are read.
+     *
+     * @param beans    the list to which the mapped beans are added
+     * @param maxBeans the maximum number of records to read
+     * @return the number of beans added, <code>0</code> if all the records
+     *         have been read
+     * @see #nextBatch(Object[])
+     */
+    public int nextBatch(final List<Object> beans, final int maxBeans) {
+        checkpointIfDue();
+        if (rootBeanBinder instanceof CSVBeanPlan) {
+            if (batchBeans == null) {
+                batchBeans = new Object[MAPPING_BATCH_SIZE];
+            }
+            int beanCount = 0;
+            int chunkCount;
+            while (beanCount < maxBeans
+                    && (chunkCount = nextColumnBatch(batchBeans, 0, Math.min(
+                    maxBeans - beanCount, MAPPING_BATCH_SIZE))) > 0) {
+                for (int i = 0; i < chunkCount; i++) {
+                    beans.add(batchBeans[i]);
+                    batchBeans[i] = null;
+                }
+                beanCount += chunkCount;
+            }
+            return beanCount;
+        }
+        final List<String> currentLine = reader.getCurrentLine();
+        int beanCount = 0;
+        while (beanCount < maxBeans && reader.nextLine()) {
+            beans.add(rootBeanBinder.createBean(currentLine));
+            beanCount++;
+        }
+        return beanCount;
+    }
+
+    /**
+     * Reads the next chunk of CSV records into the columns of the mapped
+     * field positions, and maps them column by column through the compiled
+     * bean plan. Each field formatter then runs once for the whole chunk.
+     *
+     * @param beans    the array in which the mapped beans are stored
+     * @param offset   the index at which the first bean is stored
+     * @param maxBeans the maximum number of records to read, at most
+     *                 {@link #MAPPING_BATCH_SIZE}
+     * @return the number of beans stored, <code>0</code> if all the records
+     *         have been read
+     * @see CSVBeanPlan#createBeans(String[][],int,Object[],int)
+     */
+    private int nextColumnBatch(final Object[] beans, final int offset,
+                                final int maxBeans) {
+        final CSVBeanPlan plan = (CSVBeanPlan) rootBeanBinder;
+        final int[] positions = plan.getFieldPositions();
+        if (batchColumns == null) {
+            final int columnCount = (positions.length == 0) ? 0
+                    : positions[positions.length - 1] + 1;
+            batchColumns = new String[columnCount][];
+            for (int position : positions) {
+                batchColumns[position] = new String[MAPPING_BATCH_SIZE];
+            }
+        }
+
+        final List<String> currentLine = reader.getCurrentLine();
+        int recordCount = 0;
+        while (recordCount < maxBeans && reader.nextLine()) {
+            for (int position : positions) {
+                batchColumns[position][recordCount] = currentLine.get(position);
+            }
+            recordCount++;
+        }
+        if (recordCount > 0) {
+            plan.createBeans(batchColumns, recordCount, beans, offset);
+        }
+        return recordCount;
+    }
+
+    /**
+     * Returns the failure to read the CSV stream, if the parsing ended before
+     * the end of the stream because of it. Such failures are logged, and end
+     * the iteration as if all the records were read; callers which need to
+     * tell a truncated stream (e.g., a corrupt compressed file, or a network
+     * error) from a complete one should check this once the parsing ends.
+     *
+     * @return the read failure, or <code>null</code> if the stream has been
+     *         read without errors so far
+     */
+    public IOException getReadFailure() {
+        return (reader == null) ? null : reader.getReadFailure();
+    }
+
+    /**
+     * Returns the number of threads which map the CSV records to beans. If
+     * more than one thread is used, the iterators read the CSV records in
+     * batches on a dedicated thread, and the batches are mapped to beans
+     * concurrently by a pool of worker threads.
+     * <p/>
+     * The CSV parsing itself remains sequential, so this is useful when the
+     * bean mapping (including the field formatters) dominates the parsing
+     * cost. The field formatters and bean setters must be thread safe.
+     * </p>
+     *
+     * @return the number of mapping threads, <code>1</code> by default
+     * @see #isOrderPreserved()
+     */
+    public int getMappingThreadCount() {
+        return this.mappingThreadCount;
+    }
+
+    /**
+     * Sets the number of threads which map the CSV records to beans, for the
+     * iterators subsequently created.
+     *
+     * @param mappingThreadCount the number of mapping threads, <code>1</code>
+     *                           to map the records on the iterating thread
+     * @throws IllegalStateException thrown if multiple threads are requested
+     *                               while a checkpoint listener is set
+     * @see #getMappingThreadCount()
+     */
+    public void setMappingThreadCount(final int mappingThreadCount) {
+        if (mappingThreadCount < 1) {
+            throw new IllegalArgumentException(
+                    "The mapping thread count should be positive");
+        }
+        if (mappingThreadCount > 1 && checkpointListener != null) {
+            throw new IllegalStateException(
+                    "Checkpoints are not supported with multithreaded mapping");
+        }
+        this.mappingThreadCount = mappingThreadCount;
+    }
+
+    /**
+     * Indicates whether the beans mapped by multiple
+     * {@link #getMappingThreadCount() threads} are returned in the order of
+     * the CSV records. If not, the batches of beans are returned in the order
+     * in which they are mapped.
+     *
+     * @return <code>true</code> if the CSV record order is preserved, the
+     *         default
+     */
+    public boolean isOrderPreserved() {
+        return this.orderPreserved;
+    }
+
+    /**
+     * Sets the flag which indicates whether the beans mapped by multiple
+     * threads are returned in the order of the CSV records.
+     *
+     * @param orderPreserved <code>true</code> to preserve the CSV record order
+     * @see #isOrderPreserved()
+     */
+    public void setOrderPreserved(final boolean orderPreserved) {
+        this.orderPreserved = orderPreserved;
+    }
+
     /**
      * Returns the root bean mapping. The root bean mapping is the bean mapping
      * with which the Parser is configured. "Child" bean mappings (which are not
@@ -292,10 +692,93 @@ public class CSVParser implements Iterable<Object> {
     }
 
 
+    /**
+     * Returns the checkpoint after the last CSV record read by this parser,
+     * from which a parser can later be
+     * {@link CSVParserFactory#getCSVParser(String,String,CSVCheckpoint)
+     * resumed}. When iterating, the checkpoint taken after a bean was
+     * returned (and before <code>hasNext()</code> is called again) is just
+     * after the bean's record.
+     * <p/>
+     * Checkpoints are only supported for parsers of memory mapped CSV files,
+     * i.e., parsers created with {@link CSVParserFactory#isMemoryMappingUsed()
+     * memory mapping}, or by the seeking and resuming factory methods. The
+     * multithreaded {@link #getMappingThreadCount() mapping} iterators read
+     * ahead of the returned beans, and do not support checkpoints.
+     * </p>
+     *
+     * @return the checkpoint
+     * @throws IllegalStateException thrown if the parser does not support
+     *                               checkpoints, or has been closed
+     * @see #setCheckpointListener(CSVCheckpointListener,long)
+     */
+    public CSVCheckpoint getCheckpoint() {
+        if (parallelIterator != null) {
+            throw new IllegalStateException(
+                    "Checkpoints are not supported with multithreaded mapping");
+        }
+        return reader.getCheckpoint();
+    }
+
+    /**
+     * Sets the listener which is periodically passed the
+     * {@link #getCheckpoint() checkpoint} of this parser, once at least the
+     * specified number of records have been read since the last checkpoint.
+     * The checkpoints are taken by the {@link #parse(CSVRowVisitor) visitor}
+     * after each visit, by the bean iterators before reading the next record,
+     * and by the batch methods before reading the next batch; i.e., only
+     * after the preceding beans have been processed by the caller.
+     *
+     * @param listener the listener for the checkpoints, or <code>null</code>
+     *                 to stop the checkpoints
+     * @param interval the minimum number of records between the checkpoints
+     * @throws IllegalStateException thrown if the parser does not support
+     *                               checkpoints, or maps the records with
+     *                               multiple threads
+     * @see #getCheckpoint()
+     */
+    public void setCheckpointListener(final CSVCheckpointListener listener,
+                                      final long interval) {
+        if (listener != null) {
+            if (interval < 1) {
+                throw new IllegalArgumentException("The checkpoint interval should be positive");
+            }
+            if (getMappingThreadCount() > 1) {
+                throw new IllegalStateException(
+                        "Checkpoints are not supported with multithreaded mapping");
+            }
+            // Fails right away if the reader does not support checkpoints
+            getCheckpoint();
+        }
+        this.checkpointListener = listener;
+        this.checkpointInterval = interval;
+        this.lastCheckpointRecord = reader.getRecordNumber();
+    }
+
+    /**
+     * Passes the checkpoint to the checkpoint listener, if the checkpoint
+     * interval has elapsed.
+     */
+    private void checkpointIfDue() {
+        if (checkpointListener == null) {
+            return;
+        }
+        final long recordNumber = reader.getRecordNumber();
+        if (recordNumber - lastCheckpointRecord >= checkpointInterval) {
+            lastCheckpointRecord = recordNumber;
+            checkpointListener.checkpoint(getCheckpoint());
+        }
+    }
+
     /**
      * Closes the parser.
      */
     public void close() {
+        if (parallelIterator != null) {
+            // The reader thread is joined, as it may still be reading
+            parallelIterator.close();
+            parallelIterator = null;
+        }
         if (reader != null) {
             reader.close();
         }
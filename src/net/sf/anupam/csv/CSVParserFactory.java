@@ -23,6 +23,7 @@ package net.sf.anupam.csv;
 
 import net.sf.anupam.csv.formatters.CSVFieldFormatter;
 import net.sf.anupam.csv.formatters.CSVFormatterFactory;
+import net.sf.anupam.csv.formatters.CSVMemoizingFormatter;
 import net.sf.anupam.csv.mapping.CSVBeanMapping;
 import net.sf.anupam.csv.mapping.CSVFieldMapping;
 import net.sf.anupam.csv.mapping.CSVMappingParser;
@@ -31,13 +32,22 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Singleton factory for creating the {@link CSVParser CSVParser} parser objects
@@ -76,12 +86,54 @@ public final class CSVParserFactory {
      */
     private transient final Map<String, CSVBeanMapping> beanMappings;
 
+    /**
+     * The compiled bean mappings, which are compiled again by the threads
+     * creating parsers if the registered converters change.
+     */
+    private transient final Map<String, CSVBeanPlan> beanPlans;
+
+    /**
+     * The binders generated at build time for the bean mappings, which are
+     * created again by the threads creating parsers if the registered
+     * converters change.
+     */
+    private transient final Map<String, CSVGeneratedBeanBinder> generatedBinders;
+
+    /**
+     * The client registered bean binders, which may be registered while
+     * other threads create parsers.
+     */
+    private transient final Map<String, CSVBeanBinder> registeredBinders;
+
+    /**
+     * Indicates whether the built-in tokenizer should be used for parsing.
+     */
+    private transient volatile boolean builtInTokenizerUsed = true;
+
+    /**
+     * Indicates whether CSV files read from the file system are memory mapped.
+     */
+    private transient volatile boolean memoryMappingUsed;
+
+    /**
+     * Indicates whether the compiled bean mappings should be used for binding.
+     */
+    private transient volatile boolean compiledMappingUsed = true;
+
+    /**
+     * Indicates whether the CSV streams are read ahead on a background thread.
+     */
+    private transient volatile boolean readAheadUsed;
+
     /**
      * Constructor for CSVParserFactory. Private as this is a singleton.
      */
     private CSVParserFactory() {
         super();
         beanMappings = new HashMap<String, CSVBeanMapping>();
+        beanPlans = new ConcurrentHashMap<String, CSVBeanPlan>();
+        generatedBinders = new ConcurrentHashMap<String, CSVGeneratedBeanBinder>();
+        registeredBinders = new ConcurrentHashMap<String, CSVBeanBinder>();
     }
 
     /**
@@ -119,6 +171,26 @@ public final class CSVParserFactory {
                 resolveBeanReferencesFor(currentFieldMapping);
             }
         }
+
+        // Compile the mappings only after all bean references are resolved.
+        for (Map.Entry<String, CSVBeanMapping> entry : beanMappings.entrySet()) {
+            final CSVBeanPlan beanPlan = CSVBeanPlan.compile(entry.getValue());
+            if (beanPlan == null) {
+                LOG.warn("The bean mapping: " + entry.getKey()
+                        + " could not be compiled, and will be mapped reflectively");
+            } else {
+                beanPlans.put(entry.getKey(), beanPlan);
+            }
+
+            final CSVGeneratedBeanBinder generatedBinder = CSVGeneratedBeanBinder
+                    .load(entry.getValue());
+            if (generatedBinder != null) {
+                LOG.debug("Using the generated binder: "
+                        + generatedBinder.getClass().getName()
+                        + " for the bean mapping: " + entry.getKey());
+                generatedBinders.put(entry.getKey(), generatedBinder);
+            }
+        }
         LOG.debug("Loaded the CSV Mapping configuration from "
                 + MAPPING_FILE_NAME);
     }
@@ -134,8 +206,15 @@ public final class CSVParserFactory {
             throws CSVOException {
 
         final CSVFieldFormatter formatter = FORMATTER_FACTORY
-                .createFormatterFor(fieldMapping.getReformatterName());
-        fieldMapping.setFormatter(formatter);
+                .createFormatterFor(fieldMapping.getReformatterName(),
+                        fieldMapping.getReformatterParameter());
+        if (fieldMapping.getMemoSize() > 0) {
+            // The memo is per field, even if the formatter is shared
+            fieldMapping.setFormatter(new CSVMemoizingFormatter(formatter,
+                    fieldMapping.getMemoSize()));
+        } else {
+            fieldMapping.setFormatter(formatter);
+        }
 
     }
 
@@ -174,24 +253,81 @@ public final class CSVParserFactory {
 
     /**
      * Returns a new CSV file parser for the specified mapping, and the
-     * specified CSV file.
+     * specified CSV file. The file is decoded with the
+     * {@link CSVBeanMapping#getCharsetName() charset} declared for the
+     * mapping, or with the platform default charset if none is declared.
      *
      * @param mappingName the CSV mapping to for which the parser should be created
      * @param csvFileName the CSV file to be parsed
      * @param inClassPath indicates whether the CSV file is in the classpath
      * @return the CSV Parser, or <code>null</code> if not found
      * @throws FileNotFoundException thrown if the specified CSV file cannot be found
+     * @see #getCSVParser(String,String,boolean,Charset)
      * @see #getCSVParser(String,java.io.Reader)
      */
     public CSVParser getCSVParser(final String mappingName,
                                   final String csvFileName, final boolean inClassPath
     ) throws FileNotFoundException {
+        return getCSVParser(mappingName, csvFileName, inClassPath, null);
+    }
+
+    /**
+     * Returns a new CSV file parser for the specified mapping, and the
+     * specified CSV file encoded in the specified charset. Files which are not
+     * in the classpath are memory mapped if
+     * {@link #isMemoryMappingUsed() memory mapping} is enabled and the
+     * charset is ASCII compatible (e.g., UTF-8 or ISO-8859-1). The mapped
+     * files are tokenized directly from the raw bytes, and only the field
+     * values which are actually mapped are decoded.
+     * <p/>
+     * Files compressed with <em>gzip</em> or <em>deflate</em> are detected
+     * by their leading magic bytes (irrespective of the file name), and are
+     * decompressed transparently on a separate thread.
+     * </p>
+     *
+     * @param mappingName the CSV mapping to for which the parser should be created
+     * @param csvFileName the CSV file to be parsed
+     * @param inClassPath indicates whether the CSV file is in the classpath
+     * @param charset     the charset of the CSV file, or <code>null</code> to
+     *                    use the {@link CSVBeanMapping#getCharsetName()
+     *                    charset} of the mapping
+     * @return the CSV Parser
+     * @throws FileNotFoundException thrown if the specified CSV file cannot be found
+     * @see #getCSVParser(String,String,boolean)
+     */
+    public CSVParser getCSVParser(final String mappingName,
+                                  final String csvFileName,
+                                  final boolean inClassPath,
+                                  final Charset charset)
+            throws FileNotFoundException {
 
         if (StringUtils.isEmpty(csvFileName)) {
             LOG.warn("The specified CSV Filename is empty");
             throw new IllegalArgumentException("File Name is empty");
         }
 
+        final CSVBeanMapping beanMapping = getRequiredBeanMapping(mappingName);
+        final Charset csvCharset = (charset == null) ? getCharset(beanMapping)
+                : charset;
+
+        if (!inClassPath && isMemoryMappingUsed() && isBuiltInTokenizerUsed()
+                && !CompressedInput.isCompressedFile(csvFileName)) {
+            if (MappedCSVTokenizer.isAsciiCompatible(csvCharset)) {
+                final CSVTokenizer tokenizer;
+                try {
+                    tokenizer = new MappedCSVTokenizer(csvFileName, csvCharset);
+                    LOG.debug("Successfully mapped the CSV file");
+                } catch (final FileNotFoundException e) {
+                    LOG.warn("The specified CSV File: " + csvFileName
+                            + " was not found", e);
+                    throw e;
+                }
+                return createParser(beanMapping, tokenizer);
+            }
+            LOG.debug("The CSV file cannot be memory mapped for the charset: "
+                    + csvCharset);
+        }
+
         final Reader reader;
 
         try {
@@ -202,10 +338,10 @@ public final class CSVParserFactory {
                     throw new FileNotFoundException("The CSV File: "
                             + csvFileName + " was not found in the classpath");
                 }
-                reader = new InputStreamReader(inStream);
+                reader = createReader(inStream, csvCharset);
             } else {
-                reader = new FileReader(csvFileName);
-
+                reader = createReader(new FileInputStream(csvFileName),
+                        csvCharset);
             }
             LOG.debug("Successfully read the CSV file");
         } catch (final FileNotFoundException e) {
@@ -214,7 +350,56 @@ public final class CSVParserFactory {
             throw e;
         }
 
-        return getCSVParser(mappingName, reader);
+        return createParser(beanMapping, createTokenizer(reader));
+    }
+
+    /**
+     * Returns the charset declared for the specified bean mapping, or the
+     * platform default charset if none is declared.
+     *
+     * @param beanMapping the CSV bean mapping
+     * @return the charset of the mapped CSV files
+     * @throws IllegalArgumentException thrown if the declared charset is not
+     *                                  supported
+     */
+    private Charset getCharset(final CSVBeanMapping beanMapping) {
+        final String charsetName = beanMapping.getCharsetName();
+        if (charsetName == null) {
+            return Charset.defaultCharset();
+        }
+        try {
+            return Charset.forName(charsetName);
+        } catch (final IllegalCharsetNameException e) {
+            LOG.warn("The charset: " + charsetName + " of the mapping: "
+                    + beanMapping.getBeanName() + " is invalid", e);
+            throw new IllegalArgumentException("Invalid charset: " + charsetName);
+        } catch (final UnsupportedCharsetException e) {
+            LOG.warn("The charset: " + charsetName + " of the mapping: "
+                    + beanMapping.getBeanName() + " is not supported", e);
+            throw new IllegalArgumentException("Unsupported charset: "
+                    + charsetName);
+        }
+    }
+
+    /**
+     * Returns a reader on the specified CSV file stream. Compressed streams
+     * are detected by their magic bytes, and are decompressed on a
+     * {@link ReadAheadReader read ahead} thread, which hands the decompressed
+     * content over to the parsing thread in large blocks.
+     *
+     * @param inStream the CSV file stream
+     * @param charset  the charset of the CSV file
+     * @return the reader on the (decompressed) CSV stream
+     */
+    private Reader createReader(final InputStream inStream,
+                                final Charset charset) {
+        final InputStream csvStream = CompressedInput.decompress(inStream);
+        if (CompressedInput.isDecompressing(csvStream)) {
+            return new ReadAheadReader(new InputStreamReader(csvStream,
+                    charset), ReadAheadReader.DEFAULT_BUFFER_SIZE,
+                    ReadAheadReader.DEFAULT_BUFFER_COUNT);
+        }
+        return new InputStreamReader(csvStream, charset);
     }
 
     /**
@@ -229,6 +414,194 @@ public final class CSVParserFactory {
     public CSVParser getCSVParser(final String mappingName,
                                   final Reader csvReader) {
 
+        final CSVBeanMapping beanMapping = getRequiredBeanMapping(mappingName);
+
+        if (csvReader == null) {
+            LOG.warn("Specified CSV IO Reader was null");
+            throw new IllegalArgumentException(
+                    "Specified CSV IO Reader was null");
+        }
+
+        return createParser(beanMapping, createTokenizer(csvReader));
+    }
+
+    /**
+     * Returns a new CSV file parser for the specified mapping, which starts
+     * parsing the specified CSV file at the specified record. The records are
+     * numbered from <code>0</code>, excluding the header row.
+     * <p/>
+     * The parser seeks to the record through the {@link CSVRecordIndex record
+     * index} of the file, which is built (and saved next to the file) on the
+     * first use, and rebuilt whenever the file changes. The file is memory
+     * mapped irrespective of the {@link #isMemoryMappingUsed() memory
+     * mapping} setting, which requires the
+     * {@link CSVBeanMapping#getCharsetName() charset} of the mapping to be
+     * ASCII compatible.
+     * </p>
+     *
+     * @param mappingName  the CSV mapping for which the parser should be created
+     * @param csvFileName  the CSV file in the file system to be parsed
+     * @param recordNumber the number of the first record to parse
+     * @return the CSV Parser
+     * @throws FileNotFoundException thrown if the specified CSV file cannot be found
+     * @throws IOException           thrown if the CSV file cannot be indexed
+     * @see CSVRecordIndex
+     */
+    public CSVParser getCSVParser(final String mappingName,
+                                  final String csvFileName,
+                                  final long recordNumber)
+            throws IOException {
+        if (StringUtils.isEmpty(csvFileName)) {
+            LOG.warn("The specified CSV Filename is empty");
+            throw new IllegalArgumentException("File Name is empty");
+        }
+        if (recordNumber < 0) {
+            throw new IllegalArgumentException("The record number should not be negative");
+        }
+        final CSVBeanMapping beanMapping = getRequiredBeanMapping(mappingName);
+
+        final Charset charset = getCharset(beanMapping);
+        if (!MappedCSVTokenizer.isAsciiCompatible(charset)) {
+            LOG.warn("The CSV file cannot be indexed for the charset: " + charset);
+            throw new IllegalStateException(
+                    "The CSV file cannot be indexed for the charset: " + charset);
+        }
+
+        final CSVRecordIndex index = CSVRecordIndex.getCurrentIndex(
+                csvFileName, charset, beanMapping.isCsvHeaderPresent());
+        final MappedCSVTokenizer tokenizer = new MappedCSVTokenizer(
+                csvFileName, charset, MappedCSVTokenizer.DEFAULT_WINDOW_SIZE,
+                index.getOffset(recordNumber));
+        try {
+            tokenizer.setProjection(new boolean[0]);
+            for (long i = index.getIndexedRecord(recordNumber); i < recordNumber; i++) {
+                tokenizer.nextRecord();
+            }
+        } catch (final IOException e) {
+            tokenizer.close();
+            throw e;
+        }
+        return createParser(beanMapping, tokenizer, false, recordNumber);
+    }
+
+    /**
+     * Returns a new CSV file parser for the specified mapping, which resumes
+     * parsing the specified CSV file from the specified checkpoint. The
+     * parser seeks directly to the file offset of the checkpoint, without
+     * reading the preceding records. The file is memory mapped irrespective
+     * of the {@link #isMemoryMappingUsed() memory mapping} setting, which
+     * requires the {@link CSVBeanMapping#getCharsetName() charset} of the
+     * mapping to be ASCII compatible.
+     * <p/>
+     * The CSV file should not have been modified since the checkpoint was
+     * taken.
+     * </p>
+     *
+     * @param mappingName the CSV mapping for which the parser should be created
+     * @param csvFileName the CSV file in the file system to be parsed
+     * @param checkpoint  the checkpoint to resume from
+     * @return the CSV Parser
+     * @throws FileNotFoundException thrown if the specified CSV file cannot be found
+     * @see CSVParser#getCheckpoint()
+     */
+    public CSVParser getCSVParser(final String mappingName,
+                                  final String csvFileName,
+                                  final CSVCheckpoint checkpoint)
+            throws FileNotFoundException {
+        if (StringUtils.isEmpty(csvFileName)) {
+            LOG.warn("The specified CSV Filename is empty");
+            throw new IllegalArgumentException("File Name is empty");
+        }
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("The checkpoint should be specified");
+        }
+        final CSVBeanMapping beanMapping = getRequiredBeanMapping(mappingName);
+
+        final Charset charset = getCharset(beanMapping);
+        if (!MappedCSVTokenizer.isAsciiCompatible(charset)) {
+            LOG.warn("The CSV file cannot be resumed for the charset: " + charset);
+            throw new IllegalStateException(
+                    "The CSV file cannot be resumed for the charset: " + charset);
+        }
+        final File csvFile = new File(csvFileName);
+        if (!csvFile.isFile()) {
+            LOG.warn("The specified CSV File: " + csvFileName + " was not found");
+            throw new FileNotFoundException("The CSV File: " + csvFileName
+                    + " was not found");
+        }
+        if (checkpoint.getByteOffset() > csvFile.length()) {
+            throw new IllegalArgumentException("The checkpoint: " + checkpoint
+                    + " is beyond the end of the CSV file: " + csvFileName);
+        }
+
+        final MappedCSVTokenizer tokenizer = new MappedCSVTokenizer(
+                csvFileName, charset, MappedCSVTokenizer.DEFAULT_WINDOW_SIZE,
+                checkpoint.getByteOffset());
+        return createParser(beanMapping, tokenizer, beanMapping
+                .isCsvHeaderPresent()
+                && !checkpoint.isHeaderSkipped(), checkpoint.getRecordNumber());
+    }
+
+    /**
+     * Returns a new parser which parses the specified CSV file concurrently,
+     * for the specified mapping. The file is split into chunks which are
+     * parsed and mapped on the specified number of worker threads, while the
+     * beans are still returned in the order of the CSV records.
+     * <p/>
+     * The file is memory mapped and tokenized by the built-in tokenizer,
+     * irrespective of the {@link #isBuiltInTokenizerUsed() tokenizer} and
+     * {@link #isMemoryMappingUsed() memory mapping} settings. This requires
+     * the {@link CSVBeanMapping#getCharsetName() charset} of the mapping to
+     * be ASCII compatible.
+     * </p>
+     *
+     * @param mappingName the CSV mapping for which the parser should be created
+     * @param csvFileName the CSV file in the file system to be parsed
+     * @param threadCount the number of worker threads
+     * @return the parallel CSV parser
+     * @throws FileNotFoundException thrown if the specified CSV file cannot be found
+     * @see ParallelCSVParser
+     */
+    public ParallelCSVParser getParallelCSVParser(final String mappingName,
+                                                  final String csvFileName,
+                                                  final int threadCount)
+            throws FileNotFoundException {
+        if (StringUtils.isEmpty(csvFileName)) {
+            LOG.warn("The specified CSV Filename is empty");
+            throw new IllegalArgumentException("File Name is empty");
+        }
+        final CSVBeanMapping beanMapping = getRequiredBeanMapping(mappingName);
+
+        if (!new File(csvFileName).isFile()) {
+            LOG.warn("The specified CSV File: " + csvFileName + " was not found");
+            throw new FileNotFoundException("The CSV File: " + csvFileName
+                    + " was not found");
+        }
+
+        final Charset charset = getCharset(beanMapping);
+        if (!MappedCSVTokenizer.isAsciiCompatible(charset)) {
+            LOG.warn("The CSV file cannot be split for the charset: " + charset);
+            throw new IllegalStateException(
+                    "The CSV file cannot be split for the charset: " + charset);
+        }
+
+        CSVBeanBinder beanBinder = getBeanBinder(beanMapping);
+        final boolean[] projection = getProjection(beanMapping, beanBinder);
+        if (beanBinder == null) {
+            beanBinder = new CSVParser.ReflectiveBeanBinder(beanMapping);
+        }
+        return new ParallelCSVParser(csvFileName, charset, beanBinder,
+                projection, beanMapping.isCsvHeaderPresent(), threadCount);
+    }
+
+    /**
+     * Returns the requested bean mapping configuration, which must exist.
+     *
+     * @param mappingName the CSV mapping to return
+     * @return the CSV bean mapping
+     * @throws IllegalArgumentException thrown if the mapping was not found
+     */
+    private CSVBeanMapping getRequiredBeanMapping(final String mappingName) {
         final CSVBeanMapping beanMapping = getBeanMapping(mappingName);
 
         if (beanMapping == null) {
@@ -236,16 +609,355 @@ public final class CSVParserFactory {
             throw new IllegalArgumentException(
                     "Specified bean mapping was not found");
         }
+        return beanMapping;
+    }
 
-        if (csvReader == null) {
-            LOG.warn("Specified CSV IO Reader was null");
-            throw new IllegalArgumentException(
-                    "Specified CSV IO Reader was null");
+    /**
+     * Creates a new CSV parser for the specified mapping, which reads the CSV
+     * records from the specified tokenizer.
+     *
+     * @param beanMapping the CSV bean mapping to use
+     * @param tokenizer   the CSV tokenizer to read from
+     * @return the CSV Parser
+     */
+    private CSVParser createParser(final CSVBeanMapping beanMapping,
+                                   final CSVTokenizer tokenizer) {
+        return createParser(beanMapping, tokenizer, beanMapping
+                .isCsvHeaderPresent(), 0L);
+    }
+
+    /**
+     * Creates a new parser for the specified bean mapping, which reads from
+     * the specified tokenizer.
+     *
+     * @param beanMapping   the CSV bean mapping
+     * @param tokenizer     the CSV tokenizer to read from
+     * @param headerPresent indicates whether the tokenizer starts at a header
+     *                      row
+     * @param recordNumber  the number of the record at which the tokenizer
+     *                      starts
+     * @return the CSV Parser
+     */
+    private CSVParser createParser(final CSVBeanMapping beanMapping,
+                                   final CSVTokenizer tokenizer,
+                                   final boolean headerPresent,
+                                   final long recordNumber) {
+        final CSVBeanBinder beanBinder = getBeanBinder(beanMapping);
+        tokenizer.setProjection(getProjection(beanMapping, beanBinder));
+        final CSVReader reader = new CSVReader(tokenizer, headerPresent);
+        reader.setRecordNumber(recordNumber);
+        // The parser maps each line to a bean right away, and never retains it.
+        reader.setRowReused(true);
+
+        return new CSVParser(beanMapping, reader, beanBinder);
+    }
+
+    /**
+     * Returns the binder to use for the specified bean mapping, as per the
+     * {@link #isCompiledMappingUsed() binder selection}.
+     *
+     * @param beanMapping the CSV bean mapping
+     * @return the bean binder, or <code>null</code> if the beans are to be
+     *         mapped reflectively
+     */
+    private CSVBeanBinder getBeanBinder(final CSVBeanMapping beanMapping) {
+        final String beanName = beanMapping.getBeanName();
+        final CSVBeanBinder registeredBinder = registeredBinders.get(beanName);
+        if (registeredBinder != null) {
+            return registeredBinder;
         }
+        if (isCompiledMappingUsed()) {
+            final CSVGeneratedBeanBinder generatedBinder = getGeneratedBinder(beanMapping);
+            if (generatedBinder != null) {
+                return generatedBinder;
+            }
+            return getBeanPlan(beanMapping);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the binder generated at build time for the specified bean
+     * mapping. The binder is created again if a client has registered a
+     * converter with <code>ConvertUtils</code> since it was created.
+     *
+     * @param beanMapping the CSV bean mapping
+     * @return the generated binder, or <code>null</code> if none was
+     *         generated for the mapping
+     */
+    private CSVGeneratedBeanBinder getGeneratedBinder(
+            final CSVBeanMapping beanMapping) {
+        final String beanName = beanMapping.getBeanName();
+        final CSVGeneratedBeanBinder generatedBinder = generatedBinders
+                .get(beanName);
+        if (generatedBinder == null || generatedBinder.isCurrent()) {
+            return generatedBinder;
+        }
+
+        LOG.debug("The converters have changed, creating the generated binder for: "
+                + beanName + " again");
+        final CSVGeneratedBeanBinder recreatedBinder = CSVGeneratedBeanBinder
+                .load(beanMapping);
+        if (recreatedBinder == null) {
+            generatedBinders.remove(beanName);
+            return null;
+        }
+        generatedBinders.put(beanName, recreatedBinder);
+        return recreatedBinder;
+    }
+
+    /**
+     * Returns the compiled plan for the specified bean mapping. The plan is
+     * compiled again if a client has registered a converter with
+     * <code>ConvertUtils</code> since it was compiled, so that the converter
+     * is honoured by the new parsers.
+     *
+     * @param beanMapping the CSV bean mapping
+     * @return the compiled plan, or <code>null</code> if the mapping could not
+     *         be compiled
+     */
+    private CSVBeanPlan getBeanPlan(final CSVBeanMapping beanMapping) {
+        final String beanName = beanMapping.getBeanName();
+        final CSVBeanPlan beanPlan = beanPlans.get(beanName);
+        if (beanPlan == null || beanPlan.isCurrent()) {
+            return beanPlan;
+        }
+
+        LOG.debug("The converters have changed, compiling the bean mapping: "
+                + beanName + " again");
+        final CSVBeanPlan recompiledPlan = CSVBeanPlan.compile(beanMapping);
+        if (recompiledPlan == null) {
+            return null;
+        }
+        beanPlans.put(beanName, recompiledPlan);
+        return recompiledPlan;
+    }
 
-        final CSVReader reader = new CSVReader(csvReader, beanMapping
-                .isCsvHeaderPresent());
+    /**
+     * Returns the CSV field positions which are referenced by the specified
+     * bean mapping, including the positions referenced by any nested bean
+     * mappings. Only these fields need to be materialized by the tokenizer.
+     * A client registered binder may read any field, so all the fields are
+     * materialized for it; the compiled mappings and the generated binders
+     * only read the mapped fields.
+     *
+     * @param beanMapping the CSV bean mapping
+     * @param beanBinder  the binder selected for the mapping, as returned by
+     *                    {@link #getBeanBinder(CSVBeanMapping)}
+     * @return the flags for the referenced field positions, or
+     *         <code>null</code> for all the fields
+     * @see CSVTokenizer#setProjection(boolean[])
+     */
+    private boolean[] getProjection(final CSVBeanMapping beanMapping,
+                                    final CSVBeanBinder beanBinder) {
+        if (beanBinder != null && !(beanBinder instanceof CSVBeanPlan)
+                && !(beanBinder instanceof CSVGeneratedBeanBinder)) {
+            return null;
+        }
+        final BitSet positions = new BitSet();
+        collectFieldPositions(beanMapping, positions,
+                new HashSet<CSVBeanMapping>());
+
+        final boolean[] projection = new boolean[positions.length()];
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions
+                .nextSetBit(i + 1)) {
+            projection[i] = true;
+        }
+        return projection;
+    }
 
-        return new CSVParser(beanMapping, reader);
+    /**
+     * Collects the CSV field positions referenced by the specified bean
+     * mapping, recursing into the referenced bean mappings.
+     *
+     * @param beanMapping     the CSV bean mapping
+     * @param positions       the field positions collected so far
+     * @param visitedMappings the bean mappings already visited
+     */
+    private void collectFieldPositions(final CSVBeanMapping beanMapping,
+                                       final BitSet positions,
+                                       final Set<CSVBeanMapping> visitedMappings) {
+        if (!visitedMappings.add(beanMapping)) {
+            return;
+        }
+        for (CSVFieldMapping fieldMapping : beanMapping) {
+            if (fieldMapping.getBeanReferenceName().equals("none")) {
+                positions.set(fieldMapping.getFieldPosition());
+            } else {
+                collectFieldPositions(fieldMapping.getBeanReference(),
+                        positions, visitedMappings);
+            }
+        }
+    }
+
+    /**
+     * Creates the CSV tokenizer engine for the specified CSV stream, as per the
+     * {@link #isBuiltInTokenizerUsed() tokenizer selection}.
+     *
+     * @param csvReader the CSV stream to parse
+     * @return the CSV tokenizer
+     */
+    private CSVTokenizer createTokenizer(final Reader csvReader) {
+        final Reader streamReader = isReadAheadUsed()
+                && !(csvReader instanceof ReadAheadReader) ? new ReadAheadReader(
+                csvReader, ReadAheadReader.DEFAULT_BUFFER_SIZE,
+                ReadAheadReader.DEFAULT_BUFFER_COUNT) : csvReader;
+        if (isBuiltInTokenizerUsed()) {
+            return new BufferedCSVTokenizer(streamReader);
+        }
+        return new ExcelCSVTokenizer(streamReader);
+    }
+
+    /**
+     * Indicates whether the parsers created by this factory use the
+     * framework's built-in CSV tokenizer. If not, the Excel CSV parser engine
+     * from Steven Ostermiller's utilities is used. Both engines parse the
+     * Excel CSV dialect identically; the built-in tokenizer is significantly
+     * faster and is the default.
+     *
+     * @return Returns <code>true</code> if the built-in tokenizer is used
+     */
+    public boolean isBuiltInTokenizerUsed() {
+        return this.builtInTokenizerUsed;
+    }
+
+    /**
+     * Selects the CSV tokenizer engine for the parsers subsequently created
+     * by this factory.
+     *
+     * @param builtInTokenizerUsed <code>true</code> to use the built-in
+     *                             tokenizer, <code>false</code> to use the
+     *                             Ostermiller Excel CSV parser
+     * @see #isBuiltInTokenizerUsed()
+     */
+    public void setBuiltInTokenizerUsed(final boolean builtInTokenizerUsed) {
+        this.builtInTokenizerUsed = builtInTokenizerUsed;
+    }
+
+    /**
+     * Indicates whether the CSV files read from the file system (i.e., not
+     * from the classpath) are memory mapped, instead of being read through a
+     * {@link FileInputStream stream}.
+     * <p/>
+     * When enabled, the file is mapped in large windows and tokenized directly
+     * from the mapped bytes, and only the fields actually accessed are
+     * decoded. The mapping is only possible with the built-in tokenizer, for
+     * uncompressed files, and when the charset of the file (i.e., the
+     * {@link CSVBeanMapping#getCharsetName() charset} declared for the
+     * mapping, or the charset passed to
+     * {@link #getCSVParser(String,String,boolean,Charset)}) is ASCII
+     * compatible (e.g., UTF-8 or ISO-8859-1). Otherwise, the file is read as
+     * usual.
+     * </p>
+     *
+     * @return Returns <code>true</code> if the CSV files are memory mapped
+     * @see #getCSVParser(String,String,boolean)
+     */
+    public boolean isMemoryMappingUsed() {
+        return this.memoryMappingUsed;
+    }
+
+    /**
+     * Sets the flag which indicates whether the CSV files read from the file
+     * system are memory mapped by the parsers subsequently created by this
+     * factory.
+     *
+     * @param memoryMappingUsed <code>true</code> to memory map the CSV files
+     * @see #isMemoryMappingUsed()
+     */
+    public void setMemoryMappingUsed(final boolean memoryMappingUsed) {
+        this.memoryMappingUsed = memoryMappingUsed;
+    }
+
+    /**
+     * Indicates whether the parsers created by this factory bind the CSV
+     * records to beans through the compiled bean mappings. The bean mappings
+     * are compiled when the factory is created, with the bean constructors,
+     * property setters and value converters resolved in advance. A mapping is
+     * compiled again for the next parser if a converter is registered with
+     * <code>ConvertUtils</code> in the meantime. If disabled (or
+     * if a mapping cannot be compiled), the beans are mapped reflectively
+     * through <code>BeanUtils</code>, as in the earlier releases.
+     * <p/>
+     * Where a {@link CSVGeneratedBeanBinder binder} was generated at build
+     * time for the bean class of a mapping, it is used in place of the
+     * compiled mapping, as it invokes the bean constructor, setters and field
+     * formatters directly.
+     * </p>
+     * <p/>
+     * Binders {@link #setBeanBinder(String,CSVBeanBinder) registered} for a
+     * mapping are used regardless of this setting.
+     * </p>
+     *
+     * @return Returns <code>true</code> if the compiled mappings are used
+     * @see #setCompiledMappingUsed(boolean)
+     */
+    public boolean isCompiledMappingUsed() {
+        return this.compiledMappingUsed;
+    }
+
+    /**
+     * Sets the flag which indicates whether the parsers subsequently created
+     * by this factory use the compiled bean mappings.
+     *
+     * @param compiledMappingUsed <code>true</code> to use the compiled
+     *                            mappings, <code>false</code> to map the
+     *                            beans reflectively
+     * @see #isCompiledMappingUsed()
+     */
+    public void setCompiledMappingUsed(final boolean compiledMappingUsed) {
+        this.compiledMappingUsed = compiledMappingUsed;
+    }
+
+    /**
+     * Indicates whether the CSV streams of the parsers created by this factory
+     * are read ahead on a background thread. The stream is then read into a
+     * ring of large buffers while the current buffer is being parsed, so that
+     * the I/O latency (e.g., of network mounted file systems) overlaps with
+     * the parsing and mapping of the records.
+     * <p/>
+     * The read ahead does not apply to {@link #isMemoryMappingUsed() memory
+     * mapped} files, which are paged in by the operating system instead.
+     * </p>
+     *
+     * @return Returns <code>true</code> if the CSV streams are read ahead
+     * @see #setReadAheadUsed(boolean)
+     */
+    public boolean isReadAheadUsed() {
+        return this.readAheadUsed;
+    }
+
+    /**
+     * Sets the flag which indicates whether the CSV streams of the parsers
+     * subsequently created by this factory are read ahead on a background
+     * thread.
+     *
+     * @param readAheadUsed <code>true</code> to read the CSV streams ahead
+     * @see #isReadAheadUsed()
+     */
+    public void setReadAheadUsed(final boolean readAheadUsed) {
+        this.readAheadUsed = readAheadUsed;
+    }
+
+    /**
+     * Registers a client provided binder for the specified bean mapping. The
+     * binder is used by all parsers subsequently created for the mapping, in
+     * place of the configured field mappings. The binder is passed all the
+     * fields of each record, in a list which is only valid during the call.
+     *
+     * @param mappingName the CSV mapping for which the binder is registered
+     * @param beanBinder  the binder to use, or <code>null</code> to remove a
+     *                    previously registered binder
+     * @throws IllegalArgumentException thrown if the mapping was not found
+     * @see CSVBeanBinder
+     */
+    public void setBeanBinder(final String mappingName,
+                              final CSVBeanBinder beanBinder) {
+        getRequiredBeanMapping(mappingName);
+        if (beanBinder == null) {
+            registeredBinders.remove(mappingName);
+        } else {
+            registeredBinders.put(mappingName, beanBinder);
+        }
     }
 }
@@ -22,13 +22,31 @@
 package net.sf.anupam.csv;
 
 import junit.framework.TestCase;
+import net.sf.anupam.csv.formatters.CSVMemoizingFormatter;
 import net.sf.anupam.csv.mapping.CSVBeanMapping;
 import net.sf.anupam.csv.mapping.CSVFieldMapping;
 import net.sf.anupam.csv.exceptions.CSVOException;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.beanutils.converters.StringConverter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import test.net.sf.anupam.csv.beans.Employee;
+import test.net.sf.anupam.csv.beans.Person;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * CSVParserFactoryTest.
@@ -44,6 +62,11 @@ public class CSVParserFactoryTest
      */
     private static final String SAMPLE_CSV_FILE = "test/net/sf/anupam/csv/beans/sample.csv";
 
+    /**
+     * The sample person data file to use for the test.
+     */
+    private static final String PERSON_CSV_FILE = "test/net/sf/anupam/csv/beans/sample-2.csv";
+
     /**
      * The logger to use.
      */
@@ -110,6 +133,85 @@ public class CSVParserFactoryTest
         }
     }
 
+    /**
+     * Tests that a registered bean binder is used by the parsers.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testSetBeanBinder() throws Exception {
+        final CSVParserFactory parserFactory = CSVParserFactory.getSingleton();
+
+        parserFactory.setBeanBinder("employeeBean", new CSVBeanBinder() {
+            public Object createBean(final List<String> csvLine) {
+                // The unmapped fields should also be available
+                return csvLine.get(1) + "/" + csvLine.get(5) + "/"
+                        + csvLine.size();
+            }
+        });
+        try {
+            final CSVParser parser = parserFactory.getCSVParser("employeeBean",
+                    SAMPLE_CSV_FILE, true);
+            for (Object bean : parser) {
+                assertEquals("The registered binder should have been used",
+                        "123456/DEV/9", bean);
+            }
+            parser.close();
+        } finally {
+            parserFactory.setBeanBinder("employeeBean", null);
+        }
+
+        try {
+            parserFactory.setBeanBinder("noSuchBean", null);
+            fail("Should have thrown an IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            // Do nothing
+        }
+    }
+
+    /**
+     * Tests that a converter registered with <code>ConvertUtils</code> after
+     * the factory has compiled the mappings is used by the new parsers.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testClientConverterAfterLoad() throws Exception {
+        final CSVParserFactory parserFactory = CSVParserFactory.getSingleton();
+        assertEquals("The standard converter should have been used",
+                "123456", getFirstEmployeeID(parserFactory));
+
+        ConvertUtils.register(new Converter() {
+            public Object convert(final Class type, final Object value) {
+                return "#" + value;
+            }
+        }, String.class);
+        try {
+            assertEquals("The client converter should have been used",
+                    "#123456", getFirstEmployeeID(parserFactory));
+        } finally {
+            ConvertUtils.register(new StringConverter(), String.class);
+        }
+        assertEquals("The standard converter should be used again",
+                "123456", getFirstEmployeeID(parserFactory));
+    }
+
+    /**
+     * Returns the employee ID of the first employee in the sample file.
+     *
+     * @param parserFactory the parser factory to use
+     * @return the employee ID
+     * @throws Exception thrown if the sample file cannot be parsed
+     */
+    private String getFirstEmployeeID(final CSVParserFactory parserFactory)
+            throws Exception {
+        final CSVParser parser = parserFactory.getCSVParser("employeeBean",
+                SAMPLE_CSV_FILE, true);
+        try {
+            return ((Employee) parser.iterator().next()).getEmployeeID();
+        } finally {
+            parser.close();
+        }
+    }
+
     /**
      * Tests the getCSVParser method.
      *
@@ -167,4 +269,256 @@ public class CSVParserFactoryTest
             // Do nothing
         }
     }
+
+    /**
+     * Tests that compressed CSV files are detected and decompressed, with the
+     * memory mapping both enabled and disabled.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testGetCSVParserForCompressedFile() throws Exception {
+        final CSVParserFactory parserFactory = CSVParserFactory.getSingleton();
+        final byte[] content = readSampleContent();
+        final int split = content.length / 2;
+
+        // Two concatenated gzip members, split in the middle of a record
+        final ByteArrayOutputStream gzipContent = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOut = new GZIPOutputStream(gzipContent);
+        gzipOut.write(content, 0, split);
+        gzipOut.finish();
+        gzipOut = new GZIPOutputStream(gzipContent);
+        gzipOut.write(content, split, content.length - split);
+        gzipOut.finish();
+
+        final ByteArrayOutputStream deflateContent = new ByteArrayOutputStream();
+        final DeflaterOutputStream deflateOut = new DeflaterOutputStream(
+                deflateContent);
+        deflateOut.write(content);
+        deflateOut.finish();
+
+        final boolean memoryMappingUsed = parserFactory.isMemoryMappingUsed();
+        try {
+            for (byte[] compressed : Arrays.asList(gzipContent.toByteArray(),
+                    deflateContent.toByteArray())) {
+                final File csvFile = File.createTempFile("sample", ".csv.gz");
+                try {
+                    writeFile(csvFile, compressed);
+                    parserFactory.setMemoryMappingUsed(false);
+                    assertEquals("The decompressed persons do not match",
+                            Arrays.asList("john.doe@someplace.com", "j.doe@nowhere.com"),
+                            parseEmailIDs(parserFactory, csvFile));
+                    parserFactory.setMemoryMappingUsed(true);
+                    assertEquals("The decompressed persons do not match with memory mapping",
+                            Arrays.asList("john.doe@someplace.com", "j.doe@nowhere.com"),
+                            parseEmailIDs(parserFactory, csvFile));
+                } finally {
+                    csvFile.delete();
+                }
+            }
+        } finally {
+            parserFactory.setMemoryMappingUsed(memoryMappingUsed);
+        }
+    }
+
+    /**
+     * Tests that a plain CSV file which starts like a zlib header is not
+     * treated as compressed.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testGetCSVParserForZlibLikeFile() throws Exception {
+        final CSVParserFactory parserFactory = CSVParserFactory.getSingleton();
+        final byte[] content = readSampleContent();
+        final byte[] plainContent = new byte[content.length + 2];
+        plainContent[0] = 'x';
+        plainContent[1] = '^';
+        System.arraycopy(content, 0, plainContent, 2, content.length);
+
+        final boolean memoryMappingUsed = parserFactory.isMemoryMappingUsed();
+        final File csvFile = File.createTempFile("sample", ".csv");
+        try {
+            writeFile(csvFile, plainContent);
+            parserFactory.setMemoryMappingUsed(false);
+            assertEquals("The plain persons do not match",
+                    Arrays.asList("john.doe@someplace.com", "j.doe@nowhere.com"),
+                    parseEmailIDs(parserFactory, csvFile));
+            parserFactory.setMemoryMappingUsed(true);
+            assertEquals("The plain persons do not match with memory mapping",
+                    Arrays.asList("john.doe@someplace.com", "j.doe@nowhere.com"),
+                    parseEmailIDs(parserFactory, csvFile));
+        } finally {
+            parserFactory.setMemoryMappingUsed(memoryMappingUsed);
+            csvFile.delete();
+        }
+    }
+
+    /**
+     * Tests that the CSV files are decoded with the charset declared for the
+     * mapping, or with the charset passed in.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testGetCSVParserWithCharset() throws Exception {
+        final CSVParserFactory parserFactory = CSVParserFactory.getSingleton();
+        final CSVBeanMapping beanMapping = parserFactory.getBeanMapping("personBean");
+        final String firstName = "J\u00fcrgen";
+        final File csvFile = File.createTempFile("sample", ".csv");
+        final boolean memoryMappingUsed = parserFactory.isMemoryMappingUsed();
+        try {
+            writeFile(csvFile, ("FirstName,LastName,Location,Email,Provider\n"
+                    + firstName + ",Doe,Earth,j.doe@nowhere.com,EmailProvider2\n")
+                    .getBytes("UTF-16BE"));
+            for (boolean memoryMapped : new boolean[]{false, true}) {
+                parserFactory.setMemoryMappingUsed(memoryMapped);
+                CSVParser parser = parserFactory.getCSVParser("personBean",
+                        csvFile.getPath(), false, Charset.forName("UTF-16BE"));
+                assertEquals("The first name does not match", firstName,
+                        ((Person) parser.iterator().next()).getFirstName());
+                parser.close();
+
+                beanMapping.setCharsetName("UTF-16BE");
+                parser = parserFactory.getCSVParser("personBean",
+                        csvFile.getPath(), false);
+                assertEquals("The first name with the mapping charset does not match",
+                        firstName, ((Person) parser.iterator().next()).getFirstName());
+                parser.close();
+                beanMapping.setCharsetName(null);
+            }
+
+            writeFile(csvFile, ("FirstName,LastName,Location,Email,Provider\n"
+                    + firstName + ",Doe,Earth,j.doe@nowhere.com,EmailProvider2\n")
+                    .getBytes("UTF-8"));
+            beanMapping.setCharsetName("UTF-8");
+            final CSVParser parser = parserFactory.getCSVParser("personBean",
+                    csvFile.getPath(), false);
+            assertEquals("The memory mapped first name does not match", firstName,
+                    ((Person) parser.iterator().next()).getFirstName());
+            parser.close();
+
+            beanMapping.setCharsetName("no-such-charset");
+            try {
+                parserFactory.getCSVParser("personBean", csvFile.getPath(), false);
+                fail("Should have thrown an IllegalArgumentException");
+            } catch (final IllegalArgumentException e) {
+                // Do nothing
+            }
+        } finally {
+            beanMapping.setCharsetName(null);
+            parserFactory.setMemoryMappingUsed(memoryMappingUsed);
+            csvFile.delete();
+        }
+    }
+
+    /**
+     * Tests that the formatted values of a field mapping with a memo size are
+     * memoized.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testGetCSVParserWithMemo() throws Exception {
+        final CSVParserFactory parserFactory = CSVParserFactory.getSingleton();
+        final CSVFieldMapping fieldMapping = parserFactory.getBeanMapping(
+                "designationBean").iterator().next();
+        assertEquals("The memo size does not match", 16, fieldMapping
+                .getMemoSize());
+        assertTrue("The formatter should be memoized",
+                fieldMapping.getFormatter() instanceof CSVMemoizingFormatter);
+        final CSVMemoizingFormatter formatter = (CSVMemoizingFormatter) fieldMapping
+                .getFormatter();
+        formatter.clear();
+
+        Employee firstEmployee = null;
+        for (int i = 0; i < 2; i++) {
+            final CSVParser parser = parserFactory.getCSVParser("employeeBean",
+                    SAMPLE_CSV_FILE, true);
+            final Employee employee = (Employee) parser.iterator().next();
+            parser.close();
+            if (firstEmployee == null) {
+                firstEmployee = employee;
+            } else {
+                assertSame("The memoized designation should be shared",
+                        firstEmployee.getDesignation().getDesignation(),
+                        employee.getDesignation().getDesignation());
+            }
+        }
+        assertEquals("The designation does not match", "Lead", firstEmployee
+                .getDesignation().getDesignation());
+        assertEquals("The miss count does not match", 1, formatter.getMissCount());
+        assertEquals("The hit count does not match", 1, formatter.getHitCount());
+    }
+
+    /**
+     * Tests that a parameterized formatter is constructed for a field mapping
+     * with a formatter parameter.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testGetCSVParserWithParameterizedFormatter() throws Exception {
+        final CSVParserFactory parserFactory = CSVParserFactory.getSingleton();
+        final CSVParser parser = parserFactory.getCSVParser("personBean",
+                PERSON_CSV_FILE, true);
+        final List<String> emailDomains = new ArrayList<String>();
+        for (Object bean : parser) {
+            emailDomains.add(((Person) bean).getEmailID().getEmailDomain());
+        }
+        parser.close();
+        assertEquals("The email domains do not match", Arrays.asList(
+                "someplace.com", "nowhere.com"), emailDomains);
+    }
+
+    /**
+     * Returns the content of the sample person data file.
+     *
+     * @return the sample content
+     * @throws IOException thrown if the sample cannot be read
+     */
+    private byte[] readSampleContent() throws IOException {
+        final InputStream inStream = ClassLoader
+                .getSystemResourceAsStream(PERSON_CSV_FILE);
+        assertNotNull("The sample file should be present", inStream);
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int count;
+        while ((count = inStream.read(buffer)) >= 0) {
+            content.write(buffer, 0, count);
+        }
+        inStream.close();
+        return content.toByteArray();
+    }
+
+    /**
+     * Writes the specified content to a file.
+     *
+     * @param file    the file to write
+     * @param content the content to write
+     * @throws IOException thrown if the file cannot be written
+     */
+    private void writeFile(final File file, final byte[] content)
+            throws IOException {
+        final OutputStream outStream = new FileOutputStream(file);
+        outStream.write(content);
+        outStream.close();
+    }
+
+    /**
+     * Parses the persons from the specified file, and returns their email
+     * IDs.
+     *
+     * @param parserFactory the parser factory
+     * @param csvFile       the person CSV file
+     * @return the email IDs of the persons
+     * @throws FileNotFoundException thrown if the file cannot be found
+     */
+    private List<String> parseEmailIDs(final CSVParserFactory parserFactory,
+                                       final File csvFile)
+            throws FileNotFoundException {
+        final CSVParser parser = parserFactory.getCSVParser("personBean",
+                csvFile.getPath(), false);
+        final List<String> emailIDs = new ArrayList<String>();
+        for (Object bean : parser) {
+            emailIDs.add(((Person) bean).getEmailID().getEmailID());
+        }
+        parser.close();
+        return emailIDs;
+    }
 }
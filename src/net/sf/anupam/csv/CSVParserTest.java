@@ -30,6 +30,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * CSVParserTest.
@@ -112,6 +115,199 @@ public class CSVParserTest
 
     }
 
+    /**
+     * Tests the bean mapping from a memory mapped CSV file.
+     *
+     * @throws Exception thrown if an unexpected exception is thrown
+     */
+    public void testGetMappedBeansFromMappedFile()
+            throws Exception {
+        final CSVParserFactory factory = CSVParserFactory.getSingleton();
+        final String csvFileName = ClassLoader.getSystemResource(SAMPLE_CSV_FILE)
+                .getFile();
+        factory.setMemoryMappingUsed(true);
+        try {
+            final CSVParser parser = factory.getCSVParser("employeeBean",
+                                                          csvFileName, false);
+            int beanCount = 0;
+            for (Object bean : parser) {
+                final Employee empl = (Employee) bean;
+                assertEquals("The employee ID does not match", "123456", empl.getEmployeeID());
+                assertEquals("The employee last name does not match", "Doe", empl.getLastName());
+                assertEquals("The employee designation does not match", "Lead",
+                             empl.getDesignation().getDesignation());
+                beanCount++;
+            }
+            assertEquals("One employee should have been parsed", 1, beanCount);
+            parser.close();
+        } finally {
+            factory.setMemoryMappingUsed(false);
+        }
+    }
+
+    /**
+     * Tests the reflective bean mapping, with the compiled mappings disabled.
+     *
+     * @throws Exception thrown if an unexpected exception is thrown
+     */
+    public void testGetMappedBeansReflectively()
+            throws Exception {
+        final CSVParserFactory factory = CSVParserFactory.getSingleton();
+        factory.setCompiledMappingUsed(false);
+        try {
+            final CSVParser parser = factory.getCSVParser("employeeBean",
+                                                          SAMPLE_CSV_FILE, true);
+            int beanCount = 0;
+            for (Object bean : parser) {
+                final Employee empl = (Employee) bean;
+                assertEquals("The employee ID does not match", "123456", empl.getEmployeeID());
+                assertEquals("The employee first name does not match", "John", empl.getFirstName());
+                assertEquals("The employee designation does not match", "Lead",
+                             empl.getDesignation().getDesignation());
+                beanCount++;
+            }
+            assertEquals("One employee should have been parsed", 1, beanCount);
+            parser.close();
+        } finally {
+            factory.setCompiledMappingUsed(true);
+        }
+    }
+
+    /**
+     * Tests the bean mapping with multiple mapping threads.
+     *
+     * @throws Exception thrown if an unexpected exception is thrown
+     */
+    public void testGetMappedBeansInParallel()
+            throws Exception {
+        final CSVParserFactory factory = CSVParserFactory.getSingleton();
+        final CSVParser parser = factory.getCSVParser("employeeBean",
+                                                      SAMPLE_CSV_FILE, true);
+        parser.setMappingThreadCount(2);
+        int beanCount = 0;
+        for (Object bean : parser) {
+            final Employee empl = (Employee) bean;
+            assertEquals("The employee ID does not match", "123456", empl.getEmployeeID());
+            assertEquals("The employee designation does not match", "Lead",
+                         empl.getDesignation().getDesignation());
+            beanCount++;
+        }
+        assertEquals("One employee should have been parsed", 1, beanCount);
+        parser.close();
+    }
+
+    /**
+     * Tests the batch mapping of the beans.
+     *
+     * @throws Exception thrown if an unexpected exception is thrown
+     */
+    public void testNextBatch()
+            throws Exception {
+        final CSVParserFactory factory = CSVParserFactory.getSingleton();
+        CSVParser parser = factory.getCSVParser("personBean",
+                                                SECOND_SAMPLE_CSV_FILE, true);
+        final Object[] beans = new Object[1];
+        assertEquals("The first batch size does not match", 1, parser.nextBatch(beans));
+        assertEquals("The person does not match", "john.doe@someplace.com",
+                     ((Person) beans[0]).getEmailID().getEmailID());
+        assertEquals("The second batch size does not match", 1, parser.nextBatch(beans));
+        assertEquals("The person does not match", "j.doe@nowhere.com",
+                     ((Person) beans[0]).getEmailID().getEmailID());
+        assertEquals("No more beans should be present", 0, parser.nextBatch(beans));
+        parser.close();
+
+        parser = factory.getCSVParser("personBean", SECOND_SAMPLE_CSV_FILE, true);
+        final List<Object> beanList = new ArrayList<Object>();
+        assertEquals("The batch size does not match", 2, parser.nextBatch(beanList, 10));
+        assertEquals("The bean count does not match", 2, beanList.size());
+        assertEquals("No more beans should be present", 0, parser.nextBatch(beanList, 10));
+        parser.close();
+    }
+
+    /**
+     * Tests that the column by column batch mapping, through the compiled bean
+     * plan, maps the same beans as the record by record mapping.
+     *
+     * @throws Exception thrown if an unexpected exception is thrown
+     */
+    public void testNextColumnBatch()
+            throws Exception {
+        final CSVParserFactory factory = CSVParserFactory.getSingleton();
+        CSVParser parser = factory.getCSVParser("employeeBean",
+                                                SAMPLE_CSV_FILE, true);
+        final List<Employee> expectedBeans = new ArrayList<Employee>();
+        for (Object bean : parser) {
+            expectedBeans.add((Employee) bean);
+        }
+        parser.close();
+
+        parser = factory.getCSVParser("employeeBean", SAMPLE_CSV_FILE, true);
+        final Object[] beans = new Object[CSVParser.MAPPING_BATCH_SIZE + 1];
+        assertEquals("The batch size does not match", expectedBeans.size(),
+                     parser.nextBatch(beans));
+        for (int i = 0; i < expectedBeans.size(); i++) {
+            final Employee expected = expectedBeans.get(i);
+            final Employee empl = (Employee) beans[i];
+            assertEquals("The employee ID does not match", expected.getEmployeeID(),
+                         empl.getEmployeeID());
+            assertEquals("The employee first name does not match",
+                         expected.getFirstName(), empl.getFirstName());
+            assertEquals("The employee last name does not match",
+                         expected.getLastName(), empl.getLastName());
+            assertEquals("The employee client ID does not match",
+                         expected.getClientSuppliedID(), empl.getClientSuppliedID());
+            assertEquals("The employee designation does not match",
+                         expected.getDesignation().getDesignation(),
+                         empl.getDesignation().getDesignation());
+        }
+        assertEquals("No more beans should be present", 0, parser.nextBatch(beans));
+        parser.close();
+    }
+
+    /**
+     * Tests the push style mapping of the beans.
+     *
+     * @throws Exception thrown if an unexpected exception is thrown
+     */
+    public void testParse()
+            throws Exception {
+        final CSVParserFactory factory = CSVParserFactory.getSingleton();
+        CSVParser parser = factory.getCSVParser("personBean",
+                                                SECOND_SAMPLE_CSV_FILE, true);
+        final List<Object> beans = new ArrayList<Object>();
+        assertEquals("The visited bean count does not match", 2,
+                     parser.parse(new CSVRowVisitor<Object>() {
+                         public boolean visit(final Object row) {
+                             beans.add(row);
+                             return true;
+                         }
+                     }));
+        assertEquals("The person does not match", "j.doe@nowhere.com",
+                     ((Person) beans.get(1)).getEmailID().getEmailID());
+        parser.close();
+
+        parser = factory.getCSVParser("personBean", SECOND_SAMPLE_CSV_FILE, true);
+        final List<Object> parallelBeans = Collections.synchronizedList(new ArrayList<Object>());
+        assertEquals("The bean count visited in parallel does not match", 2,
+                     parser.parse(new CSVRowVisitor<Object>() {
+                         public boolean visit(final Object row) {
+                             parallelBeans.add(row);
+                             return true;
+                         }
+                     }, 2));
+        assertEquals("The beans visited in parallel do not match", 2, parallelBeans.size());
+        parser.close();
+
+        parser = factory.getCSVParser("personBean", SECOND_SAMPLE_CSV_FILE, true);
+        assertEquals("The parsing should stop after the first bean", 1,
+                     parser.parse(new CSVRowVisitor<Object>() {
+                         public boolean visit(final Object row) {
+                             return false;
+                         }
+                     }));
+        parser.close();
+    }
+
     /**
      * Test case to simulate a multiple record to single record mapping scenario.
      * @throws Exception thrown if an unexpected exception is thrown
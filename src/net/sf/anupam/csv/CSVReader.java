@@ -21,9 +21,6 @@
  */
 package net.sf.anupam.csv;
 
-import com.Ostermiller.util.CSVParse;
-import com.Ostermiller.util.ExcelCSVParser;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -39,14 +36,17 @@ import java.util.NoSuchElementException;
  * file. The default delimiter is assumed to be the <code>,</code> (comma).
  * <p/>
  * <p/>
- * The class uses the CSV Parser engines from <a
- * href="http://ostermiller.org/utils/" target="_blank">Steven Ostermiller's
- * site</a>.
+ * The actual splitting of the CSV records is performed by a
+ * {@link CSVTokenizer tokenizer}. By default, the framework's
+ * {@link BufferedCSVTokenizer built-in tokenizer} is used. The CSV Parser
+ * engine from <a href="http://ostermiller.org/utils/" target="_blank">Steven
+ * Ostermiller's site</a> is available as an
+ * {@link ExcelCSVTokenizer alternative}.
  * </p>
  *
  * @author Anupam Sengupta
  * @version $Revision$
- * @see com.Ostermiller.util.CSVParse
+ * @see CSVTokenizer
  * @since 1.5
  */
 class CSVReader implements Iterable<List<String>> {
@@ -57,9 +57,9 @@ class CSVReader implements Iterable<List<String>> {
     protected static final Log LOG = LogFactory.getLog(CSVReader.class);
 
     /**
-     * The CSV parser engine.
+     * The CSV tokenizer engine.
      */
-    private transient CSVParse parser;
+    private transient CSVTokenizer tokenizer;
 
     /**
      * Flag which indicates whether the reader has read all the records.
@@ -71,20 +71,77 @@ class CSVReader implements Iterable<List<String>> {
      */
     private transient boolean headerPresent;
 
+    /**
+     * Flag which indicates whether the header row has been skipped.
+     */
+    private transient boolean headerSkipped;
+
+    /**
+     * Flag which indicates whether a single, reused row view is returned for
+     * all the CSV lines.
+     */
+    private transient boolean rowReused;
+
+    /**
+     * The view of the current CSV line, created on demand.
+     */
+    private transient List<String> currentRow;
+
+    /**
+     * The number of the next CSV record to read, excluding the header row.
+     */
+    private transient long recordNumber;
+
+    /**
+     * The failure to read the CSV stream which ended the reading early, if
+     * any.
+     */
+    private transient IOException readFailure;
+
     /**
      * Constructor which accepts a reader on the CSV stream to parse. The
      * presence of a CSV header row is also specified. If present, the header
-     * row will be skipped.
+     * row will be skipped. The built-in tokenizer is used for parsing.
      *
      * @param csvReader     the CSV stream reader from which to parse
      * @param headerPresent indicates whether the CSV stream has a header record
      */
     public CSVReader(final Reader csvReader, final boolean headerPresent) {
-        super();
-        this.headerPresent = headerPresent;
+        this(new BufferedCSVTokenizer(csvReader), headerPresent);
+    }
 
-        parser = new ExcelCSVParser(csvReader);
+    /**
+     * Constructor which accepts a reader on the CSV stream to parse, and
+     * optionally reads the stream ahead on a background thread. With the
+     * read ahead, the stream is read into a ring of large buffers while the
+     * current buffer is being tokenized, so that slow I/O overlaps with the
+     * parsing. The built-in tokenizer is used for parsing.
+     *
+     * @param csvReader     the CSV stream reader from which to parse
+     * @param headerPresent indicates whether the CSV stream has a header record
+     * @param readAhead     <code>true</code> to read the stream ahead on a
+     *                      background thread
+     * @see ReadAheadReader
+     */
+    public CSVReader(final Reader csvReader, final boolean headerPresent,
+                     final boolean readAhead) {
+        this(readAhead ? new ReadAheadReader(csvReader,
+                ReadAheadReader.DEFAULT_BUFFER_SIZE,
+                ReadAheadReader.DEFAULT_BUFFER_COUNT) : csvReader, headerPresent);
+    }
 
+    /**
+     * Constructor which accepts the tokenizer to use for parsing the CSV
+     * stream. The presence of a CSV header row is also specified. If present,
+     * the header row will be skipped.
+     *
+     * @param tokenizer     the CSV tokenizer engine to use
+     * @param headerPresent indicates whether the CSV stream has a header record
+     */
+    public CSVReader(final CSVTokenizer tokenizer, final boolean headerPresent) {
+        super();
+        this.headerPresent = headerPresent;
+        this.tokenizer = tokenizer;
     }
 
     /**
@@ -92,14 +149,14 @@ class CSVReader implements Iterable<List<String>> {
      */
     public void close() {
         try {
-            if (parser != null) {
-                parser.close();
+            if (tokenizer != null) {
+                tokenizer.close();
                 LOG.debug("Closed the CSV Reader");
             }
         } catch (final IOException e) {
             // Do nothing
         } finally {
-            parser = null;
+            tokenizer = null;
         }
     }
 
@@ -125,6 +182,180 @@ class CSVReader implements Iterable<List<String>> {
         return new LineIterator();
     }
 
+    /**
+     * Reads the next batch of CSV lines, and adds them to the specified list.
+     * Up to the specified number of lines are read, with a single call into
+     * the tokenizer per line, which avoids the per line iterator calls when
+     * the lines are consumed in batches anyway. Each line is returned as a
+     * new list of the CSV field values, irrespective of the
+     * {@link #isRowReused() reused row} mode.
+     * <p/>
+     * The batches continue from the last line read by this reader, and
+     * should not be interleaved with the use of an iterator.
+     * </p>
+     *
+     * @param lines    the list to which the lines are added
+     * @param maxLines the maximum number of lines to read
+     * @return the number of lines read, <code>0</code> if all the lines have
+     *         been read
+     */
+    public int nextBatch(final List<List<String>> lines, final int maxLines) {
+        int lineCount = 0;
+        while (lineCount < maxLines && nextLine()) {
+            lines.add(copyCurrentLine());
+            lineCount++;
+        }
+        return lineCount;
+    }
+
+    /**
+     * Reads the CSV lines, and passes each line to the specified visitor. The
+     * reader drives the loop, with a single call into the tokenizer per line.
+     * The reading continues till all the lines have been read, or till the
+     * visitor returns <code>false</code>.
+     * <p/>
+     * The visitor is passed a single, reused read-only view of the current
+     * line's fields, irrespective of the {@link #isRowReused() reused row}
+     * mode. The contents of the view are only valid during the visit, and the
+     * visitor should copy any values it retains.
+     * </p>
+     *
+     * @param visitor the visitor for the CSV lines
+     * @return the number of lines visited
+     */
+    public long forEachRow(final CSVRowVisitor<List<String>> visitor) {
+        final List<String> currentLine = getCurrentLine();
+        long lineCount = 0;
+        while (nextLine()) {
+            lineCount++;
+            if (!visitor.visit(currentLine)) {
+                break;
+            }
+        }
+        return lineCount;
+    }
+
+    /**
+     * Advances to the next CSV line, skipping the header row if present. The
+     * fields of the line are then available from the
+     * {@link #getCurrentLine() current line}.
+     *
+     * @return <code>true</code> if a line was read, <code>false</code> if all
+     *         the lines have been read
+     */
+    boolean nextLine() {
+        if (isHeaderPresent() && !headerSkipped) {
+            headerSkipped = true;
+            readLine();
+        }
+        if (readLine()) {
+            recordNumber++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of the next CSV record to read. The records are
+     * numbered from <code>0</code>, excluding the header row.
+     *
+     * @return the next record number
+     */
+    long getRecordNumber() {
+        return this.recordNumber;
+    }
+
+    /**
+     * Sets the number of the next CSV record to read, for a reader which
+     * does not start at the beginning of the CSV file.
+     *
+     * @param recordNumber the next record number
+     */
+    void setRecordNumber(final long recordNumber) {
+        this.recordNumber = recordNumber;
+    }
+
+    /**
+     * Returns the checkpoint after the last CSV record read. This is only
+     * supported for memory mapped CSV files, whose byte offsets are known.
+     *
+     * @return the checkpoint
+     * @throws IllegalStateException thrown if the CSV file is not memory
+     *                               mapped, or the reader is closed
+     */
+    CSVCheckpoint getCheckpoint() {
+        final CSVTokenizer currentTokenizer = getTokenizer();
+        if (!(currentTokenizer instanceof MappedCSVTokenizer)) {
+            throw new IllegalStateException(
+                    "Checkpoints are only supported for open memory mapped CSV files");
+        }
+        return new CSVCheckpoint(((MappedCSVTokenizer) currentTokenizer)
+                .getPosition(), recordNumber, !isHeaderPresent() || headerSkipped);
+    }
+
+    /**
+     * Returns a read-only view of the CSV line last read. The view is reused
+     * for all the lines, and its contents are only valid till the next line
+     * is read.
+     *
+     * @return the view of the current line
+     */
+    List<String> getCurrentLine() {
+        if (currentRow == null) {
+            currentRow = new CSVRowView(getTokenizer());
+        }
+        return currentRow;
+    }
+
+    /**
+     * Reads one CSV line using the CSV tokenizer engine. The parsed line
+     * fields are held by the tokenizer.
+     *
+     * @return <code>true</code> if a line was read, <code>false</code> if all
+     *         the lines have been read
+     */
+    private boolean readLine() {
+        if (isReadingComplete()) {
+            return false;
+        }
+        try {
+            if (getTokenizer().nextRecord()) {
+                return true;
+            }
+        } catch (final IOException e) {
+            LOG.warn("Error in reading a line from the CSV stream ", e);
+            readFailure = e;
+        }
+        readingIsComplete();
+        return false;
+    }
+
+    /**
+     * Returns the failure to read the CSV stream which ended the reading
+     * before the end of the stream (e.g., a truncated compressed file).
+     *
+     * @return the read failure, or <code>null</code> if the stream has been
+     *         read without errors so far
+     */
+    IOException getReadFailure() {
+        return this.readFailure;
+    }
+
+    /**
+     * Returns a copy of the field values of the CSV line last read.
+     *
+     * @return the list of the CSV field values
+     */
+    private List<String> copyCurrentLine() {
+        final CSVTokenizer currentTokenizer = getTokenizer();
+        final int fieldCount = currentTokenizer.getFieldCount();
+        final List<String> valueList = new ArrayList<String>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            valueList.add(currentTokenizer.getField(i));
+        }
+        return valueList;
+    }
+
     // ~ Inner Classes
     // ----------------------------------------------------------
 
@@ -134,23 +365,21 @@ class CSVReader implements Iterable<List<String>> {
     private class LineIterator implements Iterator<List<String>> {
 
         /**
-         * The parsed CSV field values.
+         * Flag indicating whether the previous line was read.
          */
-        private transient String[] parsedValues;
+        private transient boolean haveReadPreviousLine;
 
         /**
-         * Flag indicating whether the previous line was read.
+         * The reused row view, if the reader is in the reused row mode.
          */
-        private transient boolean haveReadPreviousLine;
+        private final List<String> rowView;
 
         /**
          * Default Constructor.
          */
         public LineIterator() {
             super();
-            if (isHeaderPresent()) {
-                readOneLine();
-            }
+            rowView = isRowReused() ? getCurrentLine() : null;
         }
 
         /**
@@ -165,10 +394,9 @@ class CSVReader implements Iterable<List<String>> {
             }
 
             if (!haveReadPreviousLine) {
-                readOneLine();
-                haveReadPreviousLine = true;
+                haveReadPreviousLine = nextLine();
             }
-            return !isReadingComplete();
+            return haveReadPreviousLine;
         }
 
         /**
@@ -181,37 +409,14 @@ class CSVReader implements Iterable<List<String>> {
 
             if (haveReadPreviousLine) {
                 haveReadPreviousLine = false;
-            } else {
-                readOneLine();
-            }
-
-            if (isReadingComplete()) {
+            } else if (!nextLine()) {
                 throw new NoSuchElementException();
             }
 
-            final List<String> valueList = new ArrayList<String>(
-                    parsedValues.length);
-            CollectionUtils.addAll(valueList, parsedValues);
-
-            return valueList;
-
-        }
-
-        /**
-         * Reads one CSV line using the CSV parser engine and stores the parsed
-         * line fields.
-         */
-        private void readOneLine() {
-            try {
-                parsedValues = getParser().getLine();
-                if (parsedValues == null) {
-                    readingIsComplete();
-                }
-            } catch (final IOException e) {
-                LOG.warn("Error in reading a line from the CSV stream ", e);
-                readingIsComplete();
+            if (rowView != null) {
+                return rowView;
             }
-
+            return copyCurrentLine();
         }
 
         /**
@@ -236,6 +441,34 @@ class CSVReader implements Iterable<List<String>> {
         return this.headerPresent;
     }
 
+    /**
+     * Indicates whether the reader's iterators return a single, reused row
+     * view for all the CSV lines, instead of a new list for each line.
+     * <p/>
+     * The reused row is a read-only view of the current line's fields, and its
+     * contents are only valid till the next call to <code>hasNext()</code> or
+     * <code>next()</code> on the iterator. The view avoids copying the field
+     * values per line, and fields which are never accessed need not be
+     * decoded at all. Callers which retain the lines should not use this mode.
+     * </p>
+     *
+     * @return Returns <code>true</code> if a single row view is reused
+     */
+    public boolean isRowReused() {
+        return this.rowReused;
+    }
+
+    /**
+     * Sets the flag which indicates whether the iterators created subsequently
+     * return a single, reused row view for all the CSV lines.
+     *
+     * @param rowReused <code>true</code> to reuse a single row view
+     * @see #isRowReused()
+     */
+    public void setRowReused(final boolean rowReused) {
+        this.rowReused = rowReused;
+    }
+
     /**
      * Indicates whether the reader has read all CSV lines.
      *
@@ -253,11 +486,11 @@ class CSVReader implements Iterable<List<String>> {
     }
 
     /**
-     * Returns the internal CSV parser engine instance for this reader.
+     * Returns the internal CSV tokenizer engine instance for this reader.
      *
-     * @return Returns the parser instance
+     * @return Returns the tokenizer instance
      */
-    protected CSVParse getParser() {
-        return this.parser;
+    protected CSVTokenizer getTokenizer() {
+        return this.tokenizer;
     }
 }
@@ -27,6 +27,9 @@ import org.apache.commons.logging.LogFactory;
 
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -143,4 +146,107 @@ public class CSVReaderTest
         reader.close();
     }
 
+    /**
+     * Test the reader's iterator() method in the reused row mode.
+     */
+    public final void testIteratorWithReusedRow() {
+        final CSVReader reader = new CSVReader(csvReader, false);
+        reader.setRowReused(true);
+        assertTrue("The row should be reused", reader.isRowReused());
+
+        final Iterator<List<String>> iter = reader.iterator();
+        assertTrue("The CSV header line should have been returned", iter.hasNext());
+        final List<String> header = iter.next();
+        assertEquals("The header field does not match", "Employee ID", header.get(1));
+
+        assertTrue("The CSV data line should have been returned", iter.hasNext());
+        final List<String> line = iter.next();
+        assertSame("The same row view should have been returned", header, line);
+        assertEquals("The field count does not match", 9, line.size());
+        assertEquals("The data field does not match", "123456", line.get(1));
+        try {
+            line.add("value");
+            fail("The row view should be read-only");
+        } catch (final UnsupportedOperationException e) {
+            // Do nothing
+        }
+        assertFalse("No more lines should be present", iter.hasNext());
+        reader.close();
+    }
+
+    /**
+     * Returns the expected lines of the sample CSV content, without the
+     * header.
+     *
+     * @return the expected lines
+     */
+    private List<List<String>> createExpectedLines() {
+        final List<List<String>> expectedLines = new ArrayList<List<String>>();
+        expectedLines.add(Arrays.asList("a", "1"));
+        expectedLines.add(Arrays.asList("b", "2"));
+        expectedLines.add(Arrays.asList("c", "3"));
+        return expectedLines;
+    }
+
+    /**
+     * Test the reader's nextBatch() method.
+     */
+    public final void testNextBatch() {
+        final CSVReader reader = new CSVReader(new StringReader(
+                "H1,H2\na,1\nb,2\nc,3\n"), true);
+        final List<List<String>> lines = new ArrayList<List<String>>();
+        assertEquals("The first batch size does not match", 2,
+                reader.nextBatch(lines, 2));
+        assertEquals("The second batch size does not match", 1,
+                reader.nextBatch(lines, 2));
+        assertEquals("No more lines should be present", 0,
+                reader.nextBatch(lines, 2));
+        assertEquals("The lines do not match", createExpectedLines(), lines);
+        reader.close();
+    }
+
+    /**
+     * Test the reader's forEachRow() method.
+     */
+    public final void testForEachRow() {
+        final CSVReader reader = new CSVReader(new StringReader(
+                "H1,H2\na,1\nb,2\nc,3\n"), true);
+        final List<String> values = new ArrayList<String>();
+        assertEquals("The visited line count does not match", 2,
+                reader.forEachRow(new CSVRowVisitor<List<String>>() {
+                    public boolean visit(final List<String> row) {
+                        values.add(row.get(0));
+                        return !row.get(1).equals("2");
+                    }
+                }));
+        assertEquals("The visited lines do not match", Arrays.asList("a", "b"),
+                values);
+        values.clear();
+
+        assertEquals("The remaining line count does not match", 1,
+                reader.forEachRow(new CSVRowVisitor<List<String>>() {
+                    public boolean visit(final List<String> row) {
+                        values.add(row.get(0));
+                        return true;
+                    }
+                }));
+        assertEquals("The remaining lines do not match", Arrays.asList("c"),
+                values);
+        reader.close();
+    }
+
+    /**
+     * Test the reader with the stream read ahead.
+     */
+    public final void testReadAhead() {
+        final CSVReader reader = new CSVReader(new StringReader(
+                "H1,H2\na,1\nb,2\nc,3\n"), true, true);
+        final List<List<String>> lines = new ArrayList<List<String>>();
+        for (List<String> line : reader) {
+            lines.add(line);
+        }
+        assertEquals("The lines do not match", createExpectedLines(), lines);
+        reader.close();
+    }
+
 }
@@ -0,0 +1,426 @@
+/*
+ * CSVRecordIndex.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * An index of the file offsets of the CSV records in a large CSV file, which
+ * allows parsing to start at any record without scanning the file from the
+ * start. The offset of every <em>n</em>th record is recorded, where
+ * <em>n</em> is the {@link #getInterval() interval} of the index; a seek to a
+ * record therefore scans at most <em>n - 1</em> records.
+ * <p/>
+ * The records are numbered from <code>0</code>, excluding the header row (if
+ * present). The index is stored in a sidecar file next to the CSV file, and
+ * records the size and modification time of the CSV file when it was built.
+ * An index for a CSV file which has since changed is
+ * {@link #isCurrent() stale}, and is ignored on {@link #load(String) loading}.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParserFactory#getCSVParser(String,String,long)
+ * @since 1.5
+ */
+public final class CSVRecordIndex {
+
+    /**
+     * The default interval between the indexed records.
+     */
+    public static final int DEFAULT_INTERVAL = 1024;
+
+    /**
+     * The suffix of the index sidecar file name.
+     */
+    public static final String INDEX_FILE_SUFFIX = ".idx";
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory.getLog(CSVRecordIndex.class);
+
+    /**
+     * The magic number of the index file format.
+     */
+    private static final int MAGIC = 0x43535649;
+
+    /**
+     * The version of the index file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The indexed CSV file.
+     */
+    private final String csvFileName;
+
+    /**
+     * The size of the CSV file when indexed.
+     */
+    private final long fileSize;
+
+    /**
+     * The modification time of the CSV file when indexed.
+     */
+    private final long lastModified;
+
+    /**
+     * Indicates whether the CSV file has a header row.
+     */
+    private final boolean headerPresent;
+
+    /**
+     * The interval between the indexed records.
+     */
+    private final int interval;
+
+    /**
+     * The total number of records.
+     */
+    private final long recordCount;
+
+    /**
+     * The file offsets of every <em>interval</em>th record.
+     */
+    private final long[] offsets;
+
+    /**
+     * Constructor for CSVRecordIndex.
+     *
+     * @param csvFileName   the indexed CSV file
+     * @param fileSize      the size of the CSV file when indexed
+     * @param lastModified  the modification time of the CSV file when indexed
+     * @param headerPresent indicates whether the CSV file has a header row
+     * @param interval      the interval between the indexed records
+     * @param recordCount   the total number of records
+     * @param offsets       the offsets of the indexed records
+     */
+    private CSVRecordIndex(final String csvFileName, final long fileSize,
+                           final long lastModified, final boolean headerPresent,
+                           final int interval, final long recordCount,
+                           final long[] offsets) {
+        super();
+        this.csvFileName = csvFileName;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.headerPresent = headerPresent;
+        this.interval = interval;
+        this.recordCount = recordCount;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Builds the index for the specified CSV file, by scanning all its
+     * records. The field values are not decoded.
+     *
+     * @param csvFileName   the CSV file in the file system to index
+     * @param charset       the charset of the CSV file, which must be ASCII
+     *                      compatible
+     * @param headerPresent indicates whether the CSV file has a header row
+     * @param interval      the interval between the indexed records
+     * @return the index
+     * @throws IOException thrown if the CSV file cannot be read
+     */
+    public static CSVRecordIndex build(final String csvFileName,
+                                       final Charset charset,
+                                       final boolean headerPresent,
+                                       final int interval)
+            throws IOException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("The interval should be positive");
+        }
+        final File csvFile = new File(csvFileName);
+        final long fileSize = csvFile.length();
+        final long lastModified = csvFile.lastModified();
+
+        final MappedCSVTokenizer tokenizer = new MappedCSVTokenizer(
+                csvFileName, charset);
+        long[] offsets = new long[16];
+        int offsetCount = 0;
+        long recordCount = 0;
+        try {
+            tokenizer.setProjection(new boolean[0]);
+            tokenizer.skipBlankLines();
+            if (headerPresent && tokenizer.nextRecord()) {
+                tokenizer.skipBlankLines();
+            }
+            for (;;) {
+                final long offset = tokenizer.getPosition();
+                if (!tokenizer.nextRecord()) {
+                    break;
+                }
+                if (recordCount % interval == 0) {
+                    if (offsetCount == offsets.length) {
+                        final long[] grown = new long[offsets.length * 2];
+                        System.arraycopy(offsets, 0, grown, 0, offsetCount);
+                        offsets = grown;
+                    }
+                    offsets[offsetCount++] = offset;
+                }
+                recordCount++;
+                tokenizer.skipBlankLines();
+            }
+        } finally {
+            tokenizer.close();
+        }
+
+        final long[] indexOffsets = new long[offsetCount];
+        System.arraycopy(offsets, 0, indexOffsets, 0, offsetCount);
+        LOG.debug("Indexed " + recordCount + " records of the CSV file: "
+                + csvFileName);
+        return new CSVRecordIndex(csvFileName, fileSize, lastModified,
+                headerPresent, interval, recordCount, indexOffsets);
+    }
+
+    /**
+     * Loads the index of the specified CSV file from its sidecar file.
+     *
+     * @param csvFileName the indexed CSV file
+     * @return the index, or <code>null</code> if the index file does not
+     *         exist, cannot be read, or is stale
+     */
+    public static CSVRecordIndex load(final String csvFileName) {
+        final File indexFile = getIndexFile(csvFileName);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        DataInputStream inStream = null;
+        try {
+            inStream = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(indexFile)));
+            if (inStream.readInt() != MAGIC || inStream.readInt() != VERSION) {
+                LOG.debug("Ignoring the unknown index file: " + indexFile);
+                return null;
+            }
+            final long fileSize = inStream.readLong();
+            final long lastModified = inStream.readLong();
+            final boolean headerPresent = inStream.readBoolean();
+            final int interval = inStream.readInt();
+            final long recordCount = inStream.readLong();
+            final long[] offsets = new long[inStream.readInt()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = inStream.readLong();
+            }
+
+            final CSVRecordIndex index = new CSVRecordIndex(csvFileName,
+                    fileSize, lastModified, headerPresent, interval,
+                    recordCount, offsets);
+            if (!index.isCurrent()) {
+                LOG.debug("Ignoring the stale index file: " + indexFile);
+                return null;
+            }
+            return index;
+        } catch (final IOException e) {
+            LOG.debug("Ignoring the unreadable index file: " + indexFile, e);
+            return null;
+        } finally {
+            if (inStream != null) {
+                try {
+                    inStream.close();
+                } catch (final IOException e) {
+                    // Do nothing
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves this index to the sidecar file of the CSV file.
+     *
+     * @throws IOException thrown if the index file cannot be written
+     */
+    public void save() throws IOException {
+        final DataOutputStream outStream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(
+                        getIndexFile(csvFileName))));
+        try {
+            outStream.writeInt(MAGIC);
+            outStream.writeInt(VERSION);
+            outStream.writeLong(fileSize);
+            outStream.writeLong(lastModified);
+            outStream.writeBoolean(headerPresent);
+            outStream.writeInt(interval);
+            outStream.writeLong(recordCount);
+            outStream.writeInt(offsets.length);
+            for (long offset : offsets) {
+                outStream.writeLong(offset);
+            }
+        } finally {
+            outStream.close();
+        }
+    }
+
+    /**
+     * Returns the sidecar index file of the specified CSV file.
+     *
+     * @param csvFileName the CSV file
+     * @return the index file
+     */
+    public static File getIndexFile(final String csvFileName) {
+        return new File(csvFileName + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Indicates whether this index is current, i.e., whether the size and
+     * the modification time of the CSV file are unchanged since the index
+     * was built.
+     *
+     * @return <code>true</code> if the index is current
+     */
+    public boolean isCurrent() {
+        final File csvFile = new File(csvFileName);
+        return csvFile.isFile() && csvFile.length() == fileSize
+                && csvFile.lastModified() == lastModified;
+    }
+
+    /**
+     * Returns the file offset of the nearest indexed record at or before the
+     * specified record. Use {@link #getIndexedRecord(long)} to find the
+     * number of that indexed record.
+     *
+     * @param recordNumber the record number, starting from <code>0</code>
+     * @return the file offset, or the file size if the record is beyond the
+     *         last record
+     */
+    public long getOffset(final long recordNumber) {
+        if (recordNumber < 0) {
+            throw new IllegalArgumentException("The record number should not be negative");
+        }
+        if (recordNumber >= recordCount) {
+            return fileSize;
+        }
+        return offsets[(int) (recordNumber / interval)];
+    }
+
+    /**
+     * Returns the number of the nearest indexed record at or before the
+     * specified record.
+     *
+     * @param recordNumber the record number, starting from <code>0</code>
+     * @return the indexed record number
+     * @see #getOffset(long)
+     */
+    public long getIndexedRecord(final long recordNumber) {
+        if (recordNumber >= recordCount) {
+            return recordCount;
+        }
+        return recordNumber - recordNumber % interval;
+    }
+
+    /**
+     * Returns the indexed CSV file.
+     *
+     * @return the CSV file name
+     */
+    public String getCsvFileName() {
+        return this.csvFileName;
+    }
+
+    /**
+     * Indicates whether the header row of the CSV file was skipped when
+     * indexing.
+     *
+     * @return <code>true</code> if the CSV file has a header row
+     */
+    public boolean isHeaderPresent() {
+        return this.headerPresent;
+    }
+
+    /**
+     * Returns the interval between the indexed records.
+     *
+     * @return the index interval
+     */
+    public int getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * Returns the total number of records in the CSV file, excluding the
+     * header row.
+     *
+     * @return the record count
+     */
+    public long getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Dumps the index. This is meant for <strong>debugging</strong> only.
+     *
+     * @return the string representation of this index
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "CSVRecordIndex[" + csvFileName + ", records: " + recordCount
+                + ", interval: " + interval + "]";
+    }
+
+    /**
+     * Returns the index of the specified CSV file, loading it from the
+     * sidecar file if current, or building (and saving) it otherwise. A
+     * failure to save the index is logged, and otherwise ignored.
+     *
+     * @param csvFileName   the CSV file in the file system
+     * @param charset       the charset of the CSV file, which must be ASCII
+     *                      compatible
+     * @param headerPresent indicates whether the CSV file has a header row
+     * @return the current index
+     * @throws IOException thrown if the CSV file cannot be read
+     */
+    static CSVRecordIndex getCurrentIndex(final String csvFileName,
+                                          final Charset charset,
+                                          final boolean headerPresent)
+            throws IOException {
+        if (!new File(csvFileName).isFile()) {
+            throw new FileNotFoundException("The CSV File: " + csvFileName
+                    + " was not found");
+        }
+        final CSVRecordIndex loadedIndex = load(csvFileName);
+        if (loadedIndex != null && loadedIndex.isHeaderPresent() == headerPresent) {
+            return loadedIndex;
+        }
+        final CSVRecordIndex index = build(csvFileName, charset, headerPresent,
+                DEFAULT_INTERVAL);
+        try {
+            index.save();
+        } catch (final IOException e) {
+            LOG.warn("The index of the CSV file: " + csvFileName
+                    + " could not be saved", e);
+        }
+        return index;
+    }
+}
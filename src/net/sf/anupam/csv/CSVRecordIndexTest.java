@@ -0,0 +1,194 @@
+/*
+ * CSVRecordIndexTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+import test.net.sf.anupam.csv.beans.Person;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+/**
+ * CSVRecordIndexTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class CSVRecordIndexTest
+        extends TestCase {
+
+    /**
+     * The number of sample CSV records.
+     */
+    private static final int RECORD_COUNT = 5000;
+
+    /**
+     * The charset of the sample CSV file.
+     */
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    /**
+     * The sample CSV file.
+     */
+    private transient File csvFile;
+
+    /**
+     * Constructor for CSVRecordIndexTest.
+     *
+     * @param name name of the test
+     */
+    public CSVRecordIndexTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(CSVRecordIndexTest.class);
+    }
+
+    /**
+     * Creates the sample person CSV file.
+     *
+     * @throws Exception thrown if the file cannot be created
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        csvFile = File.createTempFile("persons", ".csv");
+        writeRecords("\r\n");
+    }
+
+    /**
+     * Deletes the sample CSV file and its index.
+     *
+     * @throws Exception thrown if the files cannot be deleted
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        CSVRecordIndex.getIndexFile(csvFile.getPath()).delete();
+        csvFile.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Writes the sample person records, with a quoted multi-line field in
+     * every record.
+     *
+     * @param lineBreak the line break to use
+     * @throws IOException thrown if the file cannot be written
+     */
+    private void writeRecords(final String lineBreak) throws IOException {
+        final StringBuilder content = new StringBuilder(
+                "FirstName,LastName,Location,Email,Provider").append(lineBreak);
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            content.append("John,Doe,\"Line 1").append(lineBreak).append(
+                    "Line 2\",p").append(i).append("@nowhere.com,Provider")
+                    .append(lineBreak);
+        }
+        final OutputStream outStream = new FileOutputStream(csvFile);
+        outStream.write(content.toString().getBytes(CHARSET.name()));
+        outStream.close();
+    }
+
+    /**
+     * Tests the building, saving and loading of the index.
+     *
+     * @throws IOException thrown if the index cannot be built
+     */
+    public void testBuild() throws IOException {
+        final CSVRecordIndex index = CSVRecordIndex.build(csvFile.getPath(),
+                CHARSET, true, 100);
+        assertEquals("The record count does not match", RECORD_COUNT,
+                index.getRecordCount());
+        assertEquals("The indexed record does not match", 2300,
+                index.getIndexedRecord(2345));
+        assertTrue("The offset should be within the file",
+                index.getOffset(2345) < csvFile.length());
+        assertEquals("The offset beyond the records should be the file size",
+                csvFile.length(), index.getOffset(RECORD_COUNT));
+        assertTrue("The index should be current", index.isCurrent());
+
+        index.save();
+        final CSVRecordIndex loadedIndex = CSVRecordIndex.load(csvFile.getPath());
+        assertNotNull("The saved index should be loaded", loadedIndex);
+        assertEquals("The loaded record count does not match", RECORD_COUNT,
+                loadedIndex.getRecordCount());
+        assertEquals("The loaded offset does not match", index.getOffset(2345),
+                loadedIndex.getOffset(2345));
+    }
+
+    /**
+     * Tests that a changed CSV file invalidates the index.
+     *
+     * @throws IOException thrown if the index cannot be built
+     */
+    public void testStaleIndex() throws IOException {
+        CSVRecordIndex.build(csvFile.getPath(), CHARSET, true, 100).save();
+        writeRecords("\n");
+        assertNull("The stale index should not be loaded", CSVRecordIndex
+                .load(csvFile.getPath()));
+    }
+
+    /**
+     * Tests that the factory parsers start at the requested record, and that
+     * the index follows the changes of the CSV file.
+     *
+     * @throws Exception thrown if there is a test failure
+     */
+    public void testSeek() throws Exception {
+        final CSVParserFactory factory = CSVParserFactory.getSingleton();
+        for (String lineBreak : new String[]{"\r\n", "\n"}) {
+            writeRecords(lineBreak);
+            for (long recordNumber : new long[]{0, 1, 1023, 1024, 2345, RECORD_COUNT - 1}) {
+                final CSVParser parser = factory.getCSVParser("personBean",
+                        csvFile.getPath(), recordNumber);
+                final Iterator<Object> beanIter = parser.iterator();
+                assertTrue("The record should be present", beanIter.hasNext());
+                final Person person = (Person) beanIter.next();
+                assertEquals("The seeked record does not match", "p"
+                        + recordNumber + "@nowhere.com", person.getEmailID()
+                        .getEmailID());
+                assertEquals("The multi-line field does not match",
+                        "Line 1" + lineBreak + "Line 2", person.getLocation());
+                parser.close();
+            }
+            assertTrue("The index file should be saved", CSVRecordIndex
+                    .getIndexFile(csvFile.getPath()).isFile());
+
+            final CSVParser parser = factory.getCSVParser("personBean",
+                    csvFile.getPath(), RECORD_COUNT);
+            assertFalse("No record should be present beyond the last record",
+                    parser.iterator().hasNext());
+            parser.close();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * CSVRowView.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list view over the fields of a tokenizer's current record. The
+ * view does not copy the field values, and reflects whichever record the
+ * tokenizer is currently positioned at.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVTokenizer
+ * @since 1.5
+ */
+final class CSVRowView extends AbstractList<String>
+        implements RandomAccess {
+
+    /**
+     * The tokenizer whose current record is viewed.
+     */
+    private final CSVTokenizer tokenizer;
+
+    /**
+     * Constructor for CSVRowView.
+     *
+     * @param tokenizer the tokenizer whose current record is viewed
+     */
+    CSVRowView(final CSVTokenizer tokenizer) {
+        super();
+        this.tokenizer = tokenizer;
+    }
+
+    /**
+     * Returns the field value at the specified position of the current record.
+     *
+     * @param index the field position
+     * @return the field value
+     * @see java.util.List#get(int)
+     */
+    @Override
+    public String get(final int index) {
+        return tokenizer.getField(index);
+    }
+
+    /**
+     * Returns the number of fields in the current record.
+     *
+     * @return the number of fields
+     * @see java.util.List#size()
+     */
+    @Override
+    public int size() {
+        return tokenizer.getFieldCount();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * CSVRowVisitor.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+/**
+ * A callback which is invoked for each row of a CSV file, by the push style
+ * parsing methods. The parser drives the loop over the CSV records, and
+ * invokes the visitor with each mapped bean, or with each raw line of CSV
+ * field values.
+ *
+ * @param <T> the type of the visited rows
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParser#parse(CSVRowVisitor)
+ * @since 1.5
+ */
+public interface CSVRowVisitor<T> {
+
+    /**
+     * Visits a row of the CSV file.
+     *
+     * @param row the mapped bean or the CSV line
+     * @return <code>true</code> to continue with the next row,
+     *         <code>false</code> to stop the parsing
+     */
+    boolean visit(final T row);
+}
@@ -0,0 +1,68 @@
+/*
+ * CSVSubscriber.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+/**
+ * A receiver of the mapped beans from a {@link CSVBeanPublisher publisher}.
+ * The methods follow the Reactive Streams <code>Subscriber</code> contract:
+ * {@link #onSubscribe(CSVSubscription) onSubscribe} is invoked first, followed
+ * by at most as many {@link #onNext(Object) onNext} calls as have been
+ * {@link CSVSubscription#request(long) requested}, followed by either
+ * {@link #onComplete() onComplete} or {@link #onError(Throwable) onError},
+ * unless the subscription is cancelled. The calls are never concurrent.
+ *
+ * @param <T> the type of the received items
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVBeanPublisher
+ * @since 1.5
+ */
+public interface CSVSubscriber<T> {
+
+    /**
+     * Invoked with the subscription, before any other method. No items are
+     * sent till they are requested via the subscription.
+     *
+     * @param subscription the subscription to request items with
+     */
+    void onSubscribe(final CSVSubscription subscription);
+
+    /**
+     * Invoked with the next item.
+     *
+     * @param item the next item
+     */
+    void onNext(final T item);
+
+    /**
+     * Invoked when the publisher fails. No further methods are invoked.
+     *
+     * @param throwable the failure
+     */
+    void onError(final Throwable throwable);
+
+    /**
+     * Invoked when all the items have been sent. No further methods are
+     * invoked.
+     */
+    void onComplete();
+}
@@ -0,0 +1,50 @@
+/*
+ * CSVSubscription.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+/**
+ * The link between a {@link CSVBeanPublisher publisher} and its
+ * {@link CSVSubscriber subscriber}, through which the subscriber signals its
+ * demand. The methods follow the Reactive Streams <code>Subscription</code>
+ * contract, and may be invoked from any thread.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVBeanPublisher
+ * @since 1.5
+ */
+public interface CSVSubscription {
+
+    /**
+     * Requests the specified number of additional items. The demand is
+     * cumulative, and a demand of <code>Long.MAX_VALUE</code> is unbounded.
+     *
+     * @param n the number of additional items, which must be positive
+     */
+    void request(final long n);
+
+    /**
+     * Cancels the subscription. No further items are sent, though items
+     * being sent may still arrive.
+     */
+    void cancel();
+}
@@ -0,0 +1,90 @@
+/*
+ * CSVTokenizer.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import java.io.IOException;
+
+/**
+ * The low level engine used by the {@link CSVReader CSVReader} to split the
+ * CSV stream into records and fields. A tokenizer is a cursor over the
+ * records of the stream: each call to {@link #nextRecord() nextRecord()}
+ * advances to the next record, whose fields can then be accessed by position
+ * until the following call.
+ * <p/>
+ * Implementations are not thread safe, and are meant for internal use within
+ * the framework only.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVReader
+ * @since 1.5
+ */
+interface CSVTokenizer {
+
+    /**
+     * Advances the tokenizer to the next CSV record. Blank lines are skipped.
+     *
+     * @return <code>true</code> if a record was read, <code>false</code> if
+     *         the end of the stream has been reached
+     * @throws IOException thrown if the underlying stream cannot be read
+     */
+    boolean nextRecord() throws IOException;
+
+    /**
+     * Returns the number of fields present in the current record.
+     *
+     * @return the number of fields in the current record
+     */
+    int getFieldCount();
+
+    /**
+     * Returns the value of the specified field in the current record. Field
+     * positions start at 0.
+     *
+     * @param position the field position
+     * @return the field value
+     */
+    String getField(final int position);
+
+    /**
+     * Restricts the fields which are materialized for each record. Only the
+     * fields whose position is flagged in the projection are returned as
+     * values; other fields within the projection return <code>null</code>.
+     * Fields positioned beyond the projection are not returned at all, and
+     * the tokenizer skips straight to the next record after the last
+     * projected field. A <code>null</code> projection returns all fields.
+     * <p/>
+     * Tokenizers which cannot skip fields may ignore the projection.
+     * </p>
+     *
+     * @param projection the flags for the field positions to materialize
+     */
+    void setProjection(final boolean[] projection);
+
+    /**
+     * Closes the tokenizer and the underlying stream.
+     *
+     * @throws IOException thrown if the underlying stream cannot be closed
+     */
+    void close() throws IOException;
+}
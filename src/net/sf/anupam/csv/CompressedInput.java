@@ -0,0 +1,271 @@
+/*
+ * CompressedInput.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Detects compressed CSV streams by their magic bytes, and wraps them for
+ * decompression. The <em>gzip</em> format (including concatenated multi-member
+ * files) and the <em>zlib</em> wrapped <em>deflate</em> format are detected.
+ * <p/>
+ * Some zlib headers are also printable text (e.g., <code>x^</code>), so a
+ * stream with a zlib header is only treated as compressed if its leading
+ * bytes actually inflate.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParserFactory#getCSVParser(String,String,boolean)
+ * @since 1.5
+ */
+final class CompressedInput {
+
+    /**
+     * The size of the compressed input buffers.
+     */
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory.getLog(CompressedInput.class);
+
+    /**
+     * The first magic byte of the gzip format.
+     */
+    private static final int GZIP_MAGIC_1 = 0x1f;
+
+    /**
+     * The second magic byte of the gzip format.
+     */
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    /**
+     * The zlib compression method and window size byte for deflate with a
+     * 32K window.
+     */
+    private static final int ZLIB_DEFLATE_32K = 0x78;
+
+    /**
+     * The number of leading bytes which are inflated to confirm a zlib
+     * header.
+     */
+    private static final int PROBE_SIZE = 512;
+
+    /**
+     * Constructor for CompressedInput. Private as this is a utility class.
+     */
+    private CompressedInput() {
+        super();
+    }
+
+    /**
+     * Indicates whether the specified leading bytes of a stream are the
+     * header of a compressed stream.
+     *
+     * @param first  the first byte
+     * @param second the second byte
+     * @return <code>true</code> if the stream is compressed
+     */
+    static boolean isCompressedHeader(final int first, final int second) {
+        if (first == GZIP_MAGIC_1 && second == GZIP_MAGIC_2) {
+            return true;
+        }
+        // Only the flag bytes written by the standard compression levels are
+        // accepted, to avoid mistaking plain text for a zlib header
+        return first == ZLIB_DEFLATE_32K
+                && (second == 0x01 || second == 0x5e || second == 0x9c
+                || second == 0xda);
+    }
+
+    /**
+     * Indicates whether the specified file in the file system is compressed.
+     * Files which cannot be read are reported as not compressed, and fail
+     * when they are actually opened.
+     *
+     * @param fileName the file to check
+     * @return <code>true</code> if the file is compressed
+     */
+    static boolean isCompressedFile(final String fileName) {
+        InputStream inStream = null;
+        try {
+            inStream = new BufferedInputStream(new FileInputStream(fileName),
+                    PROBE_SIZE);
+            return isCompressed(inStream);
+        } catch (final IOException e) {
+            return false;
+        } finally {
+            if (inStream != null) {
+                try {
+                    inStream.close();
+                } catch (final IOException e) {
+                    // Do nothing
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a decompressing stream for the specified stream if it is
+     * compressed, or a (buffered) stream with the original content otherwise.
+     * Use {@link #isDecompressing(InputStream)} to check which of the two was
+     * returned.
+     *
+     * @param inStream the stream to read
+     * @return the decompressing or the original stream
+     */
+    static InputStream decompress(final InputStream inStream) {
+        final InputStream buffered = inStream.markSupported() ? inStream
+                : new BufferedInputStream(inStream, BLOCK_SIZE);
+        final boolean gzip;
+        try {
+            if (!isCompressed(buffered)) {
+                return buffered;
+            }
+            buffered.mark(1);
+            gzip = buffered.read() == GZIP_MAGIC_1;
+            buffered.reset();
+        } catch (final IOException e) {
+            // The failure resurfaces when the stream is actually read
+            return buffered;
+        }
+
+        try {
+            if (gzip) {
+                LOG.debug("Decompressing the gzip CSV stream");
+                return new GZIPInputStream(buffered, BLOCK_SIZE);
+            }
+            LOG.debug("Decompressing the deflate CSV stream");
+            return new InflaterInputStream(buffered,
+                    new Inflater(), BLOCK_SIZE);
+        } catch (final IOException e) {
+            LOG.warn("The compressed CSV stream is corrupt", e);
+            try {
+                buffered.close();
+            } catch (final IOException closeException) {
+                // Do nothing
+            }
+            throw new IllegalArgumentException("The compressed CSV stream is corrupt: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Indicates whether the specified stream starts with compressed data.
+     * The leading bytes are read ahead, and the stream is reset to its
+     * start.
+     *
+     * @param buffered the stream to check, which must support marks
+     * @return <code>true</code> if the stream is compressed
+     * @throws IOException thrown if the stream cannot be read
+     */
+    private static boolean isCompressed(final InputStream buffered)
+            throws IOException {
+        final byte[] probe = new byte[PROBE_SIZE];
+        buffered.mark(PROBE_SIZE);
+        try {
+            int length = readFully(buffered, probe, 0, 2);
+            if (length < 2 || !isCompressedHeader(probe[0] & 0xff,
+                    probe[1] & 0xff)) {
+                return false;
+            }
+            if ((probe[0] & 0xff) == GZIP_MAGIC_1) {
+                return true;
+            }
+            length += readFully(buffered, probe, length, PROBE_SIZE - length);
+            return inflates(probe, length);
+        } finally {
+            buffered.reset();
+        }
+    }
+
+    /**
+     * Reads bytes from the stream till the specified number of bytes are
+     * read, or the end of the stream is reached.
+     *
+     * @param inStream the stream to read
+     * @param buffer   the buffer to read into
+     * @param offset   the offset to start storing at
+     * @param length   the number of bytes to read
+     * @return the number of bytes read
+     * @throws IOException thrown if the stream cannot be read
+     */
+    private static int readFully(final InputStream inStream,
+                                 final byte[] buffer, final int offset,
+                                 final int length) throws IOException {
+        int total = 0;
+        int count;
+        while (total < length && (count = inStream.read(buffer, offset + total,
+                length - total)) >= 0) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Indicates whether the specified leading bytes of a zlib stream inflate
+     * without errors.
+     *
+     * @param probe  the leading bytes, including the zlib header
+     * @param length the number of leading bytes
+     * @return <code>true</code> if the bytes are valid zlib data
+     */
+    private static boolean inflates(final byte[] probe, final int length) {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(probe, 0, length);
+            final byte[] output = new byte[PROBE_SIZE];
+            while (!inflater.finished() && !inflater.needsInput()
+                    && !inflater.needsDictionary()) {
+                inflater.inflate(output);
+            }
+            return true;
+        } catch (final DataFormatException e) {
+            LOG.debug("The CSV stream starts like zlib data, but is plain text");
+            return false;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Indicates whether the specified stream, as returned by
+     * {@link #decompress(InputStream)}, is decompressing.
+     *
+     * @param inStream the stream returned by {@link #decompress(InputStream)}
+     * @return <code>true</code> if the stream is decompressing
+     */
+    static boolean isDecompressing(final InputStream inStream) {
+        return inStream instanceof InflaterInputStream;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * ExcelCSVTokenizer.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import com.Ostermiller.util.CSVParse;
+import com.Ostermiller.util.ExcelCSVParser;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A {@link CSVTokenizer tokenizer} which delegates to the Excel CSV parser
+ * engine from <a href="http://ostermiller.org/utils/" target="_blank">Steven
+ * Ostermiller's site</a>. This was the original parsing engine of the
+ * framework, and is retained as an alternative to the
+ * {@link BufferedCSVTokenizer built-in tokenizer}.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see com.Ostermiller.util.ExcelCSVParser
+ * @since 1.5
+ */
+final class ExcelCSVTokenizer
+        implements CSVTokenizer {
+
+    /**
+     * The CSV parser engine.
+     */
+    private transient CSVParse parser;
+
+    /**
+     * The parsed CSV field values of the current record.
+     */
+    private transient String[] parsedValues;
+
+    /**
+     * Constructor which accepts a reader on the CSV stream to parse.
+     *
+     * @param csvReader the CSV stream reader from which to parse
+     */
+    ExcelCSVTokenizer(final Reader csvReader) {
+        super();
+        parser = new ExcelCSVParser(csvReader);
+    }
+
+    /**
+     * Reads the next CSV record using the Ostermiller parser engine.
+     *
+     * @return <code>true</code> if a record was read
+     * @throws IOException thrown if the CSV stream cannot be read
+     * @see CSVTokenizer#nextRecord()
+     */
+    public boolean nextRecord() throws IOException {
+        parsedValues = parser.getLine();
+        return parsedValues != null;
+    }
+
+    /**
+     * Returns the number of fields in the current record.
+     *
+     * @return the number of fields
+     * @see CSVTokenizer#getFieldCount()
+     */
+    public int getFieldCount() {
+        return (parsedValues == null) ? 0 : parsedValues.length;
+    }
+
+    /**
+     * Returns the field value at the specified position.
+     *
+     * @param position the field position
+     * @return the field value
+     * @see CSVTokenizer#getField(int)
+     */
+    public String getField(final int position) {
+        return parsedValues[position];
+    }
+
+    /**
+     * Ignores the projection, as the Ostermiller parser engine always parses
+     * all the fields of a record.
+     *
+     * @param projection the flags for the field positions to materialize
+     * @see CSVTokenizer#setProjection(boolean[])
+     */
+    public void setProjection(final boolean[] projection) {
+        // The parser engine cannot skip fields.
+    }
+
+    /**
+     * Closes the underlying parser engine.
+     *
+     * @throws IOException thrown if the stream cannot be closed
+     * @see CSVTokenizer#close()
+     */
+    public void close() throws IOException {
+        parsedValues = null;
+        parser.close();
+    }
+}
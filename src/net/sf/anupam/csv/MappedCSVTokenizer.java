@@ -0,0 +1,712 @@
+/*
+ * MappedCSVTokenizer.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * A {@link CSVTokenizer tokenizer} which memory maps the CSV file and splits
+ * the records directly from the mapped bytes. The file is mapped in windows,
+ * so that files larger than the addressable size of a single buffer can be
+ * parsed, and the file contents are never copied into heap buffers.
+ * <p/>
+ * Only the byte ranges of the fields are recorded while scanning a record.
+ * A field is decoded into a <code>String</code> only when it is actually
+ * {@link #getField(int) accessed}, and fields consisting of plain ASCII bytes
+ * bypass the charset decoder altogether.
+ * </p>
+ * <p/>
+ * Since the delimiters are located at the byte level, the tokenizer can only
+ * be used with {@link #isAsciiCompatible(Charset) ASCII compatible} charsets.
+ * The parsing rules are the same as for the
+ * {@link BufferedCSVTokenizer built-in tokenizer}.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see BufferedCSVTokenizer
+ * @since 1.5
+ */
+final class MappedCSVTokenizer
+        implements CSVTokenizer {
+
+    /**
+     * The default size of the mapped window.
+     */
+    static final int DEFAULT_WINDOW_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * The initial capacity of the field arrays.
+     */
+    private static final int INITIAL_FIELD_CAPACITY = 16;
+
+    /**
+     * The field delimiter.
+     */
+    private static final byte DELIMITER = ',';
+
+    /**
+     * The quote character.
+     */
+    private static final byte QUOTE = '"';
+
+    /**
+     * The carriage return character.
+     */
+    private static final byte CR = '\r';
+
+    /**
+     * The line feed character.
+     */
+    private static final byte LF = '\n';
+
+    /**
+     * Field flag indicating that the field has bytes outside the ASCII range.
+     */
+    private static final int NON_ASCII = 1;
+
+    /**
+     * Field flag indicating that the field has escaped (doubled) quotes.
+     */
+    private static final int ESCAPED_QUOTES = 2;
+
+    /**
+     * Scan status: a complete record was scanned.
+     */
+    private static final int RECORD = 0;
+
+    /**
+     * Scan status: the end of the file was reached.
+     */
+    private static final int END_OF_FILE = 1;
+
+    /**
+     * Scan status: the record extends beyond the current window.
+     */
+    private static final int WINDOW_EXHAUSTED = 2;
+
+    /**
+     * The CSV special characters which need to be single byte, ASCII encoded
+     * for the tokenizer to work.
+     */
+    private static final String SPECIAL_CHARACTERS = ",\"\r\n";
+
+    /**
+     * The file channel being mapped.
+     */
+    private transient FileChannel channel;
+
+    /**
+     * The decoder for non ASCII field values.
+     */
+    private transient final CharsetDecoder decoder;
+
+    /**
+     * The size of the CSV file.
+     */
+    private transient long fileSize = -1;
+
+    /**
+     * The currently mapped window.
+     */
+    private transient MappedByteBuffer window;
+
+    /**
+     * A view of the current window used for decoding the field values.
+     */
+    private transient ByteBuffer decodeView;
+
+    /**
+     * The file offset from which the tokenizer starts scanning.
+     */
+    private transient long startOffset;
+
+    /**
+     * The file offset at which the current window starts.
+     */
+    private transient long windowOffset;
+
+    /**
+     * The number of bytes in the current window.
+     */
+    private transient int windowLimit;
+
+    /**
+     * The size of the windows to map.
+     */
+    private transient int windowSize;
+
+    /**
+     * The position of the next byte to scan in the current window.
+     */
+    private transient int position;
+
+    /**
+     * The start positions (in the current window) of the current record's fields.
+     */
+    private transient int[] fieldStarts;
+
+    /**
+     * The end positions (in the current window) of the current record's fields.
+     */
+    private transient int[] fieldEnds;
+
+    /**
+     * The scan flags of the current record's fields.
+     */
+    private transient int[] fieldFlags;
+
+    /**
+     * The decoded values of the current record's fields.
+     */
+    private transient String[] decodedFields;
+
+    /**
+     * The number of fields in the current record.
+     */
+    private transient int fieldCount;
+
+    /**
+     * The flags for the field positions to materialize, or <code>null</code>
+     * if all fields are to be materialized.
+     */
+    private transient boolean[] projection;
+
+    /**
+     * Scratch buffer for decoding the ASCII field values.
+     */
+    private transient char[] asciiChars;
+
+    /**
+     * Constructor which accepts the CSV file to map and the charset of the
+     * file. The {@link #DEFAULT_WINDOW_SIZE default window size} is used.
+     *
+     * @param csvFileName the CSV file to parse
+     * @param charset     the charset of the file
+     * @throws FileNotFoundException thrown if the file cannot be opened
+     */
+    MappedCSVTokenizer(final String csvFileName, final Charset charset)
+            throws FileNotFoundException {
+        this(csvFileName, charset, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructor which accepts the CSV file to map, the charset of the file
+     * and the size of the windows to map. The window grows automatically if a
+     * single record is larger than the window.
+     *
+     * @param csvFileName the CSV file to parse
+     * @param charset     the charset of the file
+     * @param windowSize  the size of the mapped windows
+     * @throws FileNotFoundException thrown if the file cannot be opened
+     */
+    MappedCSVTokenizer(final String csvFileName, final Charset charset,
+                       final int windowSize) throws FileNotFoundException {
+        this(csvFileName, charset, windowSize, 0L);
+    }
+
+    /**
+     * Constructor which accepts the CSV file to map, the charset of the file,
+     * the size of the windows to map and the file offset from which to start
+     * scanning. The offset should be the start of a CSV record, or should be
+     * aligned with {@link #skipPartialLine() skipPartialLine()}.
+     *
+     * @param csvFileName the CSV file to parse
+     * @param charset     the charset of the file
+     * @param windowSize  the size of the mapped windows
+     * @param startOffset the file offset from which to start scanning
+     * @throws FileNotFoundException thrown if the file cannot be opened
+     */
+    MappedCSVTokenizer(final String csvFileName, final Charset charset,
+                       final int windowSize, final long startOffset)
+            throws FileNotFoundException {
+        super();
+        if (startOffset < 0) {
+            throw new IllegalArgumentException("Start offset should not be negative");
+        }
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size should be positive");
+        }
+        if (!isAsciiCompatible(charset)) {
+            throw new IllegalArgumentException("The charset " + charset
+                    + " is not ASCII compatible");
+        }
+        this.decoder = charset.newDecoder().onMalformedInput(
+                CodingErrorAction.REPLACE).onUnmappableCharacter(
+                CodingErrorAction.REPLACE);
+        this.windowSize = windowSize;
+        this.fieldStarts = new int[INITIAL_FIELD_CAPACITY];
+        this.fieldEnds = new int[INITIAL_FIELD_CAPACITY];
+        this.fieldFlags = new int[INITIAL_FIELD_CAPACITY];
+        this.decodedFields = new String[INITIAL_FIELD_CAPACITY];
+        this.asciiChars = new char[INITIAL_FIELD_CAPACITY];
+        this.startOffset = startOffset;
+        this.channel = new RandomAccessFile(csvFileName, "r").getChannel();
+    }
+
+    /**
+     * Indicates whether the specified charset encodes the CSV delimiter,
+     * quote and line break characters as the equivalent single ASCII bytes.
+     * This holds for the ASCII, ISO-8859 and UTF-8 family of charsets, but
+     * not for the UTF-16 or UTF-32 charsets.
+     *
+     * @param charset the charset to check
+     * @return <code>true</code> if the charset is ASCII compatible
+     */
+    static boolean isAsciiCompatible(final Charset charset) {
+        if (charset == null || !charset.canEncode()) {
+            return false;
+        }
+        try {
+            final ByteBuffer encoded = charset.newEncoder().encode(
+                    CharBuffer.wrap(SPECIAL_CHARACTERS));
+            if (encoded.remaining() != SPECIAL_CHARACTERS.length()) {
+                return false;
+            }
+            for (int i = 0; i < SPECIAL_CHARACTERS.length(); i++) {
+                if (encoded.get(i) != SPECIAL_CHARACTERS.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (final CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Scans the next CSV record from the mapped file.
+     *
+     * @return <code>true</code> if a record was read
+     * @throws IOException thrown if the file cannot be mapped
+     * @see CSVTokenizer#nextRecord()
+     */
+    public boolean nextRecord() throws IOException {
+        clearRecord();
+        if (window == null) {
+            fileSize = channel.size();
+            mapWindow(Math.min(startOffset, fileSize));
+        }
+
+        for (;;) {
+            final int status = scanRecord();
+            if (status != WINDOW_EXHAUSTED) {
+                return status == RECORD;
+            }
+
+            // The record extends beyond the window: remap starting at the
+            // record, growing the window if the record does not fit at all.
+            if (position == 0) {
+                windowSize = (windowSize > Integer.MAX_VALUE / 2)
+                        ? Integer.MAX_VALUE
+                        : windowSize * 2;
+            }
+            mapWindow(windowOffset + position);
+            clearRecord();
+        }
+    }
+
+    /**
+     * Returns the number of fields in the current record.
+     *
+     * @return the number of fields
+     * @see CSVTokenizer#getFieldCount()
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns the field value at the specified position. The field is decoded
+     * on the first access.
+     *
+     * @param position the field position
+     * @return the field value
+     * @see CSVTokenizer#getField(int)
+     */
+    public String getField(final int position) {
+        if (position >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field position: " + position
+                    + ", Field count: " + fieldCount);
+        }
+        if (projection != null && !projection[position]) {
+            return null;
+        }
+        if (decodedFields[position] == null) {
+            decodedFields[position] = decodeField(position);
+        }
+        return decodedFields[position];
+    }
+
+    /**
+     * Restricts the fields which are returned for each record. The byte ranges
+     * of the fields beyond the projection are not recorded.
+     *
+     * @param projection the flags for the field positions to materialize
+     * @see CSVTokenizer#setProjection(boolean[])
+     */
+    public void setProjection(final boolean[] projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Returns the file offset at which the scan of the next record starts.
+     * This is the offset just after the current record.
+     *
+     * @return the file offset of the next record
+     */
+    long getPosition() {
+        if (window == null) {
+            return startOffset;
+        }
+        return windowOffset + position;
+    }
+
+    /**
+     * Advances the start offset to the beginning of the next line, unless the
+     * start offset is already at the beginning of a line. This must be invoked
+     * before the first record is scanned.
+     * <p/>
+     * Note that the next line need not be the start of a CSV record, as a
+     * quoted field can span multiple lines.
+     * </p>
+     *
+     * @throws IOException thrown if the file cannot be mapped
+     */
+    void skipPartialLine() throws IOException {
+        if (window != null) {
+            throw new IllegalStateException("Records have already been scanned");
+        }
+        if (startOffset == 0) {
+            return;
+        }
+
+        // A line starts at the offset if the preceding byte is a line break.
+        fileSize = channel.size();
+        mapWindow(Math.min(startOffset - 1, fileSize));
+        for (;;) {
+            if (position == windowLimit) {
+                if (isLastWindow()) {
+                    break;
+                }
+                mapWindow(windowOffset + windowLimit);
+            }
+            final byte b = window.get(position++);
+            if (b == CR || b == LF) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Advances the position past any line breaks, i.e., to the offset at
+     * which the next record actually starts. As blank lines are skipped
+     * anyway, this does not change the records parsed, but makes the
+     * positions comparable irrespective of the line break style. The current
+     * record is discarded.
+     *
+     * @throws IOException thrown if the file cannot be mapped
+     */
+    void skipBlankLines() throws IOException {
+        clearRecord();
+        if (window == null) {
+            fileSize = channel.size();
+            mapWindow(Math.min(startOffset, fileSize));
+        }
+        for (;;) {
+            if (position == windowLimit) {
+                if (isLastWindow()) {
+                    return;
+                }
+                mapWindow(windowOffset + windowLimit);
+            }
+            final byte b = window.get(position);
+            if (b != CR && b != LF) {
+                return;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Closes the mapped file.
+     *
+     * @throws IOException thrown if the file cannot be closed
+     * @see CSVTokenizer#close()
+     */
+    public void close() throws IOException {
+        clearRecord();
+        window = null;
+        decodeView = null;
+        channel.close();
+    }
+
+    /**
+     * Maps the window starting at the specified file offset.
+     *
+     * @param offset the file offset
+     * @throws IOException thrown if the file cannot be mapped
+     */
+    private void mapWindow(final long offset) throws IOException {
+        final int size = (int) Math.min(windowSize, fileSize - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        decodeView = window.duplicate();
+        windowOffset = offset;
+        windowLimit = size;
+        position = 0;
+    }
+
+    /**
+     * Indicates whether the current window extends to the end of the file.
+     *
+     * @return <code>true</code> if this is the last window
+     */
+    private boolean isLastWindow() {
+        return windowOffset + windowLimit >= fileSize;
+    }
+
+    /**
+     * Scans a record starting at the current position of the window. If the
+     * record could not be scanned completely, the position is left at the
+     * start of the record.
+     *
+     * @return the scan status
+     */
+    private int scanRecord() {
+        final MappedByteBuffer buf = window;
+        final int end = windowLimit;
+        int pos = position;
+
+        // Skip the blank lines before the record.
+        for (;;) {
+            if (pos == end) {
+                position = pos;
+                return isLastWindow() ? END_OF_FILE : WINDOW_EXHAUSTED;
+            }
+            final byte b = buf.get(pos);
+            if (b != CR && b != LF) {
+                break;
+            }
+            pos++;
+        }
+        final int recordStart = pos;
+
+        for (;;) {
+            if (pos == end) {
+                if (!isLastWindow()) {
+                    position = recordStart;
+                    return WINDOW_EXHAUSTED;
+                }
+                // A trailing delimiter at the end of the file.
+                addField(pos, pos, 0);
+                position = pos;
+                return RECORD;
+            }
+
+            byte b = buf.get(pos);
+            if (b == DELIMITER) {
+                addField(pos, pos, 0);
+                pos++;
+                continue;
+            }
+            if (b == CR || b == LF) {
+                addField(pos, pos, 0);
+                position = pos + 1;
+                return RECORD;
+            }
+
+            if (b != QUOTE) {
+                // An unquoted field
+                final int fieldStart = pos;
+                int flags = 0;
+                for (;;) {
+                    if (pos == end) {
+                        if (!isLastWindow()) {
+                            position = recordStart;
+                            return WINDOW_EXHAUSTED;
+                        }
+                        addField(fieldStart, pos, flags);
+                        position = pos;
+                        return RECORD;
+                    }
+                    b = buf.get(pos);
+                    if (b == DELIMITER) {
+                        addField(fieldStart, pos, flags);
+                        pos++;
+                        break;
+                    }
+                    if (b == CR || b == LF) {
+                        addField(fieldStart, pos, flags);
+                        position = pos + 1;
+                        return RECORD;
+                    }
+                    if (b < 0) {
+                        flags |= NON_ASCII;
+                    }
+                    pos++;
+                }
+                continue;
+            }
+
+            // A quoted field
+            final int fieldStart = ++pos;
+            int flags = 0;
+            for (;;) {
+                if (pos == end) {
+                    if (!isLastWindow()) {
+                        position = recordStart;
+                        return WINDOW_EXHAUSTED;
+                    }
+                    // Unterminated quote, the raw text is the value.
+                    addField(fieldStart - 1, pos, flags & NON_ASCII);
+                    position = pos;
+                    return RECORD;
+                }
+                b = buf.get(pos++);
+                if (b == QUOTE) {
+                    if (pos == end && !isLastWindow()) {
+                        position = recordStart;
+                        return WINDOW_EXHAUSTED;
+                    }
+                    if (pos == end || buf.get(pos) != QUOTE) {
+                        break;
+                    }
+                    flags |= ESCAPED_QUOTES;
+                    pos++;
+                } else if (b < 0) {
+                    flags |= NON_ASCII;
+                }
+            }
+            addField(fieldStart, pos - 1, flags);
+
+            // Skip any text after the closing quote.
+            for (;;) {
+                if (pos == end) {
+                    if (!isLastWindow()) {
+                        position = recordStart;
+                        return WINDOW_EXHAUSTED;
+                    }
+                    position = pos;
+                    return RECORD;
+                }
+                b = buf.get(pos++);
+                if (b == DELIMITER) {
+                    break;
+                }
+                if (b == CR || b == LF) {
+                    position = pos;
+                    return RECORD;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the byte range of a field of the current record.
+     *
+     * @param start the start position of the field in the window
+     * @param end   the end position (exclusive) of the field in the window
+     * @param flags the scan flags for the field
+     */
+    private void addField(final int start, final int end, final int flags) {
+        if (projection != null && fieldCount >= projection.length) {
+            return;
+        }
+        if (fieldCount == fieldStarts.length) {
+            final int capacity = fieldCount * 2;
+            final int[] grownStarts = new int[capacity];
+            final int[] grownEnds = new int[capacity];
+            final int[] grownFlags = new int[capacity];
+            final String[] grownDecoded = new String[capacity];
+            System.arraycopy(fieldStarts, 0, grownStarts, 0, fieldCount);
+            System.arraycopy(fieldEnds, 0, grownEnds, 0, fieldCount);
+            System.arraycopy(fieldFlags, 0, grownFlags, 0, fieldCount);
+            fieldStarts = grownStarts;
+            fieldEnds = grownEnds;
+            fieldFlags = grownFlags;
+            decodedFields = grownDecoded;
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldFlags[fieldCount] = flags;
+        fieldCount++;
+    }
+
+    /**
+     * Clears the fields of the current record.
+     */
+    private void clearRecord() {
+        Arrays.fill(decodedFields, 0, fieldCount, null);
+        fieldCount = 0;
+    }
+
+    /**
+     * Decodes the specified field of the current record.
+     *
+     * @param index the field position
+     * @return the decoded field value
+     */
+    private String decodeField(final int index) {
+        final int start = fieldStarts[index];
+        final int length = fieldEnds[index] - start;
+        if (length == 0) {
+            return "";
+        }
+
+        final String value;
+        if ((fieldFlags[index] & NON_ASCII) == 0) {
+            if (asciiChars.length < length) {
+                asciiChars = new char[Math.max(length, asciiChars.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                asciiChars[i] = (char) window.get(start + i);
+            }
+            value = new String(asciiChars, 0, length);
+        } else {
+            decodeView.limit(start + length).position(start);
+            try {
+                value = decoder.decode(decodeView).toString();
+            } catch (final CharacterCodingException e) {
+                // Cannot happen, as malformed input is replaced.
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+
+        if ((fieldFlags[index] & ESCAPED_QUOTES) == 0) {
+            return value;
+        }
+        return StringUtils.replace(value, "\"\"", "\"");
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * MappedCSVTokenizerTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MappedCSVTokenizerTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class MappedCSVTokenizerTest
+        extends TestCase {
+
+    /**
+     * Sample CSV content with quoted fields and non ASCII characters.
+     */
+    private static final String SAMPLE = "Sl,Name,City\r\n"
+            + "1,\"Doe, John\",M\u00fcnchen\n"
+            + "\n"
+            + "2,\"Jane \"\"JJ\"\" Doe\",\"S\u00e3o\nPaulo\" x\n"
+            + "3,,\"\u20ac\"\"\"\n"
+            + ",\"unterminated \"\" \u00e9";
+
+    /**
+     * The UTF-8 charset.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The temporary CSV file.
+     */
+    private transient File csvFile;
+
+    /**
+     * Constructor for MappedCSVTokenizerTest.
+     *
+     * @param name name of the test
+     */
+    public MappedCSVTokenizerTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(MappedCSVTokenizerTest.class);
+    }
+
+    /**
+     * Creates the temporary CSV file.
+     *
+     * @throws Exception thrown if the file cannot be created
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        csvFile = File.createTempFile("csvobjects", ".csv");
+        csvFile.deleteOnExit();
+    }
+
+    /**
+     * Deletes the temporary CSV file.
+     *
+     * @throws Exception thrown if the file cannot be deleted
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        csvFile.delete();
+    }
+
+    /**
+     * Writes the specified content to the temporary CSV file.
+     *
+     * @param content the CSV content
+     * @param charset the charset to encode the content with
+     * @throws IOException thrown if the file cannot be written
+     */
+    private void writeFile(final String content, final Charset charset)
+            throws IOException {
+        final OutputStream out = new FileOutputStream(csvFile);
+        try {
+            out.write(content.getBytes(charset.name()));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads all the records from the specified tokenizer.
+     *
+     * @param tokenizer the tokenizer to read from
+     * @return the list of records
+     * @throws IOException thrown if the tokenizer fails
+     */
+    private List<List<String>> readAll(final CSVTokenizer tokenizer)
+            throws IOException {
+        final List<List<String>> records = new ArrayList<List<String>>();
+        while (tokenizer.nextRecord()) {
+            final List<String> record = new ArrayList<String>();
+            for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+                record.add(tokenizer.getField(i));
+            }
+            records.add(record);
+        }
+        tokenizer.close();
+        return records;
+    }
+
+    /**
+     * Tests that the mapped tokenizer parses the same records as the buffered
+     * tokenizer, for a range of window sizes.
+     *
+     * @throws IOException thrown if the parsing fails
+     */
+    public void testSameAsBufferedTokenizer() throws IOException {
+        writeFile(SAMPLE, UTF8);
+        final List<List<String>> expected = readAll(new BufferedCSVTokenizer(
+                new StringReader(SAMPLE)));
+
+        for (int windowSize = 1; windowSize <= 32; windowSize++) {
+            assertEquals("The parsed records do not match for window size "
+                    + windowSize, expected, readAll(new MappedCSVTokenizer(
+                    csvFile.getPath(), UTF8, windowSize)));
+        }
+        assertEquals("The parsed records do not match", expected,
+                readAll(new MappedCSVTokenizer(csvFile.getPath(), UTF8)));
+    }
+
+    /**
+     * Tests that the mapped tokenizer returns the same projected fields as
+     * the buffered tokenizer.
+     *
+     * @throws IOException thrown if the parsing fails
+     */
+    public void testProjection() throws IOException {
+        final boolean[] projection = {true, false, true};
+        writeFile(SAMPLE, UTF8);
+        final CSVTokenizer buffered = new BufferedCSVTokenizer(
+                new StringReader(SAMPLE));
+        buffered.setProjection(projection);
+        final List<List<String>> expected = readAll(buffered);
+
+        for (int windowSize = 1; windowSize <= 32; windowSize++) {
+            final CSVTokenizer mapped = new MappedCSVTokenizer(
+                    csvFile.getPath(), UTF8, windowSize);
+            mapped.setProjection(projection);
+            assertEquals("The projected records do not match for window size "
+                    + windowSize, expected, readAll(mapped));
+        }
+    }
+
+    /**
+     * Tests the parsing of an empty file.
+     *
+     * @throws IOException thrown if the parsing fails
+     */
+    public void testEmptyFile() throws IOException {
+        final CSVTokenizer tokenizer = new MappedCSVTokenizer(csvFile.getPath(), UTF8);
+        assertFalse("No records should be present", tokenizer.nextRecord());
+        tokenizer.close();
+    }
+
+    /**
+     * Tests the alignment of a tokenizer started within the file to the next
+     * non blank line.
+     *
+     * @throws IOException thrown if the parsing fails
+     */
+    public void testSkipPartialLine() throws IOException {
+        final String content = "a,b\r\nc,d\ne,f";
+        writeFile(content, UTF8);
+        for (int windowSize = 1; windowSize <= 8; windowSize++) {
+            for (int offset = 0; offset <= content.length(); offset++) {
+                final MappedCSVTokenizer tokenizer = new MappedCSVTokenizer(
+                        csvFile.getPath(), UTF8, windowSize, offset);
+                assertEquals("The start position does not match", offset,
+                        tokenizer.getPosition());
+                tokenizer.skipPartialLine();
+                tokenizer.skipBlankLines();
+
+                final int expected;
+                if (offset == 0) {
+                    expected = 0;
+                } else if (offset <= 5) {
+                    expected = 5;
+                } else if (offset <= 9) {
+                    expected = 9;
+                } else {
+                    expected = content.length();
+                }
+                assertEquals("The aligned position does not match for offset "
+                        + offset + " and window size " + windowSize, expected,
+                        tokenizer.getPosition());
+                tokenizer.close();
+            }
+        }
+    }
+
+    /**
+     * Tests the charset compatibility check.
+     */
+    public void testIsAsciiCompatible() {
+        assertTrue("UTF-8 should be ASCII compatible",
+                MappedCSVTokenizer.isAsciiCompatible(UTF8));
+        assertTrue("ISO-8859-1 should be ASCII compatible",
+                MappedCSVTokenizer.isAsciiCompatible(Charset.forName("ISO-8859-1")));
+        assertFalse("UTF-16 should not be ASCII compatible",
+                MappedCSVTokenizer.isAsciiCompatible(Charset.forName("UTF-16")));
+    }
+}
@@ -0,0 +1,540 @@
+/*
+ * ParallelCSVParser.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses a single large CSV file concurrently, and returns the mapped POJO
+ * beans in the order of the CSV records. The file is split into chunks of
+ * bytes, and each chunk is memory mapped, tokenized and mapped to beans on a
+ * pool of worker threads.
+ * <p/>
+ * As quoted fields can span multiple lines, the start of a CSV record cannot
+ * be determined from the bytes around a split point alone. Each chunk is
+ * therefore parsed speculatively from the first line following its split
+ * point, up to the first record starting at or after the next split point.
+ * The chunks are then validated in order: if the previous chunk did not end
+ * exactly where the chunk was assumed to start (i.e., the assumed start was
+ * within a quoted field), the chunk is parsed again from the actual start.
+ * The results are thus always identical to parsing the file sequentially,
+ * and the re-parsing only happens for split points within multi-line fields.
+ * </p>
+ * <p/>
+ * Parsers are created by the
+ * {@link CSVParserFactory#getParallelCSVParser(String,String,int) factory}.
+ * The field formatters and bean setters must be thread safe.
+ * </p>
+ * <p/>
+ * Each iterator parses with its own pool of worker threads, which stop once
+ * the last chunk has been parsed. An iterator which is abandoned before that
+ * keeps its idle threads till the parser is {@link #close() closed}, another
+ * iterator is created, or the iterator is finalized; so callers which stop
+ * iterating early should close the parser.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParserFactory#getParallelCSVParser(String,String,int)
+ * @since 1.5
+ */
+public final class ParallelCSVParser
+        implements Iterable<Object> {
+
+    /**
+     * The default size of the chunks.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The minimum size of the mapped windows, so that small chunks do not
+     * require repeated remapping.
+     */
+    private static final int MIN_WINDOW_SIZE = 64 * 1024;
+
+    /**
+     * The number of chunks which may be in flight per worker thread.
+     */
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory.getLog(ParallelCSVParser.class);
+
+    /**
+     * Sequence for naming the worker threads.
+     */
+    private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+    /**
+     * The CSV file to parse.
+     */
+    private final String csvFileName;
+
+    /**
+     * The charset of the CSV file.
+     */
+    private final Charset charset;
+
+    /**
+     * The binder for the mapped beans.
+     */
+    private final CSVBeanBinder beanBinder;
+
+    /**
+     * The CSV field positions to materialize.
+     */
+    private final boolean[] projection;
+
+    /**
+     * Flag which indicates whether the CSV file has a header row.
+     */
+    private final boolean headerPresent;
+
+    /**
+     * The number of worker threads.
+     */
+    private final int threadCount;
+
+    /**
+     * The size of the chunks.
+     */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * The iterator created last, if any.
+     */
+    private ChunkIterator activeIterator;
+
+    /**
+     * Constructor for ParallelCSVParser.
+     *
+     * @param csvFileName   the CSV file to parse
+     * @param charset       the charset of the CSV file, which must be ASCII
+     *                      compatible
+     * @param beanBinder    the binder for the mapped beans
+     * @param projection    the CSV field positions to materialize
+     * @param headerPresent indicates whether the CSV file has a header row
+     * @param threadCount   the number of worker threads
+     */
+    ParallelCSVParser(final String csvFileName, final Charset charset,
+                      final CSVBeanBinder beanBinder, final boolean[] projection,
+                      final boolean headerPresent, final int threadCount) {
+        super();
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("The thread count should be positive");
+        }
+        this.csvFileName = csvFileName;
+        this.charset = charset;
+        this.beanBinder = beanBinder;
+        this.projection = projection;
+        this.headerPresent = headerPresent;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Dumps the parser configuration. This is meant for
+     * <strong>debugging</strong> only.
+     *
+     * @return the string representation of this parser
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).append("csvFileName", csvFileName)
+                .append("threadCount", threadCount).append("chunkSize",
+                chunkSize).toString();
+    }
+
+    /**
+     * Returns an iterator over the mapped beans. Parsing of the chunks starts
+     * immediately.
+     *
+     * @return the iterator over the mapped beans
+     * @see Iterable#iterator()
+     */
+    public synchronized Iterator<Object> iterator() {
+        if (activeIterator != null) {
+            activeIterator.shutdown();
+        }
+        activeIterator = new ChunkIterator();
+        return activeIterator;
+    }
+
+    /**
+     * Returns the size of the chunks the file is split into.
+     *
+     * @return the chunk size in bytes
+     */
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Sets the size of the chunks the file is split into, for the iterators
+     * subsequently created. Larger chunks reduce the coordination overhead,
+     * but the mapped beans of all chunks in flight are held in memory.
+     *
+     * @param chunkSize the chunk size in bytes
+     */
+    public void setChunkSize(final int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size should be positive");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Closes the parser, and stops the worker threads. This should be called
+     * when an iterator is not read to the end.
+     */
+    public synchronized void close() {
+        if (activeIterator != null) {
+            activeIterator.shutdown();
+            activeIterator = null;
+        }
+    }
+
+    /**
+     * Parses the CSV records starting at the specified offset, up to the
+     * first record starting at or after the stop offset.
+     *
+     * @param startOffset the file offset to start from
+     * @param stopOffset  the file offset at which to stop
+     * @param aligned     <code>true</code> if the start offset is known to be
+     *                    the start of a record, <code>false</code> to start
+     *                    from the next line
+     * @return the parsed chunk
+     * @throws IOException thrown if the file cannot be read
+     */
+    private Chunk parseChunk(final long startOffset, final long stopOffset,
+                             final boolean aligned) throws IOException {
+        final int windowSize = (int) Math.min(Integer.MAX_VALUE, Math.max(
+                MIN_WINDOW_SIZE, chunkSize + (long) chunkSize / 4));
+        final MappedCSVTokenizer tokenizer = new MappedCSVTokenizer(
+                csvFileName, charset, windowSize, startOffset);
+        try {
+            tokenizer.setProjection(projection);
+            if (!aligned) {
+                tokenizer.skipPartialLine();
+            }
+            tokenizer.skipBlankLines();
+
+            final long chunkStart = tokenizer.getPosition();
+            final List<String> row = new CSVRowView(tokenizer);
+            final List<Object> beans = new ArrayList<Object>();
+            boolean headerSkipped = !headerPresent || startOffset != 0;
+            // The header is always skipped by the first chunk.
+            while ((!headerSkipped || tokenizer.getPosition() < stopOffset)
+                    && tokenizer.nextRecord()) {
+                if (headerSkipped) {
+                    beans.add(beanBinder.createBean(row));
+                } else {
+                    headerSkipped = true;
+                }
+                tokenizer.skipBlankLines();
+            }
+            return new Chunk(chunkStart, tokenizer.getPosition(), beans);
+        } finally {
+            tokenizer.close();
+        }
+    }
+
+    /**
+     * The mapped beans of a parsed chunk.
+     */
+    private static final class Chunk {
+
+        /**
+         * The file offset of the first record of the chunk.
+         */
+        private final long start;
+
+        /**
+         * The file offset just after the last record of the chunk.
+         */
+        private final long end;
+
+        /**
+         * The mapped beans.
+         */
+        private final List<Object> beans;
+
+        /**
+         * Constructor for Chunk.
+         *
+         * @param start the file offset of the first record
+         * @param end   the file offset after the last record
+         * @param beans the mapped beans
+         */
+        Chunk(final long start, final long end, final List<Object> beans) {
+            super();
+            this.start = start;
+            this.end = end;
+            this.beans = beans;
+        }
+    }
+
+    /**
+     * The iterator which parses the chunks concurrently, and returns the
+     * beans of the validated chunks in order.
+     */
+    private final class ChunkIterator
+            implements Iterator<Object> {
+
+        /**
+         * The worker threads.
+         */
+        private final ExecutorService workers;
+
+        /**
+         * The size of the file being parsed.
+         */
+        private final long fileSize;
+
+        /**
+         * The number of chunks.
+         */
+        private final long chunkCount;
+
+        /**
+         * The size of the chunks.
+         */
+        private final int iteratorChunkSize;
+
+        /**
+         * The chunks being parsed, in the file order.
+         */
+        private final LinkedList<Future<Chunk>> pendingChunks = new LinkedList<Future<Chunk>>();
+
+        /**
+         * The index of the next chunk to submit.
+         */
+        private long nextChunk;
+
+        /**
+         * The index of the next chunk to return.
+         */
+        private long returnedChunk;
+
+        /**
+         * The file offset at which the next chunk to return actually starts.
+         */
+        private long expectedStart;
+
+        /**
+         * The beans of the current chunk.
+         */
+        private Iterator<Object> currentBeans;
+
+        /**
+         * Flag which indicates that all the chunks have been returned.
+         */
+        private boolean finished;
+
+        /**
+         * Constructor for ChunkIterator. The first chunks are submitted
+         * immediately.
+         */
+        ChunkIterator() {
+            super();
+            this.fileSize = new File(csvFileName).length();
+            this.iteratorChunkSize = chunkSize;
+            this.chunkCount = Math.max(1L, (fileSize + iteratorChunkSize - 1)
+                    / iteratorChunkSize);
+            this.workers = Executors.newFixedThreadPool(threadCount,
+                    new ThreadFactory() {
+                        public Thread newThread(final Runnable runnable) {
+                            final Thread thread = new Thread(runnable,
+                                    "csv-chunk-parser-"
+                                            + THREAD_SEQUENCE.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            submitChunks();
+        }
+
+        /**
+         * Stops the worker threads if this iterator is abandoned before all
+         * the chunks have been submitted.
+         *
+         * @throws Throwable thrown if the finalization fails
+         * @see Object#finalize()
+         */
+        @Override
+        protected void finalize() throws Throwable {
+            workers.shutdownNow();
+            super.finalize();
+        }
+
+        /**
+         * Submits chunks for parsing, till the maximum number of chunks are in
+         * flight.
+         */
+        private void submitChunks() {
+            while (nextChunk < chunkCount
+                    && pendingChunks.size() < threadCount * CHUNKS_PER_THREAD) {
+                final long startOffset = nextChunk * iteratorChunkSize;
+                final long stopOffset = getStopOffset(nextChunk);
+                pendingChunks.add(workers.submit(new Callable<Chunk>() {
+                    public Chunk call() throws IOException {
+                        return parseChunk(startOffset, stopOffset,
+                                startOffset == 0);
+                    }
+                }));
+                nextChunk++;
+            }
+            if (nextChunk == chunkCount) {
+                // The submitted chunks are still parsed, after which the
+                // worker threads stop
+                workers.shutdown();
+            }
+        }
+
+        /**
+         * Returns the file offset at which the parsing of the specified chunk
+         * stops.
+         *
+         * @param chunk the chunk index
+         * @return the stop offset
+         */
+        private long getStopOffset(final long chunk) {
+            if (chunk == chunkCount - 1) {
+                return Long.MAX_VALUE;
+            }
+            return (chunk + 1) * iteratorChunkSize;
+        }
+
+        /**
+         * Indicates whether more mapped beans exist. This blocks till the next
+         * chunk has been parsed.
+         *
+         * @return <code>true</code> if there are more mapped beans
+         * @see java.util.Iterator#hasNext()
+         */
+        public boolean hasNext() {
+            while (currentBeans == null || !currentBeans.hasNext()) {
+                if (finished || pendingChunks.isEmpty()) {
+                    shutdown();
+                    return false;
+                }
+                currentBeans = takeChunk().beans.iterator();
+            }
+            return true;
+        }
+
+        /**
+         * Returns the next mapped bean.
+         *
+         * @return the mapped bean
+         * @see java.util.Iterator#next()
+         */
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentBeans.next();
+        }
+
+        /**
+         * This method is not supported.
+         *
+         * @see java.util.Iterator#remove()
+         */
+        public void remove() {
+            throw new UnsupportedOperationException("This method is not supported");
+        }
+
+        /**
+         * Stops the worker threads.
+         */
+        void shutdown() {
+            finished = true;
+            currentBeans = null;
+            pendingChunks.clear();
+            workers.shutdownNow();
+        }
+
+        /**
+         * Takes and validates the next parsed chunk. A chunk which was parsed
+         * from a wrong start offset is parsed again on the calling thread.
+         *
+         * @return the validated chunk
+         */
+        private Chunk takeChunk() {
+            final Future<Chunk> pending = pendingChunks.removeFirst();
+            try {
+                Chunk chunk = pending.get();
+                if (returnedChunk > 0 && chunk.start != expectedStart) {
+                    LOG.debug("Chunk " + returnedChunk
+                            + " started within a record and is parsed again");
+                    chunk = parseChunk(expectedStart,
+                            getStopOffset(returnedChunk), true);
+                }
+                expectedStart = chunk.end;
+                returnedChunk++;
+                submitChunks();
+                return chunk;
+            } catch (final InterruptedException e) {
+                shutdown();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "Interrupted while waiting for the mapped beans");
+            } catch (final ExecutionException e) {
+                shutdown();
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                LOG.warn("Error in parsing the CSV file: " + csvFileName, cause);
+                throw new IllegalStateException(cause.getMessage(), cause);
+            } catch (final IOException e) {
+                shutdown();
+                LOG.warn("Error in parsing the CSV file: " + csvFileName, e);
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+}
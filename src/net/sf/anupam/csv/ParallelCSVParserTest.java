@@ -0,0 +1,300 @@
+/*
+ * ParallelCSVParserTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+import net.sf.anupam.csv.exceptions.CSVOException;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ParallelCSVParserTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class ParallelCSVParserTest
+        extends TestCase {
+
+    /**
+     * The number of sample CSV records.
+     */
+    private static final int RECORD_COUNT = 100;
+
+    /**
+     * The UTF-8 charset.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Binder which maps a record to a copy of its fields.
+     */
+    private static final CSVBeanBinder LIST_BINDER = new CSVBeanBinder() {
+        public Object createBean(final List<String> csvLine) {
+            return new ArrayList<String>(csvLine);
+        }
+    };
+
+    /**
+     * The temporary CSV file.
+     */
+    private transient File csvFile;
+
+    /**
+     * Constructor for ParallelCSVParserTest.
+     *
+     * @param name name of the test
+     */
+    public ParallelCSVParserTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(ParallelCSVParserTest.class);
+    }
+
+    /**
+     * Creates the temporary CSV file.
+     *
+     * @throws Exception thrown if the file cannot be created
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        csvFile = File.createTempFile("csvobjects", ".csv");
+        csvFile.deleteOnExit();
+    }
+
+    /**
+     * Deletes the temporary CSV file.
+     *
+     * @throws Exception thrown if the file cannot be deleted
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        csvFile.delete();
+    }
+
+    /**
+     * Returns sample CSV content with a header, blank lines, mixed line
+     * breaks and quoted fields spanning multiple lines.
+     *
+     * @return the CSV content
+     */
+    private String createContent() {
+        final StringBuilder content = new StringBuilder("\r\nSl,Name,City\r\n");
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            content.append(i).append(',');
+            if (i % 7 == 0) {
+                content.append("\"Line\n").append(i).append(",\r\n\"\"x\"\"\"");
+            } else {
+                content.append("Name ").append(i);
+            }
+            content.append(",M\u00fcnchen");
+            content.append(i % 5 == 0 ? "\r\n" : "\n");
+            if (i % 11 == 0) {
+                content.append("\n\r\n");
+            }
+        }
+        return content.toString();
+    }
+
+    /**
+     * Writes the specified content to the temporary CSV file.
+     *
+     * @param content the CSV content
+     * @throws IOException thrown if the file cannot be written
+     */
+    private void writeFile(final String content) throws IOException {
+        final OutputStream out = new FileOutputStream(csvFile);
+        try {
+            out.write(content.getBytes(UTF8.name()));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads all the records sequentially, skipping the header.
+     *
+     * @param content the CSV content
+     * @return the list of records
+     * @throws IOException thrown if the tokenizer fails
+     */
+    private List<Object> readSequentially(final String content)
+            throws IOException {
+        final CSVTokenizer tokenizer = new BufferedCSVTokenizer(
+                new StringReader(content));
+        final List<Object> records = new ArrayList<Object>();
+        tokenizer.nextRecord();
+        while (tokenizer.nextRecord()) {
+            records.add(LIST_BINDER.createBean(new CSVRowView(tokenizer)));
+        }
+        tokenizer.close();
+        return records;
+    }
+
+    /**
+     * Reads all the beans from the specified parser.
+     *
+     * @param parser the parser to read from
+     * @return the list of beans
+     */
+    private List<Object> readAll(final ParallelCSVParser parser) {
+        final List<Object> beans = new ArrayList<Object>();
+        for (Object bean : parser) {
+            beans.add(bean);
+        }
+        parser.close();
+        return beans;
+    }
+
+    /**
+     * Tests that the beans are the same as when parsing sequentially, for a
+     * range of chunk sizes which split the records and the quoted fields at
+     * all possible points.
+     *
+     * @throws IOException thrown if the parsing fails
+     */
+    public void testSameAsSequential() throws IOException {
+        final String content = createContent();
+        writeFile(content);
+        final List<Object> expected = readSequentially(content);
+        assertEquals("The record count does not match", RECORD_COUNT,
+                expected.size());
+
+        final int[] chunkSizes = {1, 2, 3, 5, 8, 13, 21, 34, 64, 1000,
+                ParallelCSVParser.DEFAULT_CHUNK_SIZE};
+        for (int chunkSize : chunkSizes) {
+            final ParallelCSVParser parser = new ParallelCSVParser(
+                    csvFile.getPath(), UTF8, LIST_BINDER, null, true, 3);
+            parser.setChunkSize(chunkSize);
+            assertEquals("The beans do not match for chunk size " + chunkSize,
+                    expected, readAll(parser));
+        }
+    }
+
+    /**
+     * Tests the parsing of an empty file.
+     */
+    public void testEmptyFile() {
+        final ParallelCSVParser parser = new ParallelCSVParser(
+                csvFile.getPath(), UTF8, LIST_BINDER, null, true, 2);
+        assertTrue("No beans should be returned", readAll(parser).isEmpty());
+    }
+
+    /**
+     * Tests that a mapping failure is rethrown by the iterator.
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    public void testMappingFailure() throws IOException {
+        writeFile(createContent());
+        final ParallelCSVParser parser = new ParallelCSVParser(
+                csvFile.getPath(), UTF8, new CSVBeanBinder() {
+            public Object createBean(final List<String> csvLine) {
+                if (csvLine.get(0).equals("60")) {
+                    throw new IllegalStateException("Mapping failed");
+                }
+                return csvLine.get(0);
+            }
+        }, null, true, 2);
+        parser.setChunkSize(100);
+
+        final Iterator<Object> beanIter = parser.iterator();
+        try {
+            while (beanIter.hasNext()) {
+                beanIter.next();
+            }
+            fail("Should have thrown an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            assertEquals("The failure does not match", "Mapping failed",
+                    e.getMessage());
+        }
+        assertFalse("No more beans should be returned", beanIter.hasNext());
+        parser.close();
+    }
+
+    /**
+     * Returns the description of the specified bean, without the identity
+     * hash codes.
+     *
+     * @param bean the bean to describe
+     * @return the bean description
+     */
+    private String describe(final Object bean) {
+        return bean.toString().replaceAll("@[0-9a-f]+", "");
+    }
+
+    /**
+     * Tests the factory method for the parallel parsers.
+     *
+     * @throws IOException   thrown if the file cannot be found
+     * @throws CSVOException thrown if the factory cannot be created
+     */
+    public void testGetParallelCSVParser() throws IOException, CSVOException {
+        final CSVParserFactory factory = CSVParserFactory.getSingleton();
+        final String sampleFile = ClassLoader.getSystemResource(
+                "test/net/sf/anupam/csv/beans/sample.csv").getFile();
+
+        final List<Object> expected = new ArrayList<Object>();
+        final CSVParser sequential = factory.getCSVParser("employeeBean",
+                sampleFile, false);
+        for (Object bean : sequential) {
+            expected.add(describe(bean));
+        }
+        sequential.close();
+
+        final ParallelCSVParser parser = factory.getParallelCSVParser(
+                "employeeBean", sampleFile, 2);
+        parser.setChunkSize(64);
+        final List<Object> beans = new ArrayList<Object>();
+        for (Object bean : readAll(parser)) {
+            beans.add(describe(bean));
+        }
+        assertEquals("The beans do not match", expected, beans);
+
+        try {
+            factory.getParallelCSVParser("employeeBean", "no-such-file.csv", 2);
+            fail("Should have thrown a FileNotFoundException");
+        } catch (final FileNotFoundException e) {
+            // Do nothing
+        }
+    }
+}
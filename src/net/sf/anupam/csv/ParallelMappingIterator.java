@@ -0,0 +1,446 @@
+/*
+ * ParallelMappingIterator.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An iterator over the mapped beans which maps the CSV records on a pool of
+ * worker threads. A dedicated reader thread reads the CSV records in batches,
+ * and each batch is mapped to beans by one of the workers. The iterator
+ * returns the beans either in the order of the CSV records, or in the order in
+ * which the batches are mapped.
+ * <p/>
+ * The number of batches read ahead of the consumer is bounded, so that a slow
+ * consumer does not cause the whole file to be read into memory.
+ * </p>
+ * <p/>
+ * The threads are stopped when all the batches have been returned, when the
+ * iterator is shut down, or when an abandoned iterator is finalized.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParser#setMappingThreadCount(int)
+ * @since 1.5
+ */
+final class ParallelMappingIterator
+        implements Iterator<Object> {
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory
+            .getLog(ParallelMappingIterator.class);
+
+    /**
+     * The number of batches which may be in flight per worker thread.
+     */
+    private static final int BATCHES_PER_THREAD = 4;
+
+    /**
+     * Sequence for naming the worker and reader threads.
+     */
+    private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+    /**
+     * Marker for the end of the mapped batches.
+     */
+    private static final Future<List<Object>> END_OF_BATCHES = new FutureTask<List<Object>>(
+            new Callable<List<Object>>() {
+                public List<Object> call() {
+                    return null;
+                }
+            });
+
+    /**
+     * The parser which created this iterator. The reference keeps the parser
+     * (which closes its reader when finalized) reachable while the iterator
+     * is used. The reader and worker threads only reference the
+     * {@link BatchReader}, so that an abandoned iterator and its parser can
+     * be finalized, which stops the threads.
+     */
+    private final CSVParser parser;
+
+    /**
+     * The mapped (or in the ordered mode, submitted) batches.
+     */
+    private final BlockingQueue<Future<List<Object>>> mappedBatches;
+
+    /**
+     * Permits for the batches which are in flight.
+     */
+    private final Semaphore batchPermits;
+
+    /**
+     * The worker threads which map the batches.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * The reader thread.
+     */
+    private final Thread readerThread;
+
+    /**
+     * The beans of the current batch.
+     */
+    private Iterator<Object> currentBatch;
+
+    /**
+     * Flag which indicates that all the batches have been returned.
+     */
+    private boolean finished;
+
+    /**
+     * Constructor for ParallelMappingIterator. The reader thread is started
+     * immediately.
+     *
+     * @param parser         the parser creating this iterator
+     * @param csvLineIter    the CSV line iterator to read from
+     * @param beanBinder     the binder to map the CSV records with
+     * @param threadCount    the number of worker threads
+     * @param batchSize      the number of CSV records per batch
+     * @param orderPreserved <code>true</code> to return the beans in the CSV
+     *                       record order
+     */
+    ParallelMappingIterator(final CSVParser parser,
+                            final Iterator<List<String>> csvLineIter,
+                            final CSVBeanBinder beanBinder, final int threadCount,
+                            final int batchSize, final boolean orderPreserved) {
+        super();
+        this.parser = parser;
+        this.mappedBatches = new LinkedBlockingQueue<Future<List<Object>>>();
+        this.batchPermits = new Semaphore(threadCount * BATCHES_PER_THREAD);
+        this.workers = Executors.newFixedThreadPool(threadCount,
+                new ThreadFactory() {
+                    public Thread newThread(final Runnable runnable) {
+                        return createDaemonThread(runnable, "csv-mapper-");
+                    }
+                });
+        this.readerThread = createDaemonThread(new BatchReader(csvLineIter,
+                beanBinder, batchSize, orderPreserved, mappedBatches,
+                batchPermits, workers), "csv-reader-");
+        readerThread.start();
+    }
+
+    /**
+     * Stops the reader and worker threads if this iterator is abandoned
+     * before all the batches have been returned.
+     *
+     * @throws Throwable thrown if the finalization fails
+     * @see Object#finalize()
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        shutdown();
+        super.finalize();
+    }
+
+    /**
+     * Creates a daemon thread, so that abandoned iterators do not prevent the
+     * JVM from exiting.
+     *
+     * @param runnable   the thread body
+     * @param namePrefix the prefix of the thread name
+     * @return the new thread
+     */
+    private static Thread createDaemonThread(final Runnable runnable,
+                                             final String namePrefix) {
+        final Thread thread = new Thread(runnable, namePrefix
+                + THREAD_SEQUENCE.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Indicates whether more mapped beans exist. This blocks till the next
+     * batch has been mapped.
+     *
+     * @return <code>true</code> if there are more mapped beans
+     * @see java.util.Iterator#hasNext()
+     */
+    public boolean hasNext() {
+        while (currentBatch == null || !currentBatch.hasNext()) {
+            if (finished) {
+                return false;
+            }
+            currentBatch = takeBatch();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the next mapped bean.
+     *
+     * @return the mapped bean
+     * @see java.util.Iterator#next()
+     */
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentBatch.next();
+    }
+
+    /**
+     * This method is not supported.
+     *
+     * @see java.util.Iterator#remove()
+     */
+    public void remove() {
+        throw new UnsupportedOperationException("This method is not supported");
+    }
+
+    /**
+     * Stops the reader and worker threads. Batches which are being mapped are
+     * discarded.
+     */
+    void shutdown() {
+        finished = true;
+        currentBatch = null;
+        readerThread.interrupt();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Stops the reader and worker threads, and waits for the reader thread to
+     * finish, so that the CSV reader can be closed safely afterwards.
+     */
+    void close() {
+        shutdown();
+        try {
+            readerThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes the next mapped batch.
+     *
+     * @return the beans of the batch, or <code>null</code> if all the batches
+     *         have been returned
+     */
+    private Iterator<Object> takeBatch() {
+        final Future<List<Object>> batch;
+        try {
+            batch = mappedBatches.take();
+        } catch (final InterruptedException e) {
+            shutdown();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the mapped beans");
+        }
+
+        if (batch == END_OF_BATCHES) {
+            shutdown();
+            return null;
+        }
+        batchPermits.release();
+
+        try {
+            return batch.get().iterator();
+        } catch (final InterruptedException e) {
+            shutdown();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the mapped beans");
+        } catch (final ExecutionException e) {
+            shutdown();
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Reads the CSV records in batches on the reader thread, and submits the
+     * batches for mapping. This does not reference the iterator, so that the
+     * threads do not keep an abandoned iterator reachable.
+     */
+    private static final class BatchReader
+            implements Runnable {
+
+        /**
+         * The CSV line iterator, which is only accessed by the reader thread.
+         */
+        private final Iterator<List<String>> csvLineIter;
+
+        /**
+         * The binder which maps the CSV records.
+         */
+        private final CSVBeanBinder beanBinder;
+
+        /**
+         * The number of CSV records per batch.
+         */
+        private final int batchSize;
+
+        /**
+         * Flag which indicates whether the beans are returned in the CSV
+         * record order.
+         */
+        private final boolean orderPreserved;
+
+        /**
+         * The mapped (or in the ordered mode, submitted) batches.
+         */
+        private final BlockingQueue<Future<List<Object>>> mappedBatches;
+
+        /**
+         * Permits for the batches which are in flight.
+         */
+        private final Semaphore batchPermits;
+
+        /**
+         * The worker threads which map the batches.
+         */
+        private final ExecutorService workers;
+
+        /**
+         * The number of batches being mapped, plus one while the reader
+         * thread is running.
+         */
+        private final AtomicInteger pendingBatches = new AtomicInteger(1);
+
+        /**
+         * Constructor for BatchReader.
+         *
+         * @param csvLineIter    the CSV line iterator to read from
+         * @param beanBinder     the binder to map the CSV records with
+         * @param batchSize      the number of CSV records per batch
+         * @param orderPreserved <code>true</code> to return the beans in the
+         *                       CSV record order
+         * @param mappedBatches  the queue of the mapped batches
+         * @param batchPermits   the permits for the batches in flight
+         * @param workers        the worker threads
+         */
+        BatchReader(final Iterator<List<String>> csvLineIter,
+                    final CSVBeanBinder beanBinder, final int batchSize,
+                    final boolean orderPreserved,
+                    final BlockingQueue<Future<List<Object>>> mappedBatches,
+                    final Semaphore batchPermits, final ExecutorService workers) {
+            super();
+            this.csvLineIter = csvLineIter;
+            this.beanBinder = beanBinder;
+            this.batchSize = batchSize;
+            this.orderPreserved = orderPreserved;
+            this.mappedBatches = mappedBatches;
+            this.batchPermits = batchPermits;
+            this.workers = workers;
+        }
+
+        /**
+         * Reads the CSV records in batches, and submits the batches for
+         * mapping, till all the records are read or the iterator is shut
+         * down.
+         */
+        public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()
+                        && csvLineIter.hasNext()) {
+                    final List<List<String>> batch = new ArrayList<List<String>>(
+                            batchSize);
+                    while (batch.size() < batchSize && csvLineIter.hasNext()) {
+                        // The reader may reuse the line, so retain a copy.
+                        batch.add(new ArrayList<String>(csvLineIter.next()));
+                    }
+                    batchPermits.acquire();
+                    submit(batch);
+                }
+            } catch (final InterruptedException e) {
+                LOG.debug("The CSV reader thread was interrupted");
+            } catch (final RejectedExecutionException e) {
+                LOG.debug("The mapping was shut down before all the records were read");
+            } catch (final RuntimeException e) {
+                LOG.warn("Error in reading the CSV records", e);
+                final FutureTask<List<Object>> failure = new FutureTask<List<Object>>(
+                        new Callable<List<Object>>() {
+                            public List<Object> call() {
+                                throw e;
+                            }
+                        });
+                failure.run();
+                mappedBatches.add(failure);
+            } finally {
+                if (orderPreserved || pendingBatches.decrementAndGet() == 0) {
+                    mappedBatches.add(END_OF_BATCHES);
+                }
+            }
+        }
+
+        /**
+         * Submits a batch of CSV records for mapping.
+         *
+         * @param batch the CSV records to map
+         */
+        private void submit(final List<List<String>> batch) {
+            final Callable<List<Object>> mapping = new Callable<List<Object>>() {
+                public List<Object> call() {
+                    final List<Object> beans = new ArrayList<Object>(batch.size());
+                    for (List<String> csvLine : batch) {
+                        beans.add(beanBinder.createBean(csvLine));
+                    }
+                    return beans;
+                }
+            };
+
+            if (orderPreserved) {
+                mappedBatches.add(workers.submit(mapping));
+                return;
+            }
+
+            pendingBatches.incrementAndGet();
+            workers.execute(new FutureTask<List<Object>>(mapping) {
+                @Override
+                protected void done() {
+                    mappedBatches.add(this);
+                    if (pendingBatches.decrementAndGet() == 0) {
+                        mappedBatches.add(END_OF_BATCHES);
+                    }
+                }
+            });
+        }
+    }
+}
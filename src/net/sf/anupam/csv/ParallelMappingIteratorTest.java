@@ -0,0 +1,199 @@
+/*
+ * ParallelMappingIteratorTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ParallelMappingIteratorTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class ParallelMappingIteratorTest
+        extends TestCase {
+
+    /**
+     * The number of sample CSV records.
+     */
+    private static final int RECORD_COUNT = 10007;
+
+    /**
+     * Binder which maps a record to the integer value of its first field.
+     */
+    private static final CSVBeanBinder INTEGER_BINDER = new CSVBeanBinder() {
+        public Object createBean(final List<String> csvLine) {
+            return Integer.valueOf(csvLine.get(0));
+        }
+    };
+
+    /**
+     * Constructor for ParallelMappingIteratorTest.
+     *
+     * @param name name of the test
+     */
+    public ParallelMappingIteratorTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(ParallelMappingIteratorTest.class);
+    }
+
+    /**
+     * Returns an iterator over the sample CSV records.
+     *
+     * @return the CSV line iterator
+     */
+    private Iterator<List<String>> createLines() {
+        final List<List<String>> lines = new ArrayList<List<String>>();
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            lines.add(Collections.singletonList(String.valueOf(i)));
+        }
+        return lines.iterator();
+    }
+
+    /**
+     * Reads all the beans from the specified iterator.
+     *
+     * @param beanIter the bean iterator
+     * @return the list of beans
+     */
+    private List<Object> readAll(final Iterator<Object> beanIter) {
+        final List<Object> beans = new ArrayList<Object>();
+        while (beanIter.hasNext()) {
+            beans.add(beanIter.next());
+        }
+        return beans;
+    }
+
+    /**
+     * Tests that the beans are returned in the CSV record order.
+     */
+    public void testOrderPreserved() {
+        final List<Object> beans = readAll(new ParallelMappingIterator(null,
+                createLines(), INTEGER_BINDER, 4, 100, true));
+        assertEquals("The bean count does not match", RECORD_COUNT, beans.size());
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            assertEquals("The bean order does not match", Integer.valueOf(i),
+                    beans.get(i));
+        }
+    }
+
+    /**
+     * Tests that all the beans are returned when the order is not preserved.
+     */
+    public void testOrderNotPreserved() {
+        final List<Object> beans = readAll(new ParallelMappingIterator(null,
+                createLines(), INTEGER_BINDER, 4, 100, false));
+        assertEquals("The bean count does not match", RECORD_COUNT, beans.size());
+        final List<Integer> values = new ArrayList<Integer>();
+        for (Object bean : beans) {
+            values.add((Integer) bean);
+        }
+        Collections.sort(values);
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            assertEquals("A bean is missing", Integer.valueOf(i), values.get(i));
+        }
+    }
+
+    /**
+     * Tests that a mapping failure is rethrown by the iterator.
+     */
+    public void testMappingFailure() {
+        final Iterator<Object> beanIter = new ParallelMappingIterator(null,
+                createLines(), new CSVBeanBinder() {
+            public Object createBean(final List<String> csvLine) {
+                if (csvLine.get(0).equals("5000")) {
+                    throw new IllegalStateException("Mapping failed");
+                }
+                return csvLine.get(0);
+            }
+        }, 2, 100, true);
+
+        try {
+            readAll(beanIter);
+            fail("Should have thrown an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            assertEquals("The failure does not match", "Mapping failed",
+                    e.getMessage());
+        }
+        assertFalse("No more beans should be returned", beanIter.hasNext());
+    }
+
+    /**
+     * Tests that an iterator can be shut down before all the records are read.
+     */
+    public void testShutdown() {
+        final ParallelMappingIterator beanIter = new ParallelMappingIterator(
+                null, createLines(), INTEGER_BINDER, 2, 10, true);
+        assertEquals("The first bean does not match", Integer.valueOf(0),
+                beanIter.next());
+        beanIter.shutdown();
+        assertFalse("No more beans should be returned", beanIter.hasNext());
+    }
+
+    /**
+     * Tests that closing an iterator waits for the reader thread, so that the
+     * CSV lines are no longer read afterwards.
+     *
+     * @throws InterruptedException thrown if the test is interrupted
+     */
+    public void testClose() throws InterruptedException {
+        final Iterator<List<String>> lines = createLines();
+        final AtomicInteger readCount = new AtomicInteger();
+        final ParallelMappingIterator beanIter = new ParallelMappingIterator(
+                null, new Iterator<List<String>>() {
+            public boolean hasNext() {
+                return lines.hasNext();
+            }
+
+            public List<String> next() {
+                readCount.incrementAndGet();
+                return lines.next();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }, INTEGER_BINDER, 2, 10, true);
+        assertEquals("The first bean does not match", Integer.valueOf(0),
+                beanIter.next());
+        beanIter.close();
+        final int closedReadCount = readCount.get();
+        Thread.sleep(50);
+        assertEquals("No lines should be read after closing", closedReadCount,
+                readCount.get());
+        assertFalse("No more beans should be returned", beanIter.hasNext());
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * ParallelVisitorDispatcher.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Dispatches the CSV records of a reader in batches to a pool of worker
+ * threads, which map the records and pass the beans to a visitor. The CSV
+ * parsing remains sequential on the calling thread, while the mapping and
+ * the visitor (i.e., the caller's processing of the beans) run concurrently
+ * on the workers.
+ * <p/>
+ * The number of batches in flight is bounded, so that the reading does not
+ * run ahead of slow visitors. Once a visitor returns <code>false</code> or
+ * fails, no further batches are dispatched, and the batches in flight skip
+ * their remaining records.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVParser#parse(CSVRowVisitor,int)
+ * @since 1.5
+ */
+final class ParallelVisitorDispatcher {
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory
+            .getLog(ParallelVisitorDispatcher.class);
+
+    /**
+     * The number of batches which may be in flight per worker thread.
+     */
+    private static final int BATCHES_PER_THREAD = 2;
+
+    /**
+     * Sequence for naming the worker threads.
+     */
+    private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+    /**
+     * The binder which maps the CSV records.
+     */
+    private final CSVBeanBinder beanBinder;
+
+    /**
+     * The visitor for the mapped beans.
+     */
+    private final CSVRowVisitor<Object> visitor;
+
+    /**
+     * The number of worker threads.
+     */
+    private final int threadCount;
+
+    /**
+     * The number of CSV records per batch.
+     */
+    private final int batchSize;
+
+    /**
+     * The number of beans visited.
+     */
+    private final AtomicLong visitedCount = new AtomicLong();
+
+    /**
+     * The first failure of a worker, if any.
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    /**
+     * Flag which indicates that no further beans should be visited.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Constructor for ParallelVisitorDispatcher.
+     *
+     * @param beanBinder  the binder to map the CSV records with
+     * @param visitor     the visitor for the mapped beans
+     * @param threadCount the number of worker threads
+     * @param batchSize   the number of CSV records per batch
+     */
+    ParallelVisitorDispatcher(final CSVBeanBinder beanBinder,
+                              final CSVRowVisitor<Object> visitor,
+                              final int threadCount, final int batchSize) {
+        super();
+        this.beanBinder = beanBinder;
+        this.visitor = visitor;
+        this.threadCount = threadCount;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Reads the CSV records from the specified reader, and dispatches them to
+     * the workers. This returns once all the dispatched batches have been
+     * visited.
+     *
+     * @param reader the reader to read the CSV records from
+     * @return the number of beans visited
+     */
+    long dispatch(final CSVReader reader) {
+        final Semaphore batchPermits = new Semaphore(threadCount
+                * BATCHES_PER_THREAD);
+        final ExecutorService workers = Executors.newFixedThreadPool(
+                threadCount, new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "csv-visitor-"
+                        + THREAD_SEQUENCE.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            while (!stopped) {
+                final List<List<String>> batch = new ArrayList<List<String>>(
+                        batchSize);
+                if (reader.nextBatch(batch, batchSize) == 0) {
+                    break;
+                }
+                batchPermits.acquire();
+                workers.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            visitBatch(batch);
+                        } catch (final Throwable e) {
+                            failure.compareAndSet(null, e);
+                            stopped = true;
+                        } finally {
+                            batchPermits.release();
+                        }
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            stopped = true;
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while visiting the mapped beans");
+        } finally {
+            workers.shutdown();
+        }
+
+        final Throwable cause = failure.get();
+        if (cause != null) {
+            LOG.warn("Error in visiting the mapped beans", cause);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+        return visitedCount.get();
+    }
+
+    /**
+     * Maps and visits the CSV records of a batch. This runs on a worker
+     * thread.
+     *
+     * @param batch the CSV records to visit
+     */
+    private void visitBatch(final List<List<String>> batch) {
+        for (List<String> csvLine : batch) {
+            if (stopped) {
+                return;
+            }
+            visitedCount.incrementAndGet();
+            if (!visitor.visit(beanBinder.createBean(csvLine))) {
+                stopped = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * ParallelVisitorDispatcherTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ParallelVisitorDispatcherTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class ParallelVisitorDispatcherTest
+        extends TestCase {
+
+    /**
+     * The number of sample CSV records.
+     */
+    private static final int RECORD_COUNT = 10007;
+
+    /**
+     * Binder which maps a record to the integer value of its first field.
+     */
+    private static final CSVBeanBinder INTEGER_BINDER = new CSVBeanBinder() {
+        public Object createBean(final List<String> csvLine) {
+            return Integer.valueOf(csvLine.get(0));
+        }
+    };
+
+    /**
+     * Constructor for ParallelVisitorDispatcherTest.
+     *
+     * @param name name of the test
+     */
+    public ParallelVisitorDispatcherTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(ParallelVisitorDispatcherTest.class);
+    }
+
+    /**
+     * Returns a reader over the sample CSV records.
+     *
+     * @return the CSV reader
+     */
+    private CSVReader createReader() {
+        final StringBuilder content = new StringBuilder("Value,Name\n");
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            content.append(i).append(",Name ").append(i).append('\n');
+        }
+        return new CSVReader(new StringReader(content.toString()), true);
+    }
+
+    /**
+     * Tests that all the beans are visited exactly once.
+     */
+    public void testAllVisited() {
+        final ConcurrentHashMap<Object, Object> visited = new ConcurrentHashMap<Object, Object>();
+        final long visitedCount = new ParallelVisitorDispatcher(INTEGER_BINDER,
+                new CSVRowVisitor<Object>() {
+                    public boolean visit(final Object row) {
+                        assertNull("A bean was visited twice", visited.put(row,
+                                Thread.currentThread().getName()));
+                        return true;
+                    }
+                }, 4, 100).dispatch(createReader());
+        assertEquals("The visited count does not match", RECORD_COUNT,
+                visitedCount);
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            assertTrue("A bean is missing", visited.containsKey(Integer.valueOf(i)));
+        }
+    }
+
+    /**
+     * Tests that the visiting stops once the visitor returns
+     * <code>false</code>.
+     */
+    public void testStop() {
+        final AtomicInteger visitedCount = new AtomicInteger();
+        final long count = new ParallelVisitorDispatcher(INTEGER_BINDER,
+                new CSVRowVisitor<Object>() {
+                    public boolean visit(final Object row) {
+                        visitedCount.incrementAndGet();
+                        return ((Integer) row).intValue() != 10;
+                    }
+                }, 2, 100).dispatch(createReader());
+        assertEquals("The visited count does not match", visitedCount.get(),
+                count);
+        assertTrue("The visiting should have stopped early",
+                count < RECORD_COUNT);
+    }
+
+    /**
+     * Tests that a visitor failure is rethrown.
+     */
+    public void testVisitorFailure() {
+        try {
+            new ParallelVisitorDispatcher(INTEGER_BINDER,
+                    new CSVRowVisitor<Object>() {
+                        public boolean visit(final Object row) {
+                            if (((Integer) row).intValue() == 5000) {
+                                throw new IllegalStateException("Visit failed");
+                            }
+                            return true;
+                        }
+                    }, 2, 100).dispatch(createReader());
+            fail("Should have thrown an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            assertEquals("The failure does not match", "Visit failed",
+                    e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * ReadAheadReader.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reader which reads ahead of its consumer on a background thread. The
+ * underlying stream is read into a small ring of large buffers: while the
+ * consumer (i.e., the tokenizer) works through one buffer, the background
+ * thread fills the next ones. The I/O latency of slow file systems (e.g.,
+ * network mounts) then overlaps with the parsing and mapping of the records.
+ * <p/>
+ * The buffers are recycled, so the memory used is bounded by the buffer size
+ * times the buffer count, irrespective of the size of the stream. Closing
+ * this reader stops the background thread, and closes the underlying stream.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVReader#CSVReader(Reader,boolean,boolean)
+ * @since 1.5
+ */
+final class ReadAheadReader
+        extends Reader {
+
+    /**
+     * The default size of the read ahead buffers.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * The default number of read ahead buffers.
+     */
+    static final int DEFAULT_BUFFER_COUNT = 3;
+
+    /**
+     * The maximum number of characters requested from the underlying stream
+     * at a time. A decoding reader discards the characters decoded within a
+     * read which fails, so the reads are kept small.
+     */
+    private static final int READ_SIZE = 8 * 1024;
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory.getLog(ReadAheadReader.class);
+
+    /**
+     * Sequence for naming the read ahead threads.
+     */
+    private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+    /**
+     * The underlying stream.
+     */
+    private final Reader in;
+
+    /**
+     * The filled buffers, in the order of the stream.
+     */
+    private final BlockingQueue<Chunk> filledChunks;
+
+    /**
+     * The buffers which can be filled again.
+     */
+    private final BlockingQueue<char[]> freeBuffers;
+
+    /**
+     * The background thread which fills the buffers.
+     */
+    private final Thread readAheadThread;
+
+    /**
+     * The chunk being consumed.
+     */
+    private Chunk current;
+
+    /**
+     * The read position in the current chunk.
+     */
+    private int position;
+
+    /**
+     * Flag which indicates that the end of the stream was reached.
+     */
+    private boolean endOfStream;
+
+    /**
+     * Flag which indicates that this reader was closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor for ReadAheadReader, which starts reading ahead right away.
+     *
+     * @param in          the underlying stream
+     * @param bufferSize  the size of each buffer
+     * @param bufferCount the number of buffers, at least <code>2</code>
+     */
+    ReadAheadReader(final Reader in, final int bufferSize,
+                    final int bufferCount) {
+        super();
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("The buffer size should be positive");
+        }
+        if (bufferCount < 2) {
+            throw new IllegalArgumentException("At least two buffers are needed");
+        }
+        this.in = in;
+        filledChunks = new ArrayBlockingQueue<Chunk>(bufferCount + 1);
+        freeBuffers = new ArrayBlockingQueue<char[]>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            freeBuffers.add(new char[bufferSize]);
+        }
+        readAheadThread = new Thread(new Runnable() {
+            public void run() {
+                readAhead();
+            }
+        }, "csv-read-ahead-" + THREAD_SEQUENCE.incrementAndGet());
+        readAheadThread.setDaemon(true);
+        readAheadThread.start();
+    }
+
+    /**
+     * Fills the free buffers from the underlying stream, till the end of the
+     * stream or a failure. This runs on the read ahead thread.
+     */
+    private void readAhead() {
+        IOException failure = null;
+        try {
+            while (failure == null) {
+                final char[] buffer = freeBuffers.take();
+                int length = 0;
+                int count = 0;
+                try {
+                    while (length < buffer.length && !closed
+                            && (count = in.read(buffer, length, Math.min(
+                            READ_SIZE, buffer.length - length))) >= 0) {
+                        length += count;
+                    }
+                } catch (final IOException e) {
+                    failure = e;
+                } catch (final Throwable e) {
+                    // Any failure of the underlying reader must reach the
+                    // consumer, which would otherwise wait for the next
+                    // chunk forever
+                    failure = new IOException("Read ahead of the CSV stream failed: "
+                            + e);
+                    failure.initCause(e);
+                }
+                // The characters read before a failure are still passed on
+                if (length > 0) {
+                    filledChunks.put(new Chunk(buffer, length, null));
+                }
+                if (count < 0 || closed) {
+                    break;
+                }
+            }
+        } catch (final InterruptedException e) {
+            // Closed by the consumer
+            return;
+        }
+
+        if (failure != null) {
+            if (closed) {
+                return;
+            }
+            LOG.debug("Read ahead of the CSV stream failed", failure);
+        }
+        // The queue has room for one more chunk than there are buffers, so
+        // the terminal chunk is always accepted
+        filledChunks.offer(new Chunk(null, -1, failure));
+    }
+
+    /**
+     * Reads characters from the filled buffers, waiting for the read ahead
+     * thread if needed.
+     *
+     * @param cbuf the buffer to read into
+     * @param off  the offset to start storing at
+     * @param len  the maximum number of characters to read
+     * @return the number of characters read, or <code>-1</code> at the end of
+     *         the stream
+     * @throws IOException thrown if the underlying stream could not be read
+     * @see Reader#read(char[],int,int)
+     */
+    @Override
+    public int read(final char[] cbuf, final int off, final int len)
+            throws IOException {
+        if (closed) {
+            throw new IOException("The reader is closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (current == null || position == current.length) {
+            if (endOfStream || !nextChunk()) {
+                return -1;
+            }
+        }
+        final int count = Math.min(len, current.length - position);
+        System.arraycopy(current.buffer, position, cbuf, off, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Recycles the current buffer, and takes the next filled one.
+     *
+     * @return <code>false</code> at the end of the stream
+     * @throws IOException thrown if the underlying stream could not be read
+     */
+    private boolean nextChunk() throws IOException {
+        if (current != null) {
+            freeBuffers.offer(current.buffer);
+            current = null;
+        }
+        final Chunk chunk;
+        try {
+            chunk = filledChunks.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading ahead");
+        }
+        if (chunk.failure != null) {
+            endOfStream = true;
+            throw chunk.failure;
+        }
+        if (chunk.length < 0) {
+            endOfStream = true;
+            return false;
+        }
+        current = chunk;
+        position = 0;
+        return true;
+    }
+
+    /**
+     * Stops the read ahead, and closes the underlying stream.
+     *
+     * @throws IOException thrown if the underlying stream could not be closed
+     * @see Reader#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        readAheadThread.interrupt();
+        current = null;
+        filledChunks.clear();
+        in.close();
+    }
+
+    /**
+     * A filled buffer, or the end of stream or failure marker.
+     */
+    private static final class Chunk {
+
+        /**
+         * The buffer.
+         */
+        private final char[] buffer;
+
+        /**
+         * The number of characters filled, or <code>-1</code> for a marker.
+         */
+        private final int length;
+
+        /**
+         * The failure to read the stream, if any.
+         */
+        private final IOException failure;
+
+        /**
+         * Constructor for Chunk.
+         *
+         * @param buffer  the buffer
+         * @param length  the number of characters filled
+         * @param failure the failure to read the stream
+         */
+        Chunk(final char[] buffer, final int length, final IOException failure) {
+            super();
+            this.buffer = buffer;
+            this.length = length;
+            this.failure = failure;
+        }
+    }
+}
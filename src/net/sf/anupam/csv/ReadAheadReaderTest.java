@@ -0,0 +1,173 @@
+/*
+ * ReadAheadReaderTest.java
+ *
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * ReadAheadReaderTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class ReadAheadReaderTest
+        extends TestCase {
+
+    /**
+     * Constructor for ReadAheadReaderTest.
+     *
+     * @param name name of the test
+     */
+    public ReadAheadReaderTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to run the test.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(ReadAheadReaderTest.class);
+    }
+
+    /**
+     * Returns the sample content to read.
+     *
+     * @return the sample content
+     */
+    private String createContent() {
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            content.append(i).append(",Name ").append(i).append('\n');
+        }
+        return content.toString();
+    }
+
+    /**
+     * Tests that the stream is read completely, and in order, through the
+     * recycled buffers.
+     *
+     * @throws IOException thrown if the stream cannot be read
+     */
+    public void testRead() throws IOException {
+        final String content = createContent();
+        final Reader reader = new ReadAheadReader(new StringReader(content),
+                1000, 2);
+        final StringBuilder readContent = new StringBuilder();
+        final char[] buffer = new char[777];
+        int count;
+        while ((count = reader.read(buffer, 0, buffer.length)) >= 0) {
+            readContent.append(buffer, 0, count);
+        }
+        assertEquals("The content read does not match", content,
+                readContent.toString());
+        assertEquals("The end of stream should be sticky", -1, reader.read());
+        reader.close();
+    }
+
+    /**
+     * Tests that a failure to read the stream is rethrown to the consumer.
+     */
+    public void testFailure() {
+        final Reader failingReader = new Reader() {
+            private int readCount;
+
+            public int read(final char[] cbuf, final int off, final int len)
+                    throws IOException {
+                if (readCount++ > 0) {
+                    throw new IOException("Read failed");
+                }
+                cbuf[off] = 'a';
+                return 1;
+            }
+
+            public void close() {
+                // Do nothing
+            }
+        };
+        final Reader reader = new ReadAheadReader(failingReader, 10, 2);
+        try {
+            while (reader.read() >= 0) {
+                // Read till the failure
+            }
+            fail("Should have thrown an IOException");
+        } catch (final IOException e) {
+            assertEquals("The failure does not match", "Read failed",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Tests that an unchecked failure of the underlying stream is rethrown to
+     * the consumer, instead of blocking it.
+     */
+    public void testUncheckedFailure() {
+        final Reader failingReader = new Reader() {
+            public int read(final char[] cbuf, final int off, final int len) {
+                throw new IllegalStateException("Read failed");
+            }
+
+            public void close() {
+                // Do nothing
+            }
+        };
+        final Reader reader = new ReadAheadReader(failingReader, 10, 2);
+        try {
+            reader.read();
+            fail("Should have thrown an IOException");
+        } catch (final IOException e) {
+            assertTrue("The cause does not match",
+                    e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * Tests that closing the reader closes the underlying stream, and stops
+     * further reads.
+     *
+     * @throws IOException thrown if the stream cannot be read
+     */
+    public void testClose() throws IOException {
+        final boolean[] closed = new boolean[1];
+        final Reader reader = new ReadAheadReader(new StringReader(
+                createContent()) {
+            public void close() {
+                closed[0] = true;
+                super.close();
+            }
+        }, 100, 2);
+        assertTrue("The first character should be read", reader.read() >= 0);
+        reader.close();
+        assertTrue("The underlying stream should be closed", closed[0]);
+        try {
+            reader.read();
+            fail("Should have thrown an IOException");
+        } catch (final IOException e) {
+            // Do nothing
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+/**
+ * Base class of the built-in formatters which return a range of the value
+ * (e.g., a word). The range is computed by {@link #narrow(CharSequence,int,int)}
+ * without creating any objects, so that a {@link ChainedFormatter chain} of
+ * such formatters narrows the same buffer step by step.
+ * <p/>
+ * A range is packed in a <code>long</code>, with the start in the high and
+ * the (exclusive) end in the low 32 bits.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see ChainedFormatter
+ * @since 1.5
+ */
+abstract class AbstractRangeFormatter
+        extends AbstractSliceFormatter {
+
+    /**
+     * The range returned if the value has no matching range.
+     */
+    static final long NO_RANGE = -1L;
+
+    /**
+     * Constructor for AbstractRangeFormatter.
+     */
+    protected AbstractRangeFormatter() {
+        super();
+    }
+
+    /**
+     * Returns the range of the specified range of the buffer which this
+     * formatter extracts.
+     *
+     * @param buffer the buffer containing the value
+     * @param start  the start of the value
+     * @param end    the end of the value (exclusive)
+     * @return the packed range, or {@link #NO_RANGE} if there is none
+     */
+    abstract long narrow(final CharSequence buffer, final int start,
+                         final int end);
+
+    /**
+     * Indicates whether the range extracted by this formatter is independent
+     * of the case of the value, i.e., whether it can be extracted before or
+     * after a case conversion alike.
+     *
+     * @return <code>true</code> if the range is independent of the case
+     */
+    boolean isCaseIndependent() {
+        return false;
+    }
+
+    /**
+     * Returns the range extracted from the value, as a slice.
+     *
+     * @param buffer  the buffer containing the value
+     * @param offset  the start of the value
+     * @param length  the length of the value
+     * @param builder not used
+     * @return the extracted range, or <code>null</code> if there is none
+     * @see CSVSliceFormatter#format(CharSequence,int,int,StringBuilder)
+     */
+    public final CharSequence format(final CharSequence buffer,
+                                     final int offset, final int length,
+                                     final StringBuilder builder) {
+        final long range = narrow(buffer, offset, offset + length);
+        if (range == NO_RANGE) {
+            return null;
+        }
+        return slice(buffer, rangeStart(range), rangeEnd(range));
+    }
+
+    /**
+     * Extracts the ranges of the values in a single loop.
+     *
+     * @param values  the values to format
+     * @param results the array in which the results are stored
+     * @param count   the number of values to format
+     * @see CSVBatchFormatter#formatBatch(String[],Object[],int)
+     */
+    @Override
+    public void formatBatch(final String [] values, final Object [] results,
+                            final int count) {
+        for (int i = 0; i < count; i++) {
+            final String value = values[i];
+            final long range = (value == null) ? NO_RANGE : narrow(value, 0,
+                    value.length());
+            results[i] = (range == NO_RANGE) ? null : value.substring(
+                    rangeStart(range), rangeEnd(range));
+        }
+    }
+
+    /**
+     * Packs the specified range.
+     *
+     * @param start the start of the range
+     * @param end   the end of the range (exclusive)
+     * @return the packed range
+     */
+    static long range(final int start, final int end) {
+        return ((long) start << 32) | end;
+    }
+
+    /**
+     * Returns the trimmed range.
+     *
+     * @param buffer the buffer
+     * @param start  the start of the range
+     * @param end    the end of the range (exclusive)
+     * @return the packed trimmed range
+     */
+    static long trimmedRange(final CharSequence buffer, final int start,
+                             final int end) {
+        final int trimmedStart = trimStart(buffer, start, end);
+        return range(trimmedStart, trimEnd(buffer, trimmedStart, end));
+    }
+
+    /**
+     * Returns the start of the packed range.
+     *
+     * @param range the packed range
+     * @return the start of the range
+     */
+    static int rangeStart(final long range) {
+        return (int) (range >>> 32);
+    }
+
+    /**
+     * Returns the end of the packed range.
+     *
+     * @param range the packed range
+     * @return the end of the range (exclusive)
+     */
+    static int rangeEnd(final long range) {
+        return (int) range;
+    }
+}
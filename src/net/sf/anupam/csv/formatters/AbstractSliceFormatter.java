@@ -0,0 +1,239 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import java.util.Locale;
+
+/**
+ * Base class of the built-in {@link CSVSliceFormatter slice formatters}. The
+ * {@link CSVFieldFormatter#format(String) String based} and the
+ * {@link CSVBatchFormatter batch} formatting are delegated to the slice based
+ * formatting, and helpers for scanning the slices are provided.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @since 1.5
+ */
+abstract class AbstractSliceFormatter
+        implements CSVSliceFormatter, CSVBatchFormatter {
+
+    /**
+     * Constructor for AbstractSliceFormatter.
+     */
+    protected AbstractSliceFormatter() {
+        super();
+    }
+
+    /**
+     * Formats the value through the slice based formatting.
+     *
+     * @param value the value to be transformed
+     * @return the transformed value, or <code>null</code> if the value is
+     *         <code>null</code>
+     * @see CSVFieldFormatter#format(String)
+     */
+    public String format(final String value) {
+
+        if (value == null) {
+            return null;
+        }
+        final Object result = format(value, 0, value.length(), null);
+        return (result == null) ? null : result.toString();
+    }
+
+    /**
+     * Formats the values through the slice based formatting, reusing a single
+     * builder for the whole batch.
+     *
+     * @param values  the values to format
+     * @param results the array in which the results are stored
+     * @param count   the number of values to format
+     * @see CSVBatchFormatter#formatBatch(String[],Object[],int)
+     */
+    public void formatBatch(final String [] values, final Object [] results,
+                            final int count) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            final String value = values[i];
+            final Object result = (value == null) ? null : format(value, 0,
+                    value.length(), builder);
+            results[i] = (result == null) ? null : result.toString();
+        }
+    }
+
+    /**
+     * Returns the start of the slice, after skipping the leading white space
+     * (as {@link String#trim()} does).
+     *
+     * @param buffer the buffer to scan
+     * @param start  the start of the slice
+     * @param end    the end of the slice (exclusive)
+     * @return the start of the trimmed slice
+     */
+    static int trimStart(final CharSequence buffer, final int start,
+                         final int end) {
+        int trimmedStart = start;
+        while (trimmedStart < end && buffer.charAt(trimmedStart) <= ' ') {
+            trimmedStart++;
+        }
+        return trimmedStart;
+    }
+
+    /**
+     * Returns the end of the slice, after skipping the trailing white space
+     * (as {@link String#trim()} does).
+     *
+     * @param buffer the buffer to scan
+     * @param start  the start of the slice
+     * @param end    the end of the slice (exclusive)
+     * @return the end of the trimmed slice (exclusive)
+     */
+    static int trimEnd(final CharSequence buffer, final int start,
+                       final int end) {
+        int trimmedEnd = end;
+        while (trimmedEnd > start && buffer.charAt(trimmedEnd - 1) <= ' ') {
+            trimmedEnd--;
+        }
+        return trimmedEnd;
+    }
+
+    /**
+     * Returns the trimmed slice of the buffer.
+     *
+     * @param buffer the buffer
+     * @param start  the start of the slice
+     * @param end    the end of the slice (exclusive)
+     * @return the trimmed slice
+     */
+    static CharSequence trimmedSlice(final CharSequence buffer,
+                                     final int start, final int end) {
+        final int trimmedStart = trimStart(buffer, start, end);
+        return slice(buffer, trimmedStart, trimEnd(buffer, trimmedStart, end));
+    }
+
+    /**
+     * Returns the slice of the buffer, which is the buffer itself if the
+     * slice covers all of it.
+     *
+     * @param buffer the buffer
+     * @param start  the start of the slice
+     * @param end    the end of the slice (exclusive)
+     * @return the slice
+     */
+    static CharSequence slice(final CharSequence buffer, final int start,
+                              final int end) {
+        if (start == 0 && end == buffer.length()) {
+            return buffer;
+        }
+        return buffer.subSequence(start, end);
+    }
+
+    /**
+     * Returns the trimmed slice of the buffer in upper or lower case, as
+     * {@link String#toUpperCase()} or {@link String#toLowerCase()} would
+     * return it. ASCII values which need no change are returned as a slice,
+     * and other ASCII values are written into the builder. The remaining
+     * values are converted through <code>String</code>.
+     *
+     * @param buffer    the buffer
+     * @param start     the start of the slice
+     * @param end       the end of the slice (exclusive)
+     * @param builder   the builder to write into, or <code>null</code>
+     * @param upperCase <code>true</code> to convert to upper case
+     * @return the converted value
+     */
+    static CharSequence changeCase(final CharSequence buffer, final int start,
+                                   final int end, final StringBuilder builder,
+                                   final boolean upperCase) {
+        final int trimmedStart = trimStart(buffer, start, end);
+        final int trimmedEnd = trimEnd(buffer, trimmedStart, end);
+        final char from = upperCase ? 'a' : 'A';
+        final char to = upperCase ? 'z' : 'Z';
+        boolean changed = false;
+        for (int i = trimmedStart; i < trimmedEnd; i++) {
+            final char c = buffer.charAt(i);
+            if (c >= 0x80) {
+                return convertCase(buffer, trimmedStart, trimmedEnd, upperCase);
+            }
+            changed |= c >= from && c <= to;
+        }
+        if (!changed) {
+            return slice(buffer, trimmedStart, trimmedEnd);
+        }
+        if (isLocaleSensitive()) {
+            return convertCase(buffer, trimmedStart, trimmedEnd, upperCase);
+        }
+
+        final StringBuilder result = builderFor(builder, trimmedEnd
+                - trimmedStart);
+        for (int i = trimmedStart; i < trimmedEnd; i++) {
+            final char c = buffer.charAt(i);
+            result.append((c >= from && c <= to) ? (char) (c ^ 0x20) : c);
+        }
+        return result;
+    }
+
+    /**
+     * Converts the case of the slice through <code>String</code>, using the
+     * default locale.
+     *
+     * @param buffer    the buffer
+     * @param start     the start of the slice
+     * @param end       the end of the slice (exclusive)
+     * @param upperCase <code>true</code> to convert to upper case
+     * @return the converted value
+     */
+    private static String convertCase(final CharSequence buffer,
+                                      final int start, final int end,
+                                      final boolean upperCase) {
+        final String value = slice(buffer, start, end).toString();
+        return upperCase ? value.toUpperCase() : value.toLowerCase();
+    }
+
+    /**
+     * Indicates whether the case conversion of the ASCII letters depends on
+     * the default locale (i.e., the dotted and dotless <em>i</em> of the
+     * Turkish and Azeri locales).
+     *
+     * @return <code>true</code> if the case conversion is locale sensitive
+     */
+    private static boolean isLocaleSensitive() {
+        final String language = Locale.getDefault().getLanguage();
+        return "tr".equals(language) || "az".equals(language);
+    }
+
+    /**
+     * Returns the cleared builder, or a new builder if none was specified.
+     *
+     * @param builder  the builder to reuse, or <code>null</code>
+     * @param capacity the capacity of a new builder
+     * @return the empty builder
+     */
+    static StringBuilder builderFor(final StringBuilder builder,
+                                    final int capacity) {
+        if (builder == null) {
+            return new StringBuilder(capacity);
+        }
+        builder.setLength(0);
+        return builder;
+    }
+}
@@ -34,7 +34,7 @@ package net.sf.anupam.csv.formatters;
  * @since 1.5
  */
 final class AllUpperCaseFormatter
-        implements CSVFieldFormatter {
+        extends AbstractSliceFormatter {
 
     /**
      * Constructor for AllUpperCaseFormatter.
@@ -46,16 +46,16 @@ final class AllUpperCaseFormatter
     /**
      * Formats the value and transforms the result to all UPPER case.
      *
-     * @param value the value to be transformed
+     * @param buffer  the buffer containing the value
+     * @param offset  the start of the value
+     * @param length  the length of the value
+     * @param builder the builder to write the result into, or <code>null</code>
      * @return the UPPER case transformed value
-     * @see CSVFieldFormatter#format(String)
+     * @see CSVSliceFormatter#format(CharSequence,int,int,StringBuilder)
      */
-    public String format(final String value) {
-
-        if (value == null) {
-            return null;
-        }
-        return value.toUpperCase().trim();
+    public CharSequence format(final CharSequence buffer, final int offset,
+                               final int length, final StringBuilder builder) {
+        return changeCase(buffer, offset, offset + length, builder, true);
     }
 
 }
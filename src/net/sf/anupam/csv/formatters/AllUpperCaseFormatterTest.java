@@ -85,4 +85,25 @@ public class AllUpperCaseFormatterTest
         assertEquals("The returned value should have been empty", "", emptyResult);
 
     }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.AllUpperCaseFormatter.format(CharSequence,int,int,StringBuilder)'.
+     */
+    public void testFormatSlice() {
+        final CSVSliceFormatter formatter = new AllUpperCaseFormatter();
+        final StringBuilder builder = new StringBuilder("stale");
+        final Object result = formatter.format("x, Anupam B ,y", 2, 10, builder);
+        assertSame("The result should have been written into the builder",
+                builder, result);
+        assertEquals("The returned value should have been all UPPER CASE",
+                "ANUPAM B", result.toString());
+        final String value = "ANUPAM";
+        assertSame("An UPPER CASE value should not be copied", value,
+                formatter.format(value, 0, value.length(), builder));
+        assertEquals("Non ASCII values should be converted as Strings",
+                "STRASSE", formatter.format("stra\u00dfe"));
+        assertEquals("Lower case conversion should match String", "anupam b",
+                new AllLowerCaseFormatter().format(" Anupam B "));
+    }
 }
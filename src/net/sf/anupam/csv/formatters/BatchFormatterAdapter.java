@@ -0,0 +1,87 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+/**
+ * Adapts a {@link CSVFieldFormatter formatter} which does not format batches
+ * to the {@link CSVBatchFormatter batch formatter} contract, by formatting the
+ * values one by one.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVFormatterFactory#asBatchFormatter(CSVFieldFormatter)
+ * @since 1.5
+ */
+final class BatchFormatterAdapter
+        implements CSVBatchFormatter {
+
+    /**
+     * The adapted formatter.
+     */
+    private final CSVFieldFormatter formatter;
+
+    /**
+     * Constructor for BatchFormatterAdapter.
+     *
+     * @param formatter the formatter to adapt
+     */
+    BatchFormatterAdapter(final CSVFieldFormatter formatter) {
+        super();
+        this.formatter = formatter;
+    }
+
+    /**
+     * Formats the value with the adapted formatter.
+     *
+     * @param value the value to be transformed
+     * @return the transformed value
+     * @see CSVFieldFormatter#format(String)
+     */
+    public Object format(final String value) {
+        return formatter.format(value);
+    }
+
+    /**
+     * Formats the values one by one with the adapted formatter.
+     *
+     * @param values  the values to format
+     * @param results the array in which the results are stored
+     * @param count   the number of values to format
+     * @see CSVBatchFormatter#formatBatch(String[],Object[],int)
+     */
+    public void formatBatch(final String [] values, final Object [] results,
+                            final int count) {
+        for (int i = 0; i < count; i++) {
+            results[i] = formatter.format(values[i]);
+        }
+    }
+
+    /**
+     * Returns a string representation of this adapter.
+     *
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        return "BatchFormatterAdapter[" + formatter + "]";
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+/**
+ * A {@link CSVFieldFormatter CSV field formatter} which formats a whole column
+ * of CSV field values at once. The batch parsing methods of the parser map the
+ * records column by column, so that each formatter runs a tight loop over the
+ * values of its field instead of being called once per field per record.
+ * <p>
+ * The built-in formatters implement this interface. Other formatters are
+ * adapted by {@link CSVFormatterFactory#asBatchFormatter(CSVFieldFormatter)},
+ * which formats the values one by one.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVFormatterFactory#asBatchFormatter(CSVFieldFormatter)
+ * @since 1.5
+ */
+public interface CSVBatchFormatter
+        extends CSVFieldFormatter {
+
+    /**
+     * Formats the specified CSV field values, and stores the formatted results
+     * at the same indexes of the results array. Each result is the same as
+     * {@link CSVFieldFormatter#format(String)} would return for the value.
+     *
+     * @param values
+     *            the CSV field values to format
+     * @param results
+     *            the array in which the formatted results are stored
+     * @param count
+     *            the number of values to format, starting at index
+     *            <code>0</code>
+     */
+    void formatBatch(final String [] values, final Object [] results,
+                     final int count);
+}
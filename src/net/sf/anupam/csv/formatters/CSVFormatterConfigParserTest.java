@@ -82,6 +82,10 @@ public class CSVFormatterConfigParserTest
                     .get(formatterName);
             assertNotNull("The formatter configuration cannot be null", formatterConfig);
         }
+        assertTrue("The date formatter should need construction",
+                formatterMap.get("date").isConstructionNeeded());
+        assertFalse("The first word formatter should not need construction",
+                formatterMap.get("firstWord").isConstructionNeeded());
 
     }
 
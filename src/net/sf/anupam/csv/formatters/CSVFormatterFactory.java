@@ -22,9 +22,11 @@
 package net.sf.anupam.csv.formatters;
 
 import net.sf.anupam.csv.exceptions.CSVOException;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -74,6 +76,11 @@ public final class CSVFormatterFactory {
      */
     private transient final Map<String, CSVFieldFormatter> formatterCache;
 
+    /**
+     * The cached parameterized formatters, keyed by the formatter name and
+     * the parameter.
+     */
+    private transient final Map<String, CSVFieldFormatter> parameterizedFormatterCache;
 
     /**
      * Constructor for CSVFormatterFactory. Private to prevent direct
@@ -83,6 +90,7 @@ public final class CSVFormatterFactory {
         super();
         formatterLookupMap = new HashMap<String, FormatterConfiguration>();
         formatterCache = new HashMap<String, CSVFieldFormatter>();
+        parameterizedFormatterCache = new HashMap<String, CSVFieldFormatter>();
     }
 
     /**
@@ -164,6 +172,35 @@ public final class CSVFormatterFactory {
 
     }
 
+    /**
+     * Creates a parameterized formatter from the specified class, through its
+     * public constructor which accepts the parameter as a <code>String</code>.
+     *
+     * @param formatterName the formatter name
+     * @param className     the formatter class
+     * @param parameter     the formatter parameter
+     * @return the created formatter
+     * @throws CSVOException thrown if the formatter cannot be created, or does
+     *                       not accept the parameter
+     */
+    private CSVFieldFormatter createFormatterForClass(
+            final String formatterName, final String className,
+            final String parameter) throws CSVOException {
+
+        final String message = "Could not create formatter: " + formatterName
+                + " with the parameter: " + parameter;
+        try {
+            return (CSVFieldFormatter) Class.forName(className.trim())
+                    .getConstructor(String.class).newInstance(parameter);
+        } catch (final InvocationTargetException e) {
+            LOG.warn(message, e.getCause());
+            throw new CSVOException(message, e.getCause());
+        } catch (final Exception e) {
+            LOG.warn(message, e);
+            throw new CSVOException(message, e);
+        }
+    }
+
     /**
      * Creates a new instance of the specified formatter. The cache is used
      * whenever possible.
@@ -177,6 +214,11 @@ public final class CSVFormatterFactory {
 
     	// Guard condition.
         if (!formatterCache.containsKey(formatterName)) {
+            if (formatterLookupMap.containsKey(formatterName)) {
+                LOG.warn("Formatter: " + formatterName + " needs a parameter");
+                throw new CSVOException("Formatter: " + formatterName
+                        + " needs a parameter");
+            }
         	LOG.warn("Formatter: " + formatterName + " not found");
             throw new CSVOException("Formatter: " + formatterName + " not found");
         }
@@ -184,4 +226,141 @@ public final class CSVFormatterFactory {
         // If a cache hit, then return the cached formatter        
         return formatterCache.get(formatterName);
     }
+
+    /**
+     * Returns the specified formatter, constructed with the specified
+     * parameter (e.g., a date pattern). The formatters which need construction
+     * are constructed once for each distinct parameter, and shared by all
+     * fields which use the same parameter; they have to be thread safe. Other
+     * formatters are returned from the cache, and do not accept a parameter.
+     * <p/>
+     * The formatter name can also be a chain of formatter names separated by
+     * <code>|</code> (e.g., <code>trimWord|allUpperCase|lastWord</code>),
+     * which is compiled into a single fused formatter. The parameter is then
+     * passed to the formatter of the chain which needs construction; a chain
+     * can contain at most one such formatter.
+     * </p>
+     *
+     * @param formatterName the formatter to return
+     * @param parameter     the formatter parameter, or <code>null</code> if
+     *                      none
+     * @return the requested formatter
+     * @throws CSVOException thrown if the formatter cannot be created with the
+     *                       parameter
+     */
+    public CSVFieldFormatter createFormatterFor(final String formatterName,
+                                                final String parameter)
+            throws CSVOException {
+
+        if (formatterName != null
+                && formatterName.indexOf(ChainedFormatter.CHAIN_SEPARATOR) >= 0) {
+            return createFormatterChain(formatterName, parameter);
+        }
+        if (parameter == null) {
+            return createFormatterFor(formatterName);
+        }
+        final FormatterConfiguration configuration = formatterLookupMap
+                .get(formatterName);
+        if (configuration == null) {
+            LOG.warn("Formatter: " + formatterName + " not found");
+            throw new CSVOException("Formatter: " + formatterName + " not found");
+        }
+        if (!configuration.isConstructionNeeded()) {
+            LOG.warn("Formatter: " + formatterName + " does not accept a parameter");
+            throw new CSVOException("Formatter: " + formatterName
+                    + " does not accept a parameter");
+        }
+
+        final String cacheKey = formatterName + "(" + parameter + ")";
+        synchronized (parameterizedFormatterCache) {
+            CSVFieldFormatter formatter = parameterizedFormatterCache
+                    .get(cacheKey);
+            if (formatter == null) {
+                formatter = createFormatterForClass(formatterName,
+                        configuration.getFormatterClass(), parameter);
+                parameterizedFormatterCache.put(cacheKey, formatter);
+            }
+            return formatter;
+        }
+    }
+
+    /**
+     * Compiles the specified formatter chain into a single fused formatter.
+     *
+     * @param formatterChain the formatter names separated by <code>|</code>
+     * @param parameter      the parameter of the formatter which needs
+     *                       construction, or <code>null</code> if none
+     * @return the fused formatter
+     * @throws CSVOException thrown if the chain is invalid, or a formatter of
+     *                       the chain cannot be created
+     */
+    private CSVFieldFormatter createFormatterChain(final String formatterChain,
+                                                   final String parameter)
+            throws CSVOException {
+
+        final String [] formatterNames = StringUtils.splitPreserveAllTokens(
+                formatterChain, ChainedFormatter.CHAIN_SEPARATOR);
+        final CSVFieldFormatter [] steps = new CSVFieldFormatter[formatterNames.length];
+        boolean parameterUsed = false;
+        for (int i = 0; i < formatterNames.length; i++) {
+            final String formatterName = formatterNames[i].trim();
+            final FormatterConfiguration configuration = formatterLookupMap
+                    .get(formatterName);
+            if (configuration != null && configuration.isConstructionNeeded()) {
+                if (parameterUsed) {
+                    LOG.warn("Formatter chain: " + formatterChain
+                            + " has more than one parameterized formatter");
+                    throw new CSVOException("Formatter chain: " + formatterChain
+                            + " has more than one parameterized formatter");
+                }
+                parameterUsed = true;
+                steps[i] = createFormatterFor(formatterName, parameter);
+            } else {
+                steps[i] = createFormatterFor(formatterName);
+            }
+        }
+        if (parameter != null && !parameterUsed) {
+            LOG.warn("Formatter chain: " + formatterChain
+                    + " does not accept a parameter");
+            throw new CSVOException("Formatter chain: " + formatterChain
+                    + " does not accept a parameter");
+        }
+        LOG.debug("Compiled the formatter chain: " + formatterChain);
+        return new ChainedFormatter(steps);
+    }
+
+    /**
+     * Returns the {@link CSVSliceFormatter slice formatter} for the specified
+     * formatter. Formatters which only implement
+     * {@link CSVFieldFormatter#format(String)} are adapted, by converting the
+     * slices to <code>String</code> values.
+     *
+     * @param formatter the formatter to adapt
+     * @return the slice formatter, or <code>null</code> if the formatter is
+     *         <code>null</code>
+     */
+    public static CSVSliceFormatter asSliceFormatter(
+            final CSVFieldFormatter formatter) {
+        if (formatter == null || formatter instanceof CSVSliceFormatter) {
+            return (CSVSliceFormatter) formatter;
+        }
+        return new LegacySliceFormatter(formatter);
+    }
+
+    /**
+     * Returns the {@link CSVBatchFormatter batch formatter} for the specified
+     * formatter. Formatters which do not format batches are adapted, by
+     * formatting the values one by one.
+     *
+     * @param formatter the formatter to adapt
+     * @return the batch formatter, or <code>null</code> if the formatter is
+     *         <code>null</code>
+     */
+    public static CSVBatchFormatter asBatchFormatter(
+            final CSVFieldFormatter formatter) {
+        if (formatter == null || formatter instanceof CSVBatchFormatter) {
+            return (CSVBatchFormatter) formatter;
+        }
+        return new BatchFormatterAdapter(formatter);
+    }
 }
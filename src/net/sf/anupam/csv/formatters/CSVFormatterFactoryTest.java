@@ -0,0 +1,194 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import junit.framework.TestCase;
+import net.sf.anupam.csv.exceptions.CSVOException;
+
+/**
+ * CSVFormatterFactoryTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class CSVFormatterFactoryTest
+        extends TestCase {
+
+    /**
+     * Constructor for CSVFormatterFactoryTest.
+     *
+     * @param name name of the test
+     */
+    public CSVFormatterFactoryTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to perform the tests.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(CSVFormatterFactoryTest.class);
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.CSVFormatterFactory.createFormatterFor(String)'.
+     *
+     * @throws CSVOException thrown if the formatter cannot be created
+     */
+    public void testCreateFormatterFor() throws CSVOException {
+        final CSVFieldFormatter formatter = CSVFormatterFactory.getSingleton()
+                .createFormatterFor("firstWord");
+        assertNotNull("The formatter should have been created", formatter);
+        assertTrue("The built-in formatter should format slices",
+                formatter instanceof CSVSliceFormatter);
+        try {
+            CSVFormatterFactory.getSingleton().createFormatterFor("unknown");
+            fail("Should have thrown a CSVOException");
+        } catch (final CSVOException e) {
+            // Do nothing
+        }
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.CSVFormatterFactory.asSliceFormatter(CSVFieldFormatter)'.
+     */
+    public void testAsSliceFormatter() {
+        assertNull("A null formatter should not be adapted",
+                CSVFormatterFactory.asSliceFormatter(null));
+        final CSVSliceFormatter sliceFormatter = new TrimWordFormatter();
+        assertSame("Slice formatters should not be adapted", sliceFormatter,
+                CSVFormatterFactory.asSliceFormatter(sliceFormatter));
+
+        final CSVFieldFormatter legacyFormatter = new CSVFieldFormatter() {
+            public Object format(final String value) {
+                return (value == null) ? null : Integer.valueOf(value.length());
+            }
+        };
+        final CSVSliceFormatter adapted = CSVFormatterFactory
+                .asSliceFormatter(legacyFormatter);
+        assertNotNull("The legacy formatter should have been adapted", adapted);
+        assertEquals("The slice should have been formatted as a String",
+                Integer.valueOf(6), adapted.format("x,Anupam,y", 2, 6, null));
+        assertNull("The String formatting should be delegated",
+                adapted.format(null));
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.CSVFormatterFactory.asBatchFormatter(CSVFieldFormatter)'.
+     */
+    public void testAsBatchFormatter() {
+        assertNull("A null formatter should not be adapted",
+                CSVFormatterFactory.asBatchFormatter(null));
+        final CSVBatchFormatter batchFormatter = new FirstWordFormatter();
+        assertSame("Batch formatters should not be adapted", batchFormatter,
+                CSVFormatterFactory.asBatchFormatter(batchFormatter));
+
+        final CSVFieldFormatter legacyFormatter = new CSVFieldFormatter() {
+            public Object format(final String value) {
+                return (value == null) ? null : Integer.valueOf(value.length());
+            }
+        };
+        final CSVBatchFormatter adapted = CSVFormatterFactory
+                .asBatchFormatter(legacyFormatter);
+        final Object [] results = new Object[3];
+        adapted.formatBatch(new String[]{"Anupam", null, "", "ignored"},
+                results, 3);
+        assertEquals("The first value should have been formatted",
+                Integer.valueOf(6), results[0]);
+        assertNull("The null value should have been formatted", results[1]);
+        assertEquals("The last value should have been formatted",
+                Integer.valueOf(0), results[2]);
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.CSVFormatterFactory.createFormatterFor(String,String)'.
+     *
+     * @throws CSVOException thrown if the formatter cannot be created
+     */
+    public void testCreateParameterizedFormatterFor() throws CSVOException {
+        final CSVFormatterFactory factory = CSVFormatterFactory.getSingleton();
+        final CSVFieldFormatter formatter = factory.createFormatterFor(
+                "substring", "0,3");
+        assertEquals("The parameterized formatter should have been created",
+                "Anu", formatter.format("Anupam"));
+        assertSame("The formatter should be shared for the same parameter",
+                formatter, factory.createFormatterFor("substring", "0,3"));
+        assertNotSame("The formatter should differ for another parameter",
+                formatter, factory.createFormatterFor("substring", "1,3"));
+        assertSame("The formatter without a parameter should be cached",
+                factory.createFormatterFor("firstWord"),
+                factory.createFormatterFor("firstWord", null));
+
+        final String [][] invalidFormatters = {{"date", null},
+                {"substring", "a,b"}, {"regex", "("}, {"firstWord", "1"},
+                {"unknown", "1"}};
+        for (String [] invalidFormatter : invalidFormatters) {
+            try {
+                factory.createFormatterFor(invalidFormatter[0],
+                        invalidFormatter[1]);
+                fail("Should have thrown a CSVOException for "
+                        + invalidFormatter[0]);
+            } catch (final CSVOException e) {
+                // Do nothing
+            }
+        }
+    }
+
+    /**
+     * Tests that formatter chains are compiled into a single formatter.
+     *
+     * @throws CSVOException thrown if the formatter cannot be created
+     */
+    public void testCreateFormatterChain() throws CSVOException {
+        final CSVFormatterFactory factory = CSVFormatterFactory.getSingleton();
+        final CSVFieldFormatter formatter = factory.createFormatterFor(
+                "trimWord | allUpperCase|lastWord", null);
+        assertTrue("The chain should have been fused",
+                formatter instanceof ChainedFormatter);
+        assertEquals("The chain should have been applied in order", "SENGUPTA",
+                formatter.format(" Anupam B Sengupta "));
+
+        final CSVFieldFormatter parameterizedFormatter = factory
+                .createFormatterFor("substring|allLowerCase", "0,6");
+        assertEquals("The parameter should have been passed", "anupam",
+                parameterizedFormatter.format("ANUPAM SENGUPTA"));
+
+        final String [][] invalidChains = {{"trimWord|unknown", null},
+                {"trimWord||lastWord", null}, {"trimWord|lastWord", "1"},
+                {"substring|regex", "1"}};
+        for (String [] invalidChain : invalidChains) {
+            try {
+                factory.createFormatterFor(invalidChain[0], invalidChain[1]);
+                fail("Should have thrown a CSVOException for "
+                        + invalidChain[0]);
+            } catch (final CSVOException e) {
+                // Do nothing
+            }
+        }
+    }
+}
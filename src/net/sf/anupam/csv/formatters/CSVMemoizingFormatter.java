@@ -0,0 +1,260 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link CSVSliceFormatter formatter} which memoizes the results of another
+ * formatter, for CSV fields with few distinct values (e.g., status codes or
+ * roles). Each distinct value is formatted once, and the same result instance
+ * is returned for all repetitions of the value, which also avoids duplicate
+ * strings on the heap.
+ * <p/>
+ * The cache is bounded: once the maximum size is reached, the least recently
+ * used value is evicted. Hit and miss counts are maintained, so that the
+ * effectiveness of the cache can be checked. A memo is enabled for a field
+ * mapping through the <code>memo-size</code> attribute, and is then returned
+ * by {@link net.sf.anupam.csv.mapping.CSVFieldMapping#getFormatter()}.
+ * </p>
+ * <p/>
+ * The memoized formatter should be a pure function of the value, and its
+ * results should be immutable, as they are shared by all the beans with the
+ * same value. <code>java.util.Date</code> results (e.g., of the
+ * {@link DateFormatter date formatter}) are mutable, and are therefore copied
+ * for each bean. This formatter is thread safe, and <code>null</code> values
+ * are not memoized.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see net.sf.anupam.csv.mapping.CSVFieldMapping#getMemoSize()
+ * @since 1.5
+ */
+public final class CSVMemoizingFormatter
+        implements CSVSliceFormatter {
+
+    /**
+     * The memoized formatter.
+     */
+    private final CSVSliceFormatter formatter;
+
+    /**
+     * The maximum number of memoized values.
+     */
+    private final int maximumSize;
+
+    /**
+     * The memoized results, in the least recently used order.
+     */
+    private final Map<String, Object> memo;
+
+    /**
+     * The number of values found in the memo.
+     */
+    private long hitCount;
+
+    /**
+     * The number of values which had to be formatted.
+     */
+    private long missCount;
+
+    /**
+     * Constructor for CSVMemoizingFormatter.
+     *
+     * @param formatter   the formatter to memoize
+     * @param maximumSize the maximum number of memoized values
+     */
+    public CSVMemoizingFormatter(final CSVFieldFormatter formatter,
+                                 final int maximumSize) {
+        super();
+        if (formatter == null) {
+            throw new IllegalArgumentException("The formatter to memoize should be specified");
+        }
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The memo size should be positive");
+        }
+        this.formatter = CSVFormatterFactory.asSliceFormatter(formatter);
+        this.maximumSize = maximumSize;
+        this.memo = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, Object> eldest) {
+                return size() > CSVMemoizingFormatter.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the memoized result for the value, formatting it on a miss.
+     *
+     * @param value the value to be transformed
+     * @return the transformed value
+     * @see CSVFieldFormatter#format(String)
+     */
+    public Object format(final String value) {
+        if (value == null) {
+            return formatter.format(value);
+        }
+        return lookup(value, value, 0, value.length());
+    }
+
+    /**
+     * Returns the memoized result for the slice, formatting it on a miss. The
+     * slice is only converted to a <code>String</code> if the buffer is not
+     * already one.
+     *
+     * @param buffer  the buffer containing the value
+     * @param offset  the start of the value
+     * @param length  the length of the value
+     * @param builder not used, as the memoized results cannot be backed by it
+     * @return the transformed value
+     * @see CSVSliceFormatter#format(CharSequence,int,int,StringBuilder)
+     */
+    public Object format(final CharSequence buffer, final int offset,
+                         final int length, final StringBuilder builder) {
+        final String value = (buffer instanceof String && offset == 0
+                && length == buffer.length()) ? (String) buffer : buffer
+                .subSequence(offset, offset + length).toString();
+        return lookup(value, buffer, offset, length);
+    }
+
+    /**
+     * Returns the memoized result for the value, formatting and memoizing it
+     * on a miss.
+     *
+     * @param value  the value to look up
+     * @param buffer the buffer containing the value
+     * @param offset the start of the value in the buffer
+     * @param length the length of the value
+     * @return the transformed value
+     */
+    private Object lookup(final String value, final CharSequence buffer,
+                          final int offset, final int length) {
+        synchronized (memo) {
+            final Object result = memo.get(value);
+            if (result != null || memo.containsKey(value)) {
+                hitCount++;
+                return copyOf(result);
+            }
+        }
+
+        // Format outside the lock; a concurrent miss for the same value
+        // formats it again, which is harmless for a pure formatter
+        Object result = formatter.format(buffer, offset, length, null);
+        if (result instanceof CharSequence) {
+            result = result.toString();
+        }
+        synchronized (memo) {
+            missCount++;
+            memo.put(value, result);
+        }
+        return copyOf(result);
+    }
+
+    /**
+     * Returns a copy of the memoized result if it is mutable, so that the
+     * beans do not share it.
+     *
+     * @param result the memoized result
+     * @return the result to return
+     */
+    private static Object copyOf(final Object result) {
+        if (result instanceof Date) {
+            return ((Date) result).clone();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of values found in the memo.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        synchronized (memo) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * Returns the number of values which were not found in the memo, and had
+     * to be formatted.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        synchronized (memo) {
+            return missCount;
+        }
+    }
+
+    /**
+     * Returns the number of values currently memoized.
+     *
+     * @return the memo size
+     */
+    public int getSize() {
+        synchronized (memo) {
+            return memo.size();
+        }
+    }
+
+    /**
+     * Returns the maximum number of memoized values.
+     *
+     * @return the maximum memo size
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Removes all memoized values, and resets the hit and miss counts.
+     */
+    public void clear() {
+        synchronized (memo) {
+            memo.clear();
+            hitCount = 0;
+            missCount = 0;
+        }
+    }
+
+    /**
+     * Returns a string representation of this formatter, including the hit
+     * and miss counts.
+     *
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        synchronized (memo) {
+            return "CSVMemoizingFormatter[" + formatter + ", size=" + memo.size()
+                    + "/" + maximumSize + ", hits=" + hitCount + ", misses="
+                    + missCount + "]";
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import junit.framework.TestCase;
+
+import java.util.Date;
+
+/**
+ * CSVMemoizingFormatterTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class CSVMemoizingFormatterTest
+        extends TestCase {
+
+    /**
+     * Constructor for CSVMemoizingFormatterTest.
+     *
+     * @param name name of the test
+     */
+    public CSVMemoizingFormatterTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to perform the tests.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(CSVMemoizingFormatterTest.class);
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.CSVMemoizingFormatter.format(String)'.
+     */
+    public void testFormat() {
+        final CSVMemoizingFormatter formatter = new CSVMemoizingFormatter(
+                new AllUpperCaseFormatter(), 10);
+        final Object first = formatter.format("Active");
+        assertEquals("The value should have been formatted", "ACTIVE", first);
+        assertSame("The memoized result should have been returned", first,
+                formatter.format(new String("Active")));
+        assertSame("The memoized result should have been returned for a slice",
+                first, formatter.format("x,Active,y", 2, 6, new StringBuilder()));
+        assertNull("null should have been returned", formatter.format(null));
+        assertEquals("The miss count does not match", 1, formatter.getMissCount());
+        assertEquals("The hit count does not match", 2, formatter.getHitCount());
+        assertEquals("The memo size does not match", 1, formatter.getSize());
+
+        formatter.clear();
+        assertEquals("The memo should have been cleared", 0, formatter.getSize());
+        assertEquals("The hit count should have been reset", 0,
+                formatter.getHitCount());
+    }
+
+    /**
+     * Tests that the least recently used values are evicted once the memo is
+     * full.
+     */
+    public void testEviction() {
+        final CSVMemoizingFormatter formatter = new CSVMemoizingFormatter(
+                new TrimWordFormatter(), 2);
+        formatter.format("Lead");
+        formatter.format("Programmer");
+        formatter.format("Lead");
+        formatter.format("Manager");
+        assertEquals("The memo should be bounded", 2, formatter.getSize());
+        assertEquals("The miss count does not match", 3, formatter.getMissCount());
+
+        formatter.format("Lead");
+        assertEquals("The recently used value should have been kept", 2,
+                formatter.getHitCount());
+        formatter.format("Programmer");
+        assertEquals("The least recently used value should have been evicted",
+                4, formatter.getMissCount());
+    }
+
+    /**
+     * Tests that legacy formatters and invalid sizes are handled.
+     */
+    public void testLegacyFormatter() {
+        final CSVMemoizingFormatter formatter = new CSVMemoizingFormatter(
+                new CSVFieldFormatter() {
+                    public Object format(final String value) {
+                        return (value == null) ? null : Integer.valueOf(value
+                                .length());
+                    }
+                }, 4);
+        assertEquals("The legacy formatter should have been memoized",
+                Integer.valueOf(4), formatter.format("Lead"));
+        assertEquals("The hit count does not match", 0, formatter.getHitCount());
+        formatter.format("Lead");
+        assertEquals("The hit count does not match", 1, formatter.getHitCount());
+        try {
+            new CSVMemoizingFormatter(new TrimWordFormatter(), 0);
+            fail("Should have thrown an IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            // Do nothing
+        }
+    }
+
+    /**
+     * Tests that mutable date results are not shared between the beans.
+     */
+    public void testMutableResults() {
+        final CSVMemoizingFormatter formatter = new CSVMemoizingFormatter(
+                new DateFormatter("yyyy"), 4);
+        final Date first = (Date) formatter.format("2005");
+        final Date second = (Date) formatter.format("2005");
+        assertEquals("The memoized date does not match", first, second);
+        assertNotSame("The memoized date should have been copied", first,
+                second);
+        assertEquals("The hit count does not match", 1, formatter.getHitCount());
+        first.setTime(0L);
+        assertEquals("The memoized date should not have changed", second,
+                formatter.format("2005"));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+/**
+ * A {@link CSVFieldFormatter CSV field formatter} which formats a slice of a
+ * character buffer, instead of a separate <code>String</code> per field.
+ * Simple transformations (e.g., trimming or extracting a word) can then return
+ * a slice of the buffer, and other transformations can write their result into
+ * a builder reused by the caller.
+ * <p>
+ * The built-in formatters implement this interface. Formatters which only
+ * implement {@link CSVFieldFormatter#format(String)} are adapted by
+ * {@link CSVFormatterFactory#asSliceFormatter(CSVFieldFormatter)}.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVFormatterFactory#asSliceFormatter(CSVFieldFormatter)
+ * @since 1.5
+ */
+public interface CSVSliceFormatter
+        extends CSVFieldFormatter {
+
+    /**
+     * Formats the specified slice of the buffer and returns the formatted
+     * result. A <code>CharSequence</code> result may be the buffer, a slice of
+     * the buffer or the builder itself, and is then only valid till the buffer
+     * or the builder is next modified; callers which keep the result should
+     * convert it with <code>toString()</code>.
+     *
+     * @param buffer
+     *            the buffer containing the CSV field value
+     * @param offset
+     *            the start of the value in the buffer
+     * @param length
+     *            the length of the value
+     * @param builder
+     *            the builder to write the result into if needed (cleared
+     *            first), or <code>null</code> if the formatter should create
+     *            its own
+     * @return the formatted result (need not be a CharSequence)
+     */
+    Object format(final CharSequence buffer, final int offset,
+                  final int length, final StringBuilder builder);
+}
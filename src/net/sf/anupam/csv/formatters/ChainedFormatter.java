@@ -0,0 +1,251 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+/**
+ * A {@link CSVSliceFormatter formatter} which applies a chain of formatters in
+ * turn, as declared by a formatter chain such as
+ * <code>reformat="trimWord|allUpperCase|lastWord"</code>. The chain is fused,
+ * so that no intermediate <code>String</code> is created between the steps:
+ * <ul>
+ * <li>steps which extract a range of the value (e.g., a word, a substring or a
+ * regular expression match) narrow the range of the same buffer;</li>
+ * <li>case conversions are deferred past the following steps whose range does
+ * not depend on the case (the words and trimming), and are then performed in
+ * a single pass, into one of two alternating builders;</li>
+ * <li>any other step formats the current slice through the
+ * {@link CSVSliceFormatter slice contract}.</li>
+ * </ul>
+ * A chain of only range and case steps thus makes at most one copy of the
+ * characters. The chain is stateless if its steps are.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVFormatterFactory#createFormatterFor(String,String)
+ * @since 1.5
+ */
+final class ChainedFormatter
+        implements CSVSliceFormatter, CSVBatchFormatter {
+
+    /**
+     * The separator of the formatter names in a formatter chain.
+     */
+    static final char CHAIN_SEPARATOR = '|';
+
+    /**
+     * No pending case conversion.
+     */
+    private static final int NO_CASE = 0;
+
+    /**
+     * Pending conversion to upper case.
+     */
+    private static final int UPPER_CASE = 1;
+
+    /**
+     * Pending conversion to lower case.
+     */
+    private static final int LOWER_CASE = 2;
+
+    /**
+     * The formatters of the chain, in the order of application.
+     */
+    private final CSVSliceFormatter [] steps;
+
+    /**
+     * Constructor for ChainedFormatter.
+     *
+     * @param steps the formatters of the chain, in the order of application
+     */
+    ChainedFormatter(final CSVFieldFormatter [] steps) {
+        super();
+        if (steps.length == 0) {
+            throw new IllegalArgumentException("The formatter chain cannot be empty");
+        }
+        this.steps = new CSVSliceFormatter[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            this.steps[i] = CSVFormatterFactory.asSliceFormatter(steps[i]);
+        }
+    }
+
+    /**
+     * Formats the value through the chain.
+     *
+     * @param value the value to be transformed
+     * @return the transformed value
+     * @see CSVFieldFormatter#format(String)
+     */
+    public Object format(final String value) {
+        final Object result = (value == null) ? formatNull(0) : format(value,
+                0, value.length(), null);
+        return (result instanceof CharSequence) ? result.toString() : result;
+    }
+
+    /**
+     * Formats the values through the fused chain, reusing a single builder
+     * for the whole batch.
+     *
+     * @param values  the values to format
+     * @param results the array in which the results are stored
+     * @param count   the number of values to format
+     * @see CSVBatchFormatter#formatBatch(String[],Object[],int)
+     */
+    public void formatBatch(final String [] values, final Object [] results,
+                            final int count) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            final String value = values[i];
+            final Object result = (value == null) ? formatNull(0) : format(
+                    value, 0, value.length(), builder);
+            results[i] = (result instanceof CharSequence) ? result.toString()
+                    : result;
+        }
+    }
+
+    /**
+     * Formats the slice through the fused chain.
+     *
+     * @param buffer  the buffer containing the value
+     * @param offset  the start of the value
+     * @param length  the length of the value
+     * @param builder the builder to write into, or <code>null</code>
+     * @return the transformed value
+     * @see CSVSliceFormatter#format(CharSequence,int,int,StringBuilder)
+     */
+    public Object format(final CharSequence buffer, final int offset,
+                         final int length, final StringBuilder builder) {
+        CharSequence current = buffer;
+        int start = offset;
+        int end = offset + length;
+        int pendingCase = NO_CASE;
+        // The steps write into either builder, reading from the other one
+        final StringBuilder [] builders = {builder, null};
+
+        for (int i = 0; i <= steps.length; i++) {
+            final CSVSliceFormatter step = (i < steps.length) ? steps[i] : null;
+
+            final int stepCase = (step instanceof AllUpperCaseFormatter)
+                    ? UPPER_CASE : (step instanceof AllLowerCaseFormatter)
+                    ? LOWER_CASE : NO_CASE;
+            final boolean rangeStep = step instanceof AbstractRangeFormatter;
+            final boolean deferrable = (stepCase == NO_CASE) ? rangeStep
+                    && ((AbstractRangeFormatter) step).isCaseIndependent()
+                    : stepCase == pendingCase;
+            if (pendingCase != NO_CASE && !deferrable) {
+                // The step depends on the case, so convert it now
+                current = AbstractSliceFormatter.changeCase(current, start,
+                        end, spareBuilder(builders, current),
+                        pendingCase == UPPER_CASE);
+                start = 0;
+                end = current.length();
+                pendingCase = NO_CASE;
+            }
+
+            if (step == null) {
+                break;
+            }
+            if (stepCase != NO_CASE) {
+                // Case conversions trim, and are deferred
+                start = AbstractSliceFormatter.trimStart(current, start, end);
+                end = AbstractSliceFormatter.trimEnd(current, start, end);
+                pendingCase = stepCase;
+                continue;
+            }
+            if (rangeStep) {
+                final long range = ((AbstractRangeFormatter) step).narrow(
+                        current, start, end);
+                if (range == AbstractRangeFormatter.NO_RANGE) {
+                    return formatNull(i + 1);
+                }
+                start = AbstractRangeFormatter.rangeStart(range);
+                end = AbstractRangeFormatter.rangeEnd(range);
+                continue;
+            }
+
+            // Any other step formats the current slice
+            final Object result = step.format(current, start, end - start,
+                    spareBuilder(builders, current));
+            if (i == steps.length - 1) {
+                return result;
+            }
+            if (result == null) {
+                return formatNull(i + 1);
+            }
+            current = (result instanceof CharSequence) ? (CharSequence) result
+                    : result.toString();
+            start = 0;
+            end = current.length();
+        }
+        return AbstractSliceFormatter.slice(current, start, end);
+    }
+
+    /**
+     * Returns the builder which the current slice is not backed by, creating
+     * it if needed.
+     *
+     * @param builders the two builders, either of which can be
+     *                 <code>null</code>
+     * @param current  the current slice
+     * @return the builder to write into
+     */
+    private static StringBuilder spareBuilder(final StringBuilder [] builders,
+                                              final CharSequence current) {
+        final int spare = (current == builders[0]) ? 1 : 0;
+        if (builders[spare] == null) {
+            builders[spare] = new StringBuilder();
+        }
+        return builders[spare];
+    }
+
+    /**
+     * Formats a <code>null</code> value through the remaining steps of the
+     * chain.
+     *
+     * @param firstStep the first step to apply
+     * @return the transformed value
+     */
+    private Object formatNull(final int firstStep) {
+        Object result = null;
+        for (int i = firstStep; i < steps.length; i++) {
+            result = steps[i].format((result == null) ? null : result
+                    .toString());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a string representation of this formatter.
+     *
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        final StringBuilder chain = new StringBuilder("ChainedFormatter[");
+        for (int i = 0; i < steps.length; i++) {
+            if (i > 0) {
+                chain.append(CHAIN_SEPARATOR);
+            }
+            chain.append(steps[i]);
+        }
+        return chain.append(']').toString();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import junit.framework.TestCase;
+
+/**
+ * ChainedFormatterTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class ChainedFormatterTest
+        extends TestCase {
+
+    /**
+     * Constructor for ChainedFormatterTest.
+     *
+     * @param name name of the test
+     */
+    public ChainedFormatterTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to perform the tests.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(ChainedFormatterTest.class);
+    }
+
+    /**
+     * Applies the formatters one after the other, as the chain should.
+     *
+     * @param steps the formatters
+     * @param value the value to format
+     * @return the formatted value
+     */
+    private Object formatInTurn(final CSVFieldFormatter [] steps,
+                                final String value) {
+        Object result = value;
+        for (CSVFieldFormatter step : steps) {
+            result = step.format((result == null) ? null : result.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.ChainedFormatter.format(String)'.
+     */
+    public void testFormat() {
+        final CSVFieldFormatter [][] chains = {
+                {new TrimWordFormatter(), new AllUpperCaseFormatter(),
+                        new LastWordFormatter()},
+                {new AllUpperCaseFormatter(), new FirstWordFormatter()},
+                {new AllLowerCaseFormatter(), new RegexFormatter("b (.*)")},
+                {new AllUpperCaseFormatter(), new AllLowerCaseFormatter()},
+                {new AllUpperCaseFormatter(), new SubstringFormatter("2"),
+                        new AllLowerCaseFormatter(), new RegexFormatter("a.")},
+                {new RegexFormatter("x"), new TrimWordFormatter()},
+                {new LastWordFormatter(), new DoNothingFormatter()}};
+        final String [] values = {" Anupam B Sengupta ", "anupam b",
+                "Anupam B Sengupta", "Stra\u00dfe", "  xyz ", "", "\u00e9t\u00e9 B"};
+        for (CSVFieldFormatter [] chain : chains) {
+            final ChainedFormatter formatter = new ChainedFormatter(chain);
+            for (String value : values) {
+                assertEquals("The chain " + formatter + " does not match for: "
+                        + value, formatInTurn(chain, value), formatter.format(value));
+            }
+            assertEquals("The chain " + formatter + " does not match for null",
+                    formatInTurn(chain, null), formatter.format(null));
+        }
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.ChainedFormatter.formatBatch(String[],Object[],int)'.
+     */
+    public void testFormatBatch() {
+        final CSVFieldFormatter [] chain = {new TrimWordFormatter(),
+                new AllUpperCaseFormatter(), new LastWordFormatter()};
+        final ChainedFormatter formatter = new ChainedFormatter(chain);
+        final String [] values = {" Anupam B Sengupta ", null, "anupam",
+                "Stra\u00dfe "};
+        final Object [] results = new Object[values.length];
+        formatter.formatBatch(values, results, values.length);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals("The batch result does not match for: " + values[i],
+                    formatInTurn(chain, values[i]), results[i]);
+        }
+    }
+
+    /**
+     * Tests that the chain is applied to a slice, writing into the builders
+     * alternately.
+     */
+    public void testFormatSlice() {
+        final CSVFieldFormatter legacyFormatter = new CSVFieldFormatter() {
+            public Object format(final String value) {
+                return (value == null) ? null : value + "!";
+            }
+        };
+        final ChainedFormatter formatter = new ChainedFormatter(
+                new CSVFieldFormatter[]{new AllUpperCaseFormatter(),
+                        new RegexFormatter("[A-Z]+$"), legacyFormatter,
+                        new AllLowerCaseFormatter()});
+        final StringBuilder builder = new StringBuilder();
+        final Object result = formatter.format("x, Anupam b ,y", 2, 10, builder);
+        assertEquals("The chain should have been applied to the slice", "b!",
+                result.toString());
+
+        final ChainedFormatter dateChain = new ChainedFormatter(
+                new CSVFieldFormatter[]{new TrimWordFormatter(),
+                        new DateFormatter("yyyy")});
+        assertTrue("A non character result should be returned as is",
+                dateChain.format(" 2005 ") instanceof java.util.Date);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * A {@link CSVFieldFormatter formatter} which parses the CSV value into a
+ * {@link Date date}, using the {@link SimpleDateFormat date pattern} specified
+ * as the formatter parameter (e.g., <code>reformat="date"
+ * reformat-param="yyyy-MM-dd"</code>).
+ * <p/>
+ * The pattern is compiled once, and each thread parses with its own copy of
+ * the compiled format, as <code>SimpleDateFormat</code> is not thread safe.
+ * Blank values are returned as <code>null</code>, and values which cannot be
+ * parsed are logged and returned as <code>null</code>. The parsing is strict:
+ * out of range fields (e.g., a 13th month) and trailing text are rejected.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @csv.formatter-mapping name="date" needsConstruction="true"
+ * @see NumberFormatter
+ * @since 1.5
+ */
+final class DateFormatter
+        implements CSVBatchFormatter {
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory.getLog(DateFormatter.class);
+
+    /**
+     * The compiled date format, which is copied for each thread.
+     */
+    private final SimpleDateFormat dateFormat;
+
+    /**
+     * The date formats of the parsing threads.
+     */
+    private final ThreadLocal<SimpleDateFormat> threadDateFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return (SimpleDateFormat) dateFormat.clone();
+        }
+    };
+
+    /**
+     * Constructor for DateFormatter.
+     *
+     * @param pattern the date pattern
+     * @throws IllegalArgumentException thrown if the pattern is invalid
+     */
+    public DateFormatter(final String pattern) {
+        super();
+        dateFormat = new SimpleDateFormat(pattern);
+        dateFormat.setLenient(false);
+    }
+
+    /**
+     * Parses the value into a date.
+     *
+     * @param value the value to be parsed
+     * @return the parsed date, or <code>null</code> if the value is blank or
+     *         invalid
+     * @see CSVFieldFormatter#format(String)
+     */
+    public Date format(final String value) {
+        return parse(threadDateFormat.get(), value);
+    }
+
+    /**
+     * Parses the values into dates, with the date format of the current
+     * thread looked up once for the batch.
+     *
+     * @param values  the values to parse
+     * @param results the array in which the dates are stored
+     * @param count   the number of values to parse
+     * @see CSVBatchFormatter#formatBatch(String[],Object[],int)
+     */
+    public void formatBatch(final String [] values, final Object [] results,
+                            final int count) {
+        final SimpleDateFormat format = threadDateFormat.get();
+        for (int i = 0; i < count; i++) {
+            results[i] = parse(format, values[i]);
+        }
+    }
+
+    /**
+     * Parses the value into a date with the specified date format.
+     *
+     * @param format the date format to use
+     * @param value  the value to be parsed
+     * @return the parsed date, or <code>null</code> if the value is blank or
+     *         invalid
+     */
+    private Date parse(final SimpleDateFormat format, final String value) {
+
+        final String trimmedValue = StringUtils.trimToNull(value);
+        if (trimmedValue == null) {
+            return null;
+        }
+        // The whole value should be parsed, as for the numbers
+        final ParsePosition position = new ParsePosition(0);
+        final Date date = format.parse(trimmedValue, position);
+        if (date == null || position.getIndex() != trimmedValue.length()) {
+            LOG.warn("The value: " + trimmedValue + " is not a date of the pattern: "
+                    + dateFormat.toPattern());
+            return null;
+        }
+        return date;
+    }
+
+    /**
+     * Returns a string representation of this formatter.
+     *
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        return "DateFormatter[" + dateFormat.toPattern() + "]";
+    }
+}
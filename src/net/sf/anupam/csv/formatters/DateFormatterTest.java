@@ -0,0 +1,109 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * DateFormatterTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class DateFormatterTest
+        extends TestCase {
+
+    /**
+     * Constructor for DateFormatterTest.
+     *
+     * @param name name of the test
+     */
+    public DateFormatterTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to perform the tests.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(DateFormatterTest.class);
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.DateFormatter.format(String)'.
+     */
+    public void testFormat() {
+        final CSVFieldFormatter formatter = new DateFormatter("yyyy-MM-dd");
+        final Date date = (Date) formatter.format(" 2005-03-14 ");
+        assertNotNull("The date should have been parsed", date);
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        assertEquals("The year does not match", 2005, calendar.get(Calendar.YEAR));
+        assertEquals("The month does not match", Calendar.MARCH, calendar
+                .get(Calendar.MONTH));
+        assertEquals("The day does not match", 14, calendar
+                .get(Calendar.DAY_OF_MONTH));
+        assertNull("A blank value should return null", formatter.format(" "));
+        assertNull("null should have been returned", formatter.format(null));
+        assertNull("An invalid date should return null", formatter
+                .format("14/03/2005"));
+        assertNull("An out of range date should return null", formatter
+                .format("2024-13-45"));
+        assertNull("A date with trailing text should return null", formatter
+                .format("2024-01-01xyz"));
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.DateFormatter.formatBatch(String[],Object[],int)'.
+     */
+    public void testFormatBatch() {
+        final DateFormatter formatter = new DateFormatter("yyyy-MM-dd");
+        final String [] values = {"2005-03-14", " ", null, "14/03/2005"};
+        final Object [] results = new Object[values.length];
+        formatter.formatBatch(values, results, values.length);
+        assertEquals("The date does not match", formatter.format(values[0]),
+                results[0]);
+        for (int i = 1; i < values.length; i++) {
+            assertNull("null should have been returned for: " + values[i],
+                    results[i]);
+        }
+    }
+
+    /**
+     * Tests that an invalid pattern is rejected.
+     */
+    public void testInvalidPattern() {
+        try {
+            new DateFormatter("yyyy-qq");
+            fail("Should have thrown an IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            // Do nothing
+        }
+    }
+}
@@ -36,7 +36,7 @@ package net.sf.anupam.csv.formatters;
  * @since 1.5
  */
 final class DoNothingFormatter
-        implements CSVFieldFormatter {
+        extends AbstractRangeFormatter {
 
     /**
      * Constructor for DoNothingFormatter.
@@ -52,9 +52,48 @@ final class DoNothingFormatter
      * @return the same value
      * @see CSVFieldFormatter#format(String)
      */
+    @Override
     public String format(final String value) {
 
         return value;
     }
 
+    /**
+     * Copies the values as the results.
+     *
+     * @param values  the values to format
+     * @param results the array in which the results are stored
+     * @param count   the number of values to format
+     * @see CSVBatchFormatter#formatBatch(String[],Object[],int)
+     */
+    @Override
+    public void formatBatch(final String [] values, final Object [] results,
+                            final int count) {
+        System.arraycopy(values, 0, results, 0, count);
+    }
+
+    /**
+     * Returns the range of the whole value.
+     *
+     * @param buffer the buffer containing the value
+     * @param start  the start of the value
+     * @param end    the end of the value (exclusive)
+     * @return the same range
+     * @see AbstractRangeFormatter#narrow(CharSequence,int,int)
+     */
+    @Override
+    long narrow(final CharSequence buffer, final int start, final int end) {
+        return range(start, end);
+    }
+
+    /**
+     * Indicates that the range is independent of the case of the value.
+     *
+     * @return <code>true</code>
+     */
+    @Override
+    boolean isCaseIndependent() {
+        return true;
+    }
+
 }
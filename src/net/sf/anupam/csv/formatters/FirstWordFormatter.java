@@ -21,8 +21,6 @@
  */
 package net.sf.anupam.csv.formatters;
 
-import org.apache.commons.lang.StringUtils;
-
 /**
  * A {@link CSVFieldFormatter formatter} that returns the first word
  * of the specified CSV value. This is useful in situations such as
@@ -35,7 +33,7 @@ import org.apache.commons.lang.StringUtils;
  * @since 1.5
  */
 final class FirstWordFormatter
-        implements CSVFieldFormatter {
+        extends AbstractRangeFormatter {
 
     /**
      * Constructor for FirstWordFormatter.
@@ -45,18 +43,32 @@ final class FirstWordFormatter
     }
 
     /**
-     * Formats the value and returns the first word.
+     * Returns the range of the first word, i.e., the trimmed range
+     * up to the first space.
      *
-     * @param value the value to be transformed
-     * @return the first word from the input value
-     * @see CSVFieldFormatter#format(String)
+     * @param buffer the buffer containing the value
+     * @param start  the start of the value
+     * @param end    the end of the value (exclusive)
+     * @return the range of the first word
+     * @see AbstractRangeFormatter#narrow(CharSequence,int,int)
      */
-    public String format(final String value) {
-
-        if (value == null) {
-            return null;
+    @Override
+    long narrow(final CharSequence buffer, final int start, final int end) {
+        int wordEnd = start;
+        while (wordEnd < end && buffer.charAt(wordEnd) != ' ') {
+            wordEnd++;
         }
-        return StringUtils.trim(value.split(" ")[0]);
+        return trimmedRange(buffer, start, wordEnd);
+    }
+
+    /**
+     * Indicates that the range is independent of the case of the value.
+     *
+     * @return <code>true</code>
+     */
+    @Override
+    boolean isCaseIndependent() {
+        return true;
     }
 
 }
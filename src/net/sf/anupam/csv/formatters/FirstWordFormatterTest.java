@@ -87,4 +87,22 @@ public class FirstWordFormatterTest
         assertEquals("An empty string should have been returned", "", emptyResult);
 
     }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.FirstWordFormatter.format(CharSequence,int,int,StringBuilder)'.
+     */
+    public void testFormatSlice() {
+        final CSVSliceFormatter formatter = new FirstWordFormatter();
+        final String buffer = "x,\tAnupam B Sengupta,y";
+        final Object result = formatter.format(buffer, 2, 18, null);
+        assertEquals("The first word of the slice should have been returned",
+                "Anupam", result.toString());
+        assertEquals("Leading spaces should return an empty word", "",
+                formatter.format("  Anupam", 0, 8, null).toString());
+        assertEquals("Only spaces should return an empty word", "",
+                formatter.format("   ", 0, 3, null).toString());
+        assertSame("A single word should not be copied", "Anupam",
+                formatter.format("Anupam"));
+    }
 }
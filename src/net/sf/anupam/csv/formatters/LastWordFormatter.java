@@ -21,8 +21,6 @@
  */
 package net.sf.anupam.csv.formatters;
 
-import org.apache.commons.lang.StringUtils;
-
 /**
  * A {@link CSVFieldFormatter formatter} that returns the last word
  * of the specified CSV value. This is useful in situations such as
@@ -35,7 +33,7 @@ import org.apache.commons.lang.StringUtils;
  * @since 1.5
  */
 final class LastWordFormatter
-        implements CSVFieldFormatter {
+        extends AbstractRangeFormatter {
 
     /**
      * Constructor for FirstWordFormatter.
@@ -45,20 +43,37 @@ final class LastWordFormatter
     }
 
     /**
-     * Formats the value and returns the last word.
+     * Returns the range of the last word, i.e., the trimmed range
+     * after the last space which is followed by other characters.
      *
-     * @param value the value to be transformed
-     * @return the last word from the input value
-     * @see CSVFieldFormatter#format(String)
+     * @param buffer the buffer containing the value
+     * @param start  the start of the value
+     * @param end    the end of the value (exclusive)
+     * @return the range of the last word
+     * @see AbstractRangeFormatter#narrow(CharSequence,int,int)
      */
-    public String format(final String value) {
-
-        if (value == null) {
-            return null;
+    @Override
+    long narrow(final CharSequence buffer, final int start, final int end) {
+        // Trailing spaces do not delimit a last (empty) word
+        int wordEnd = end;
+        while (wordEnd > start && buffer.charAt(wordEnd - 1) == ' ') {
+            wordEnd--;
         }
-        final String [] splitValues = value.split(" ");
+        int wordStart = wordEnd;
+        while (wordStart > start && buffer.charAt(wordStart - 1) != ' ') {
+            wordStart--;
+        }
+        return trimmedRange(buffer, wordStart, wordEnd);
+    }
 
-        return StringUtils.trim(splitValues[splitValues.length - 1]);
+    /**
+     * Indicates that the range is independent of the case of the value.
+     *
+     * @return <code>true</code>
+     */
+    @Override
+    boolean isCaseIndependent() {
+        return true;
     }
 
 }
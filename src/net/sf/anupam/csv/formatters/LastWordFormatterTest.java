@@ -87,4 +87,22 @@ public class LastWordFormatterTest
         assertEquals("Should have returned an empty string", "", emptyResult);
 
     }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.LastWordFormatter.format(CharSequence,int,int,StringBuilder)'.
+     */
+    public void testFormatSlice() {
+        final CSVSliceFormatter formatter = new LastWordFormatter();
+        final String buffer = "x,Anupam B Sengupta\t,y";
+        final Object result = formatter.format(buffer, 2, 18, null);
+        assertEquals("The last word of the slice should have been returned",
+                "Sengupta", result.toString());
+        assertEquals("Trailing spaces should be skipped", "Sengupta",
+                formatter.format("Anupam Sengupta  ", 0, 17, null).toString());
+        assertEquals("Only spaces should return an empty word", "",
+                formatter.format("   ", 0, 3, null).toString());
+        assertEquals("A trailing tab word should be trimmed", "",
+                formatter.format("Anupam \t"));
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+/**
+ * Adapts a {@link CSVFieldFormatter formatter} which only formats
+ * <code>String</code> values to the {@link CSVSliceFormatter slice formatter}
+ * contract. The slice is converted to a <code>String</code> for the adapted
+ * formatter, unless the buffer itself is a <code>String</code> covered by the
+ * slice.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @see CSVFormatterFactory#asSliceFormatter(CSVFieldFormatter)
+ * @since 1.5
+ */
+final class LegacySliceFormatter
+        implements CSVSliceFormatter {
+
+    /**
+     * The adapted formatter.
+     */
+    private final CSVFieldFormatter formatter;
+
+    /**
+     * Constructor for LegacySliceFormatter.
+     *
+     * @param formatter the formatter to adapt
+     */
+    LegacySliceFormatter(final CSVFieldFormatter formatter) {
+        super();
+        this.formatter = formatter;
+    }
+
+    /**
+     * Formats the value with the adapted formatter.
+     *
+     * @param value the value to be transformed
+     * @return the transformed value
+     * @see CSVFieldFormatter#format(String)
+     */
+    public Object format(final String value) {
+        return formatter.format(value);
+    }
+
+    /**
+     * Formats the slice as a <code>String</code> with the adapted formatter.
+     *
+     * @param buffer  the buffer containing the value
+     * @param offset  the start of the value
+     * @param length  the length of the value
+     * @param builder not used
+     * @return the transformed value
+     * @see CSVSliceFormatter#format(CharSequence,int,int,StringBuilder)
+     */
+    public Object format(final CharSequence buffer, final int offset,
+                         final int length, final StringBuilder builder) {
+        return formatter.format(AbstractSliceFormatter.slice(buffer, offset,
+                offset + length).toString());
+    }
+
+    /**
+     * Returns a string representation of this adapter.
+     *
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        return "LegacySliceFormatter[" + formatter + "]";
+    }
+}
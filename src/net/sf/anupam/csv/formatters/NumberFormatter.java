@@ -0,0 +1,147 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.text.DecimalFormat;
+import java.text.ParsePosition;
+
+/**
+ * A {@link CSVFieldFormatter formatter} which parses the CSV value into a
+ * {@link Number number}, using the {@link DecimalFormat decimal pattern}
+ * specified as the formatter parameter (e.g., <code>reformat="number"
+ * reformat-param="#,##0.00"</code>). Integral values are returned as
+ * <code>Long</code> and others as <code>Double</code>.
+ * <p/>
+ * The pattern is compiled once, and each thread parses with its own copy of
+ * the compiled format, as <code>DecimalFormat</code> is not thread safe.
+ * Blank values are returned as <code>null</code>, and values which cannot be
+ * parsed completely are logged and returned as <code>null</code>.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @csv.formatter-mapping name="number" needsConstruction="true"
+ * @see DateFormatter
+ * @since 1.5
+ */
+final class NumberFormatter
+        implements CSVBatchFormatter {
+
+    /**
+     * The logger to use.
+     */
+    private static final Log LOG = LogFactory.getLog(NumberFormatter.class);
+
+    /**
+     * The compiled number format, which is copied for each thread.
+     */
+    private final DecimalFormat numberFormat;
+
+    /**
+     * The number formats of the parsing threads.
+     */
+    private final ThreadLocal<DecimalFormat> threadNumberFormat = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            return (DecimalFormat) numberFormat.clone();
+        }
+    };
+
+    /**
+     * Constructor for NumberFormatter.
+     *
+     * @param pattern the decimal pattern
+     * @throws IllegalArgumentException thrown if the pattern is invalid
+     */
+    public NumberFormatter(final String pattern) {
+        super();
+        numberFormat = new DecimalFormat(pattern);
+    }
+
+    /**
+     * Parses the value into a number.
+     *
+     * @param value the value to be parsed
+     * @return the parsed number, or <code>null</code> if the value is blank or
+     *         invalid
+     * @see CSVFieldFormatter#format(String)
+     */
+    public Number format(final String value) {
+        return parse(threadNumberFormat.get(), value);
+    }
+
+    /**
+     * Parses the values into numbers, with the number format of the current
+     * thread looked up once for the batch.
+     *
+     * @param values  the values to parse
+     * @param results the array in which the numbers are stored
+     * @param count   the number of values to parse
+     * @see CSVBatchFormatter#formatBatch(String[],Object[],int)
+     */
+    public void formatBatch(final String [] values, final Object [] results,
+                            final int count) {
+        final DecimalFormat format = threadNumberFormat.get();
+        for (int i = 0; i < count; i++) {
+            results[i] = parse(format, values[i]);
+        }
+    }
+
+    /**
+     * Parses the value into a number with the specified number format.
+     *
+     * @param format the number format to use
+     * @param value  the value to be parsed
+     * @return the parsed number, or <code>null</code> if the value is blank or
+     *         invalid
+     */
+    private Number parse(final DecimalFormat format, final String value) {
+
+        final String trimmedValue = StringUtils.trimToNull(value);
+        if (trimmedValue == null) {
+            return null;
+        }
+        final ParsePosition position = new ParsePosition(0);
+        final Number number = format.parse(trimmedValue, position);
+        if (number == null || position.getIndex() != trimmedValue.length()) {
+            LOG.warn("The value: " + trimmedValue
+                    + " is not a number of the pattern: "
+                    + numberFormat.toPattern());
+            return null;
+        }
+        return number;
+    }
+
+    /**
+     * Returns a string representation of this formatter.
+     *
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        return "NumberFormatter[" + numberFormat.toPattern() + "]";
+    }
+}
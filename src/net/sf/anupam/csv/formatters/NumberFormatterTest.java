@@ -0,0 +1,70 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import junit.framework.TestCase;
+
+/**
+ * NumberFormatterTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class NumberFormatterTest
+        extends TestCase {
+
+    /**
+     * Constructor for NumberFormatterTest.
+     *
+     * @param name name of the test
+     */
+    public NumberFormatterTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to perform the tests.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(NumberFormatterTest.class);
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.NumberFormatter.format(String)'.
+     */
+    public void testFormat() {
+        final CSVFieldFormatter formatter = new NumberFormatter("#,##0.##");
+        final Number integral = (Number) formatter.format("1,234");
+        assertEquals("The integral value does not match", 1234L, integral
+                .longValue());
+        final Number decimal = (Number) formatter.format(" 12.5 ");
+        assertEquals("The decimal value does not match", 12.5, decimal
+                .doubleValue(), 0.0);
+        assertNull("A blank value should return null", formatter.format(""));
+        assertNull("null should have been returned", formatter.format(null));
+        assertNull("A partial number should return null", formatter
+                .format("12abc"));
+    }
+}
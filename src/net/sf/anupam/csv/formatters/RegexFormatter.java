@@ -0,0 +1,98 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link CSVFieldFormatter formatter} which extracts the first match of the
+ * regular expression specified as the formatter parameter (e.g.,
+ * <code>reformat="regex" reformat-param="@(.+)$"</code>). If the expression
+ * has a capturing group, the first group is returned, else the whole match.
+ * <code>null</code> is returned if the value does not match.
+ * <p/>
+ * The expression is compiled once, and the match is returned as a slice of the
+ * value.
+ * </p>
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @csv.formatter-mapping name="regex" needsConstruction="true"
+ * @see SubstringFormatter
+ * @since 1.5
+ */
+final class RegexFormatter
+        extends AbstractRangeFormatter {
+
+    /**
+     * The compiled expression.
+     */
+    private final Pattern pattern;
+
+    /**
+     * The group to extract.
+     */
+    private final int group;
+
+    /**
+     * Constructor for RegexFormatter.
+     *
+     * @param regex the regular expression
+     * @throws IllegalArgumentException thrown if the expression is invalid
+     */
+    public RegexFormatter(final String regex) {
+        super();
+        pattern = Pattern.compile(regex);
+        group = (pattern.matcher("").groupCount() > 0) ? 1 : 0;
+    }
+
+    /**
+     * Returns the range of the first match.
+     *
+     * @param buffer the buffer containing the value
+     * @param start  the start of the value
+     * @param end    the end of the value (exclusive)
+     * @return the range of the match (or its first group), or
+     *         {@link #NO_RANGE} if the value does not match
+     * @see AbstractRangeFormatter#narrow(CharSequence,int,int)
+     */
+    @Override
+    long narrow(final CharSequence buffer, final int start, final int end) {
+        final Matcher matcher = pattern.matcher(buffer);
+        matcher.region(start, end);
+        if (!matcher.find() || matcher.start(group) < 0) {
+            return NO_RANGE;
+        }
+        return range(matcher.start(group), matcher.end(group));
+    }
+
+    /**
+     * Returns a string representation of this formatter.
+     *
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        return "RegexFormatter[" + pattern.pattern() + "]";
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import junit.framework.TestCase;
+
+/**
+ * RegexFormatterTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class RegexFormatterTest
+        extends TestCase {
+
+    /**
+     * Constructor for RegexFormatterTest.
+     *
+     * @param name name of the test
+     */
+    public RegexFormatterTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to perform the tests.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(RegexFormatterTest.class);
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.RegexFormatter.format(String)'.
+     */
+    public void testFormat() {
+        final CSVFieldFormatter formatter = new RegexFormatter("@(.+)$");
+        assertEquals("The first group should have been returned",
+                "someplace.com", formatter.format("john.doe@someplace.com"));
+        assertNull("A value which does not match should return null",
+                formatter.format("john.doe"));
+        assertNull("null should have been returned", formatter.format(null));
+        assertEquals("The whole match should have been returned", "123",
+                new RegexFormatter("[0-9]+").format("ID-123-X"));
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.RegexFormatter.format(CharSequence,int,int,StringBuilder)'.
+     */
+    public void testFormatSlice() {
+        final CSVSliceFormatter formatter = new RegexFormatter("@(.+)$");
+        final Object result = formatter.format("x,j.doe@nowhere.com,y", 2, 17,
+                null);
+        assertEquals("The match should be limited to the slice", "nowhere.com",
+                result.toString());
+    }
+}
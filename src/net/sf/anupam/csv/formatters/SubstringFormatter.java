@@ -0,0 +1,108 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A {@link CSVFieldFormatter formatter} which returns a range of characters
+ * of the CSV value. The formatter parameter is the start index and optionally
+ * the (exclusive) end index of the range, separated by a comma (e.g.,
+ * <code>reformat="substring" reformat-param="0,3"</code>). The range is
+ * limited to the length of the value.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ * @csv.formatter-mapping name="substring" needsConstruction="true"
+ * @see RegexFormatter
+ * @since 1.5
+ */
+final class SubstringFormatter
+        extends AbstractRangeFormatter {
+
+    /**
+     * The start index of the range.
+     */
+    private final int beginIndex;
+
+    /**
+     * The end index of the range (exclusive), or <code>-1</code> for the end
+     * of the value.
+     */
+    private final int endIndex;
+
+    /**
+     * Constructor for SubstringFormatter.
+     *
+     * @param range the start index, and optionally the end index of the range
+     * @throws IllegalArgumentException thrown if the range is invalid
+     */
+    public SubstringFormatter(final String range) {
+        super();
+        final String [] indexes = StringUtils.split(range, ',');
+        if (indexes == null || indexes.length < 1 || indexes.length > 2) {
+            throw new IllegalArgumentException("The substring range: " + range
+                    + " should be begin[,end]");
+        }
+        try {
+            beginIndex = Integer.parseInt(indexes[0].trim());
+            endIndex = (indexes.length == 2) ? Integer.parseInt(indexes[1]
+                    .trim()) : -1;
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("The substring range: " + range
+                    + " should be numeric");
+        }
+        if (beginIndex < 0 || (endIndex >= 0 && endIndex < beginIndex)) {
+            throw new IllegalArgumentException("The substring range: " + range
+                    + " is invalid");
+        }
+    }
+
+    /**
+     * Returns the configured range of the value, limited to the length
+     * of the value.
+     *
+     * @param buffer the buffer containing the value
+     * @param start  the start of the value
+     * @param end    the end of the value (exclusive)
+     * @return the configured range
+     * @see AbstractRangeFormatter#narrow(CharSequence,int,int)
+     */
+    @Override
+    long narrow(final CharSequence buffer, final int start, final int end) {
+        final int length = end - start;
+        final int rangeEnd = (endIndex < 0 || endIndex > length) ? end : start
+                + endIndex;
+        return range(start + Math.min(beginIndex, rangeEnd - start), rangeEnd);
+    }
+
+    /**
+     * Returns a string representation of this formatter.
+     *
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        return "SubstringFormatter[" + beginIndex + ","
+                + ((endIndex < 0) ? "" : String.valueOf(endIndex)) + "]";
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * CSVSliceFormatter.java
+ * 
+ * Copyright (C) 2005 Anupam Sengupta (anupamsg@users.sourceforge.net) 
+ * 
+ * This program is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License 
+ * as published by the Free Software Foundation; either version 2 
+ * of the License, or (at your option) any later version. 
+ * 
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU General Public License for more details. 
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software 
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA. 
+ *
+ * Version: $Revision$
+ */
+package net.sf.anupam.csv.formatters;
+
+import junit.framework.TestCase;
+
+/**
+ * SubstringFormatterTest.
+ *
+ * @author Anupam Sengupta
+ * @version $Revision$
+ */
+public class SubstringFormatterTest
+        extends TestCase {
+
+    /**
+     * Constructor for SubstringFormatterTest.
+     *
+     * @param name name of the test
+     */
+    public SubstringFormatterTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Main method to perform the tests.
+     *
+     * @param args Program arguments
+     */
+    public static void main(final String [] args) {
+        junit.textui.TestRunner.run(SubstringFormatterTest.class);
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.SubstringFormatter.format(String)'.
+     */
+    public void testFormat() {
+        final CSVFieldFormatter formatter = new SubstringFormatter("1, 3");
+        assertEquals("The range should have been returned", "nu", formatter
+                .format("Anupam"));
+        assertEquals("The range should be limited to the value", "", formatter
+                .format("A"));
+        assertNull("null should have been returned", formatter.format(null));
+        assertEquals("The range should extend to the end", "pam",
+                new SubstringFormatter("3").format("Anupam"));
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.SubstringFormatter.format(CharSequence,int,int,StringBuilder)'.
+     */
+    public void testFormatSlice() {
+        final CSVSliceFormatter formatter = new SubstringFormatter("0,3");
+        assertEquals("The range should be relative to the slice", "Anu",
+                formatter.format("x,Anupam,y", 2, 6, null).toString());
+    }
+
+    /**
+     * Tests that invalid ranges are rejected.
+     */
+    public void testInvalidRange() {
+        final String [] invalidRanges = {"", "a", "3,1", "-1", "1,2,3"};
+        for (String invalidRange : invalidRanges) {
+            try {
+                new SubstringFormatter(invalidRange);
+                fail("Should have thrown an IllegalArgumentException for "
+                        + invalidRange);
+            } catch (final IllegalArgumentException e) {
+                // Do nothing
+            }
+        }
+    }
+}
@@ -21,8 +21,6 @@
  */
 package net.sf.anupam.csv.formatters;
 
-import org.apache.commons.lang.StringUtils;
-
 /**
  * A {@link CSVFieldFormatter formatter} that returns the trimmed
  * CSV value. This is useful in situations when the CSV field is
@@ -34,7 +32,7 @@ import org.apache.commons.lang.StringUtils;
  * @since 1.5
  */
 final class TrimWordFormatter
-        implements CSVFieldFormatter {
+        extends AbstractRangeFormatter {
 
     /**
      * Constructor for FirstWordFormatter.
@@ -44,19 +42,28 @@ final class TrimWordFormatter
     }
 
     /**
-     * Formats the specified value and returns a trimmed representation. All leading and
-     * trailing white space is trimmed.
+     * Returns the trimmed range of the value. All leading and trailing
+     * white space is trimmed.
      *
-     * @param value the value to be trimmed
-     * @return the trimmed value
-     * @see CSVFieldFormatter#format(String)
+     * @param buffer the buffer containing the value
+     * @param start  the start of the value
+     * @param end    the end of the value (exclusive)
+     * @return the trimmed range
+     * @see AbstractRangeFormatter#narrow(CharSequence,int,int)
      */
-    public String format(final String value) {
+    @Override
+    long narrow(final CharSequence buffer, final int start, final int end) {
+        return trimmedRange(buffer, start, end);
+    }
 
-        if (value == null) {
-            return null;
-        }
-        return StringUtils.trim(value);
+    /**
+     * Indicates that the range is independent of the case of the value.
+     *
+     * @return <code>true</code>
+     */
+    @Override
+    boolean isCaseIndependent() {
+        return true;
     }
 
 }
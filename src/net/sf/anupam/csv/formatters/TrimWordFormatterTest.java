@@ -87,4 +87,33 @@ public class TrimWordFormatterTest
         assertEquals("Should have returned an empty string", "", emptyResult);
 
     }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.TrimWordFormatter.format(CharSequence,int,int,StringBuilder)'.
+     */
+    public void testFormatSlice() {
+        final CSVSliceFormatter formatter = new TrimWordFormatter();
+        final Object result = formatter.format("x, Anupam \t,y", 2, 9, null);
+        assertEquals("The trimmed slice should have been returned", "Anupam",
+                result.toString());
+        final String value = "Anupam";
+        assertSame("A trimmed value should not be copied", value,
+                formatter.format(value, 0, value.length(), null));
+    }
+
+    /**
+     * Test method for
+     * 'net.sf.anupam.csv.formatters.AbstractRangeFormatter.formatBatch(String[],Object[],int)'.
+     */
+    public void testFormatBatch() {
+        final CSVBatchFormatter formatter = new TrimWordFormatter();
+        final String [] values = {" Anupam ", "Sengupta", null, "  "};
+        final Object [] results = new Object[values.length];
+        formatter.formatBatch(values, results, values.length);
+        assertEquals("The value should have been trimmed", "Anupam", results[0]);
+        assertSame("A trimmed value should not be copied", values[1], results[1]);
+        assertNull("null should have been returned", results[2]);
+        assertEquals("A blank value should be trimmed to empty", "", results[3]);
+    }
 }
@@ -61,6 +61,11 @@ public class CSVBeanMapping implements Iterable<CSVFieldMapping> {
      */
     private boolean csvHeaderPresent;
 
+    /**
+     * Name of the charset of the source CSV, or <code>null</code> for the platform default.
+     */
+    private String charsetName;
+
     /**
      * List of mapped CSV fields for this bean mapping.
      */
@@ -127,6 +132,7 @@ public class CSVBeanMapping implements Iterable<CSVFieldMapping> {
         strBuilder.append("Number of Fields", fields.size());
         strBuilder.append("Max Field Position", getMaxFieldPosition());
         strBuilder.append("CSV Header Present", isCsvHeaderPresent());
+        strBuilder.append("Charset", charsetName);
         return strBuilder.toString();
     }
 
@@ -214,4 +220,22 @@ public class CSVBeanMapping implements Iterable<CSVFieldMapping> {
     public void setCsvHeaderPresent(final boolean csvHeaderPresent) {
         this.csvHeaderPresent = csvHeaderPresent;
     }
+
+    /**
+     * Returns the name of the charset in which the mapped CSV file is encoded.
+     *
+     * @return Returns the charset name, or <code>null</code> if the platform default charset is used
+     */
+    public String getCharsetName() {
+        return this.charsetName;
+    }
+
+    /**
+     * Sets the name of the charset in which the mapped CSV file is encoded.
+     *
+     * @param charsetName The charset name, or <code>null</code> to use the platform default charset
+     */
+    public void setCharsetName(final String charsetName) {
+        this.charsetName = StringUtils.trimToNull(charsetName);
+    }
 }
@@ -71,6 +71,18 @@ public class CSVFieldMapping implements Comparable<CSVFieldMapping> {
      */
     private String reformatterName;
 
+    /**
+     * The parameter of the CSV field formatter (e.g., a date pattern), if
+     * any.
+     */
+    private String reformatterParameter;
+
+    /**
+     * The maximum number of formatted values to memoize, or <code>0</code> if
+     * the formatted values are not memoized.
+     */
+    private int memoSize;
+
     /**
      * Declarative bean name of the being being referenced by this field
      * mapping.
@@ -136,7 +148,9 @@ public class CSVFieldMapping implements Comparable<CSVFieldMapping> {
         strBuilder.append("fieldName", fieldName)
                 .append("fieldType", fieldType).append("fieldPosition",
                 fieldPosition).append("attributeName", attributeName)
-                .append("reformatterName", reformatterName);
+                .append("reformatterName", reformatterName)
+                .append("reformatterParameter", reformatterParameter)
+                .append("memoSize", memoSize);
 
         strBuilder.append("FormatterClass", (
                 formatter == null
@@ -283,6 +297,52 @@ public class CSVFieldMapping implements Comparable<CSVFieldMapping> {
         this.reformatterName = reformatterName;
     }
 
+    /**
+     * Returns the parameter of the formatter attached to this field, or
+     * <code>null</code> if the formatter is not parameterized.
+     *
+     * @return Returns the formatter parameter
+     */
+    public String getReformatterParameter() {
+        return this.reformatterParameter;
+    }
+
+    /**
+     * Sets the parameter of the formatter attached to this field (e.g., the
+     * date pattern of the <code>date</code> formatter).
+     *
+     * @param reformatterParameter The formatter parameter to set
+     */
+    public void setReformatterParameter(final String reformatterParameter) {
+        this.reformatterParameter = reformatterParameter;
+    }
+
+    /**
+     * Returns the maximum number of formatted values to memoize for this
+     * field, or <code>0</code> if the formatted values are not memoized. The
+     * memo is useful for fields with few distinct values, whose formatted
+     * values are immutable or dates (which are copied for each bean).
+     *
+     * @return Returns the memo size
+     * @see net.sf.anupam.csv.formatters.CSVMemoizingFormatter
+     */
+    public int getMemoSize() {
+        return this.memoSize;
+    }
+
+    /**
+     * Sets the maximum number of formatted values to memoize for this field.
+     * A size of <code>0</code> disables the memo.
+     *
+     * @param memoSize The memo size to set
+     */
+    public void setMemoSize(final int memoSize) {
+        if (memoSize < 0) {
+            throw new IllegalArgumentException("The memo size cannot be negative");
+        }
+        this.memoSize = memoSize;
+    }
+
     /**
      * Returns the declarative name of the referenced bean mapping for this field, or
      * <code>null</code> if no bean mapping if referenced by this field.
@@ -112,7 +112,7 @@ public class Designation
      * Returns value of the designation.
      *
      * @return Returns the designation.
-     * @csv.field-mapping position="4"
+     * @csv.field-mapping position="4" memo-size="16"
      */
     public String getDesignation() {
         return this.designation;
@@ -36,6 +36,7 @@ public class EmailDetails {
 
     private String emailID;
     private String emailProvider;
+    private String emailDomain;
 
     /**
      * Default constructor.
@@ -95,6 +96,7 @@ public class EmailDetails {
     public String toString() {
         return new ToStringBuilder(this).append("emailID", emailID)
                 .append("emailProvider", emailProvider)
+                .append("emailDomain", emailDomain)
                 .toString();
     }
 
@@ -137,4 +139,24 @@ public class EmailDetails {
     public void setEmailProvider(final String emailProvider) {
         this.emailProvider = emailProvider;
     }
+
+    /**
+     * Returns the domain of the email ID.
+     *
+     * @return the email domain
+     *
+     * @csv.field-mapping field-name="emailDomain" position="3" reformat="regex" reformat-param="[^@]+$"
+     */
+    public String getEmailDomain() {
+        return emailDomain;
+    }
+
+    /**
+     * Sets the domain of the email ID.
+     *
+     * @param emailDomain the email domain to set
+     */
+    public void setEmailDomain(final String emailDomain) {
+        this.emailDomain = emailDomain;
+    }
 }